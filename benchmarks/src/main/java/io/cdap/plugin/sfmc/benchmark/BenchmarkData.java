@@ -0,0 +1,254 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.benchmark;
+
+import com.custom.fuelsdk.ETNotSentEvent;
+import com.exacttarget.fuelsdk.ETDataExtensionColumn;
+import com.exacttarget.fuelsdk.ETDataExtensionRow;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.sfmc.common.StreamingSoapClient;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudColumn;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Synthetic data extensions, tracking events and SOAP responses used by the benchmarks.
+ *
+ * Columns cycle through text, number, decimal, boolean and date, and values are derived from the row and column
+ * index, so every run converts the same data.
+ */
+public final class BenchmarkData {
+  /**
+   * Number of rows in a page of a retrieve response.
+   */
+  public static final int PAGE_SIZE = 2500;
+
+  /**
+   * Number of rows in a batch written by the sink, its default maximum batch size.
+   */
+  public static final int BATCH_SIZE = 500;
+
+  public static final String DATA_EXTENSION_KEY = "benchmark";
+
+  private static final String[] SOURCE_TYPES = {"Text", "Number", "Decimal", "Boolean", "Date"};
+  private static final ETDataExtensionColumn.Type[] SINK_TYPES = {
+    ETDataExtensionColumn.Type.TEXT, ETDataExtensionColumn.Type.NUMBER, ETDataExtensionColumn.Type.DECIMAL,
+    ETDataExtensionColumn.Type.BOOLEAN, ETDataExtensionColumn.Type.DATE
+  };
+  private static final int TEXT_LENGTH = 100;
+
+  /**
+   * Number of columns of the data extension.
+   */
+  public enum Shape {
+    NARROW(5),
+    WIDE(100);
+
+    private final int columns;
+
+    Shape(int columns) {
+      this.columns = columns;
+    }
+
+    public int getColumns() {
+      return columns;
+    }
+  }
+
+  private BenchmarkData() {
+  }
+
+  /**
+   * Returns the columns of the data extension read by the source.
+   */
+  public static List<MarketingCloudColumn> sourceColumns(Shape shape) {
+    List<MarketingCloudColumn> columns = new ArrayList<>(shape.getColumns());
+    for (int i = 0; i < shape.getColumns(); i++) {
+      columns.add(new MarketingCloudColumn(sourceColumnName(i), SOURCE_TYPES[i % SOURCE_TYPES.length]));
+    }
+    return columns;
+  }
+
+  /**
+   * Returns data extension rows as the SDK builds them from a retrieve response.
+   */
+  public static List<ETDataExtensionRow> dataExtensionRows(Shape shape, int count) {
+    List<ETDataExtensionRow> rows = new ArrayList<>(count);
+    for (int row = 0; row < count; row++) {
+      ETDataExtensionRow dataExtensionRow = new ETDataExtensionRow();
+      for (int column = 0; column < shape.getColumns(); column++) {
+        dataExtensionRow.setColumn(sourceColumnName(column), sourceValue(row, column));
+      }
+      rows.add(dataExtensionRow);
+    }
+    return rows;
+  }
+
+  /**
+   * Returns the body of a retrieve response holding a page of data extension rows, starting with the
+   * RetrieveResponseMsg element.
+   */
+  public static byte[] retrieveResponse(Shape shape, int count) {
+    StringBuilder response = new StringBuilder();
+    response.append("<RetrieveResponseMsg xmlns=\"").append(StreamingSoapClient.PARTNER_API_NS)
+      .append("\" xmlns:xsi=\"").append(StreamingSoapClient.XSI_NS).append("\">")
+      .append("<OverallStatus>MoreDataAvailable</OverallStatus>")
+      .append("<RequestID>2ab7c6b8-0b8b-4b7d-9d1e-5c7c0a1e3f42</RequestID>");
+    for (int row = 0; row < count; row++) {
+      response.append("<Results xsi:type=\"DataExtensionObject\">")
+        .append("<PartnerKey xsi:nil=\"true\"/><ObjectID xsi:nil=\"true\"/><Type>DataExtensionObject</Type>")
+        .append("<Properties>");
+      for (int column = 0; column < shape.getColumns(); column++) {
+        response.append("<Property><Name>").append(sourceColumnName(column)).append("</Name><Value>")
+          .append(sourceValue(row, column)).append("</Value></Property>");
+      }
+      response.append("</Properties></Results>");
+    }
+    response.append("</RetrieveResponseMsg>");
+    return response.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns not sent tracking events.
+   */
+  public static List<ETNotSentEvent> notSentEvents(int count) {
+    List<ETNotSentEvent> events = new ArrayList<>(count);
+    long start = 1609459200000L;
+    for (int i = 0; i < count; i++) {
+      ETNotSentEvent event = new ETNotSentEvent();
+      event.setId(String.valueOf(i));
+      event.setSendID(1000 + i % 10);
+      event.setSubscriberKey("subscriber-" + i + "@example.com");
+      event.setEventDate(new Date(start + i * 1000L));
+      event.setTriggeredSendDefinitionObjectID("b1a2c3d4-0000-0000-0000-" + String.format("%012d", i % 10));
+      event.setBatchID(i / 100);
+      events.add(event);
+    }
+    return events;
+  }
+
+  /**
+   * Returns the columns of the data extension written by the sink.
+   */
+  public static List<ETDataExtensionColumn> sinkColumns(Shape shape) {
+    List<ETDataExtensionColumn> columns = new ArrayList<>(shape.getColumns());
+    for (int i = 0; i < shape.getColumns(); i++) {
+      ETDataExtensionColumn column = new ETDataExtensionColumn();
+      column.setName(sinkColumnName(i));
+      column.setType(SINK_TYPES[i % SINK_TYPES.length]);
+      if (column.getType() == ETDataExtensionColumn.Type.TEXT) {
+        column.setLength(TEXT_LENGTH);
+      }
+      column.setIsPrimaryKey(i == 0);
+      columns.add(column);
+    }
+    return columns;
+  }
+
+  /**
+   * Returns the schema of the records written by the sink.
+   */
+  public static Schema sinkSchema(Shape shape) {
+    List<Schema.Field> fields = new ArrayList<>(shape.getColumns());
+    for (int i = 0; i < shape.getColumns(); i++) {
+      Schema schema;
+      switch (SINK_TYPES[i % SINK_TYPES.length]) {
+        case NUMBER:
+          schema = Schema.of(Schema.Type.INT);
+          break;
+        case DECIMAL:
+          schema = Schema.of(Schema.Type.DOUBLE);
+          break;
+        case BOOLEAN:
+          schema = Schema.of(Schema.Type.BOOLEAN);
+          break;
+        case DATE:
+          schema = Schema.of(Schema.LogicalType.DATE);
+          break;
+        default:
+          schema = Schema.of(Schema.Type.STRING);
+      }
+      fields.add(Schema.Field.of(sinkColumnName(i), Schema.nullableOf(schema)));
+    }
+    return Schema.recordOf("benchmark", fields);
+  }
+
+  /**
+   * Returns the records written by the sink.
+   */
+  public static List<StructuredRecord> sinkRecords(Shape shape, int count) {
+    Schema schema = sinkSchema(shape);
+    List<StructuredRecord> records = new ArrayList<>(count);
+    for (int row = 0; row < count; row++) {
+      StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+      for (int column = 0; column < shape.getColumns(); column++) {
+        String name = sinkColumnName(column);
+        switch (SINK_TYPES[column % SINK_TYPES.length]) {
+          case NUMBER:
+            builder.set(name, row * column);
+            break;
+          case DECIMAL:
+            builder.set(name, row + column / 100d);
+            break;
+          case BOOLEAN:
+            builder.set(name, (row + column) % 2 == 0);
+            break;
+          case DATE:
+            builder.setDate(name, LocalDate.of(2021, 1, 1 + row % 31));
+            break;
+          default:
+            builder.set(name, textValue(row, column));
+        }
+      }
+      records.add(builder.build());
+    }
+    return records;
+  }
+
+  private static String sourceColumnName(int column) {
+    return "Column " + column;
+  }
+
+  private static String sinkColumnName(int column) {
+    return "column_" + column;
+  }
+
+  private static String sourceValue(int row, int column) {
+    switch (column % SOURCE_TYPES.length) {
+      case 1:
+        return String.valueOf(row * column);
+      case 2:
+        return String.valueOf(row + column / 100d);
+      case 3:
+        return (row + column) % 2 == 0 ? "True" : "False";
+      case 4:
+        return String.format("%d/%d/2021 10:30:00 AM", 1 + row % 12, 1 + row % 28);
+      default:
+        return textValue(row, column);
+    }
+  }
+
+  private static String textValue(int row, int column) {
+    return "value " + row + " of column " + column;
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.sink;
+
+import com.exacttarget.fuelsdk.ETDataExtensionRow;
+import com.exacttarget.fuelsdk.internal.CreateOptions;
+import com.exacttarget.fuelsdk.internal.CreateRequest;
+import com.google.common.io.ByteStreams;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.plugin.sfmc.benchmark.BenchmarkData;
+import io.cdap.plugin.sfmc.common.StreamingSoapClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Benchmarks of the sink: conversion of records into data extension rows and building of create requests.
+ *
+ * Scores are per row. Requests are serialized into a stream that discards them, so the SDK request covers building
+ * the JAXB objects and marshalling them, which is what the SOAP client does before sending a request.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SinkConversionBenchmark {
+  private static final QName CREATE_REQUEST = new QName(StreamingSoapClient.PARTNER_API_NS, "CreateRequest");
+
+  /**
+   * A batch of records, and the rows they are converted into.
+   */
+  @State(Scope.Thread)
+  public static class Batch {
+    @Param({"NARROW", "WIDE"})
+    public BenchmarkData.Shape shape;
+
+    private RecordDataExtensionRowConverter converter;
+    private List<StructuredRecord> records;
+    private List<ETDataExtensionRow> rows;
+    private Marshaller marshaller;
+    private XMLOutputFactory outputFactory;
+
+    @Setup
+    public void setup() throws Exception {
+      DataExtensionInfo dataExtensionInfo = new DataExtensionInfo(BenchmarkData.DATA_EXTENSION_KEY,
+                                                                  BenchmarkData.sinkColumns(shape));
+      converter = new RecordDataExtensionRowConverter(dataExtensionInfo, true);
+      records = BenchmarkData.sinkRecords(shape, BenchmarkData.BATCH_SIZE);
+      rows = new ArrayList<>(records.size());
+      for (StructuredRecord record : records) {
+        rows.add(converter.transform(record));
+      }
+      marshaller = JAXBContext.newInstance(CreateRequest.class).createMarshaller();
+      marshaller.setProperty(Marshaller.JAXB_ENCODING, StandardCharsets.UTF_8.name());
+      outputFactory = XMLOutputFactory.newInstance();
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BenchmarkData.BATCH_SIZE)
+  public void transformRecords(Batch batch, Blackhole blackhole) {
+    for (StructuredRecord record : batch.records) {
+      blackhole.consume(batch.converter.transform(record));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BenchmarkData.BATCH_SIZE)
+  public void buildCreateRequestWithSdk(Batch batch) throws Exception {
+    // same as DataExtensionClient.create
+    CreateRequest createRequest = new CreateRequest();
+    createRequest.setOptions(new CreateOptions());
+    for (ETDataExtensionRow row : batch.rows) {
+      createRequest.getObjects().add(row.toInternal());
+    }
+    batch.marshaller.marshal(new JAXBElement<>(CREATE_REQUEST, CreateRequest.class, createRequest),
+                             ByteStreams.nullOutputStream());
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BenchmarkData.BATCH_SIZE)
+  public void writeCreateRequestStreaming(Batch batch) throws Exception {
+    XMLStreamWriter writer = batch.outputFactory.createXMLStreamWriter(ByteStreams.nullOutputStream(),
+                                                                       StandardCharsets.UTF_8.name());
+    try {
+      writer.writeStartElement("soap", "Body", "http://schemas.xmlsoap.org/soap/envelope/");
+      writer.writeNamespace("soap", "http://schemas.xmlsoap.org/soap/envelope/");
+      writer.writeNamespace("xsi", StreamingSoapClient.XSI_NS);
+      DataExtensionSoapRequests.writeCreateRequest(writer, BenchmarkData.DATA_EXTENSION_KEY, batch.rows);
+      writer.writeEndElement();
+      writer.flush();
+    } finally {
+      writer.close();
+    }
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.source;
+
+import com.custom.fuelsdk.ETNotSentEvent;
+import com.exacttarget.fuelsdk.ETDataExtensionRow;
+import com.exacttarget.fuelsdk.internal.APIObject;
+import com.exacttarget.fuelsdk.internal.RetrieveResponseMsg;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.sfmc.benchmark.BenchmarkData;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudObjectInfo;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudUtil;
+import io.cdap.plugin.sfmc.source.util.RecordConversionPlan;
+import io.cdap.plugin.sfmc.source.util.SourceObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Benchmarks of the source: conversion of the SDK objects into records and reading of retrieve responses.
+ *
+ * Scores are per row. The SDK read of a response covers what happens between the HTTP response and the records:
+ * JAXB unmarshalling, the result mapping of {@link com.custom.fuelsdk.PaginationETSoapObject#customRetrieve} and the
+ * conversion of the rows.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SourceConversionBenchmark {
+
+  /**
+   * A page of data extension rows, in every form it takes on the way from the response to the records.
+   */
+  @State(Scope.Thread)
+  public static class DataExtensionPage {
+    @Param({"NARROW", "WIDE"})
+    public BenchmarkData.Shape shape;
+
+    private Schema schema;
+    private RecordConversionPlan conversionPlan;
+    private List<ETDataExtensionRow> rows;
+    private byte[] response;
+    private RetrieveResponseMsg responseMsg;
+    private Unmarshaller unmarshaller;
+    private XMLInputFactory inputFactory;
+    private DataExtensionRecordRetriever retriever;
+
+    @Setup
+    public void setup() throws Exception {
+      MarketingCloudObjectInfo objectInfo = new MarketingCloudObjectInfo(
+        SourceObject.DATA_EXTENSION, BenchmarkData.DATA_EXTENSION_KEY, BenchmarkData.sourceColumns(shape));
+      schema = objectInfo.getSchema();
+      conversionPlan = RecordConversionPlan.of(objectInfo, ETDataExtensionRow.class);
+      rows = BenchmarkData.dataExtensionRows(shape, BenchmarkData.PAGE_SIZE);
+      response = BenchmarkData.retrieveResponse(shape, BenchmarkData.PAGE_SIZE);
+      unmarshaller = JAXBContext.newInstance(RetrieveResponseMsg.class).createUnmarshaller();
+      // same settings as the streaming SOAP client
+      inputFactory = XMLInputFactory.newInstance();
+      inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+      inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+      responseMsg = unmarshal();
+      retriever = new DataExtensionRecordRetriever(BenchmarkData.DATA_EXTENSION_KEY, objectInfo, conversionPlan,
+                                                   schema, null, objectInfo.getFormattedTableName());
+    }
+
+    private XMLStreamReader openResponse() throws Exception {
+      XMLStreamReader reader = inputFactory.createXMLStreamReader(new ByteArrayInputStream(response));
+      reader.nextTag();
+      return reader;
+    }
+
+    private RetrieveResponseMsg unmarshal() throws Exception {
+      XMLStreamReader reader = openResponse();
+      try {
+        return unmarshaller.unmarshal(reader, RetrieveResponseMsg.class).getValue();
+      } finally {
+        reader.close();
+      }
+    }
+  }
+
+  /**
+   * A page of tracking events.
+   */
+  @State(Scope.Thread)
+  public static class TrackingEvents {
+    private Schema schema;
+    private RecordConversionPlan conversionPlan;
+    private List<ETNotSentEvent> events;
+
+    @Setup
+    public void setup() {
+      // the schema of tracking events comes from the fields of their class, no call is made
+      MarketingCloudObjectInfo objectInfo = new MarketingCloudClient(null)
+        .fetchObjectSchema(SourceObject.TRACKING_NOTSENT_EVENT);
+      schema = objectInfo.getSchema();
+      conversionPlan = RecordConversionPlan.of(objectInfo, ETNotSentEvent.class);
+      events = BenchmarkData.notSentEvents(BenchmarkData.PAGE_SIZE);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BenchmarkData.PAGE_SIZE)
+  public void convertDataExtensionRows(DataExtensionPage page, Blackhole blackhole) {
+    for (ETDataExtensionRow row : page.rows) {
+      StructuredRecord.Builder recordBuilder = StructuredRecord.builder(page.schema);
+      MarketingCloudUtil.convertRecord(page.conversionPlan, recordBuilder, row);
+      blackhole.consume(recordBuilder.build());
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BenchmarkData.PAGE_SIZE)
+  public void convertTrackingEvents(TrackingEvents events, Blackhole blackhole) {
+    for (ETNotSentEvent event : events.events) {
+      StructuredRecord.Builder recordBuilder = StructuredRecord.builder(events.schema);
+      MarketingCloudUtil.convertRecord(events.conversionPlan, recordBuilder, event);
+      blackhole.consume(recordBuilder.build());
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BenchmarkData.PAGE_SIZE)
+  public void mapRetrieveResults(DataExtensionPage page, Blackhole blackhole) throws Exception {
+    for (APIObject result : page.responseMsg.getResults()) {
+      blackhole.consume(toRow(result));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BenchmarkData.PAGE_SIZE)
+  public void readRetrieveResponseWithSdk(DataExtensionPage page, Blackhole blackhole) throws Exception {
+    for (APIObject result : page.unmarshal().getResults()) {
+      StructuredRecord.Builder recordBuilder = StructuredRecord.builder(page.schema);
+      MarketingCloudUtil.convertRecord(page.conversionPlan, recordBuilder, toRow(result));
+      blackhole.consume(recordBuilder.build());
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BenchmarkData.PAGE_SIZE)
+  public void readRetrieveResponseStreaming(DataExtensionPage page, Blackhole blackhole) throws Exception {
+    XMLStreamReader reader = page.openResponse();
+    try {
+      blackhole.consume(page.retriever.readResponse(reader));
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Maps a result the way customRetrieve does.
+   */
+  private static ETDataExtensionRow toRow(APIObject result) throws Exception {
+    ETDataExtensionRow row = ETDataExtensionRow.class.newInstance();
+    row.fromInternal(result);
+    return row;
+  }
+}
@@ -28,15 +28,18 @@ import com.exacttarget.fuelsdk.ETSoapConnection;
 import com.exacttarget.fuelsdk.ETSoapObject;
 import com.exacttarget.fuelsdk.annotations.SoapObject;
 import com.exacttarget.fuelsdk.internal.APIObject;
+import com.exacttarget.fuelsdk.internal.FilterPart;
 import com.exacttarget.fuelsdk.internal.RetrieveRequest;
 import com.exacttarget.fuelsdk.internal.RetrieveRequestMsg;
 import com.exacttarget.fuelsdk.internal.RetrieveResponseMsg;
 import com.exacttarget.fuelsdk.internal.Soap;
+import io.cdap.plugin.sfmc.source.util.FilterExpressions;
 import io.cdap.plugin.sfmc.source.util.MarketingCloudConstants;
 import io.cdap.plugin.sfmc.source.util.SourceObject;
 import org.apache.log4j.Logger;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static com.exacttarget.fuelsdk.ETDataExtension.retrieveColumns;
@@ -192,6 +195,33 @@ public class PaginationETSoapObject extends ETSoapObject {
                                                                       String continueRequest,
                                                                       Class<T> type)
     throws ETSdkException {
+    if (continueRequest != null) {
+      return customRetrieve(client, soapObjectName, Collections.<String>emptyList(), null, continueRequest, type);
+    }
+    return customRetrieve(client, soapObjectName, toInternalProperties(type, filter.getProperties()),
+                          compileFilter(type, filter.getExpression()), null, type);
+  }
+
+  /**
+   * Retrieves a page of records with properties and a filter already converted to their internal counterparts, so
+   * that a request sent for several pages or segments converts them only once. Neither argument is modified.
+   *
+   * @param client             The ETClient object
+   * @param soapObjectName     The object type to retrieve, null for the internal type of the external type
+   * @param internalProperties The internal properties to retrieve, see {@link #toInternalProperties}
+   * @param filterPart         The filter, see {@link #compileFilter}, null to retrieve all records
+   * @param continueRequest    The request id of the previous page, null to retrieve the first page
+   * @param type               The external type of the records
+   * @return The page of records
+   * @throws ETSdkException if the request failed
+   */
+  public static <T extends ETSoapObject> ETResponse<T> customRetrieve(ETClient client,
+                                                                      String soapObjectName,
+                                                                      List<String> internalProperties,
+                                                                      FilterPart filterPart,
+                                                                      String continueRequest,
+                                                                      Class<T> type)
+    throws ETSdkException {
     ETResponse<T> response = new ETResponse<T>();
 
     //
@@ -211,57 +241,8 @@ public class PaginationETSoapObject extends ETSoapObject {
     //
 
     Class<T> externalType = type; // for code readability
+    Class<? extends APIObject> internalType = getInternalType(externalType);
 
-    SoapObject internalTypeAnnotation
-      = externalType.getAnnotation(SoapObject.class);
-    assert internalTypeAnnotation != null;
-    Class<? extends APIObject> internalType = internalTypeAnnotation.internalType();
-    assert internalType != null;
-
-    ETExpression expression = filter.getExpression();
-
-    //
-    // Determine properties to retrieve:
-    //
-
-    List<String> externalProperties = filter.getProperties();
-    List<String> internalProperties = null;
-
-    if (externalProperties.size() > 0) {
-      //
-      // Only request those properties specified:
-      //
-
-      internalProperties = new ArrayList<String>();
-
-      for (String externalProperty : externalProperties) {
-        String internalProperty =
-          getInternalProperty(externalType, externalProperty);
-        assert internalProperty != null;
-        internalProperties.add(internalProperty);
-      }
-    } else {
-      //
-      // No properties were explicitly requested:
-      //
-
-      internalProperties = getInternalProperties(externalType);
-
-      //
-      // Remove properties that are unretrievable:
-      //
-
-      for (String property : internalTypeAnnotation.unretrievable()) {
-        internalProperties.remove(property);
-      }
-    }
-
-    //
-    // remove subscribers field from List object as subscribers is not a retrieval field.
-    //
-    if (SourceObject.MAILING_LIST.getClassRef().equals(type)) {
-      internalProperties.remove(MarketingCloudConstants.SUBSCRIBER);
-    }
     //
     // Perform the SOAP retrieve:
     //
@@ -283,28 +264,11 @@ public class PaginationETSoapObject extends ETSoapObject {
       }
       retrieveRequest.getProperties().addAll(internalProperties);
 
-      if (expression.getOperator() != null) {
-        //
-        // Convert the property names to their internal counterparts:
-        //
-
-        String property = expression.getProperty();
-        if (property != null) {
-          expression.setProperty(getInternalProperty(type, property));
-        }
-        for (ETExpression subexpression : expression.getSubexpressions()) {
-          String p = subexpression.getProperty();
-          if (p != null) {
-            subexpression.setProperty(getInternalProperty(type, p));
-          }
-        }
-
-        retrieveRequest.setFilter(toFilterPart(expression));
+      if (filterPart != null) {
+        retrieveRequest.setFilter(filterPart);
       }
     } else {
-      if (continueRequest != null) {
-        retrieveRequest.setContinueRequest(continueRequest);
-      }
+      retrieveRequest.setContinueRequest(continueRequest);
     }
 
     if (logger.isTraceEnabled()) {
@@ -321,8 +285,8 @@ public class PaginationETSoapObject extends ETSoapObject {
       }
       line.append(" }");
       logger.trace(line.toString());
-      if (filter != null) {
-        logger.trace("  filter = " + toFilterPart(expression));
+      if (filterPart != null) {
+        logger.trace("  filter = " + filterPart);
       }
     }
 
@@ -398,6 +362,110 @@ public class PaginationETSoapObject extends ETSoapObject {
     return response;
   }
 
+  /**
+   * Converts the properties to retrieve to their internal counterparts, leaving out the properties that cannot be
+   * retrieved.
+   *
+   * @param type               The external type the properties belong to
+   * @param externalProperties The properties to retrieve, empty to retrieve all retrievable properties
+   * @return The internal properties
+   * @throws ETSdkException if a property is not a property of the type
+   */
+  public static <T extends ETSoapObject> List<String> toInternalProperties(Class<T> type,
+                                                                           List<String> externalProperties)
+    throws ETSdkException {
+    List<String> internalProperties;
+
+    if (externalProperties.size() > 0) {
+      //
+      // Only request those properties specified:
+      //
+
+      internalProperties = new ArrayList<String>();
+
+      for (String externalProperty : externalProperties) {
+        String internalProperty =
+          getInternalProperty(type, externalProperty);
+        assert internalProperty != null;
+        internalProperties.add(internalProperty);
+      }
+    } else {
+      //
+      // No properties were explicitly requested:
+      //
+
+      internalProperties = new ArrayList<String>(getInternalProperties(type));
+    }
+
+    //
+    // Remove properties that are unretrievable, requested properties come from the schema of the object and may
+    // include them:
+    //
+
+    SoapObject internalTypeAnnotation = type.getAnnotation(SoapObject.class);
+    if (internalTypeAnnotation != null) {
+      for (String property : internalTypeAnnotation.unretrievable()) {
+        internalProperties.remove(property);
+      }
+    }
+
+    //
+    // remove subscribers field from List object as subscribers is not a retrieval field.
+    //
+    if (SourceObject.MAILING_LIST.getClassRef().equals(type)) {
+      internalProperties.remove(MarketingCloudConstants.SUBSCRIBER);
+    }
+    return internalProperties;
+  }
+
+  /**
+   * Converts the filter expression to the filter part sent in the request. The expression is copied before its
+   * property names are converted to their internal counterparts, so it is left as it was and can be sent again.
+   *
+   * @param type       The external type the properties belong to
+   * @param expression The filter expression
+   * @return The filter part, null if the expression is empty
+   * @throws ETSdkException if a property is not a property of the type
+   */
+  public static <T extends ETSoapObject> FilterPart compileFilter(Class<T> type, ETExpression expression)
+    throws ETSdkException {
+    if (expression == null || expression.getOperator() == null) {
+      return null;
+    }
+    ETExpression internalExpression = FilterExpressions.copy(expression);
+    convertToInternalProperties(type, internalExpression);
+    return toFilterPart(internalExpression);
+  }
+
+  private static Class<? extends APIObject> getInternalType(Class<? extends ETSoapObject> externalType) {
+    SoapObject internalTypeAnnotation
+      = externalType.getAnnotation(SoapObject.class);
+    assert internalTypeAnnotation != null;
+    Class<? extends APIObject> internalType = internalTypeAnnotation.internalType();
+    assert internalType != null;
+    return internalType;
+  }
+
+  /**
+   * Converts the property names of the expression and all of its nested subexpressions to their internal
+   * counterparts. Filters combined from several parts, like a user filter ANDed with a split range, nest the
+   * expressions more than one level deep.
+   *
+   * @param type       The external type the properties belong to
+   * @param expression The expression to convert
+   * @throws ETSdkException
+   */
+  private static <T extends ETSoapObject> void convertToInternalProperties(Class<T> type, ETExpression expression)
+    throws ETSdkException {
+    String property = expression.getProperty();
+    if (property != null) {
+      expression.setProperty(getInternalProperty(type, property));
+    }
+    for (ETExpression subexpression : expression.getSubexpressions()) {
+      convertToInternalProperties(type, subexpression);
+    }
+  }
+
   /**
    * @param client The ETClient object
    * @param key    The key
@@ -0,0 +1,310 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sfmc.common;
+
+import com.exacttarget.fuelsdk.ETSdkException;
+import com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Process wide limiter of the SOAP calls made with the credentials of a Marketing Cloud installed package on a SOAP
+ * endpoint.
+ *
+ * Every reader or writer using the limiter holds its configured limits until it closes, and the strictest limits
+ * among the current holders apply. Limits of runs that have finished are released, so they do not restrict the runs
+ * that follow in the same process.
+ *
+ * Calls wait for a token of a token bucket refilled at the configured rate and for a free slot under the configured
+ * number of concurrent calls. Calls rejected because the API throttled them are retried: every call of the limiter
+ * then pauses for an exponentially growing, jittered delay, and the rate is halved until calls succeed again, after
+ * which it climbs back to the configured rate. Limits of zero mean unlimited, in which case only the pause applies.
+ *
+ * Calls made while the thread already holds a slot, such as a column lookup made while validating a schema, do not
+ * take a second one, so a limit of one concurrent call cannot deadlock.
+ */
+public final class ApiRateLimiter {
+  private static final Logger LOG = LoggerFactory.getLogger(ApiRateLimiter.class);
+  private static final ConcurrentMap<String, ApiRateLimiter> LIMITERS = new ConcurrentHashMap<>();
+  private static final Pattern THROTTLING_FAULT = Pattern.compile(
+    "throttl|too many requests|server (is )?busy|rate limit|status (429|503)", Pattern.CASE_INSENSITIVE);
+
+  static final int MAX_THROTTLED_RETRIES = 8;
+  private static final long INITIAL_BACKOFF_MS = 1000;
+  private static final long MAX_BACKOFF_MS = TimeUnit.MINUTES.toMillis(1);
+  // the rate never goes below one call per ten seconds while backing off
+  private static final double MIN_RATE = 0.1;
+  // share of the configured rate regained after every successful call
+  private static final double RATE_INCREASE = 0.05;
+
+  private final long initialBackoffMillis;
+  private final long maxBackoffMillis;
+  private final Random random;
+  private final ThreadLocal<Boolean> holdingSlot = new ThreadLocal<>();
+
+  // guarded by this
+  private final List<Limits> holders = new ArrayList<>();
+  private double maxRequestsPerSecond;
+  private int maxConcurrentRequests;
+  private double rate;
+  private double tokens;
+  private long refilledAt = System.nanoTime();
+  private int inFlight;
+  private long pausedUntil = System.nanoTime();
+  private int throttledInARow;
+
+  public ApiRateLimiter() {
+    this(INITIAL_BACKOFF_MS, MAX_BACKOFF_MS, new Random());
+  }
+
+  @VisibleForTesting
+  ApiRateLimiter(long initialBackoffMillis, long maxBackoffMillis, Random random) {
+    this.initialBackoffMillis = initialBackoffMillis;
+    this.maxBackoffMillis = maxBackoffMillis;
+    this.random = random;
+  }
+
+  /**
+   * Returns the limiter shared by every call made with the given client id on the given SOAP endpoint in this
+   * process.
+   */
+  public static ApiRateLimiter forClient(String clientId, String soapEndpoint) {
+    return LIMITERS.computeIfAbsent(clientId + "@" + soapEndpoint, key -> new ApiRateLimiter());
+  }
+
+  /**
+   * Holds the given limits until they are released. The strictest limits among the current holders apply.
+   *
+   * @param maxRequestsPerSecond the maximum number of calls started per second, zero for unlimited
+   * @param maxConcurrentRequests the maximum number of calls in progress at the same time, zero for unlimited
+   * @return the limits held, to release once the holder makes no more calls
+   */
+  public synchronized Limits limit(double maxRequestsPerSecond, int maxConcurrentRequests) {
+    Limits limits = new Limits(maxRequestsPerSecond, maxConcurrentRequests);
+    holders.add(limits);
+    applyLimits();
+    return limits;
+  }
+
+  /**
+   * Applies the strictest limits among the current holders, keeping the reduced rate of a limiter backing off from
+   * throttled calls.
+   */
+  private void applyLimits() {
+    double strictestRate = 0;
+    int strictestConcurrency = 0;
+    for (Limits limits : holders) {
+      if (limits.maxRequestsPerSecond > 0 && (strictestRate == 0 || limits.maxRequestsPerSecond < strictestRate)) {
+        strictestRate = limits.maxRequestsPerSecond;
+      }
+      if (limits.maxConcurrentRequests > 0 &&
+        (strictestConcurrency == 0 || limits.maxConcurrentRequests < strictestConcurrency)) {
+        strictestConcurrency = limits.maxConcurrentRequests;
+      }
+    }
+    boolean unlimited = maxRequestsPerSecond == 0;
+    boolean backingOff = !unlimited && rate < maxRequestsPerSecond;
+    maxRequestsPerSecond = strictestRate;
+    rate = backingOff ? Math.min(rate, strictestRate) : strictestRate;
+    tokens = unlimited ? getBucketSize() : Math.min(tokens, getBucketSize());
+    maxConcurrentRequests = strictestConcurrency;
+    notifyAll();
+  }
+
+  private synchronized void release(Limits limits) {
+    if (holders.remove(limits)) {
+      applyLimits();
+    }
+  }
+
+  /**
+   * Makes the call once the limits allow it, retrying it while the API throttles it.
+   *
+   * @param metrics the metrics the throttled calls are reported to
+   * @param call the call
+   * @param <T> type of the value returned by the call
+   * @return the value returned by the call
+   * @throws ETSdkException if the call failed, or was still throttled after the last retry
+   */
+  public <T> T call(MarketingCloudMetrics metrics, Call<T> call) throws ETSdkException {
+    if (Boolean.TRUE.equals(holdingSlot.get())) {
+      return call.call();
+    }
+    int attempt = 0;
+    while (true) {
+      acquire();
+      holdingSlot.set(true);
+      try {
+        T result = call.call();
+        onSuccess();
+        return result;
+      } catch (ETSdkException | RuntimeException e) {
+        if (!isThrottlingFault(e) || attempt >= MAX_THROTTLED_RETRIES) {
+          throw e;
+        }
+        attempt++;
+        long pauseMillis = onThrottled();
+        metrics.count(MarketingCloudMetrics.THROTTLED, 1);
+        metrics.count(MarketingCloudMetrics.RETRIES, 1);
+        LOG.warn("Salesforce Marketing Cloud throttled a call, retrying in {} ms ({}/{}): {}",
+                 pauseMillis, attempt, MAX_THROTTLED_RETRIES, e.getMessage());
+      } finally {
+        holdingSlot.remove();
+        release();
+      }
+    }
+  }
+
+  /**
+   * Returns whether the error, or one of its causes, is the API rejecting a call because of its rate or concurrency
+   * limits.
+   */
+  public static boolean isThrottlingFault(Throwable error) {
+    for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+      if (cause.getMessage() != null && THROTTLING_FAULT.matcher(cause.getMessage()).find()) {
+        return true;
+      }
+      if (cause.getCause() == cause) {
+        break;
+      }
+    }
+    return false;
+  }
+
+  @VisibleForTesting
+  synchronized double getRate() {
+    return rate;
+  }
+
+  @VisibleForTesting
+  synchronized int getMaxConcurrentRequests() {
+    return maxConcurrentRequests;
+  }
+
+  private void acquire() throws ETSdkException {
+    synchronized (this) {
+      try {
+        while (true) {
+          long now = System.nanoTime();
+          long waitNanos;
+          if (now - pausedUntil < 0) {
+            waitNanos = pausedUntil - now;
+          } else if (maxConcurrentRequests > 0 && inFlight >= maxConcurrentRequests) {
+            // woken up when a call completes
+            waitNanos = 0;
+          } else {
+            refill(now);
+            if (rate == 0 || tokens >= 1) {
+              if (rate > 0) {
+                tokens -= 1;
+              }
+              inFlight++;
+              return;
+            }
+            waitNanos = (long) ((1 - tokens) / rate * TimeUnit.SECONDS.toNanos(1));
+          }
+          if (waitNanos == 0) {
+            wait();
+          } else {
+            TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ETSdkException("Interrupted while waiting for the Salesforce Marketing Cloud rate limit", e);
+      }
+    }
+  }
+
+  private synchronized void release() {
+    inFlight--;
+    notifyAll();
+  }
+
+  private synchronized void onSuccess() {
+    throttledInARow = 0;
+    if (maxRequestsPerSecond > 0 && rate < maxRequestsPerSecond) {
+      rate = Math.min(maxRequestsPerSecond, rate + maxRequestsPerSecond * RATE_INCREASE);
+    }
+  }
+
+  private synchronized long onThrottled() {
+    throttledInARow++;
+    if (maxRequestsPerSecond > 0) {
+      rate = Math.max(MIN_RATE, rate / 2);
+      tokens = Math.min(tokens, getBucketSize());
+    }
+    long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(throttledInARow - 1, 20));
+    // half of the delay is random, so that calls throttled together are not retried together
+    long pauseMillis = backoff / 2 + (long) (random.nextDouble() * (backoff / 2 + 1));
+    long resumeAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(pauseMillis);
+    if (resumeAt - pausedUntil > 0) {
+      pausedUntil = resumeAt;
+    }
+    notifyAll();
+    return pauseMillis;
+  }
+
+  private void refill(long now) {
+    if (rate > 0) {
+      tokens = Math.min(getBucketSize(), tokens + (now - refilledAt) * rate / TimeUnit.SECONDS.toNanos(1));
+    }
+    refilledAt = now;
+  }
+
+  private double getBucketSize() {
+    // allows a burst of one second worth of calls
+    return Math.max(1, rate);
+  }
+
+  /**
+   * Limits held by a reader or writer.
+   */
+  public final class Limits {
+    private final double maxRequestsPerSecond;
+    private final int maxConcurrentRequests;
+
+    private Limits(double maxRequestsPerSecond, int maxConcurrentRequests) {
+      this.maxRequestsPerSecond = maxRequestsPerSecond;
+      this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * Stops applying these limits. Releasing limits more than once has no effect.
+     */
+    public void release() {
+      ApiRateLimiter.this.release(this);
+    }
+  }
+
+  /**
+   * A call limited by the limiter.
+   *
+   * @param <T> type of the value returned by the call
+   */
+  public interface Call<T> {
+    T call() throws ETSdkException;
+  }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.common;
+
+import com.exacttarget.fuelsdk.ETClient;
+import com.exacttarget.fuelsdk.ETConfiguration;
+import com.exacttarget.fuelsdk.ETDataExtension;
+import com.exacttarget.fuelsdk.ETDataExtensionColumn;
+import com.exacttarget.fuelsdk.ETExpression;
+import com.exacttarget.fuelsdk.ETFilter;
+import com.exacttarget.fuelsdk.ETResponse;
+import com.exacttarget.fuelsdk.ETSdkException;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import javax.annotation.Nullable;
+
+/**
+ * Cache of the data extension columns, stored as one JSON file per data extension key in a local or HDFS directory.
+ * Data extension keys are only unique within an account, so the files of each account are kept in a subdirectory
+ * named after a hash of its client id and SOAP endpoint.
+ *
+ * Entries younger than the TTL are used without calling the API. Older entries are used if the modified date of the
+ * data extension has not changed since they were written, so only changed data extensions go through the column
+ * retrieval again. Errors reading or writing the cache are logged and the columns are loaded from the API instead.
+ */
+public class DataExtensionSchemaCache {
+  private static final Logger LOG = LoggerFactory.getLogger(DataExtensionSchemaCache.class);
+  private static final Gson GSON = new Gson();
+  private static final String EXTENSION = ".json";
+
+  private final FileSystem fileSystem;
+  private final Path directory;
+  private final long ttlMillis;
+  private final LongSupplier clock;
+
+  @VisibleForTesting
+  DataExtensionSchemaCache(FileSystem fileSystem, Path directory, long ttlMillis, LongSupplier clock) {
+    this.fileSystem = fileSystem;
+    this.directory = directory;
+    this.ttlMillis = ttlMillis;
+    this.clock = clock;
+  }
+
+  /**
+   * Creates the cache for the given directory.
+   *
+   * @param directory  The directory of the cache, a local path or any URI supported by Hadoop
+   * @param ttlSeconds How long cached columns are used without checking the data extension for changes
+   * @return The cache
+   * @throws IOException if the file system of the directory could not be created
+   */
+  public static DataExtensionSchemaCache create(String directory, long ttlSeconds) throws IOException {
+    Path path = new Path(directory);
+    return new DataExtensionSchemaCache(path.getFileSystem(new Configuration()), path,
+                                        TimeUnit.SECONDS.toMillis(ttlSeconds), System::currentTimeMillis);
+  }
+
+  /**
+   * Creates the cache for the given directory if one is set.
+   *
+   * @param directory  The directory of the cache, or null if caching is disabled
+   * @param ttlSeconds How long cached columns are used without checking the data extension for changes
+   * @return The cache, or null if caching is disabled or the file system of the directory could not be created
+   */
+  @Nullable
+  public static DataExtensionSchemaCache createIfEnabled(@Nullable String directory, long ttlSeconds) {
+    if (directory == null || directory.isEmpty()) {
+      return null;
+    }
+    try {
+      return create(directory, ttlSeconds);
+    } catch (IOException e) {
+      LOG.warn("Unable to use the schema cache directory {}, data extension columns will not be cached",
+               directory, e);
+      return null;
+    }
+  }
+
+  /**
+   * Returns the columns of the data extension, from the cache if possible.
+   *
+   * @param account            The account the data extension belongs to, see {@link #accountOf(ETClient)}
+   * @param dataExtensionKey   The data extension key
+   * @param modifiedDateLoader Loads the modified date of the data extension
+   * @param columnLoader       Loads the columns of the data extension
+   * @return The columns of the data extension
+   * @throws ETSdkException if loading the modified date or the columns failed
+   */
+  public List<ETDataExtensionColumn> getColumns(String account, String dataExtensionKey,
+                                                Loader<Date> modifiedDateLoader,
+                                                Loader<List<ETDataExtensionColumn>> columnLoader)
+    throws ETSdkException {
+    Path file = getFile(account, dataExtensionKey);
+    Entry entry = read(file);
+    long now = clock.getAsLong();
+    if (entry != null && now - entry.cachedAt < ttlMillis) {
+      return entry.toColumns();
+    }
+
+    Date modifiedDate = modifiedDateLoader.load();
+    Long modifiedAt = modifiedDate == null ? null : modifiedDate.getTime();
+    if (entry != null && modifiedAt != null && modifiedAt.equals(entry.modifiedAt)) {
+      LOG.debug("Data extension '{}' is unchanged since it was cached", dataExtensionKey);
+      entry.cachedAt = now;
+      write(file, entry);
+      return entry.toColumns();
+    }
+
+    List<ETDataExtensionColumn> columns = columnLoader.load();
+    write(file, new Entry(modifiedAt, now, columns));
+    return columns;
+  }
+
+  /**
+   * Fetches the modified date of the data extension.
+   *
+   * @param client           The client
+   * @param dataExtensionKey The data extension key
+   * @return The modified date, or null if the data extension was not found
+   * @throws ETSdkException if the data extension could not be retrieved
+   */
+  @Nullable
+  public static Date fetchModifiedDate(ETClient client, String dataExtensionKey) throws ETSdkException {
+    ETExpression expression = new ETExpression();
+    expression.setProperty("key");
+    expression.setOperator(ETExpression.Operator.EQUALS);
+    expression.addValue(dataExtensionKey);
+
+    ETFilter filter = new ETFilter();
+    filter.setExpression(expression);
+    filter.addProperty("key");
+    filter.addProperty("modifiedDate");
+    ETResponse<ETDataExtension> response = ETDataExtension.retrieve(client, ETDataExtension.class,
+                                                                    (Integer) null, (Integer) null, filter);
+    ETDataExtension dataExtension = response == null ? null : response.getObject();
+    return dataExtension == null ? null : dataExtension.getModifiedDate();
+  }
+
+  /**
+   * Identifies the account of the client, by its client id and SOAP endpoint.
+   *
+   * @param client The client
+   * @return The account of the client
+   */
+  public static String accountOf(ETClient client) {
+    ETConfiguration conf = client.getConfiguration();
+    return conf == null ? "" : conf.get("clientId") + "@" + conf.get("soapEndpoint");
+  }
+
+  private Path getFile(String account, String dataExtensionKey) {
+    // the account is hashed so that the client id is not written in the path
+    String accountHash = Hashing.sha256().hashString(account, StandardCharsets.UTF_8).toString();
+    Path accountDirectory = new Path(directory, accountHash);
+    try {
+      return new Path(accountDirectory,
+                      URLEncoder.encode(dataExtensionKey, StandardCharsets.UTF_8.name()) + EXTENSION);
+    } catch (UnsupportedEncodingException e) {
+      // UTF-8 is always supported
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Nullable
+  private Entry read(Path file) {
+    try {
+      if (!fileSystem.exists(file)) {
+        return null;
+      }
+      try (Reader reader = new InputStreamReader(fileSystem.open(file), StandardCharsets.UTF_8)) {
+        return GSON.fromJson(reader, Entry.class);
+      }
+    } catch (IOException | JsonParseException e) {
+      LOG.warn("Unable to read the cached schema from {}, it will be fetched again", file, e);
+      return null;
+    }
+  }
+
+  private void write(Path file, Entry entry) {
+    // Write to a temporary file first, so concurrent readers never see a partial entry
+    Path tmp = new Path(file.getParent(), "." + file.getName() + "." + UUID.randomUUID());
+    try {
+      fileSystem.mkdirs(file.getParent());
+      try (FSDataOutputStream out = fileSystem.create(tmp, true)) {
+        out.write(GSON.toJson(entry).getBytes(StandardCharsets.UTF_8));
+      }
+      fileSystem.delete(file, false);
+      if (!fileSystem.rename(tmp, file)) {
+        fileSystem.delete(tmp, false);
+      }
+    } catch (IOException e) {
+      LOG.warn("Unable to write the cached schema to {}", file, e);
+    }
+  }
+
+  /**
+   * Loads a value from the API.
+   *
+   * @param <T> type of the value
+   */
+  public interface Loader<T> {
+    T load() throws ETSdkException;
+  }
+
+  /**
+   * A cached data extension schema.
+   */
+  private static final class Entry {
+    private Long modifiedAt;
+    private long cachedAt;
+    private List<Column> columns;
+
+    private Entry(@Nullable Long modifiedAt, long cachedAt, List<ETDataExtensionColumn> columns) {
+      this.modifiedAt = modifiedAt;
+      this.cachedAt = cachedAt;
+      this.columns = new ArrayList<>(columns.size());
+      for (ETDataExtensionColumn column : columns) {
+        this.columns.add(new Column(column));
+      }
+    }
+
+    private List<ETDataExtensionColumn> toColumns() {
+      List<ETDataExtensionColumn> result = new ArrayList<>(columns.size());
+      for (Column column : columns) {
+        result.add(column.toColumn());
+      }
+      return result;
+    }
+  }
+
+  /**
+   * The cached properties of a data extension column.
+   */
+  private static final class Column {
+    private String name;
+    private ETDataExtensionColumn.Type type;
+    private Integer length;
+    private Integer precision;
+    private Integer scale;
+    private Boolean isRequired;
+    private Boolean isPrimaryKey;
+    private String defaultValue;
+
+    private Column(ETDataExtensionColumn column) {
+      this.name = column.getName();
+      this.type = column.getType();
+      this.length = column.getLength();
+      this.precision = column.getPrecision();
+      this.scale = column.getScale();
+      this.isRequired = column.getIsRequired();
+      this.isPrimaryKey = column.getIsPrimaryKey();
+      this.defaultValue = column.getDefaultValue();
+    }
+
+    private ETDataExtensionColumn toColumn() {
+      ETDataExtensionColumn column = new ETDataExtensionColumn();
+      column.setName(name);
+      column.setType(type);
+      column.setLength(length);
+      column.setPrecision(precision);
+      column.setScale(scale);
+      column.setIsRequired(isRequired);
+      column.setIsPrimaryKey(isPrimaryKey);
+      column.setDefaultValue(defaultValue);
+      return column;
+    }
+  }
+}
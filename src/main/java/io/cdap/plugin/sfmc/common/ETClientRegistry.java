@@ -0,0 +1,228 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.common;
+
+import com.exacttarget.fuelsdk.ETClient;
+import com.exacttarget.fuelsdk.ETConfiguration;
+import com.exacttarget.fuelsdk.ETSdkException;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import javax.annotation.Nullable;
+
+/**
+ * Process wide registry of the {@link ETClient} instances used by the source, the sink and the connector.
+ *
+ * Clients are shared per (client id, client secret, auth endpoint, soap endpoint), so the OAuth token is acquired once
+ * per process instead of once per client. Only a hash of the secret is kept in the key, and a different secret gets a
+ * client of its own rather than replacing the client of the others. The token is refreshed ahead of use when a client
+ * is acquired, and clients that have not been acquired for a while are evicted.
+ */
+public final class ETClientRegistry {
+  private static final Logger LOG = LoggerFactory.getLogger(ETClientRegistry.class);
+  private static final ETClientRegistry INSTANCE =
+    new ETClientRegistry(ETClientRegistry::createClient, System::currentTimeMillis);
+
+  static final long TOKEN_REFRESH_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+  static final long IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(30);
+
+  private final ClientFactory factory;
+  private final LongSupplier clock;
+  private final ConcurrentMap<Key, Entry> clients = new ConcurrentHashMap<>();
+
+  @VisibleForTesting
+  ETClientRegistry(ClientFactory factory, LongSupplier clock) {
+    this.factory = factory;
+    this.clock = clock;
+  }
+
+  public static ETClientRegistry getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns the shared client for the given credentials, creating it if needed.
+   *
+   * @param clientId     The Salesforce Marketing Cloud Client Id
+   * @param clientSecret The Salesforce Marketing Cloud Client Secret
+   * @param authEndpoint Auth Endpoint url for Salesforce Marketing Cloud
+   * @param soapEndpoint SOAP Endpoint url for Salesforce Marketing Cloud
+   * @return The client with a valid token
+   * @throws ETSdkException if the client could not be created or the token could not be refreshed
+   */
+  public ETClient acquire(String clientId, String clientSecret, String authEndpoint,
+                          String soapEndpoint) throws ETSdkException {
+    return acquire(clientId, clientSecret, authEndpoint, soapEndpoint, null);
+  }
+
+  /**
+   * Returns the shared client for the given credentials, creating it if needed, and reports the time spent getting
+   * or refreshing the OAuth token to the given metrics.
+   *
+   * @param clientId     The Salesforce Marketing Cloud Client Id
+   * @param clientSecret The Salesforce Marketing Cloud Client Secret
+   * @param authEndpoint Auth Endpoint url for Salesforce Marketing Cloud
+   * @param soapEndpoint SOAP Endpoint url for Salesforce Marketing Cloud
+   * @param metrics      The metrics of the stage, or null
+   * @return The client with a valid token
+   * @throws ETSdkException if the client could not be created or the token could not be refreshed
+   */
+  public ETClient acquire(String clientId, String clientSecret, String authEndpoint, String soapEndpoint,
+                          @Nullable MarketingCloudMetrics metrics) throws ETSdkException {
+    long now = clock.getAsLong();
+    evictIdle(now);
+    Key clientKey = new Key(clientId, hashSecret(clientSecret), authEndpoint, soapEndpoint);
+    Entry entry = clients.computeIfAbsent(clientKey, key -> new Entry(now));
+    synchronized (entry) {
+      if (entry.client == null) {
+        long startNanos = System.nanoTime();
+        entry.client = factory.create(clientId, clientSecret, authEndpoint, soapEndpoint);
+        entry.refreshedAt = now;
+        if (metrics != null) {
+          metrics.recordLatency(MarketingCloudMetrics.OAUTH, startNanos);
+        }
+      } else if (now - entry.refreshedAt >= TOKEN_REFRESH_INTERVAL_MS) {
+        // The SDK only goes to the auth endpoint when the token is close to expiring.
+        long startNanos = System.nanoTime();
+        entry.client.refreshToken();
+        entry.refreshedAt = now;
+        if (metrics != null) {
+          metrics.recordLatency(MarketingCloudMetrics.OAUTH, startNanos);
+        }
+      }
+      entry.lastUsed = now;
+      return entry.client;
+    }
+  }
+
+  /**
+   * Removes all clients from the registry.
+   */
+  public void clear() {
+    clients.clear();
+  }
+
+  @VisibleForTesting
+  int size() {
+    return clients.size();
+  }
+
+  private void evictIdle(long now) {
+    for (Map.Entry<Key, Entry> client : clients.entrySet()) {
+      if (now - client.getValue().lastUsed > IDLE_TIMEOUT_MS && clients.remove(client.getKey(), client.getValue())) {
+        LOG.debug("Evicted idle Salesforce Marketing Cloud client for {}", client.getKey().clientId);
+      }
+    }
+  }
+
+  private static String hashSecret(@Nullable String clientSecret) {
+    return clientSecret == null ? "" : Hashing.sha256().hashString(clientSecret, StandardCharsets.UTF_8).toString();
+  }
+
+  private static ETClient createClient(String clientId, String clientSecret, String authEndpoint,
+                                       String soapEndpoint) throws ETSdkException {
+    ETConfiguration conf = new ETConfiguration();
+    conf.set("clientId", clientId);
+    conf.set("clientSecret", clientSecret);
+    conf.set("authEndpoint", authEndpoint);
+    conf.set("soapEndpoint", soapEndpoint);
+    conf.set("useOAuth2Authentication", "true");
+    conf.set("cxfConnectTimeout", "300000");
+    conf.set("cxfReceiveTimeout", "300000");
+    ClassLoader oldCL = Thread.currentThread().getContextClassLoader();
+    try {
+      Thread.currentThread().setContextClassLoader(ETClientRegistry.class.getClassLoader());
+      return new ETClient(conf);
+    } finally {
+      Thread.currentThread().setContextClassLoader(oldCL);
+    }
+  }
+
+  /**
+   * Creates a new client.
+   */
+  @VisibleForTesting
+  interface ClientFactory {
+    ETClient create(String clientId, String clientSecret, String authEndpoint,
+                    String soapEndpoint) throws ETSdkException;
+  }
+
+  /**
+   * Supplies the client used for a call.
+   */
+  public interface ClientSupplier {
+    ETClient get() throws ETSdkException;
+  }
+
+  /**
+   * Identity of a shared client.
+   */
+  private static final class Key {
+    private final String clientId;
+    private final String secretHash;
+    private final String authEndpoint;
+    private final String soapEndpoint;
+
+    private Key(String clientId, String secretHash, String authEndpoint, String soapEndpoint) {
+      this.clientId = clientId;
+      this.secretHash = secretHash;
+      this.authEndpoint = authEndpoint;
+      this.soapEndpoint = soapEndpoint;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return Objects.equals(clientId, key.clientId) && Objects.equals(secretHash, key.secretHash)
+        && Objects.equals(authEndpoint, key.authEndpoint) && Objects.equals(soapEndpoint, key.soapEndpoint);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(clientId, secretHash, authEndpoint, soapEndpoint);
+    }
+  }
+
+  /**
+   * A shared client and its bookkeeping, guarded by the entry itself.
+   */
+  private static final class Entry {
+    private ETClient client;
+    private long refreshedAt;
+    private volatile long lastUsed;
+
+    private Entry(long now) {
+      this.lastUsed = now;
+    }
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sfmc.common;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.cdap.cdap.api.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Metrics of a source or sink stage, reported through the {@link Metrics} of the stage.
+ *
+ * The record readers and writers are created by the input and output formats, which have no access to the stage
+ * context, so they look the metrics up by the key of the stage in its run, see {@link #stageKey}. The plugin binds them
+ * to the stage metrics when it is initialized in the same process; values counted before that are kept and reported
+ * when the metrics are bound. The plugin releases them when it is destroyed and when the run finishes, which reports
+ * the values still pending and forgets the metrics of the stage once no initialized plugin holds them.
+ *
+ * Request latencies are reported as a count and a total per operation, plus one counter per latency bucket, since
+ * stage metrics only support counters and gauges.
+ */
+public final class MarketingCloudMetrics {
+  private static final Logger LOG = LoggerFactory.getLogger(MarketingCloudMetrics.class);
+
+  public static final String OAUTH = "oauth";
+  public static final String RETRIEVE = "soap.retrieve";
+  public static final String CREATE = "soap.create";
+  public static final String UPDATE = "soap.update";
+  public static final String PAGES = "source.pages";
+  public static final String PAGE_ROWS = "source.page.rows";
+  public static final String BATCHES = "sink.batches";
+  public static final String BATCH_ROWS = "sink.batch.rows";
+  public static final String BATCH_SIZE_INCREASES = "sink.batch.size.increases";
+  public static final String BATCH_SIZE_DECREASES = "sink.batch.size.decreases";
+  public static final String RETRIES = "retries";
+  public static final String THROTTLED = "throttled";
+
+  // upper bounds of the latency buckets, in milliseconds
+  @VisibleForTesting
+  static final long[] LATENCY_BUCKETS = {100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000};
+
+  private static final ConcurrentMap<String, MarketingCloudMetrics> STAGES = new ConcurrentHashMap<>();
+
+  private final Map<String, Long> pending = new HashMap<>();
+  @Nullable
+  private volatile Metrics metrics;
+  // number of initialized plugins holding the metrics, guarded by this
+  private int bindings;
+
+  @VisibleForTesting
+  MarketingCloudMetrics() {
+  }
+
+  /**
+   * Returns the key of a stage in a run, so that runs of the same pipeline in one process do not share metrics.
+   *
+   * @param pipelineName     the pipeline name
+   * @param logicalStartTime the logical start time of the run
+   * @param stageName        the stage name
+   * @return the key of the stage in the run
+   */
+  public static String stageKey(String pipelineName, long logicalStartTime, String stageName) {
+    return String.format("%s-%d/%s", pipelineName, logicalStartTime, stageName);
+  }
+
+  /**
+   * Returns the metrics of the stage, shared by every reader, writer and client of the stage in this process.
+   *
+   * @param stageKey the key of the stage in its run, null for metrics that are not reported, such as in tests
+   */
+  public static MarketingCloudMetrics forStage(@Nullable String stageKey) {
+    if (stageKey == null) {
+      return new MarketingCloudMetrics();
+    }
+    return STAGES.computeIfAbsent(stageKey, key -> new MarketingCloudMetrics());
+  }
+
+  /**
+   * Reports the metrics of the stage through the stage metrics and releases them, see {@link #release(Metrics)}.
+   *
+   * @param stageKey the key of the stage in its run, null if the metrics are not reported
+   * @param metrics  the stage metrics, null if the context has none
+   */
+  public static void release(@Nullable String stageKey, @Nullable Metrics metrics) {
+    MarketingCloudMetrics stage = stageKey == null ? null : STAGES.get(stageKey);
+    if (stage == null) {
+      return;
+    }
+    synchronized (stage) {
+      stage.release(metrics);
+      if (stage.bindings == 0 && STAGES.remove(stageKey, stage) && !stage.pending.isEmpty()) {
+        LOG.debug("Dropped {} metrics of stage {} that had no stage metrics to report to", stage.pending.size(),
+                  stageKey);
+      }
+    }
+  }
+
+  /**
+   * Reports the metrics of the stage, including the ones counted so far, through the given stage metrics. Every
+   * bind is matched by a {@link #release}.
+   *
+   * @param metrics the stage metrics, null if the context has none, in which case the metrics are not reported
+   */
+  public synchronized void bind(@Nullable Metrics metrics) {
+    bindings++;
+    if (metrics == null) {
+      return;
+    }
+    flush(metrics);
+    this.metrics = metrics;
+  }
+
+  /**
+   * Reports the values counted so far through the given stage metrics and releases a {@link #bind}, if any.
+   *
+   * @param metrics the stage metrics, null if the context has none
+   */
+  public synchronized void release(@Nullable Metrics metrics) {
+    if (metrics != null) {
+      flush(metrics);
+    }
+    if (bindings > 0) {
+      bindings--;
+    }
+  }
+
+  private void flush(Metrics metrics) {
+    pending.forEach(metrics::countLong);
+    pending.clear();
+  }
+
+  /**
+   * Increments a counter.
+   */
+  public void count(String name, long delta) {
+    Metrics metrics = this.metrics;
+    if (metrics == null) {
+      synchronized (this) {
+        metrics = this.metrics;
+        if (metrics == null) {
+          pending.merge(name, delta, Long::sum);
+          return;
+        }
+      }
+    }
+    metrics.countLong(name, delta);
+  }
+
+  /**
+   * Records the latency of a request.
+   *
+   * @param operation the operation, such as {@link #RETRIEVE}
+   * @param startNanos the {@link System#nanoTime()} at which the request was sent
+   */
+  public void recordLatency(String operation, long startNanos) {
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    count(operation + ".requests", 1);
+    count(operation + ".latency.ms", millis);
+    count(operation + ".latency." + getBucket(millis), 1);
+  }
+
+  /**
+   * Records the number of rows written to a data extension.
+   *
+   * @param dataExtensionKey the data extension key
+   * @param outcome the outcome of the rows, such as inserted or failed
+   * @param rows the number of rows
+   */
+  public void recordRows(String dataExtensionKey, String outcome, long rows) {
+    if (rows > 0) {
+      count(String.format("dataextension.%s.rows.%s", dataExtensionKey, outcome.toLowerCase(Locale.ROOT)), rows);
+    }
+  }
+
+  @VisibleForTesting
+  static String getBucket(long millis) {
+    for (long bucket : LATENCY_BUCKETS) {
+      if (millis < bucket) {
+        return "lt." + bucket + "ms";
+      }
+    }
+    return "ge." + LATENCY_BUCKETS[LATENCY_BUCKETS.length - 1] + "ms";
+  }
+}
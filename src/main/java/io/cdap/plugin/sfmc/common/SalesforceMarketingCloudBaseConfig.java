@@ -15,9 +15,11 @@
  */
 package io.cdap.plugin.sfmc.common;
 
+import com.google.common.base.Strings;
 import io.cdap.cdap.api.annotation.Description;
 import io.cdap.cdap.api.annotation.Macro;
 import io.cdap.cdap.api.annotation.Name;
+import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.plugin.common.ConfigUtil;
 import io.cdap.plugin.common.ReferencePluginConfig;
 import io.cdap.plugin.sfmc.connector.MarketingConnectorConfig;
@@ -28,6 +30,10 @@ import javax.annotation.Nullable;
  * Salesforce Marketing Cloud Base Config
  */
 public class SalesforceMarketingCloudBaseConfig extends ReferencePluginConfig {
+  public static final String SCHEMA_CACHE_DIR = "schemaCacheDir";
+  public static final String SCHEMA_CACHE_TTL = "schemaCacheTTL";
+  public static final String MAX_REQUESTS_PER_SECOND = "maxRequestsPerSecond";
+  public static final String MAX_CONCURRENT_REQUESTS = "maxConcurrentRequests";
 
   @Name(ConfigUtil.NAME_CONNECTION)
   @Macro
@@ -40,6 +46,35 @@ public class SalesforceMarketingCloudBaseConfig extends ReferencePluginConfig {
   @Description("Whether to use an existing connection.")
   private Boolean useConnection;
 
+  @Name(SCHEMA_CACHE_DIR)
+  @Macro
+  @Nullable
+  @Description("Directory used to cache the columns of data extensions between runs. It can be a local path or an " +
+    "HDFS path. If not set, the columns are fetched from Salesforce Marketing Cloud every time.")
+  private String schemaCacheDir;
+
+  @Name(SCHEMA_CACHE_TTL)
+  @Macro
+  @Nullable
+  @Description("Number of seconds cached data extension columns are used without checking whether the data " +
+    "extension has been modified. Defaults to 3600.")
+  private Long schemaCacheTTL;
+
+  @Name(MAX_REQUESTS_PER_SECOND)
+  @Macro
+  @Nullable
+  @Description("Maximum number of API calls started per second by each task, shared by all stages using the same " +
+    "client id. The rate is lowered and calls are retried when Salesforce Marketing Cloud throttles them. " +
+    "Defaults to 0, which means no limit.")
+  private Double maxRequestsPerSecond;
+
+  @Name(MAX_CONCURRENT_REQUESTS)
+  @Macro
+  @Nullable
+  @Description("Maximum number of API calls in progress at the same time in each task, shared by all stages using " +
+    "the same client id. Defaults to 0, which means no limit.")
+  private Integer maxConcurrentRequests;
+
   public SalesforceMarketingCloudBaseConfig(String referenceName, String clientId, String clientSecret,
                                             String authEndpoint, String soapEndpoint) {
     super(referenceName);
@@ -54,4 +89,50 @@ public class SalesforceMarketingCloudBaseConfig extends ReferencePluginConfig {
   public String getReferenceName() {
     return referenceName;
   }
+
+  @Nullable
+  public String getSchemaCacheDir() {
+    return Strings.isNullOrEmpty(schemaCacheDir) ? null : schemaCacheDir;
+  }
+
+  public long getSchemaCacheTTL() {
+    return schemaCacheTTL == null ? 3600L : schemaCacheTTL;
+  }
+
+  /**
+   * Returns the data extension schema cache, or null if caching is not enabled.
+   */
+  @Nullable
+  public DataExtensionSchemaCache getSchemaCache() {
+    if (containsMacro(SCHEMA_CACHE_DIR) || containsMacro(SCHEMA_CACHE_TTL)) {
+      return null;
+    }
+    return DataExtensionSchemaCache.createIfEnabled(getSchemaCacheDir(), getSchemaCacheTTL());
+  }
+
+  public double getMaxRequestsPerSecond() {
+    return maxRequestsPerSecond == null ? 0 : maxRequestsPerSecond;
+  }
+
+  public int getMaxConcurrentRequests() {
+    return maxConcurrentRequests == null ? 0 : maxConcurrentRequests;
+  }
+
+  public void validateRateLimits(FailureCollector collector) {
+    if (!containsMacro(MAX_REQUESTS_PER_SECOND) && getMaxRequestsPerSecond() < 0) {
+      collector.addFailure("Max requests per second must not be negative.", null)
+        .withConfigProperty(MAX_REQUESTS_PER_SECOND);
+    }
+    if (!containsMacro(MAX_CONCURRENT_REQUESTS) && getMaxConcurrentRequests() < 0) {
+      collector.addFailure("Max concurrent requests must not be negative.", null)
+        .withConfigProperty(MAX_CONCURRENT_REQUESTS);
+    }
+  }
+
+  public void validateSchemaCache(FailureCollector collector) {
+    if (!containsMacro(SCHEMA_CACHE_TTL) && getSchemaCacheTTL() < 0) {
+      collector.addFailure("Schema cache TTL must not be negative.", null)
+        .withConfigProperty(SCHEMA_CACHE_TTL);
+    }
+  }
 }
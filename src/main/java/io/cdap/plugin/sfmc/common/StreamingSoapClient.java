@@ -0,0 +1,319 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.common;
+
+import com.exacttarget.fuelsdk.ETClient;
+import com.exacttarget.fuelsdk.ETConfiguration;
+import com.exacttarget.fuelsdk.ETSdkException;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.CountingInputStream;
+import com.google.common.io.CountingOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Sends requests to the Marketing Cloud SOAP API without going through the JAXB object model of the SDK.
+ *
+ * The body of a request is written with StAX directly into the HTTP request, which is sent in chunks, so a request
+ * is never held in memory as a whole. The response is handed to the caller as a StAX reader positioned on the
+ * response element, so it can be consumed one element at a time.
+ */
+public class StreamingSoapClient {
+  public static final String PARTNER_API_NS = "http://exacttarget.com/wsdl/partnerAPI";
+  public static final String XSI_NS = "http://www.w3.org/2001/XMLSchema-instance";
+  static final String SOAP_NS = "http://schemas.xmlsoap.org/soap/envelope/";
+  static final String OAUTH_NS = "http://exacttarget.com";
+
+  private static final int DEFAULT_TIMEOUT_MS = 300000;
+  private static final int CHUNK_SIZE = 64 * 1024;
+  private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+  private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+  private final String endpoint;
+  private final Supplier<String> accessToken;
+  private final int connectTimeout;
+  private final int readTimeout;
+  @Nullable
+  private MarketingCloudMetrics metrics;
+
+  @VisibleForTesting
+  StreamingSoapClient(String endpoint, Supplier<String> accessToken, int connectTimeout, int readTimeout) {
+    this.endpoint = endpoint;
+    this.accessToken = accessToken;
+    this.connectTimeout = connectTimeout;
+    this.readTimeout = readTimeout;
+  }
+
+  /**
+   * Creates a client sending requests to the SOAP endpoint of the given client, authenticated with its token.
+   *
+   * @param client the SDK client to take the endpoint, the token and the timeouts from
+   * @return the streaming client
+   * @throws ETSdkException if the token could not be refreshed
+   */
+  public static StreamingSoapClient of(ETClient client) throws ETSdkException {
+    client.refreshToken();
+    ETConfiguration conf = client.getConfiguration();
+    return new StreamingSoapClient(getServiceUrl(conf.get("soapEndpoint")), client::getAccessToken,
+                                   getTimeout(conf.get("cxfConnectTimeout")),
+                                   getTimeout(conf.get("cxfReceiveTimeout")));
+  }
+
+  /**
+   * Reports the size of the requests and responses to the given metrics.
+   *
+   * @param metrics the metrics, null to not report them
+   * @return this client
+   */
+  public StreamingSoapClient withMetrics(@Nullable MarketingCloudMetrics metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
+  /**
+   * Sends a request and reads its response.
+   *
+   * @param action the SOAP action, such as Create or Retrieve
+   * @param body writes the request element inside the SOAP body
+   * @param response reads the response, starting on the response element inside the SOAP body
+   * @param <T> type of the value read from the response
+   * @return the value read from the response
+   * @throws ETSdkException if the request failed or the API returned a SOAP fault
+   */
+  public <T> T call(String action, BodyWriter body, ResponseReader<T> response) throws ETSdkException {
+    HttpURLConnection connection = null;
+    CountingOutputStream requestBytes = null;
+    CountingInputStream responseBytes = null;
+    try {
+      connection = (HttpURLConnection) new URL(endpoint).openConnection();
+      connection.setConnectTimeout(connectTimeout);
+      connection.setReadTimeout(readTimeout);
+      connection.setDoOutput(true);
+      connection.setRequestMethod("POST");
+      connection.setChunkedStreamingMode(CHUNK_SIZE);
+      connection.setRequestProperty("Content-Type", "text/xml; charset=utf-8");
+      connection.setRequestProperty("SOAPAction", action);
+
+      try (CountingOutputStream out = new CountingOutputStream(connection.getOutputStream())) {
+        requestBytes = out;
+        writeEnvelope(out, body);
+      }
+
+      int status = connection.getResponseCode();
+      InputStream in = status < HttpURLConnection.HTTP_BAD_REQUEST ? connection.getInputStream() :
+        connection.getErrorStream();
+      if (in == null) {
+        throw new ETSdkException(String.format("%s request failed with HTTP status %d", action, status));
+      }
+      try (CountingInputStream responseStream = new CountingInputStream(in)) {
+        responseBytes = responseStream;
+        return readEnvelope(action, status, responseStream, response);
+      }
+    } catch (IOException | XMLStreamException e) {
+      throw new ETSdkException(String.format("%s request failed: %s", action, e.getMessage()), e);
+    } finally {
+      if (metrics != null) {
+        String operation = "soap." + action.toLowerCase(Locale.ROOT);
+        if (requestBytes != null) {
+          metrics.count(operation + ".request.bytes", requestBytes.getCount());
+        }
+        if (responseBytes != null) {
+          metrics.count(operation + ".response.bytes", responseBytes.getCount());
+        }
+      }
+      if (connection != null) {
+        connection.disconnect();
+      }
+    }
+  }
+
+  private void writeEnvelope(OutputStream out, BodyWriter body) throws XMLStreamException {
+    XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(out, StandardCharsets.UTF_8.name());
+    try {
+      writer.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+      writer.writeStartElement("soap", "Envelope", SOAP_NS);
+      writer.writeNamespace("soap", SOAP_NS);
+      writer.writeNamespace("xsi", XSI_NS);
+      writer.writeStartElement("soap", "Header", SOAP_NS);
+      writer.writeStartElement("", "fueloauth", OAUTH_NS);
+      writer.writeDefaultNamespace(OAUTH_NS);
+      writer.writeCharacters(accessToken.get());
+      writer.writeEndElement();
+      writer.writeEndElement();
+      writer.writeStartElement("soap", "Body", SOAP_NS);
+      body.write(writer);
+      writer.writeEndElement();
+      writer.writeEndElement();
+      writer.writeEndDocument();
+      writer.flush();
+    } finally {
+      writer.close();
+    }
+  }
+
+  private <T> T readEnvelope(String action, int status, InputStream in,
+                             ResponseReader<T> response) throws XMLStreamException, ETSdkException {
+    XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(in);
+    try {
+      // move to the first element inside the SOAP body
+      while (reader.hasNext()) {
+        if (reader.next() == XMLStreamReader.START_ELEMENT && "Body".equals(reader.getLocalName()) &&
+          SOAP_NS.equals(reader.getNamespaceURI())) {
+          break;
+        }
+      }
+      if (nextElement(reader)) {
+        if ("Fault".equals(reader.getLocalName())) {
+          throw new ETSdkException(String.format("%s request failed: %s", action, readFault(reader)));
+        }
+        if (status < HttpURLConnection.HTTP_BAD_REQUEST) {
+          return response.read(reader);
+        }
+      }
+      throw new ETSdkException(String.format("%s request failed with HTTP status %d", action, status));
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static String readFault(XMLStreamReader reader) throws XMLStreamException {
+    String message = null;
+    int depth = 1;
+    while (depth > 0 && reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamReader.START_ELEMENT) {
+        if (depth == 1 && "faultstring".equals(reader.getLocalName())) {
+          message = reader.getElementText();
+        } else {
+          depth++;
+        }
+      } else if (event == XMLStreamReader.END_ELEMENT) {
+        depth--;
+      }
+    }
+    return message == null ? "unknown SOAP fault" : message;
+  }
+
+  /**
+   * Moves the reader to the next start element, unless the end of the current element comes first.
+   *
+   * @param reader the reader
+   * @return true if the reader is on a start element, false if it is on the end of the enclosing element
+   */
+  public static boolean nextElement(XMLStreamReader reader) throws XMLStreamException {
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamReader.START_ELEMENT) {
+        return true;
+      }
+      if (event == XMLStreamReader.END_ELEMENT) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Skips the current element and all its content, leaving the reader on its end element.
+   */
+  public static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0 && reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamReader.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamReader.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+
+  /**
+   * Starts a request element, declaring the partner API namespace as the default namespace of its content.
+   */
+  public static void writeRequestStart(XMLStreamWriter writer, String name) throws XMLStreamException {
+    writer.writeStartElement("", name, PARTNER_API_NS);
+    writer.writeDefaultNamespace(PARTNER_API_NS);
+  }
+
+  /**
+   * Writes a simple element with text content, in the namespace of the enclosing request.
+   */
+  public static void writeElement(XMLStreamWriter writer, String name,
+                                  @Nullable String value) throws XMLStreamException {
+    writer.writeStartElement(name);
+    if (value != null) {
+      writer.writeCharacters(value);
+    }
+    writer.writeEndElement();
+  }
+
+  @VisibleForTesting
+  static String getServiceUrl(String soapEndpoint) {
+    // the SDK appends the service path to the configured base URI the same way
+    if (soapEndpoint.endsWith(".asmx")) {
+      return soapEndpoint;
+    }
+    return soapEndpoint.endsWith("/") ? soapEndpoint + "Service.asmx" : soapEndpoint + "/Service.asmx";
+  }
+
+  private static int getTimeout(@Nullable String timeout) {
+    return timeout == null ? DEFAULT_TIMEOUT_MS : Integer.parseInt(timeout);
+  }
+
+  private static XMLInputFactory createInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    return factory;
+  }
+
+  /**
+   * Writes the request element of a call.
+   */
+  public interface BodyWriter {
+    void write(XMLStreamWriter writer) throws XMLStreamException;
+  }
+
+  /**
+   * Reads the response element of a call.
+   *
+   * @param <T> type of the value read
+   */
+  public interface ResponseReader<T> {
+
+    /**
+     * Reads the response, starting on the start of the response element.
+     */
+    T read(XMLStreamReader reader) throws XMLStreamException, ETSdkException;
+  }
+}
@@ -49,6 +49,7 @@ import io.cdap.plugin.sfmc.source.MarketingCloudClient;
 import io.cdap.plugin.sfmc.source.util.MarketingCloudConstants;
 import io.cdap.plugin.sfmc.source.util.MarketingCloudObjectInfo;
 import io.cdap.plugin.sfmc.source.util.MarketingCloudUtil;
+import io.cdap.plugin.sfmc.source.util.RecordConversionPlan;
 import io.cdap.plugin.sfmc.source.util.SourceObject;
 
 import java.io.IOException;
@@ -178,11 +179,15 @@ public class MarketingCloudConnector implements DirectConnector {
     List<StructuredRecord> sampleList = new ArrayList<>();
     response = marketingCloudClient.fetchDataExtensionRecords(dataExtensionKey, null, null);
     MarketingCloudObjectInfo sfObjectMetaData = marketingCloudClient.fetchDataExtensionSchema(dataExtensionKey);
+    RecordConversionPlan conversionPlan = null;
     iterator = response.getObjects().iterator();
     while (iterator.hasNext()) {
       StructuredRecord.Builder builder = StructuredRecord.builder(schema);
       row = iterator.next();
-      MarketingCloudUtil.convertRecord(sfObjectMetaData, builder, row);
+      if (conversionPlan == null) {
+        conversionPlan = RecordConversionPlan.of(sfObjectMetaData, row.getClass());
+      }
+      MarketingCloudUtil.convertRecord(conversionPlan, builder, row);
       sampleList.add(builder.build());
     }
     return sampleList;
@@ -199,11 +204,15 @@ public class MarketingCloudConnector implements DirectConnector {
     response = marketingCloudClient.fetchObjectRecords(sourceObject, null, null);
     schema = config.getSchema(sourceObject);
     MarketingCloudObjectInfo sfObjectMetaData = marketingCloudClient.fetchObjectSchema(sourceObject);
+    RecordConversionPlan conversionPlan = null;
     iterator = response.getObjects().iterator();
     while (iterator.hasNext()) {
       StructuredRecord.Builder builder = StructuredRecord.builder(schema);
       row = iterator.next();
-      MarketingCloudUtil.convertRecord(sfObjectMetaData, builder, row);
+      if (conversionPlan == null) {
+        conversionPlan = RecordConversionPlan.of(sfObjectMetaData, row.getClass());
+      }
+      MarketingCloudUtil.convertRecord(conversionPlan, builder, row);
       sampleList.add(builder.build());
     }
     return sampleList;
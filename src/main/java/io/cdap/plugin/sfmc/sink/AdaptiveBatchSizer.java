@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.sink;
+
+import com.exacttarget.fuelsdk.ETDataExtensionRow;
+
+import java.util.Map;
+
+/**
+ * Chooses how many rows go into a data extension batch based on how long previous batches took.
+ *
+ * The row limit starts at the minimum batch size and grows by a quarter after each full batch that completes in less
+ * than half of the target latency. A batch slower than the target shrinks the limit in proportion to how slow it
+ * was, by at most half, and a failed batch halves it. The limit always stays between the minimum and maximum batch
+ * sizes. Batches are also closed once their estimated payload reaches the maximum payload size, so wide rows do not
+ * produce requests that time out regardless of the row count.
+ */
+class AdaptiveBatchSizer {
+  // Approximate size of the SOAP envelope around each row and each column of a row
+  private static final int ROW_OVERHEAD_BYTES = 200;
+  private static final int COLUMN_OVERHEAD_BYTES = 48;
+
+  private final int minBatchSize;
+  private final int maxBatchSize;
+  private final long maxPayloadBytes;
+  private final long targetLatencyMillis;
+  private int batchSize;
+  private long batches;
+  private long rows;
+  private long increases;
+  private long decreases;
+
+  AdaptiveBatchSizer(int minBatchSize, int maxBatchSize, long maxPayloadBytes, long targetLatencyMillis) {
+    this.maxBatchSize = Math.max(1, maxBatchSize);
+    this.minBatchSize = Math.max(1, Math.min(minBatchSize, this.maxBatchSize));
+    this.maxPayloadBytes = maxPayloadBytes;
+    this.targetLatencyMillis = targetLatencyMillis;
+    this.batchSize = this.minBatchSize;
+  }
+
+  /**
+   * @return the maximum number of rows the next batch should contain
+   */
+  synchronized int getBatchSize() {
+    return batchSize;
+  }
+
+  long getMaxPayloadBytes() {
+    return maxPayloadBytes;
+  }
+
+  /**
+   * Records a batch that got a response from the API.
+   *
+   * @param batchRows number of rows in the batch
+   * @param latencyMillis time the call took, in milliseconds
+   */
+  synchronized void onResponse(int batchRows, long latencyMillis) {
+    batches++;
+    rows += batchRows;
+    if (latencyMillis > targetLatencyMillis) {
+      int reduced = (int) (batchSize * targetLatencyMillis / latencyMillis);
+      setBatchSize(Math.min(batchSize - 1, Math.max(reduced, batchSize / 2)));
+    } else if (latencyMillis * 2 <= targetLatencyMillis && batchRows >= batchSize) {
+      // only grow when the row limit is what closed the batch
+      setBatchSize(batchSize + Math.max(1, batchSize / 4));
+    }
+  }
+
+  /**
+   * Records a batch that failed without a response, usually because the call timed out.
+   *
+   * @param batchRows number of rows in the batch
+   */
+  synchronized void onFailure(int batchRows) {
+    batches++;
+    rows += batchRows;
+    setBatchSize(batchSize / 2);
+  }
+
+  synchronized long getBatches() {
+    return batches;
+  }
+
+  synchronized long getRows() {
+    return rows;
+  }
+
+  synchronized long getIncreases() {
+    return increases;
+  }
+
+  synchronized long getDecreases() {
+    return decreases;
+  }
+
+  private void setBatchSize(int size) {
+    int bounded = Math.max(minBatchSize, Math.min(maxBatchSize, size));
+    if (bounded > batchSize) {
+      increases++;
+    } else if (bounded < batchSize) {
+      decreases++;
+    }
+    batchSize = bounded;
+  }
+
+  /**
+   * Estimates the number of bytes a row adds to the payload of a request.
+   */
+  static long estimatePayloadBytes(ETDataExtensionRow row) {
+    long size = ROW_OVERHEAD_BYTES;
+    for (Map.Entry<String, String> column : row.getColumns().entrySet()) {
+      size += COLUMN_OVERHEAD_BYTES + column.getKey().length();
+      if (column.getValue() != null) {
+        size += column.getValue().length();
+      }
+    }
+    return size;
+  }
+}
@@ -33,6 +33,8 @@ import com.exacttarget.fuelsdk.internal.CreateResponse;
 import com.exacttarget.fuelsdk.internal.CreateResult;
 import com.exacttarget.fuelsdk.internal.DataExtensionCreateResult;
 import com.exacttarget.fuelsdk.internal.DataExtensionUpdateResult;
+import com.exacttarget.fuelsdk.internal.SaveAction;
+import com.exacttarget.fuelsdk.internal.SaveOption;
 import com.exacttarget.fuelsdk.internal.Soap;
 import com.exacttarget.fuelsdk.internal.UpdateOptions;
 import com.exacttarget.fuelsdk.internal.UpdateRequest;
@@ -40,39 +42,108 @@ import com.exacttarget.fuelsdk.internal.UpdateResponse;
 import com.exacttarget.fuelsdk.internal.UpdateResult;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.etl.api.FailureCollector;
+import io.cdap.plugin.sfmc.common.ApiRateLimiter;
+import io.cdap.plugin.sfmc.common.DataExtensionSchemaCache;
+import io.cdap.plugin.sfmc.common.ETClientRegistry;
+import io.cdap.plugin.sfmc.common.MarketingCloudMetrics;
+import io.cdap.plugin.sfmc.common.StreamingSoapClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 
 /**
  * Wrapper around an ETClient that understands objects at the level that the plugin cares about.
  */
 public class DataExtensionClient {
-  private final ETClient client;
+  private static final Logger LOG = LoggerFactory.getLogger(DataExtensionClient.class);
+  // Fault returned when the UpdateAdd save action cannot be applied to the rows of the data extension
+  private static final Pattern UNSUPPORTED_UPDATE_ADD = Pattern.compile(
+    "(save ?action|update ?add)[^.]*(not (supported|allowed|valid)|unsupported|invalid)" +
+      "|(unsupported|invalid)[^.]*(save ?action|update ?add)", Pattern.CASE_INSENSITIVE);
   private final String dataExtensionKey;
+  // Clients handed out by create take the client from the registry on every call
+  private ETClientRegistry.ClientSupplier clientSupplier;
+  @Nullable
+  private DataExtensionSchemaCache schemaCache;
+  private boolean streamingRequests;
+  private MarketingCloudMetrics metrics = MarketingCloudMetrics.forStage(null);
+  private ApiRateLimiter rateLimiter = new ApiRateLimiter();
+  @Nullable
+  private ApiRateLimiter.Limits rateLimits;
+  // Whether upserts are sent as a single UpdateAdd request, decided by the first upsert
+  @Nullable
+  private volatile Boolean updateAddSupported;
 
   DataExtensionClient(ETClient client, String dataExtensionKey) {
-    this.client = client;
+    this.clientSupplier = () -> client;
     this.dataExtensionKey = dataExtensionKey;
   }
 
+  /**
+   * Creates a client for the data extension, backed by the process wide {@link ETClientRegistry}.
+   */
   public static DataExtensionClient create(String dataExtensionKey, String clientId, String clientSecret,
                                            String authEndpoint, String soapEndpoint) throws ETSdkException {
-    ETConfiguration conf = new ETConfiguration();
-    conf.set("clientId", clientId);
-    conf.set("clientSecret", clientSecret);
-    conf.set("authEndpoint", authEndpoint);
-    conf.set("soapEndpoint", soapEndpoint);
-    conf.set("useOAuth2Authentication", "true");
-    ClassLoader oldCL = Thread.currentThread().getContextClassLoader();
-    try {
-      Thread.currentThread().setContextClassLoader(DataExtensionClient.class.getClassLoader());
-      return new DataExtensionClient(new ETClient(conf), dataExtensionKey);
-    } finally {
-      Thread.currentThread().setContextClassLoader(oldCL);
+    ETClientRegistry registry = ETClientRegistry.getInstance();
+    DataExtensionClient client = new DataExtensionClient(registry.acquire(clientId, clientSecret, authEndpoint,
+                                                                          soapEndpoint), dataExtensionKey);
+    client.clientSupplier = () -> registry.acquire(clientId, clientSecret, authEndpoint, soapEndpoint,
+                                                   client.metrics);
+    client.rateLimiter = ApiRateLimiter.forClient(clientId, soapEndpoint);
+    return client;
+  }
+
+  /**
+   * Uses the given cache for the data extension columns.
+   *
+   * @param schemaCache the cache, or null to always fetch the columns
+   */
+  public void setSchemaCache(@Nullable DataExtensionSchemaCache schemaCache) {
+    this.schemaCache = schemaCache;
+  }
+
+  /**
+   * Sets whether create and update requests are written directly into the HTTP request with StAX, instead of being
+   * built as SDK objects and marshalled in memory.
+   */
+  public void setStreamingRequests(boolean streamingRequests) {
+    this.streamingRequests = streamingRequests;
+  }
+
+  /**
+   * Reports the latency and size of the requests, the token refreshes and the retried requests to the given metrics.
+   */
+  public void setMetrics(MarketingCloudMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Limits the calls made with the credentials of this client in this process, until the limits are released. The
+   * strictest limits held by the clients sharing the credentials apply.
+   *
+   * @param maxRequestsPerSecond the maximum number of calls started per second, zero for unlimited
+   * @param maxConcurrentRequests the maximum number of calls in progress at the same time, zero for unlimited
+   */
+  public void setRateLimits(double maxRequestsPerSecond, int maxConcurrentRequests) {
+    releaseRateLimits();
+    rateLimits = rateLimiter.limit(maxRequestsPerSecond, maxConcurrentRequests);
+  }
+
+  /**
+   * Releases the limits set on this client, once it makes no more calls.
+   */
+  public void releaseRateLimits() {
+    if (rateLimits != null) {
+      rateLimits.release();
+      rateLimits = null;
     }
   }
 
@@ -88,7 +159,7 @@ public class DataExtensionClient {
    * @throws ETSdkException if there was an error getting the column information for the data extension
    */
   public void validateSchemaCompatibility(Schema schema, FailureCollector collector) throws ETSdkException {
-    call(() -> {
+    call(client -> {
       Collection<ETDataExtensionColumn> columns = getDataExtensionInfo().getColumnList();
       if (columns == null || columns.isEmpty()) {
         collector.addFailure(String.format("Data extension '%s' must exist.", dataExtensionKey), null)
@@ -180,62 +251,148 @@ public class DataExtensionClient {
   }
 
   public DataExtensionInfo getDataExtensionInfo() throws ETSdkException {
-    return call(() -> {
-      List<ETDataExtensionColumn> columns = ETDataExtension.retrieveColumns(client, dataExtensionKey);
+    return call(client -> {
+      List<ETDataExtensionColumn> columns = schemaCache == null ?
+        ETDataExtension.retrieveColumns(client, dataExtensionKey) :
+        schemaCache.getColumns(DataExtensionSchemaCache.accountOf(client), dataExtensionKey,
+                               () -> DataExtensionSchemaCache.fetchModifiedDate(client, dataExtensionKey),
+                               () -> ETDataExtension.retrieveColumns(client, dataExtensionKey));
       return new DataExtensionInfo(dataExtensionKey, columns);
     });
   }
 
   public List<ETDataExtensionRow> scan() throws ETSdkException {
-    return call(() -> ETDataExtension.select(client, "key=" + dataExtensionKey).getObjects());
+    return call(client -> ETDataExtension.select(client, "key=" + dataExtensionKey).getObjects());
   }
 
   public ETResponse<ETDataExtensionRow> insert(List<ETDataExtensionRow> rows) throws ETSdkException {
-    return call(() -> create(client, rows));
+    if (streamingRequests) {
+      return timedCall(MarketingCloudMetrics.CREATE, client -> DataExtensionSoapRequests.create(
+        StreamingSoapClient.of(client).withMetrics(metrics), dataExtensionKey, rows));
+    }
+    return timedCall(MarketingCloudMetrics.CREATE, client -> create(client, rows));
   }
 
   public ETResponse<ETDataExtensionRow> update(List<ETDataExtensionRow> rows) throws ETSdkException {
-    return call(() -> update(client, rows));
+    return timedCall(MarketingCloudMetrics.UPDATE, client -> update(client, rows, null));
   }
 
+  /**
+   * Inserts the rows, or updates them if a row with the same primary key already exists. The results are in the
+   * order of the rows, each holding the row it is for, and rows the API returned no result for have none.
+   *
+   * Rows are sent in a single update request with the UpdateAdd save action, which Marketing Cloud applies as an
+   * upsert. Data extensions without a primary key cannot be updated that way, so their rows are inserted instead.
+   * If the UpdateAdd request is rejected with a fault telling that the save action is not supported, the rows are
+   * inserted and the ones that already exist are then updated, which is also done for every later upsert of this
+   * client. Any other failure of the request, such as a timeout, is thrown as is and UpdateAdd keeps being used.
+   */
   public List<ETResult<ETDataExtensionRow>> upsert(List<ETDataExtensionRow> rows) throws ETSdkException {
-    ETResponse<ETDataExtensionRow> inserts = insert(rows);
-    List<ETResult<ETDataExtensionRow>> result = new ArrayList<>(rows.size());
+    if (isUpdateAddSupported()) {
+      try {
+        return timedCall(MarketingCloudMetrics.UPDATE, client -> update(client, rows, SaveAction.UPDATE_ADD))
+          .getResults();
+      } catch (ETSdkException | RuntimeException e) {
+        if (!isUnsupportedUpdateAddFault(e)) {
+          throw e;
+        }
+        LOG.warn("Failed to upsert rows into data extension '{}' with an UpdateAdd request, " +
+                   "falling back to an insert followed by an update.", dataExtensionKey, e);
+        updateAddSupported = false;
+        metrics.count(MarketingCloudMetrics.RETRIES, 1);
+      }
+    }
+    return insertThenUpdate(rows);
+  }
 
+  /**
+   * Returns whether the error, or one of its causes, is the fault returned when the UpdateAdd save action is not
+   * supported.
+   */
+  static boolean isUnsupportedUpdateAddFault(Throwable error) {
+    for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+      if (cause.getMessage() != null && UNSUPPORTED_UPDATE_ADD.matcher(cause.getMessage()).find()) {
+        return true;
+      }
+      if (cause.getCause() == cause) {
+        break;
+      }
+    }
+    return false;
+  }
+
+  private boolean isUpdateAddSupported() throws ETSdkException {
+    if (updateAddSupported == null) {
+      List<ETDataExtensionColumn> columns = getDataExtensionInfo().getColumnList();
+      updateAddSupported = columns != null &&
+        columns.stream().anyMatch(column -> Boolean.TRUE.equals(column.getIsPrimaryKey()));
+    }
+    return updateAddSupported;
+  }
+
+  private List<ETResult<ETDataExtensionRow>> insertThenUpdate(List<ETDataExtensionRow> rows) throws ETSdkException {
+    Map<ETDataExtensionRow, ETResult<ETDataExtensionRow>> results = new IdentityHashMap<>();
     List<ETDataExtensionRow> toUpdate = new ArrayList<>();
-    for (ETResult<ETDataExtensionRow> row : inserts.getResults()) {
-      // super hacky to check the error message... but there is no better way
-      if (row.getStatus() == ETResult.Status.ERROR && row.getErrorCode() == 2 && row.getErrorMessage() != null &&
-        row.getErrorMessage().toLowerCase().contains("primary key")) {
-        ETDataExtensionRow failed = row.getObject();
-        ETDataExtensionRow copy = new ETDataExtensionRow();
-        copy.setDataExtensionKey(failed.getDataExtensionKey());
-        for (String column : failed.getColumnNames()) {
-          copy.setColumn(column, failed.getColumn(column));
-        }
-        toUpdate.add(copy);
+    for (ETResult<ETDataExtensionRow> result : insert(rows).getResults()) {
+      ETDataExtensionRow row = result.getObject();
+      if (row == null) {
+        continue;
+      }
+      if (result.getStatus() == ETResult.Status.ERROR &&
+        RowRetryPolicy.classify(result) == RowRetryPolicy.Failure.DUPLICATE) {
+        toUpdate.add(row);
       } else {
-        result.add(row);
+        results.put(row, result);
       }
     }
 
     if (!toUpdate.isEmpty()) {
-      ETResponse<ETDataExtensionRow> updates = update(client, toUpdate);
-      result.addAll(updates.getResults());
+      for (ETResult<ETDataExtensionRow> result : update(toUpdate).getResults()) {
+        if (result.getObject() != null) {
+          results.put(result.getObject(), result);
+        }
+      }
+    }
+    List<ETResult<ETDataExtensionRow>> ordered = new ArrayList<>(rows.size());
+    for (ETDataExtensionRow row : rows) {
+      ETResult<ETDataExtensionRow> result = results.get(row);
+      if (result != null) {
+        ordered.add(result);
+      }
     }
-    return result;
+    return ordered;
+  }
+
+  private ETResponse<ETDataExtensionRow> update(ETClient client, List<ETDataExtensionRow> rows,
+                                                @Nullable SaveAction saveAction) throws ETSdkException {
+    if (streamingRequests) {
+      return DataExtensionSoapRequests.update(StreamingSoapClient.of(client).withMetrics(metrics), dataExtensionKey,
+                                              rows, saveAction);
+    }
+    return updateRows(client, rows, saveAction);
   }
 
   private <T> T call(SFMCCall<T> callable) throws ETSdkException {
     ClassLoader oldClassloader = Thread.currentThread().getContextClassLoader();
     try {
       Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
-      return callable.call();
+      return rateLimiter.call(metrics, () -> callable.call(clientSupplier.get()));
     } finally {
       Thread.currentThread().setContextClassLoader(oldClassloader);
     }
   }
 
+  private <T> T timedCall(String operation, SFMCCall<T> callable) throws ETSdkException {
+    return call(client -> {
+      long startNanos = System.nanoTime();
+      try {
+        return callable.call(client);
+      } finally {
+        metrics.recordLatency(operation, startNanos);
+      }
+    });
+  }
+
   /**
    * A SFMC call
    *
@@ -244,9 +401,9 @@ public class DataExtensionClient {
   private interface SFMCCall<T> {
 
     /**
-     * Perform a call.
+     * Perform a call with the given client.
      */
-    T call() throws ETSdkException;
+    T call(ETClient client) throws ETSdkException;
   }
 
   /**
@@ -297,6 +454,7 @@ public class DataExtensionClient {
     }
     response.setResponseCode(createResponse.getOverallStatus());
     response.setResponseMessage(createResponse.getOverallStatus());
+    int index = 0;
     for (CreateResult createResult : createResponse.getResults()) {
       //
       // Allocate a new (external) object:
@@ -348,9 +506,8 @@ public class DataExtensionClient {
       }
 
       // this is also modified, so we know the object that failed
-      //if (result.getResponseCode().equals("OK")) { // XXX?
-      result.setObject(externalObject);
-      //}
+      T object = objectOf(objects, createResult.getOrdinalID(), index++, createResponse.getResults().size());
+      result.setObject(object == null ? externalObject : object);
       response.addResult(result);
     }
 
@@ -362,6 +519,14 @@ public class DataExtensionClient {
    */
   public static ETResponse<ETDataExtensionRow> update(ETClient client,
                                                       List<ETDataExtensionRow> objects) throws ETSdkException {
+    return updateRows(client, objects, null);
+  }
+
+  /**
+   * Same as {@link #update(ETClient, List)}, applying the given save action to all the objects if it is not null.
+   */
+  private static ETResponse<ETDataExtensionRow> updateRows(ETClient client, List<ETDataExtensionRow> objects,
+                                                           @Nullable SaveAction saveAction) throws ETSdkException {
     ETResponse<ETDataExtensionRow> response = new ETResponse<>();
 
     if (objects == null || objects.size() == 0) {
@@ -384,16 +549,26 @@ public class DataExtensionClient {
     //
     // Perform the SOAP update:
     //
-    String obj = "";
+    StringBuilder objBuilder = new StringBuilder();
 
     UpdateRequest updateRequest = new UpdateRequest();
-    updateRequest.setOptions(new UpdateOptions());
+    UpdateOptions updateOptions = new UpdateOptions();
+    if (saveAction != null) {
+      // '*' applies the save action to every property of the objects
+      SaveOption saveOption = new SaveOption();
+      saveOption.setPropertyName("*");
+      saveOption.setSaveAction(saveAction);
+      UpdateOptions.SaveOptions saveOptions = new UpdateOptions.SaveOptions();
+      saveOptions.getSaveOption().add(saveOption);
+      updateOptions.setSaveOptions(saveOptions);
+    }
+    updateRequest.setOptions(updateOptions);
     for (ETDataExtensionRow object : objects) {
       object.setClient(client);
       updateRequest.getObjects().add(object.toInternal());
-      obj += object.getClass().getSimpleName().substring(2);
+      objBuilder.append(object.getClass().getSimpleName().substring(2));
     }
-    Soap soap = connection.getSoap("update", obj);
+    Soap soap = connection.getSoap("update", objBuilder.toString());
 
     UpdateResponse updateResponse = soap.update(updateRequest);
 
@@ -405,6 +580,7 @@ public class DataExtensionClient {
     }
     response.setResponseCode(updateResponse.getOverallStatus());
     response.setResponseMessage(updateResponse.getOverallStatus());
+    int index = 0;
     for (UpdateResult updateResult : updateResponse.getResults()) {
       //
       // Allocate a new (external) object:
@@ -457,13 +633,9 @@ public class DataExtensionClient {
       }
 
       // this is also modified, so we know the object that failed
-      //if (result.getResponseCode().equals("OK")) { // XXX?
-      result.setObject(externalObject);
-      //}
-
-      if (result.getResponseCode().equals("OK")) { // XXX?
-        result.setObject(externalObject);
-      }
+      ETDataExtensionRow object = objectOf(objects, updateResult.getOrdinalID(), index++,
+                                           updateResponse.getResults().size());
+      result.setObject(object == null ? externalObject : object);
       response.addResult(result);
     }
 
@@ -504,4 +676,16 @@ public class DataExtensionClient {
       }
     }
   }
+
+  /**
+   * Returns the object a result is for: the object at the ordinal of the result if the API returned one, otherwise
+   * the object at the position of the result when there is a result for every object, as they come in the same order.
+   */
+  @Nullable
+  private static <T> T objectOf(List<T> objects, @Nullable Integer ordinal, int index, int resultCount) {
+    if (ordinal != null && ordinal >= 0 && ordinal < objects.size()) {
+      return objects.get(ordinal);
+    }
+    return resultCount == objects.size() ? objects.get(index) : null;
+  }
 }
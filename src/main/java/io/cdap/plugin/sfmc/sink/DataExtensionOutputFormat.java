@@ -18,6 +18,8 @@ package io.cdap.plugin.sfmc.sink;
 
 import com.exacttarget.fuelsdk.ETSdkException;
 import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.plugin.sfmc.common.DataExtensionSchemaCache;
+import io.cdap.plugin.sfmc.common.MarketingCloudMetrics;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.JobContext;
@@ -38,9 +40,21 @@ public class DataExtensionOutputFormat extends OutputFormat<NullWritable, Struct
   public static final String SOAP_ENDPOINT = "cdap.sfmc.soap.endpoint";
   public static final String DATA_EXTENSION_KEY = "cdap.sfmc.data.extension.key";
   public static final String MAX_BATCH_SIZE = "cdap.sfmc.max.batch.size";
+  public static final String MAX_IN_FLIGHT_BATCHES = "cdap.sfmc.max.in.flight.batches";
+  public static final String MAX_RETRIES = "cdap.sfmc.max.retries";
+  public static final String ADAPTIVE_BATCH_SIZE = "cdap.sfmc.adaptive.batch.size";
+  public static final String MIN_BATCH_SIZE = "cdap.sfmc.min.batch.size";
+  public static final String MAX_BATCH_PAYLOAD_BYTES = "cdap.sfmc.max.batch.payload.bytes";
+  public static final String TARGET_BATCH_LATENCY_MILLIS = "cdap.sfmc.target.batch.latency.millis";
+  public static final String STREAMING_REQUESTS = "cdap.sfmc.streaming.requests";
   public static final String FAIL_ON_ERROR = "cdap.sfmc.fail.on.error";
   public static final String OPERATION = "cdap.sfmc.operation";
   public static final String TRUNCATE = "cdap.sfmc.truncate";
+  public static final String SCHEMA_CACHE_DIR = "cdap.sfmc.schema.cache.dir";
+  public static final String SCHEMA_CACHE_TTL = "cdap.sfmc.schema.cache.ttl";
+  public static final String METRICS_KEY = "cdap.sfmc.metrics.key";
+  public static final String MAX_REQUESTS_PER_SECOND = "cdap.sfmc.max.requests.per.second";
+  public static final String MAX_CONCURRENT_REQUESTS = "cdap.sfmc.max.concurrent.requests";
 
   @Override
   public RecordWriter<NullWritable, StructuredRecord> getRecordWriter(TaskAttemptContext context) throws IOException {
@@ -52,14 +66,29 @@ public class DataExtensionOutputFormat extends OutputFormat<NullWritable, Struct
     String dataExtensionKey = getOrError(conf, DATA_EXTENSION_KEY);
     Operation operation = Operation.valueOf(getOrError(conf, OPERATION));
     int maxBatchSize = Integer.parseInt(getOrError(conf, MAX_BATCH_SIZE));
+    int maxInFlightBatches = conf.getInt(MAX_IN_FLIGHT_BATCHES, 1);
+    int maxRetries = conf.getInt(MAX_RETRIES, RowRetryPolicy.DEFAULT_MAX_RETRIES);
+    AdaptiveBatchSizer batchSizer = null;
+    if (conf.getBoolean(ADAPTIVE_BATCH_SIZE, false)) {
+      batchSizer = new AdaptiveBatchSizer(Integer.parseInt(getOrError(conf, MIN_BATCH_SIZE)), maxBatchSize,
+                                          Long.parseLong(getOrError(conf, MAX_BATCH_PAYLOAD_BYTES)),
+                                          Long.parseLong(getOrError(conf, TARGET_BATCH_LATENCY_MILLIS)));
+    }
     boolean failOnError = Boolean.parseBoolean(getOrError(conf, FAIL_ON_ERROR));
     boolean shouldTruncate = Boolean.parseBoolean(getOrError(conf, TRUNCATE));
+    MarketingCloudMetrics metrics = MarketingCloudMetrics.forStage(conf.get(METRICS_KEY));
     try {
       DataExtensionClient client = DataExtensionClient.create(dataExtensionKey, clientId, clientSecret,
                                                               authEndpoint, soapEndpoint);
+      client.setSchemaCache(DataExtensionSchemaCache.createIfEnabled(conf.get(SCHEMA_CACHE_DIR),
+                                                                     conf.getLong(SCHEMA_CACHE_TTL, 0L)));
+      client.setStreamingRequests(conf.getBoolean(STREAMING_REQUESTS, false));
+      client.setMetrics(metrics);
+      client.setRateLimits(conf.getDouble(MAX_REQUESTS_PER_SECOND, 0), conf.getInt(MAX_CONCURRENT_REQUESTS, 0));
       RecordDataExtensionRowConverter converter = new RecordDataExtensionRowConverter(client.getDataExtensionInfo(),
                                                                                       shouldTruncate);
-      return new DataExtensionRecordWriter(client, converter, operation, maxBatchSize, failOnError);
+      return new DataExtensionRecordWriter(client, converter, operation, maxBatchSize, failOnError,
+                                           maxInFlightBatches, batchSizer, metrics, maxRetries);
     } catch (ETSdkException e) {
       throw new IOException("Unable to create Salesforce Marketing Cloud client.", e);
     }
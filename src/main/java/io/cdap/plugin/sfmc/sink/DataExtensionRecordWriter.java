@@ -22,6 +22,7 @@ import com.exacttarget.fuelsdk.ETResult;
 import com.exacttarget.fuelsdk.ETSdkException;
 import com.google.common.annotations.VisibleForTesting;
 import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.plugin.sfmc.common.MarketingCloudMetrics;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.RecordWriter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
@@ -29,112 +30,402 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
 
 /**
  * Writes records to Salesforce Marketing Cloud Data Extensions.
+ *
+ * With more than one in-flight batch, full batches are sent by a pool of threads while the next batch is being
+ * filled. At most the given number of batches are pending at any time; a failure of a batch is reported by the next
+ * call to {@link #write} or {@link #close}.
+ *
+ * When an {@link AdaptiveBatchSizer} is given, it decides when a batch is full instead of the fixed maximum batch
+ * size. The chosen batch sizes are reported through the task counters and the stage metrics when the writer is
+ * closed.
+ *
+ * Rows that fail for a transient reason, such as a timeout, are sent again as decided by the {@link RowRetryPolicy},
+ * and only the rows that could not be written in the end are logged and counted as failed. The results are matched
+ * to the rows sent by the row they hold, and a row without a result counts as failed.
+ *
+ * The rows written and failed are reported per data extension through the {@link MarketingCloudMetrics} of the
+ * stage.
  */
 public class DataExtensionRecordWriter extends RecordWriter<NullWritable, StructuredRecord> {
   private static final Logger LOG = LoggerFactory.getLogger(DataExtensionRecordWriter.class);
+  static final String COUNTER_GROUP = "Salesforce Marketing Cloud";
+  static final String BATCHES_COUNTER = "Batches";
+  static final String BATCH_ROWS_COUNTER = "Batched rows";
+  static final String BATCH_SIZE_INCREASES_COUNTER = "Batch size increases";
+  static final String BATCH_SIZE_DECREASES_COUNTER = "Batch size decreases";
+  private static final Map<Operation, String> WRITTEN_OUTCOMES = new EnumMap<>(Operation.class);
+
+  static {
+    WRITTEN_OUTCOMES.put(Operation.INSERT, "inserted");
+    WRITTEN_OUTCOMES.put(Operation.UPDATE, "updated");
+    WRITTEN_OUTCOMES.put(Operation.UPSERT, "upserted");
+  }
+
   private final DataExtensionClient client;
   private final RecordDataExtensionRowConverter converter;
-  private final List<ETDataExtensionRow> batch;
+  private List<ETDataExtensionRow> batch;
   private final int maxBatchSize;
   private final boolean failOnError;
   private final Operation operation;
+  private final int maxInFlightBatches;
+  private final ExecutorService executor;
+  private final Semaphore inFlight;
+  private final AtomicReference<IOException> failure = new AtomicReference<>();
+  private final AdaptiveBatchSizer batchSizer;
+  private final MarketingCloudMetrics metrics;
+  private final RowRetryPolicy retryPolicy;
+  private long batchBytes;
 
   public DataExtensionRecordWriter(DataExtensionClient client, RecordDataExtensionRowConverter converter,
                                    Operation operation, int maxBatchSize, boolean failOnError) {
+    this(client, converter, operation, maxBatchSize, failOnError, 1, null);
+  }
+
+  public DataExtensionRecordWriter(DataExtensionClient client, RecordDataExtensionRowConverter converter,
+                                   Operation operation, int maxBatchSize, boolean failOnError,
+                                   int maxInFlightBatches, @Nullable AdaptiveBatchSizer batchSizer) {
+    this(client, converter, operation, maxBatchSize, failOnError, maxInFlightBatches, batchSizer,
+         MarketingCloudMetrics.forStage(null));
+  }
+
+  public DataExtensionRecordWriter(DataExtensionClient client, RecordDataExtensionRowConverter converter,
+                                   Operation operation, int maxBatchSize, boolean failOnError,
+                                   int maxInFlightBatches, @Nullable AdaptiveBatchSizer batchSizer,
+                                   MarketingCloudMetrics metrics) {
+    this(client, converter, operation, maxBatchSize, failOnError, maxInFlightBatches, batchSizer, metrics,
+         RowRetryPolicy.DEFAULT_MAX_RETRIES);
+  }
+
+  public DataExtensionRecordWriter(DataExtensionClient client, RecordDataExtensionRowConverter converter,
+                                   Operation operation, int maxBatchSize, boolean failOnError,
+                                   int maxInFlightBatches, @Nullable AdaptiveBatchSizer batchSizer,
+                                   MarketingCloudMetrics metrics, int maxRetries) {
+    this(client, converter, operation, maxBatchSize, failOnError, maxInFlightBatches, batchSizer, metrics,
+         new RowRetryPolicy(maxRetries));
+  }
+
+  @VisibleForTesting
+  DataExtensionRecordWriter(DataExtensionClient client, RecordDataExtensionRowConverter converter,
+                            Operation operation, int maxBatchSize, boolean failOnError,
+                            int maxInFlightBatches, @Nullable AdaptiveBatchSizer batchSizer,
+                            MarketingCloudMetrics metrics, RowRetryPolicy retryPolicy) {
     this.client = client;
+    this.retryPolicy = retryPolicy;
+    this.metrics = metrics;
     this.converter = converter;
     this.operation = operation;
     this.maxBatchSize = maxBatchSize;
     this.failOnError = failOnError;
-    this.batch = new ArrayList<>(maxBatchSize);
+    this.batchSizer = batchSizer;
+    this.batch = new ArrayList<>(batchSizer == null ? maxBatchSize : batchSizer.getBatchSize());
+    this.maxInFlightBatches = Math.max(1, maxInFlightBatches);
+    if (this.maxInFlightBatches > 1) {
+      this.executor = Executors.newFixedThreadPool(this.maxInFlightBatches, runnable -> {
+        Thread thread = new Thread(runnable, "sfmc-batch-writer");
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.inFlight = new Semaphore(this.maxInFlightBatches);
+    } else {
+      this.executor = null;
+      this.inFlight = null;
+    }
   }
 
   @Override
   public void write(NullWritable key, StructuredRecord value) throws IOException {
+    throwIfFailed();
     try {
-      batch.add(converter.transform(value));
+      ETDataExtensionRow row = converter.transform(value);
+      batch.add(row);
+      if (batchSizer != null) {
+        batchBytes += AdaptiveBatchSizer.estimatePayloadBytes(row);
+      }
     } catch (Exception e) {
       if (failOnError) {
         throw new IOException("Failed to convert record into a Data Extension Row", e);
       }
     }
-    if (batch.size() >= maxBatchSize) {
+    if (isBatchFull()) {
       writeBatch();
     }
   }
 
+  private boolean isBatchFull() {
+    if (batchSizer == null) {
+      return batch.size() >= maxBatchSize;
+    }
+    return batch.size() >= batchSizer.getBatchSize() || batchBytes >= batchSizer.getMaxPayloadBytes();
+  }
+
   @Override
   public void close(TaskAttemptContext context) throws IOException {
-    writeBatch();
+    try {
+      writeBatch();
+      awaitInFlight();
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+      if (batchSizer != null) {
+        reportBatchSizes(context);
+      }
+      client.releaseRateLimits();
+    }
+    throwIfFailed();
   }
 
+  private void reportBatchSizes(TaskAttemptContext context) {
+    LOG.info("Wrote {} rows to data extension '{}' in {} batches, the last batch size was {}",
+             batchSizer.getRows(), client.getDataExtensionKey(), batchSizer.getBatches(), batchSizer.getBatchSize());
+    context.getCounter(COUNTER_GROUP, BATCHES_COUNTER).increment(batchSizer.getBatches());
+    context.getCounter(COUNTER_GROUP, BATCH_ROWS_COUNTER).increment(batchSizer.getRows());
+    context.getCounter(COUNTER_GROUP, BATCH_SIZE_INCREASES_COUNTER).increment(batchSizer.getIncreases());
+    context.getCounter(COUNTER_GROUP, BATCH_SIZE_DECREASES_COUNTER).increment(batchSizer.getDecreases());
+    metrics.count(MarketingCloudMetrics.BATCHES, batchSizer.getBatches());
+    metrics.count(MarketingCloudMetrics.BATCH_ROWS, batchSizer.getRows());
+    metrics.count(MarketingCloudMetrics.BATCH_SIZE_INCREASES, batchSizer.getIncreases());
+    metrics.count(MarketingCloudMetrics.BATCH_SIZE_DECREASES, batchSizer.getDecreases());
+  }
+
+  /**
+   * Sends the current batch. With a single in-flight batch, the batch is sent before returning. Otherwise it is
+   * handed to the writer threads, waiting for one of the pending batches to complete if the limit is reached.
+   */
   @VisibleForTesting
   void writeBatch() throws IOException {
-    List<ETResult<ETDataExtensionRow>> results = new ArrayList<>();
-    boolean failed = false;
-    try {
-      switch (operation) {
-        case INSERT:
-          ETResponse<ETDataExtensionRow> response = client.insert(batch);
-          LOG.debug("Requested {} of {} records with request id {}",
-                    operation.name(), batch.size(), response.getRequestId());
-          results = response.getResults();
-          break;
-        case UPDATE:
-          response = client.update(batch);
-          LOG.debug("Requested {} of {} records with request id {}",
-                    operation.name(), batch.size(), response.getRequestId());
-          results = response.getResults();
-          break;
-        case UPSERT:
-          results = client.upsert(batch);
-          break;
-        default:
-          // should never happen
-          throw new IllegalStateException("Unsupported operation " + operation);
+    if (executor == null) {
+      try {
+        send(batch);
+      } finally {
+        batch.clear();
+        batchBytes = 0;
       }
-    } catch (Exception e) {
-      failed = true;
-      if (!failOnError) {
-        LOG.warn("Failed to get a response from {} call to Salesforce API", operation.name(), e);
-      }
-      for (ETDataExtensionRow row : batch) {
-        String errorMessage = String.format("Failed to %s record %s", operation.name().toLowerCase(), row.getColumns());
-        if (failOnError) {
-          LOG.error(errorMessage);
+      return;
+    }
+
+    throwIfFailed();
+    if (batch.isEmpty()) {
+      return;
+    }
+    List<ETDataExtensionRow> rows = batch;
+    batch = new ArrayList<>(batchSizer == null ? maxBatchSize : batchSizer.getBatchSize());
+    batchBytes = 0;
+    try {
+      inFlight.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for a pending batch to complete", e);
+    }
+    try {
+      executor.execute(() -> {
+        try {
+          send(rows);
+        } catch (IOException e) {
+          failure.compareAndSet(null, e);
+        } catch (RuntimeException e) {
+          failure.compareAndSet(null, new IOException(e));
+        } finally {
+          inFlight.release();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      inFlight.release();
+      throw new IOException("Unable to send batch, the writer has been closed", e);
+    }
+  }
+
+  private void awaitInFlight() throws IOException {
+    if (inFlight == null) {
+      return;
+    }
+    try {
+      inFlight.acquire(maxInFlightBatches);
+      inFlight.release(maxInFlightBatches);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for pending batches to complete", e);
+    }
+  }
+
+  private void throwIfFailed() throws IOException {
+    IOException e = failure.get();
+    if (e != null) {
+      throw e;
+    }
+  }
+
+  /**
+   * Sends the rows of a batch, sending the rows that failed transiently again as long as the retry policy allows.
+   * Rows that cannot be written are logged and counted once, after the last attempt.
+   */
+  private void send(List<ETDataExtensionRow> batch) throws IOException {
+    if (batch.isEmpty()) {
+      return;
+    }
+    List<ETDataExtensionRow> rows = batch;
+    int writtenRows = 0;
+    int failedRows = 0;
+    Exception failure = null;
+    int retry = 0;
+    // whether the rows are sent again because the previous call failed as a whole, without telling which were written
+    boolean resentAfterCallFailure = false;
+    while (true) {
+      List<ETDataExtensionRow> retryRows = new ArrayList<>();
+      Exception retryFailure = null;
+      List<ETResult<ETDataExtensionRow>> results = Collections.emptyList();
+      boolean responded = false;
+      long startTime = System.nanoTime();
+      try {
+        results = call(rows);
+        responded = true;
+        if (batchSizer != null && !rows.isEmpty()) {
+          batchSizer.onResponse(rows.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        }
+      } catch (Exception e) {
+        if (batchSizer != null && !rows.isEmpty()) {
+          batchSizer.onFailure(rows.size());
+        }
+        if (RowRetryPolicy.classify(e) == RowRetryPolicy.Failure.TRANSIENT) {
+          retryRows.addAll(rows);
+          retryFailure = e;
         } else {
-          LOG.warn(errorMessage);
+          failure = e;
+          failedRows += rows.size();
+          logFailedRows(rows, e);
         }
       }
-    }
+      retryPolicy.onSent(rows.size());
 
-    for (ETResult<ETDataExtensionRow> result : results) {
-      if (result.getStatus() == ETResult.Status.ERROR) {
-        failed = true;
-        Integer errorCode = result.getErrorCode();
-        String errorMessage = result.getErrorMessage() == null ? "" : result.getErrorMessage();
-        if (errorCode != null) {
-          errorMessage = String.format("[Error code %d] %s", errorCode, errorMessage);
+      // the client attaches the row sent to each result, a result without one cannot be matched to a row
+      Set<ETDataExtensionRow> unanswered = Collections.newSetFromMap(new IdentityHashMap<>());
+      unanswered.addAll(rows);
+      for (ETResult<ETDataExtensionRow> result : results) {
+        ETDataExtensionRow row = result.getObject();
+        if (row == null || !unanswered.remove(row)) {
+          LOG.debug("Ignoring a result that does not match any row sent to data extension '{}': {}",
+                    client.getDataExtensionKey(), RowRetryPolicy.describe(result));
+          continue;
+        }
+        if (result.getStatus() != ETResult.Status.ERROR) {
+          writtenRows++;
+          LOG.trace("Successfully wrote {}", columnsOf(row));
+          continue;
         }
-        errorMessage = String.format("Failed to %s record %s:%s",
-                                     operation.name().toLowerCase(), result.getObject().getColumns(), errorMessage);
-        if (failOnError) {
-          LOG.error(errorMessage);
+        RowRetryPolicy.Failure rowFailure = RowRetryPolicy.classify(result);
+        if (rowFailure == RowRetryPolicy.Failure.TRANSIENT) {
+          retryRows.add(row);
+        } else if (rowFailure == RowRetryPolicy.Failure.DUPLICATE && resentAfterCallFailure
+          && operation == Operation.INSERT) {
+          // the previous call failed in a way that did not tell whether the row was inserted, and it was
+          writtenRows++;
+          LOG.debug("Record {} was already inserted by a previous attempt", columnsOf(row));
         } else {
-          LOG.warn(errorMessage);
+          failedRows++;
+          logFailedRow(row, RowRetryPolicy.describe(result));
+        }
+      }
+      if (responded && !unanswered.isEmpty()) {
+        for (ETDataExtensionRow row : rows) {
+          if (unanswered.contains(row)) {
+            failedRows++;
+            logFailedRow(row, "no result was returned for the record");
+          }
         }
-      } else {
-        LOG.trace("Successfully wrote {}", result.getObject().getColumns());
       }
+
+      if (retryRows.isEmpty()) {
+        break;
+      }
+      if (retry >= retryPolicy.getMaxRetries() || !retryPolicy.tryRetry(retryRows.size())) {
+        LOG.warn("Giving up on {} rows of data extension '{}' after {} retries", retryRows.size(),
+                 client.getDataExtensionKey(), retry);
+        failedRows += retryRows.size();
+        if (retryFailure != null) {
+          failure = retryFailure;
+          logFailedRows(retryRows, retryFailure);
+        } else {
+          for (ETDataExtensionRow row : retryRows) {
+            logFailedRow(row, "the error was transient but the retries are exhausted");
+          }
+        }
+        break;
+      }
+      LOG.info("Sending {} of {} rows to data extension '{}' again after a transient failure ({}/{})",
+               retryRows.size(), rows.size(), client.getDataExtensionKey(), ++retry, retryPolicy.getMaxRetries());
+      metrics.count(MarketingCloudMetrics.RETRIES, 1);
+      retryPolicy.backOff(retry);
+      rows = retryRows;
+      resentAfterCallFailure = retryFailure != null;
     }
-    batch.clear();
-    if (failed && failOnError) {
+
+    metrics.recordRows(client.getDataExtensionKey(), WRITTEN_OUTCOMES.get(operation), writtenRows);
+    metrics.recordRows(client.getDataExtensionKey(), "failed", failedRows);
+    if (failedRows > 0 && failOnError) {
       throw new IOException(String.format("Failed to %s records to data extension '%s'",
-                                          operation.name().toLowerCase(), client.getDataExtensionKey()));
+                                          operation.name().toLowerCase(), client.getDataExtensionKey()), failure);
     }
   }
+
+  private List<ETResult<ETDataExtensionRow>> call(List<ETDataExtensionRow> rows) throws ETSdkException {
+    switch (operation) {
+      case INSERT:
+        ETResponse<ETDataExtensionRow> response = client.insert(rows);
+        LOG.debug("Requested {} of {} records with request id {}",
+                  operation.name(), rows.size(), response.getRequestId());
+        return response.getResults();
+      case UPDATE:
+        response = client.update(rows);
+        LOG.debug("Requested {} of {} records with request id {}",
+                  operation.name(), rows.size(), response.getRequestId());
+        return response.getResults();
+      case UPSERT:
+        return client.upsert(rows);
+      default:
+        // should never happen
+        throw new IllegalStateException("Unsupported operation " + operation);
+    }
+  }
+
+  private void logFailedRows(List<ETDataExtensionRow> rows, Exception e) {
+    if (!failOnError) {
+      LOG.warn("Failed to get a response from {} call to Salesforce API", operation.name(), e);
+    }
+    for (ETDataExtensionRow row : rows) {
+      logFailedRow(row, "");
+    }
+  }
+
+  private void logFailedRow(@Nullable ETDataExtensionRow row, String errorMessage) {
+    String message = String.format("Failed to %s record %s", operation.name().toLowerCase(), columnsOf(row));
+    if (!errorMessage.isEmpty()) {
+      message = message + ":" + errorMessage;
+    }
+    if (failOnError) {
+      LOG.error(message);
+    } else {
+      LOG.warn(message);
+    }
+  }
+
+  @Nullable
+  private static Map<String, String> columnsOf(@Nullable ETDataExtensionRow row) {
+    return row == null ? null : row.getColumns();
+  }
 }
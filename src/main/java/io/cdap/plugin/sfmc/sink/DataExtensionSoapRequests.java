@@ -0,0 +1,187 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.sink;
+
+import com.exacttarget.fuelsdk.ETDataExtensionRow;
+import com.exacttarget.fuelsdk.ETResponse;
+import com.exacttarget.fuelsdk.ETResult;
+import com.exacttarget.fuelsdk.ETSdkException;
+import com.exacttarget.fuelsdk.internal.SaveAction;
+import io.cdap.plugin.sfmc.common.StreamingSoapClient;
+
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Create and update requests for data extension rows, written and read with StAX.
+ *
+ * Rows are written into the request straight from their column values, without building the JAXB objects of the
+ * SDK, and results are matched back to the rows that were sent through their ordinal in the request.
+ */
+final class DataExtensionSoapRequests {
+
+  private DataExtensionSoapRequests() {
+  }
+
+  static ETResponse<ETDataExtensionRow> create(StreamingSoapClient soapClient, String dataExtensionKey,
+                                               List<ETDataExtensionRow> rows) throws ETSdkException {
+    if (rows.isEmpty()) {
+      return emptyResponse();
+    }
+    return soapClient.call("Create", writer -> writeCreateRequest(writer, dataExtensionKey, rows),
+                           reader -> readResponse(reader, rows));
+  }
+
+  static ETResponse<ETDataExtensionRow> update(StreamingSoapClient soapClient, String dataExtensionKey,
+                                               List<ETDataExtensionRow> rows,
+                                               @Nullable SaveAction saveAction) throws ETSdkException {
+    if (rows.isEmpty()) {
+      return emptyResponse();
+    }
+    return soapClient.call("Update", writer -> {
+      StreamingSoapClient.writeRequestStart(writer, "UpdateRequest");
+      if (saveAction == null) {
+        writer.writeEmptyElement("Options");
+      } else {
+        // '*' applies the save action to every property of the objects
+        writer.writeStartElement("Options");
+        writer.writeStartElement("SaveOptions");
+        writer.writeStartElement("SaveOption");
+        StreamingSoapClient.writeElement(writer, "PropertyName", "*");
+        StreamingSoapClient.writeElement(writer, "SaveAction", saveAction.value());
+        writer.writeEndElement();
+        writer.writeEndElement();
+        writer.writeEndElement();
+      }
+      writeRows(writer, dataExtensionKey, rows);
+      writer.writeEndElement();
+    }, reader -> readResponse(reader, rows));
+  }
+
+  static void writeCreateRequest(XMLStreamWriter writer, String dataExtensionKey,
+                                 List<ETDataExtensionRow> rows) throws XMLStreamException {
+    StreamingSoapClient.writeRequestStart(writer, "CreateRequest");
+    writer.writeEmptyElement("Options");
+    writeRows(writer, dataExtensionKey, rows);
+    writer.writeEndElement();
+  }
+
+  private static void writeRows(XMLStreamWriter writer, String dataExtensionKey,
+                                List<ETDataExtensionRow> rows) throws XMLStreamException {
+    for (ETDataExtensionRow row : rows) {
+      writer.writeStartElement("Objects");
+      writer.writeAttribute("xsi", StreamingSoapClient.XSI_NS, "type", "DataExtensionObject");
+      StreamingSoapClient.writeElement(writer, "CustomerKey", dataExtensionKey);
+      writer.writeStartElement("Properties");
+      for (Map.Entry<String, String> column : row.getColumns().entrySet()) {
+        writer.writeStartElement("Property");
+        StreamingSoapClient.writeElement(writer, "Name", column.getKey());
+        // like the SDK objects, a null value is left out of the request
+        if (column.getValue() != null) {
+          StreamingSoapClient.writeElement(writer, "Value", column.getValue());
+        }
+        writer.writeEndElement();
+      }
+      writer.writeEndElement();
+      writer.writeEndElement();
+    }
+  }
+
+  private static ETResponse<ETDataExtensionRow> readResponse(XMLStreamReader reader,
+                                                             List<ETDataExtensionRow> rows)
+    throws XMLStreamException {
+    ETResponse<ETDataExtensionRow> response = new ETResponse<>();
+    int index = 0;
+    while (StreamingSoapClient.nextElement(reader)) {
+      switch (reader.getLocalName()) {
+        case "Results":
+          ETResult<ETDataExtensionRow> result = readResult(reader, rows);
+          // results come in the order of the objects when the ordinal is missing
+          if (result.getObject() == null && index < rows.size()) {
+            result.setObject(rows.get(index));
+          }
+          response.addResult(result);
+          index++;
+          break;
+        case "RequestID":
+          response.setRequestId(reader.getElementText());
+          break;
+        case "OverallStatus":
+          String overallStatus = reader.getElementText();
+          response.setStatus(getStatus(overallStatus));
+          response.setResponseCode(overallStatus);
+          response.setResponseMessage(overallStatus);
+          break;
+        default:
+          StreamingSoapClient.skipElement(reader);
+      }
+    }
+    return response;
+  }
+
+  private static ETResult<ETDataExtensionRow> readResult(XMLStreamReader reader, List<ETDataExtensionRow> rows)
+    throws XMLStreamException {
+    ETResult<ETDataExtensionRow> result = new ETResult<>();
+    while (StreamingSoapClient.nextElement(reader)) {
+      switch (reader.getLocalName()) {
+        case "StatusCode":
+          String statusCode = reader.getElementText();
+          result.setStatus(getStatus(statusCode));
+          result.setResponseCode(statusCode);
+          break;
+        case "StatusMessage":
+          result.setResponseMessage(reader.getElementText());
+          break;
+        case "ErrorCode":
+          String errorCode = reader.getElementText().trim();
+          result.setErrorCode(errorCode.isEmpty() ? null : Integer.valueOf(errorCode));
+          break;
+        case "ErrorMessage":
+          result.setErrorMessage(reader.getElementText());
+          break;
+        case "OrdinalID":
+          int ordinal = Integer.parseInt(reader.getElementText().trim());
+          if (ordinal >= 0 && ordinal < rows.size()) {
+            result.setObject(rows.get(ordinal));
+          }
+          break;
+        default:
+          StreamingSoapClient.skipElement(reader);
+      }
+    }
+    return result;
+  }
+
+  @Nullable
+  private static ETResult.Status getStatus(String status) {
+    if ("OK".equals(status)) {
+      return ETResult.Status.OK;
+    }
+    return "Error".equals(status) ? ETResult.Status.ERROR : null;
+  }
+
+  private static ETResponse<ETDataExtensionRow> emptyResponse() {
+    ETResponse<ETDataExtensionRow> response = new ETResponse<>();
+    response.setStatus(ETResult.Status.OK);
+    return response;
+  }
+}
@@ -49,6 +49,13 @@ public class MarketingCloudConf extends SalesforceMarketingCloudBaseConfig {
   public static final String COLUMN_MAPPING = "columnMapping";
   public static final String REPLACE_WITH_SPACES = "replaceWithSpaces";
   public static final String TRUNCATE_TEXT = "truncateText";
+  public static final String MAX_IN_FLIGHT_BATCHES = "maxInFlightBatches";
+  public static final String MAX_RETRIES = "maxRetries";
+  public static final String ADAPTIVE_BATCH_SIZE = "adaptiveBatchSize";
+  public static final String MIN_BATCH_SIZE = "minBatchSize";
+  public static final String MAX_BATCH_PAYLOAD_SIZE = "maxBatchPayloadSize";
+  public static final String TARGET_BATCH_LATENCY = "targetBatchLatency";
+  public static final String STREAMING_REQUESTS = "streamingRequests";
 
   @Macro
   @Name(DATA_EXTENSION)
@@ -91,6 +98,54 @@ public class MarketingCloudConf extends SalesforceMarketingCloudBaseConfig {
   @Description("Whether to truncate text that is longer than the max length specified in the data extension column.")
   private Boolean truncateText;
 
+  @Macro
+  @Nullable
+  @Name(MAX_IN_FLIGHT_BATCHES)
+  @Description("Maximum number of batches each task sends to the Marketing Cloud API at the same time. " +
+    "Defaults to 1, which sends a batch only once the previous one has completed.")
+  private Integer maxInFlightBatches;
+
+  @Macro
+  @Nullable
+  @Name(MAX_RETRIES)
+  @Description("Maximum number of times the records of a batch that failed for a transient reason, such as a " +
+    "timeout, are sent again. Defaults to 3.")
+  private Integer maxRetries;
+
+  @Macro
+  @Nullable
+  @Name(ADAPTIVE_BATCH_SIZE)
+  @Description("Whether to size batches based on how long the Marketing Cloud API takes to process them. " +
+    "When enabled, the batch size varies between the min and max batch sizes.")
+  private Boolean adaptiveBatchSize;
+
+  @Macro
+  @Nullable
+  @Name(MIN_BATCH_SIZE)
+  @Description("Minimum number of records to write in a single call when adaptive batch sizing is enabled.")
+  private Integer minBatchSize;
+
+  @Macro
+  @Nullable
+  @Name(MAX_BATCH_PAYLOAD_SIZE)
+  @Description("Maximum estimated size in kilobytes of the records written in a single call when adaptive batch " +
+    "sizing is enabled.")
+  private Integer maxBatchPayloadSize;
+
+  @Macro
+  @Nullable
+  @Name(TARGET_BATCH_LATENCY)
+  @Description("Number of seconds a single call is expected to take when adaptive batch sizing is enabled. " +
+    "Batches grow while calls are faster than this and shrink when calls are slower.")
+  private Integer targetBatchLatency;
+
+  @Macro
+  @Nullable
+  @Name(STREAMING_REQUESTS)
+  @Description("Whether to write records directly into the requests sent to the Marketing Cloud API, instead of " +
+    "building each request in memory first.")
+  private Boolean streamingRequests;
+
   @VisibleForTesting
   public MarketingCloudConf(String referenceName, String clientId, String clientSecret, String dataExtension,
                             String authEndpoint,
@@ -116,6 +171,34 @@ public class MarketingCloudConf extends SalesforceMarketingCloudBaseConfig {
     return maxBatchSize == null ? 500 : maxBatchSize;
   }
 
+  int getMaxInFlightBatches() {
+    return maxInFlightBatches == null ? 1 : maxInFlightBatches;
+  }
+
+  int getMaxRetries() {
+    return maxRetries == null ? RowRetryPolicy.DEFAULT_MAX_RETRIES : maxRetries;
+  }
+
+  boolean useAdaptiveBatchSize() {
+    return adaptiveBatchSize == null ? false : adaptiveBatchSize;
+  }
+
+  int getMinBatchSize() {
+    return minBatchSize == null ? 50 : minBatchSize;
+  }
+
+  int getMaxBatchPayloadSize() {
+    return maxBatchPayloadSize == null ? 2048 : maxBatchPayloadSize;
+  }
+
+  int getTargetBatchLatency() {
+    return targetBatchLatency == null ? 30 : targetBatchLatency;
+  }
+
+  boolean useStreamingRequests() {
+    return streamingRequests == null ? false : streamingRequests;
+  }
+
   boolean shouldFailOnError() {
     return failOnError == null ? false : failOnError;
   }
@@ -136,6 +219,8 @@ public class MarketingCloudConf extends SalesforceMarketingCloudBaseConfig {
     Set<String> fieldNames = originalSchema == null ? Collections.emptySet() :
       originalSchema.getFields().stream().map(Schema.Field::getName).collect(Collectors.toSet());
     Map<String, String> mapping = new HashMap<>();
+    // Fetched once for all mapped columns
+    DataExtensionInfo dataExtensionInfo = null;
 
     if (columnMapping != null) {
       for (String kv : columnMapping.split(";")) {
@@ -149,11 +234,15 @@ public class MarketingCloudConf extends SalesforceMarketingCloudBaseConfig {
         if (fieldNames.contains(parts[0])) {
           if (getConnection().shouldConnect()) {
             try {
-              DataExtensionClient client = DataExtensionClient.create(dataExtension, getConnection().getClientId(),
-                                                                      getConnection().getClientSecret(),
-                                                                      getConnection().getAuthEndpoint(),
-                                                                      getConnection().getSoapEndpoint());
-              if (client.getDataExtensionInfo().getColumn(parts[1]) != null) {
+              if (dataExtensionInfo == null) {
+                DataExtensionClient client = DataExtensionClient.create(dataExtension, getConnection().getClientId(),
+                                                                        getConnection().getClientSecret(),
+                                                                        getConnection().getAuthEndpoint(),
+                                                                        getConnection().getSoapEndpoint());
+                client.setSchemaCache(getSchemaCache());
+                dataExtensionInfo = client.getDataExtensionInfo();
+              }
+              if (dataExtensionInfo.getColumn(parts[1]) != null) {
                 mapping.put(parts[0], parts[1]);
               } else {
                 collector.addFailure(String.format("Invalid data extension column name: %s", parts[1]),
@@ -190,6 +279,8 @@ public class MarketingCloudConf extends SalesforceMarketingCloudBaseConfig {
   }
 
   public void validate(@Nullable Schema inputSchema, FailureCollector collector) {
+    validateSchemaCache(collector);
+    validateRateLimits(collector);
     if (inputSchema == null) {
       return;
     }
@@ -200,6 +291,7 @@ public class MarketingCloudConf extends SalesforceMarketingCloudBaseConfig {
                                                                 getConnection().getClientSecret(),
                                                                 getConnection().getAuthEndpoint(),
                                                                 getConnection().getSoapEndpoint());
+        client.setSchemaCache(getSchemaCache());
         client.validateSchemaCompatibility(inputSchema, collector);
       } catch (ETSdkException e) {
         collector.addFailure("Error while validating Marketing Cloud client: " + e.getMessage(), null)
@@ -213,5 +305,43 @@ public class MarketingCloudConf extends SalesforceMarketingCloudBaseConfig {
                              "The batch size must be at least 1.").withConfigProperty(BATCH_SIZE);
       }
     }
+    if (!containsMacro(MAX_IN_FLIGHT_BATCHES) && getMaxInFlightBatches() < 1) {
+      collector.addFailure(String.format("Invalid number of in-flight batches '%d'.", getMaxInFlightBatches()),
+                           "The number of in-flight batches must be at least 1.")
+        .withConfigProperty(MAX_IN_FLIGHT_BATCHES);
+    }
+    if (!containsMacro(MAX_RETRIES) && getMaxRetries() < 0) {
+      collector.addFailure(String.format("Invalid number of retries '%d'.", getMaxRetries()),
+                           "The number of retries must be at least 0.")
+        .withConfigProperty(MAX_RETRIES);
+    }
+    if (!containsMacro(ADAPTIVE_BATCH_SIZE) && useAdaptiveBatchSize()) {
+      validateAdaptiveBatchSize(collector);
+    }
+  }
+
+  private void validateAdaptiveBatchSize(FailureCollector collector) {
+    if (!containsMacro(MIN_BATCH_SIZE)) {
+      int minSize = getMinBatchSize();
+      if (minSize < 1) {
+        collector.addFailure(String.format("Invalid min batch size '%d'.", minSize),
+                             "The min batch size must be at least 1.").withConfigProperty(MIN_BATCH_SIZE);
+      } else if (!containsMacro(BATCH_SIZE) && minSize > getMaxBatchSize()) {
+        collector.addFailure(String.format("Min batch size '%d' is larger than the max batch size '%d'.",
+                                           minSize, getMaxBatchSize()),
+                             "The min batch size must not be larger than the max batch size.")
+          .withConfigProperty(MIN_BATCH_SIZE).withConfigProperty(BATCH_SIZE);
+      }
+    }
+    if (!containsMacro(MAX_BATCH_PAYLOAD_SIZE) && getMaxBatchPayloadSize() < 1) {
+      collector.addFailure(String.format("Invalid max batch payload size '%d'.", getMaxBatchPayloadSize()),
+                           "The max batch payload size must be at least 1 kilobyte.")
+        .withConfigProperty(MAX_BATCH_PAYLOAD_SIZE);
+    }
+    if (!containsMacro(TARGET_BATCH_LATENCY) && getTargetBatchLatency() < 1) {
+      collector.addFailure(String.format("Invalid target batch latency '%d'.", getTargetBatchLatency()),
+                           "The target batch latency must be at least 1 second.")
+        .withConfigProperty(TARGET_BATCH_LATENCY);
+    }
   }
 }
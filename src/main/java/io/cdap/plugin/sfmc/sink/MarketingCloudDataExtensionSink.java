@@ -30,6 +30,8 @@ import io.cdap.cdap.etl.api.Engine;
 import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.cdap.etl.api.PipelineConfigurer;
 import io.cdap.cdap.etl.api.StageConfigurer;
+import io.cdap.cdap.etl.api.StageContext;
+import io.cdap.cdap.etl.api.StageMetrics;
 import io.cdap.cdap.etl.api.batch.BatchRuntimeContext;
 import io.cdap.cdap.etl.api.batch.BatchSink;
 import io.cdap.cdap.etl.api.batch.BatchSinkContext;
@@ -37,6 +39,7 @@ import io.cdap.cdap.etl.api.lineage.field.FieldOperation;
 import io.cdap.cdap.etl.api.lineage.field.FieldTransformOperation;
 import io.cdap.cdap.etl.api.lineage.field.FieldWriteOperation;
 import io.cdap.plugin.common.LineageRecorder;
+import io.cdap.plugin.sfmc.common.MarketingCloudMetrics;
 import org.apache.hadoop.io.NullWritable;
 
 import java.util.ArrayList;
@@ -44,6 +47,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -56,6 +60,8 @@ public class MarketingCloudDataExtensionSink extends BatchSink<StructuredRecord,
   private final MarketingCloudConf conf;
   private Map<String, String> columnMapping;
   private Schema mappedSchema;
+  private String metricsKey;
+  private StageMetrics stageMetrics;
 
   public MarketingCloudDataExtensionSink(MarketingCloudConf conf) {
     this.conf = conf;
@@ -71,7 +77,8 @@ public class MarketingCloudDataExtensionSink extends BatchSink<StructuredRecord,
     conf.validate(mappedSchema, collector);
     // without this, there will be many confusing errors because a task will successfully insert some records,
     // an unrelated record will cause a failure, causing the task to be retried,
-    // then the originally successful record will cause a failure due to duplicate primary key
+    // then the originally successful record will cause a failure due to duplicate primary key.
+    // No task of the pipeline is retried then, so the checkpoints of the sources are never read.
     if (conf.shouldFailOnError()) {
       if (pipelineConfigurer.getEngine() == Engine.SPARK) {
         pipelineConfigurer.setPipelineProperties(Collections.singletonMap("spark.task.maxFailures", "1"));
@@ -127,10 +134,31 @@ public class MarketingCloudDataExtensionSink extends BatchSink<StructuredRecord,
         outputConfig.put(DataExtensionOutputFormat.AUTH_ENDPOINT, conf.getConnection().getAuthEndpoint());
         outputConfig.put(DataExtensionOutputFormat.SOAP_ENDPOINT, conf.getConnection().getSoapEndpoint());
         outputConfig.put(DataExtensionOutputFormat.MAX_BATCH_SIZE, String.valueOf(conf.getMaxBatchSize()));
+        outputConfig.put(DataExtensionOutputFormat.MAX_IN_FLIGHT_BATCHES,
+                         String.valueOf(conf.getMaxInFlightBatches()));
+        outputConfig.put(DataExtensionOutputFormat.MAX_RETRIES, String.valueOf(conf.getMaxRetries()));
+        if (conf.useAdaptiveBatchSize()) {
+          outputConfig.put(DataExtensionOutputFormat.ADAPTIVE_BATCH_SIZE, "true");
+          outputConfig.put(DataExtensionOutputFormat.MIN_BATCH_SIZE, String.valueOf(conf.getMinBatchSize()));
+          outputConfig.put(DataExtensionOutputFormat.MAX_BATCH_PAYLOAD_BYTES,
+                           String.valueOf(conf.getMaxBatchPayloadSize() * 1024L));
+          outputConfig.put(DataExtensionOutputFormat.TARGET_BATCH_LATENCY_MILLIS,
+                           String.valueOf(TimeUnit.SECONDS.toMillis(conf.getTargetBatchLatency())));
+        }
+        outputConfig.put(DataExtensionOutputFormat.STREAMING_REQUESTS, String.valueOf(conf.useStreamingRequests()));
         outputConfig.put(DataExtensionOutputFormat.FAIL_ON_ERROR, String.valueOf(conf.shouldFailOnError()));
         outputConfig.put(DataExtensionOutputFormat.OPERATION, conf.getOperation().name());
         outputConfig.put(DataExtensionOutputFormat.DATA_EXTENSION_KEY, conf.getDataExtension());
         outputConfig.put(DataExtensionOutputFormat.TRUNCATE, String.valueOf(conf.shouldTruncateText()));
+        outputConfig.put(DataExtensionOutputFormat.METRICS_KEY, metricsKey(batchSinkContext));
+        outputConfig.put(DataExtensionOutputFormat.MAX_REQUESTS_PER_SECOND,
+                         String.valueOf(conf.getMaxRequestsPerSecond()));
+        outputConfig.put(DataExtensionOutputFormat.MAX_CONCURRENT_REQUESTS,
+                         String.valueOf(conf.getMaxConcurrentRequests()));
+        if (conf.getSchemaCacheDir() != null) {
+          outputConfig.put(DataExtensionOutputFormat.SCHEMA_CACHE_DIR, conf.getSchemaCacheDir());
+          outputConfig.put(DataExtensionOutputFormat.SCHEMA_CACHE_TTL, String.valueOf(conf.getSchemaCacheTTL()));
+        }
         return outputConfig;
       }
     }));
@@ -144,6 +172,21 @@ public class MarketingCloudDataExtensionSink extends BatchSink<StructuredRecord,
     columnMapping = conf.getColumnMapping(inputSchema, collector);
     collector.getOrThrowException();
     mappedSchema = getMappedSchema(columnMapping, inputSchema);
+    metricsKey = metricsKey(context);
+    stageMetrics = context.getMetrics();
+    MarketingCloudMetrics.forStage(metricsKey).bind(stageMetrics);
+  }
+
+  @Override
+  public void destroy() {
+    MarketingCloudMetrics.release(metricsKey, stageMetrics);
+    super.destroy();
+  }
+
+  @Override
+  public void onRunFinish(boolean succeeded, BatchSinkContext context) {
+    super.onRunFinish(succeeded, context);
+    MarketingCloudMetrics.release(metricsKey(context), context.getMetrics());
   }
 
   @Override
@@ -162,6 +205,11 @@ public class MarketingCloudDataExtensionSink extends BatchSink<StructuredRecord,
     emitter.emit(new KeyValue<>(NullWritable.get(), record));
   }
 
+  private static String metricsKey(StageContext context) {
+    return MarketingCloudMetrics.stageKey(context.getPipelineName(), context.getLogicalStartTime(),
+                                          context.getStageName());
+  }
+
   Schema getMappedSchema(Map<String, String> columnMapping, Schema originalSchema) {
     if (columnMapping.isEmpty()) {
       return originalSchema;
@@ -21,78 +21,122 @@ import com.exacttarget.fuelsdk.ETDataExtensionRow;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 
-import java.math.BigDecimal;
-import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.function.BiFunction;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Converts StructuredRecords into DataExtensionRows.
+ *
+ * The conversion is planned once per input schema: every field that maps to a data extension column gets a slot
+ * holding the field name, the column name and a formatter specialized for the field type and column length, so
+ * converting a record only reads and formats its values.
  */
 public class RecordDataExtensionRowConverter {
   private final DataExtensionInfo dataExtensionInfo;
   private final DateTimeFormatter dateTimeFormatter;
-  private final BiFunction<String, String, String> truncateFunction;
+  private final boolean shouldTruncate;
+  // Plan for the schema of the last converted record, all the records of a stage usually share the same schema
+  private Schema planSchema;
+  private String[] fieldNames;
+  private String[] columnNames;
+  private ValueFormatter[] formatters;
 
   public RecordDataExtensionRowConverter(DataExtensionInfo dataExtensionInfo, boolean shouldTruncate) {
     this.dataExtensionInfo = dataExtensionInfo;
     this.dateTimeFormatter = DateTimeFormatter.ofPattern("MM/DD/yyyy");
-    this.truncateFunction = !shouldTruncate ? (fieldName, val) -> val :
-      (fieldName, val) -> {
-        ETDataExtensionColumn column = dataExtensionInfo.getColumn(fieldName);
-        if (column == null || column.getLength() == null) {
-          return val;
-        }
-        int maxLength = column.getLength();
-        return val.length() > maxLength ? val.substring(0, maxLength) : val;
-      };
+    this.shouldTruncate = shouldTruncate;
   }
 
   public ETDataExtensionRow transform(StructuredRecord record) {
+    Schema schema = record.getSchema();
+    if (schema != planSchema && !schema.equals(planSchema)) {
+      plan(schema);
+    }
     ETDataExtensionRow row = new ETDataExtensionRow();
     row.setDataExtensionKey(dataExtensionInfo.getExternalKey());
-    for (Schema.Field field : record.getSchema().getFields()) {
-      String fieldName = field.getName();
-      if (!dataExtensionInfo.hasColumn(fieldName)) {
-        continue;
+    for (int i = 0; i < fieldNames.length; i++) {
+      Object val = record.get(fieldNames[i]);
+      if (val != null) {
+        row.setColumn(columnNames[i], formatters[i].format(record, fieldNames[i], val));
       }
+    }
+    return row;
+  }
 
+  private void plan(Schema schema) {
+    List<Schema.Field> fields = schema.getFields();
+    String[] plannedFields = new String[fields.size()];
+    String[] plannedColumns = new String[fields.size()];
+    ValueFormatter[] plannedFormatters = new ValueFormatter[fields.size()];
+    int size = 0;
+    for (Schema.Field field : fields) {
+      ETDataExtensionColumn column = dataExtensionInfo.getColumn(field.getName());
+      if (column == null) {
+        continue;
+      }
       Schema fieldSchema = field.getSchema();
       if (fieldSchema.isNullable()) {
         fieldSchema = fieldSchema.getNonNullable();
       }
-      Object val = record.get(fieldName);
-      if (val == null) {
-        continue;
-      }
+      plannedFields[size] = field.getName();
+      plannedColumns[size] = column.getName();
+      plannedFormatters[size] = createFormatter(field.getName(), fieldSchema, column);
+      size++;
+    }
+    fieldNames = Arrays.copyOf(plannedFields, size);
+    columnNames = Arrays.copyOf(plannedColumns, size);
+    formatters = Arrays.copyOf(plannedFormatters, size);
+    planSchema = schema;
+  }
 
-      Schema.LogicalType logicalType = fieldSchema.getLogicalType();
-      if (logicalType != null) {
-        row.setColumn(fieldName, getLogicalType(logicalType, fieldName, record));
-        continue;
+  private ValueFormatter createFormatter(String fieldName, Schema fieldSchema, ETDataExtensionColumn column) {
+    Schema.LogicalType logicalType = fieldSchema.getLogicalType();
+    if (logicalType != null) {
+      switch (logicalType) {
+        case DATE:
+          return (record, name, val) -> record.getDate(name).format(dateTimeFormatter);
+        case DECIMAL:
+          return (record, name, val) -> record.getDecimal(name).toString();
+        default:
+          // should never happen, as schema is supposed to be validated before this
+          return unsupported(String.format("Field '%s' is of unsupported type '%s'", fieldName, logicalType));
       }
-
-      Schema.Type fieldType = fieldSchema.getType();
-      row.setColumn(fieldName, getType(fieldType, fieldName, val));
     }
-    return row;
-  }
 
-  private String getLogicalType(Schema.LogicalType logicalType, String fieldName, StructuredRecord record) {
-    switch (logicalType) {
-      case DATE:
-        LocalDate date = record.getDate(fieldName);
-        return date.format(dateTimeFormatter);
-      case DECIMAL:
-        BigDecimal decimal = record.getDecimal(fieldName);
-        return decimal.toString();
+    Schema.Type type = fieldSchema.getType();
+    switch (type) {
+      case BOOLEAN:
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+        return (record, name, val) -> String.valueOf(val);
+      case STRING:
+        if (!shouldTruncate || column.getLength() == null) {
+          return (record, name, val) -> (String) val;
+        }
+        int maxLength = column.getLength();
+        return (record, name, val) -> truncate((String) val, maxLength);
+      case ENUM:
+        return (record, name, val) -> ((Enum) val).name();
       default:
         // should never happen, as schema is supposed to be validated before this
-        throw new IllegalStateException(
-          String.format("Field '%s' is of unsupported type '%s'", fieldName, logicalType));
+        return unsupported(String.format("Field '%s' is of unsupported type '%s'", fieldName, type));
     }
   }
 
+  private static ValueFormatter unsupported(String message) {
+    // only fails for records that have a value, like the conversion did before it was planned
+    return (record, name, val) -> {
+      throw new IllegalStateException(message);
+    };
+  }
+
+  private static String truncate(String val, int maxLength) {
+    return val.length() > maxLength ? val.substring(0, maxLength) : val;
+  }
+
    String getType(Schema.Type type, String fieldName, Object val) {
     switch (type) {
       case BOOLEAN:
@@ -103,7 +147,8 @@ public class RecordDataExtensionRowConverter {
         return String.valueOf(val);
       case STRING:
         String strVal = (String) val;
-        return truncateFunction.apply(fieldName, strVal);
+        ETDataExtensionColumn column = shouldTruncate ? dataExtensionInfo.getColumn(fieldName) : null;
+        return column == null || column.getLength() == null ? strVal : truncate(strVal, column.getLength());
       case ENUM:
         return ((Enum) val).name();
       default:
@@ -112,4 +157,11 @@ public class RecordDataExtensionRowConverter {
           String.format("Field '%s' is of unsupported type '%s'", fieldName, type));
     }
   }
+
+  /**
+   * Formats a non-null field value as the text sent for its data extension column.
+   */
+  private interface ValueFormatter {
+    String format(StructuredRecord record, String fieldName, Object val);
+  }
 }
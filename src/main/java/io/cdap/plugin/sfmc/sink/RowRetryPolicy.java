@@ -0,0 +1,206 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.sink;
+
+import com.exacttarget.fuelsdk.ETResult;
+import com.google.common.annotations.VisibleForTesting;
+import io.cdap.plugin.sfmc.common.ApiRateLimiter;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * Decides which rows of a data extension batch are sent again after a failure.
+ *
+ * Failures are classified from the error of each row result, or from the exception when the call failed as a whole.
+ * Transient failures, such as timeouts, deadlocks and throttling, are retried after an exponentially growing, jittered
+ * delay. Duplicate key errors, told apart by their error code and message, tell that a row already exists, which
+ * after a transient failure of an insert means the earlier attempt did go through. Every other failure is permanent
+ * and is not retried.
+ *
+ * Besides the number of retries of a batch, retries are bounded by a budget shared by all batches of the writer: each
+ * row sent adds a tenth of a token and each row sent again takes one. A task whose calls mostly fail therefore stops
+ * retrying once the initial budget is spent, instead of multiplying the load on the API.
+ */
+class RowRetryPolicy {
+  static final int DEFAULT_MAX_RETRIES = 3;
+  private static final long INITIAL_BACKOFF_MS = 500;
+  private static final long MAX_BACKOFF_MS = TimeUnit.SECONDS.toMillis(30);
+  private static final double INITIAL_BUDGET = 100;
+  private static final double MAX_BUDGET = 1000;
+  // tokens added to the budget for every row sent
+  private static final double BUDGET_PER_ROW = 0.1;
+
+  // error code of the rows rejected by the data extension, together with the message of a duplicate primary key
+  private static final int DUPLICATE_ERROR_CODE = 2;
+  private static final Pattern DUPLICATE_ERROR = Pattern.compile(
+    "violation of primary key|duplicate key", Pattern.CASE_INSENSITIVE);
+  private static final Pattern TRANSIENT_ERROR = Pattern.compile(
+    "time ?out|timed out|deadlock|try again|temporar|unavailable|connection (reset|refused|closed)" +
+      "|status (5\\d\\d)|internal server error", Pattern.CASE_INSENSITIVE);
+
+  /**
+   * How a failed row is handled.
+   */
+  enum Failure {
+    /**
+     * The row may be written by sending it again.
+     */
+    TRANSIENT,
+    /**
+     * The row was rejected because a row with the same primary key exists.
+     */
+    DUPLICATE,
+    /**
+     * The row cannot be written as is.
+     */
+    PERMANENT
+  }
+
+  private final int maxRetries;
+  private final long initialBackoffMillis;
+  private final long maxBackoffMillis;
+  private final Random random;
+
+  // guarded by this
+  private double budget = INITIAL_BUDGET;
+
+  RowRetryPolicy(int maxRetries) {
+    this(maxRetries, INITIAL_BACKOFF_MS, MAX_BACKOFF_MS, new Random());
+  }
+
+  @VisibleForTesting
+  RowRetryPolicy(int maxRetries, long initialBackoffMillis, long maxBackoffMillis, Random random) {
+    this.maxRetries = Math.max(0, maxRetries);
+    this.initialBackoffMillis = initialBackoffMillis;
+    this.maxBackoffMillis = maxBackoffMillis;
+    this.random = random;
+  }
+
+  int getMaxRetries() {
+    return maxRetries;
+  }
+
+  /**
+   * Classifies the error of a row result.
+   */
+  static Failure classify(ETResult<?> result) {
+    String message = result.getErrorMessage() == null ? result.getResponseMessage() : result.getErrorMessage();
+    if (message == null) {
+      return Failure.PERMANENT;
+    }
+    if (result.getErrorCode() != null && result.getErrorCode() == DUPLICATE_ERROR_CODE
+      && DUPLICATE_ERROR.matcher(message).find()) {
+      return Failure.DUPLICATE;
+    }
+    if (TRANSIENT_ERROR.matcher(message).find() || ApiRateLimiter.isThrottlingFault(new Exception(message))) {
+      return Failure.TRANSIENT;
+    }
+    return Failure.PERMANENT;
+  }
+
+  /**
+   * Classifies the exception of a call that failed for the whole batch.
+   */
+  static Failure classify(Throwable error) {
+    if (ApiRateLimiter.isThrottlingFault(error)) {
+      return Failure.TRANSIENT;
+    }
+    for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+      if (cause instanceof IOException) {
+        return Failure.TRANSIENT;
+      }
+      if (cause.getMessage() != null && TRANSIENT_ERROR.matcher(cause.getMessage()).find()) {
+        return Failure.TRANSIENT;
+      }
+      if (cause.getCause() == cause) {
+        break;
+      }
+    }
+    return Failure.PERMANENT;
+  }
+
+  /**
+   * Records rows that were sent, which adds to the retry budget.
+   */
+  synchronized void onSent(int rows) {
+    budget = Math.min(MAX_BUDGET, budget + rows * BUDGET_PER_ROW);
+  }
+
+  /**
+   * Takes the budget needed to send the rows again.
+   *
+   * @return whether the budget allowed it, in which case the rows should be sent again
+   */
+  synchronized boolean tryRetry(int rows) {
+    if (budget < rows) {
+      return false;
+    }
+    budget -= rows;
+    return true;
+  }
+
+  /**
+   * @param retry the retry about to be made, starting at 1
+   * @return how long to wait before the retry, in milliseconds
+   */
+  long getBackoffMillis(int retry) {
+    long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(retry - 1, 20));
+    return backoff / 2 + (long) (random.nextDouble() * (backoff / 2 + 1));
+  }
+
+  /**
+   * Waits before sending rows again.
+   *
+   * @throws IOException if the thread was interrupted while waiting
+   */
+  void backOff(int retry) throws IOException {
+    long millis = getBackoffMillis(retry);
+    if (millis <= 0) {
+      return;
+    }
+    try {
+      TimeUnit.MILLISECONDS.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting to send failed rows again", e);
+    }
+  }
+
+  @VisibleForTesting
+  synchronized double getBudget() {
+    return budget;
+  }
+
+  /**
+   * @return a description of the failure of a row result, for logging
+   */
+  static String describe(@Nullable ETResult<?> result) {
+    if (result == null) {
+      return "";
+    }
+    String errorMessage = result.getErrorMessage() == null ? "" : result.getErrorMessage();
+    if (result.getErrorCode() != null) {
+      errorMessage = String.format("[Error code %d] %s", result.getErrorCode(), errorMessage);
+    }
+    return errorMessage;
+  }
+}
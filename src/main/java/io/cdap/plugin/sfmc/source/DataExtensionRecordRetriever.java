@@ -0,0 +1,248 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.source;
+
+import com.exacttarget.fuelsdk.ETExpression;
+import com.exacttarget.fuelsdk.ETSdkException;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.sfmc.common.StreamingSoapClient;
+import io.cdap.plugin.sfmc.source.util.FilterExpressions;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudObjectInfo;
+import io.cdap.plugin.sfmc.source.util.RecordConversionPlan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Retrieves the rows of a data extension with StAX, converting each row into a record while the response is read.
+ *
+ * The SDK builds the JAXB objects of a whole page and then an {@link com.exacttarget.fuelsdk.ETDataExtensionRow} for
+ * each of them before the rows are converted. Here the property values of a row are collected into the slots of the
+ * conversion plan and the record is built as soon as the end of the row is read, so only the records are kept.
+ */
+final class DataExtensionRecordRetriever {
+  private static final String MORE_DATA_AVAILABLE = "MoreDataAvailable";
+  private static final Map<ETExpression.Operator, String> SIMPLE_OPERATORS = new EnumMap<>(ETExpression.Operator.class);
+
+  static {
+    SIMPLE_OPERATORS.put(ETExpression.Operator.EQUALS, "equals");
+    SIMPLE_OPERATORS.put(ETExpression.Operator.NOT_EQUALS, "notEquals");
+    SIMPLE_OPERATORS.put(ETExpression.Operator.LESS_THAN, "lessThan");
+    SIMPLE_OPERATORS.put(ETExpression.Operator.LESS_THAN_OR_EQUALS, "lessThanOrEqual");
+    SIMPLE_OPERATORS.put(ETExpression.Operator.GREATER_THAN, "greaterThan");
+    SIMPLE_OPERATORS.put(ETExpression.Operator.GREATER_THAN_OR_EQUALS, "greaterThanOrEqual");
+    SIMPLE_OPERATORS.put(ETExpression.Operator.IS_NULL, "isNull");
+    SIMPLE_OPERATORS.put(ETExpression.Operator.IS_NOT_NULL, "isNotNull");
+    SIMPLE_OPERATORS.put(ETExpression.Operator.BETWEEN, "between");
+    SIMPLE_OPERATORS.put(ETExpression.Operator.IN, "IN");
+    SIMPLE_OPERATORS.put(ETExpression.Operator.LIKE, "like");
+  }
+
+  private final String dataExtensionKey;
+  private final List<String> columnNames;
+  private final Map<String, Integer> slots;
+  private final RecordConversionPlan conversionPlan;
+  private final Schema schema;
+  private final String tableNameField;
+  private final String tableName;
+
+  /**
+   * Constructor for DataExtensionRecordRetriever.
+   *
+   * @param dataExtensionKey The data extension key
+   * @param objectInfo       The object info of the data extension
+   * @param conversionPlan   The conversion plan built for the object info
+   * @param schema           The schema of the records
+   * @param tableNameField   The field the table name is set on, null if the records have no such field
+   * @param tableName        The table name set on the records
+   */
+  DataExtensionRecordRetriever(String dataExtensionKey, MarketingCloudObjectInfo objectInfo,
+                               RecordConversionPlan conversionPlan, Schema schema,
+                               @Nullable String tableNameField, String tableName) {
+    this.dataExtensionKey = dataExtensionKey;
+    this.conversionPlan = conversionPlan;
+    this.schema = schema;
+    this.tableNameField = tableNameField;
+    this.tableName = tableName;
+    List<Schema.Field> fields = objectInfo.getSchema().getFields();
+    this.columnNames = new ArrayList<>(fields.size());
+    this.slots = new HashMap<>();
+    for (int i = 0; i < fields.size(); i++) {
+      String columnName = objectInfo.lookupFieldsMap(fields.get(i).getName());
+      columnNames.add(columnName);
+      slots.put(columnName, i);
+    }
+  }
+
+  /**
+   * Retrieves a page of records.
+   *
+   * @param client     The client the request is sent with
+   * @param requestId  The request id to continue, null to fetch the first page
+   * @param expression The filter of the first page
+   * @return The page of records
+   * @throws ETSdkException if the filter cannot be sent or the request failed
+   */
+  MarketingCloudPagePrefetcher.RecordPage retrieve(MarketingCloudClient client, @Nullable String requestId,
+                                                   ETExpression expression) throws ETSdkException {
+    if (requestId == null && !FilterExpressions.isEmpty(expression)) {
+      checkFilter(expression);
+    }
+    return client.callStreaming("Retrieve", writer -> writeRequest(writer, requestId, expression),
+                                this::readResponse);
+  }
+
+  void writeRequest(XMLStreamWriter writer, @Nullable String requestId,
+                    ETExpression expression) throws XMLStreamException {
+    StreamingSoapClient.writeRequestStart(writer, "RetrieveRequestMsg");
+    writer.writeStartElement("RetrieveRequest");
+    if (requestId == null) {
+      StreamingSoapClient.writeElement(writer, "ObjectType", String.format("DataExtensionObject[%s]",
+                                                                           dataExtensionKey));
+      // the columns are known from the schema, so they are not retrieved again like the SDK does
+      for (String columnName : columnNames) {
+        StreamingSoapClient.writeElement(writer, "Properties", columnName);
+      }
+      if (!FilterExpressions.isEmpty(expression)) {
+        writeFilterPart(writer, "Filter", expression);
+      }
+    } else {
+      StreamingSoapClient.writeElement(writer, "ContinueRequest", requestId);
+    }
+    writer.writeEndElement();
+    writer.writeEndElement();
+  }
+
+  MarketingCloudPagePrefetcher.RecordPage readResponse(XMLStreamReader reader)
+    throws XMLStreamException, ETSdkException {
+    List<StructuredRecord> records = new ArrayList<>();
+    Object[] values = new Object[columnNames.size()];
+    String requestId = null;
+    String overallStatus = null;
+    while (StreamingSoapClient.nextElement(reader)) {
+      switch (reader.getLocalName()) {
+        case "Results":
+          records.add(readRecord(reader, values));
+          break;
+        case "RequestID":
+          requestId = reader.getElementText();
+          break;
+        case "OverallStatus":
+          overallStatus = reader.getElementText();
+          break;
+        default:
+          StreamingSoapClient.skipElement(reader);
+      }
+    }
+    if (overallStatus != null && overallStatus.startsWith("Error")) {
+      throw new ETSdkException(String.format("Retrieve of data extension %s failed: %s", dataExtensionKey,
+                                             overallStatus));
+    }
+    return new MarketingCloudPagePrefetcher.RecordPage(records, requestId, MORE_DATA_AVAILABLE.equals(overallStatus));
+  }
+
+  private StructuredRecord readRecord(XMLStreamReader reader, Object[] values)
+    throws XMLStreamException, ETSdkException {
+    Arrays.fill(values, null);
+    while (StreamingSoapClient.nextElement(reader)) {
+      if ("Properties".equals(reader.getLocalName())) {
+        readProperties(reader, values);
+      } else {
+        StreamingSoapClient.skipElement(reader);
+      }
+    }
+    StructuredRecord.Builder recordBuilder = StructuredRecord.builder(schema);
+    if (tableNameField != null) {
+      recordBuilder.set(tableNameField, tableName);
+    }
+    try {
+      conversionPlan.convert(values, recordBuilder);
+    } catch (RuntimeException e) {
+      throw new ETSdkException(String.format("Error decoding row from data extension %s", dataExtensionKey), e);
+    }
+    return recordBuilder.build();
+  }
+
+  private void readProperties(XMLStreamReader reader, Object[] values) throws XMLStreamException {
+    while (StreamingSoapClient.nextElement(reader)) {
+      if (!"Property".equals(reader.getLocalName())) {
+        StreamingSoapClient.skipElement(reader);
+        continue;
+      }
+      String name = null;
+      String value = null;
+      while (StreamingSoapClient.nextElement(reader)) {
+        if ("Name".equals(reader.getLocalName())) {
+          name = reader.getElementText();
+        } else if ("Value".equals(reader.getLocalName()) &&
+          !"true".equals(reader.getAttributeValue(StreamingSoapClient.XSI_NS, "nil"))) {
+          value = reader.getElementText();
+        } else {
+          StreamingSoapClient.skipElement(reader);
+        }
+      }
+      Integer slot = name == null ? null : slots.get(name);
+      if (slot != null) {
+        values[slot] = value;
+      }
+    }
+  }
+
+  private static void checkFilter(ETExpression expression) throws ETSdkException {
+    ETExpression.Operator operator = expression.getOperator();
+    if (operator == ETExpression.Operator.AND || operator == ETExpression.Operator.OR) {
+      if (expression.getSubexpressions().size() != 2) {
+        throw new ETSdkException(String.format("Filter operator %s must have two operands", operator));
+      }
+      for (ETExpression subexpression : expression.getSubexpressions()) {
+        checkFilter(subexpression);
+      }
+    } else if (!SIMPLE_OPERATORS.containsKey(operator)) {
+      throw new ETSdkException(String.format("Filter operator %s is not supported", operator));
+    }
+  }
+
+  private static void writeFilterPart(XMLStreamWriter writer, String name,
+                                      ETExpression expression) throws XMLStreamException {
+    ETExpression.Operator operator = expression.getOperator();
+    writer.writeStartElement(name);
+    if (operator == ETExpression.Operator.AND || operator == ETExpression.Operator.OR) {
+      writer.writeAttribute("xsi", StreamingSoapClient.XSI_NS, "type", "ComplexFilterPart");
+      writeFilterPart(writer, "LeftOperand", expression.getSubexpressions().get(0));
+      StreamingSoapClient.writeElement(writer, "LogicalOperator", operator.name());
+      writeFilterPart(writer, "RightOperand", expression.getSubexpressions().get(1));
+    } else {
+      writer.writeAttribute("xsi", StreamingSoapClient.XSI_NS, "type", "SimpleFilterPart");
+      StreamingSoapClient.writeElement(writer, "Property", expression.getProperty());
+      StreamingSoapClient.writeElement(writer, "SimpleOperator", SIMPLE_OPERATORS.get(operator));
+      for (String value : expression.getValues()) {
+        StreamingSoapClient.writeElement(writer, "Value", value);
+      }
+    }
+    writer.writeEndElement();
+  }
+}
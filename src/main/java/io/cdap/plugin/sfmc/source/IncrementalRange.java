@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.source;
+
+import javax.annotation.Nullable;
+
+/**
+ * The range of an object read incrementally, from the watermark of the previous run to the start of this run.
+ */
+public final class IncrementalRange {
+  private final String property;
+  private final String start;
+  private final String end;
+
+  /**
+   * Constructor for IncrementalRange.
+   *
+   * @param property The date property the range applies to
+   * @param start    The inclusive lower bound, null if the object was never read before
+   * @param end      The exclusive upper bound, which becomes the watermark once the run succeeded
+   */
+  public IncrementalRange(String property, @Nullable String start, String end) {
+    this.property = property;
+    this.start = start;
+    this.end = end;
+  }
+
+  public String getProperty() {
+    return property;
+  }
+
+  @Nullable
+  public String getStart() {
+    return start;
+  }
+
+  public String getEnd() {
+    return end;
+  }
+}
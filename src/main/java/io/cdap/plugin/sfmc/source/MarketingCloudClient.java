@@ -27,6 +27,12 @@ import com.exacttarget.fuelsdk.ETFilter;
 import com.exacttarget.fuelsdk.ETResponse;
 import com.exacttarget.fuelsdk.ETSdkException;
 import com.exacttarget.fuelsdk.ETSoapObject;
+import io.cdap.plugin.sfmc.common.ApiRateLimiter;
+import io.cdap.plugin.sfmc.common.DataExtensionSchemaCache;
+import io.cdap.plugin.sfmc.common.ETClientRegistry;
+import io.cdap.plugin.sfmc.common.MarketingCloudMetrics;
+import io.cdap.plugin.sfmc.common.StreamingSoapClient;
+import io.cdap.plugin.sfmc.source.util.FilterExpressions;
 import io.cdap.plugin.sfmc.source.util.MarketingCloudColumn;
 import io.cdap.plugin.sfmc.source.util.MarketingCloudObjectInfo;
 import io.cdap.plugin.sfmc.source.util.SourceObject;
@@ -35,17 +41,24 @@ import jline.internal.Nullable;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.stream.Collectors;
 
 /**
  * Utility class that provides methods to connect to Salesforce instance.
  */
 public class MarketingCloudClient {
-  private final ETClient client;
-  private static MarketingCloudClient marketingCloudClient;
+  // Clients handed out by getOrCreate take the client from the registry on every call
+  private ETClientRegistry.ClientSupplier clientSupplier;
+  @Nullable
+  private DataExtensionSchemaCache schemaCache;
+  private MarketingCloudMetrics metrics = MarketingCloudMetrics.forStage(null);
+  private ApiRateLimiter rateLimiter = new ApiRateLimiter();
+  @Nullable
+  private ApiRateLimiter.Limits rateLimits;
 
   MarketingCloudClient(ETClient client) {
-    this.client = client;
+    this.clientSupplier = () -> client;
   }
 
   /**
@@ -78,19 +91,72 @@ public class MarketingCloudClient {
     }
   }
 
+  /**
+   * Returns a client backed by the process wide {@link ETClientRegistry}, so the underlying {@link ETClient} and its
+   * OAuth token are shared with every other client using the same credentials.
+   *
+   * @param clientId     The Salesforce Marketing Cloud Client Id
+   * @param clientSecret The Salesforce Marketing Cloud Client Secret
+   * @param authEndpoint Auth Endpoint url for Salesforce Marketing Cloud
+   * @param soapEndpoint SOAP Endpoint url for Salesforce Marketing Cloud
+   * @return The instance of MarketingCloudClient object
+   * @throws ETSdkException if the shared client could not be created
+   */
   public static MarketingCloudClient getOrCreate(String clientId, String clientSecret, String authEndpoint,
                                                  String soapEndpoint) throws ETSdkException {
-    if (marketingCloudClient == null) {
-      marketingCloudClient = MarketingCloudClient.create(clientId, clientSecret, authEndpoint, soapEndpoint);
+    ETClientRegistry registry = ETClientRegistry.getInstance();
+    MarketingCloudClient client = new MarketingCloudClient(registry.acquire(clientId, clientSecret, authEndpoint,
+                                                                            soapEndpoint));
+    client.clientSupplier = () -> registry.acquire(clientId, clientSecret, authEndpoint, soapEndpoint,
+                                                   client.metrics);
+    client.rateLimiter = ApiRateLimiter.forClient(clientId, soapEndpoint);
+    return client;
+  }
+
+  /**
+   * Uses the given cache for the data extension columns.
+   *
+   * @param schemaCache The cache, or null to always fetch the columns
+   */
+  public void setSchemaCache(@Nullable DataExtensionSchemaCache schemaCache) {
+    this.schemaCache = schemaCache;
+  }
+
+  /**
+   * Reports the latency and size of the requests, and the token refreshes, to the given metrics.
+   *
+   * @param metrics The metrics of the stage
+   */
+  public void setMetrics(MarketingCloudMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Limits the calls made with the credentials of this client in this process, until the limits are released. The
+   * strictest limits held by the clients sharing the credentials apply.
+   *
+   * @param maxRequestsPerSecond the maximum number of calls started per second, zero for unlimited
+   * @param maxConcurrentRequests the maximum number of calls in progress at the same time, zero for unlimited
+   */
+  public void setRateLimits(double maxRequestsPerSecond, int maxConcurrentRequests) {
+    releaseRateLimits();
+    rateLimits = rateLimiter.limit(maxRequestsPerSecond, maxConcurrentRequests);
+  }
+
+  /**
+   * Releases the limits set on this client, once it makes no more calls.
+   */
+  public void releaseRateLimits() {
+    if (rateLimits != null) {
+      rateLimits.release();
+      rateLimits = null;
     }
-    return marketingCloudClient;
   }
 
   public ETResponse<ETDataExtension> retrieveDataExtensionKeys() throws ETSdkException {
-    ETResponse<ETDataExtension> response = ETDataExtension.retrieve(client, ETDataExtension.class,
-                                                                    null, // page
-                                                                    null, new ETFilter());
-    return response;
+    return call(client -> ETDataExtension.retrieve(client, ETDataExtension.class,
+                                                   null, // page
+                                                   null, new ETFilter()));
   }
 
   /**
@@ -105,14 +171,6 @@ public class MarketingCloudClient {
     }
   }
 
-  private ETExpression getExpressionfromString(String filter) throws ETSdkException {
-    if (!Util.isNullOrEmpty(filter)) {
-      return ETExpression.parse(filter);
-    } else {
-      return new ETExpression();
-    }
-  }
-
   /**
    * Fetch records for passed object from Salesforce Marketing Cloud.
    *
@@ -123,9 +181,40 @@ public class MarketingCloudClient {
   public ETResponse<? extends ETSoapObject> fetchObjectRecords(SourceObject object, @Nullable String filterStr,
                                                                @Nullable String requestId)
     throws ETSdkException {
+    return fetchObjectRecordsByExpression(object, FilterExpressions.parse(filterStr), requestId);
+  }
+
+  /**
+   * Fetch records for passed object from Salesforce Marketing Cloud.
+   *
+   * @param object The SourceObject which tells what data to be fetched from Salesforce Marketing Cloud
+   * @param expression The filter expression to filter the records
+   * @return The list of ETApiObject representing the records from requested object.
+   */
+  public ETResponse<? extends ETSoapObject> fetchObjectRecordsByExpression(SourceObject object,
+                                                                           ETExpression expression,
+                                                                           @Nullable String requestId)
+    throws ETSdkException {
     ETFilter filter = new ETFilter();
-    filter.setExpression(getExpressionfromString(filterStr));
-    return fetchObjectData(client, object.getClassRef(), filter, requestId);
+    filter.setExpression(expression);
+    return timedCall(MarketingCloudMetrics.RETRIEVE,
+                     client -> fetchObjectData(client, object.getClassRef(), filter, requestId));
+  }
+
+  /**
+   * Fetch a page of records of a read request from Salesforce Marketing Cloud. The request is only read, so the same
+   * request can be sent for every page and by several readers at once.
+   *
+   * @param request   The read request
+   * @param requestId The request id of the previous page, null to fetch the first page
+   * @return The page of records
+   * @throws ETSdkException The FuelSDKException
+   */
+  public ETResponse<? extends ETSoapObject> fetchRecords(MarketingCloudReadRequest request,
+                                                         @Nullable String requestId) throws ETSdkException {
+    return timedCall(MarketingCloudMetrics.RETRIEVE, client -> PaginationETSoapObject.customRetrieve(
+      client, request.getObjectType(), request.getInternalProperties(), request.getFilterPart(), requestId,
+      request.getObjectClass()));
   }
 
   /**
@@ -149,19 +238,45 @@ public class MarketingCloudClient {
    */
   public ETResponse<ETDataExtensionRow> fetchDataExtensionRecords(String dataExtensionKey, @Nullable String filterStr,
                                                                   @Nullable String requestId) throws ETSdkException {
+    return fetchDataExtensionRecordsByExpression(dataExtensionKey, FilterExpressions.parse(filterStr), requestId);
+  }
+
+  /**
+   * Fetch records for passed object from Salesforce Marketing Cloud.
+   *
+   * @param dataExtensionKey The data extension key for which data to be fetched from Salesforce Marketing Cloud
+   * @param expression The filter expression to filter the records
+   * @return The list of ETDataExtensionRow representing the records from requested data extension
+   * @throws ETSdkException The FuelSDKException
+   */
+  public ETResponse<ETDataExtensionRow> fetchDataExtensionRecordsByExpression(String dataExtensionKey,
+                                                                              ETExpression expression,
+                                                                              @Nullable String requestId)
+    throws ETSdkException {
 
     ETFilter filter = new ETFilter();
-    filter.setExpression(getExpressionfromString(filterStr));
-    ETResponse<ETDataExtensionRow> response = null;
-
-    if (requestId == null) {
-      response = PaginationETSoapObject.select(client, dataExtensionKey,
-                                               filter);
-    } else {
-      response = PaginationETSoapObject.continueRequest(client, null, requestId,
-                                                        filter);
-    }
-    return response;
+    filter.setExpression(expression);
+    return timedCall(MarketingCloudMetrics.RETRIEVE, client -> {
+      if (requestId == null) {
+        return PaginationETSoapObject.select(client, dataExtensionKey, filter);
+      }
+      return PaginationETSoapObject.continueRequest(client, null, requestId, filter);
+    });
+  }
+
+  /**
+   * Sends a request with the streaming SOAP client, for requests whose response is read as it arrives.
+   *
+   * @param action   The SOAP action
+   * @param body     Writes the request element
+   * @param response Reads the response element
+   * @return The value read from the response
+   * @throws ETSdkException The FuelSDKException
+   */
+  public <T> T callStreaming(String action, StreamingSoapClient.BodyWriter body,
+                             StreamingSoapClient.ResponseReader<T> response) throws ETSdkException {
+    return timedCall("soap." + action.toLowerCase(Locale.ROOT),
+                     client -> StreamingSoapClient.of(client).withMetrics(metrics).call(action, body, response));
   }
 
   /**
@@ -173,7 +288,17 @@ public class MarketingCloudClient {
    */
   public MarketingCloudObjectInfo fetchDataExtensionSchema(String dataExtensionKey)
     throws ETSdkException {
-    return call(() -> {
+    return call(client -> {
+      if (schemaCache != null) {
+        List<MarketingCloudColumn> columns = schemaCache.getColumns(
+          DataExtensionSchemaCache.accountOf(client), dataExtensionKey,
+          () -> DataExtensionSchemaCache.fetchModifiedDate(client, dataExtensionKey),
+          () -> ETDataExtension.retrieveColumns(client, dataExtensionKey)).stream()
+          .map(o -> new MarketingCloudColumn(o.getName(), o.getType().name()))
+          .collect(Collectors.toList());
+        return new MarketingCloudObjectInfo(SourceObject.DATA_EXTENSION, dataExtensionKey, columns);
+      }
+
       ETExpression expression = buildDataExtensionExpression(dataExtensionKey);
 
       ETFilter filter = new ETFilter();
@@ -233,12 +358,23 @@ public class MarketingCloudClient {
     ClassLoader oldClassloader = Thread.currentThread().getContextClassLoader();
     try {
       Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
-      return callable.call();
+      return rateLimiter.call(metrics, () -> callable.call(clientSupplier.get()));
     } finally {
       Thread.currentThread().setContextClassLoader(oldClassloader);
     }
   }
 
+  private <T> T timedCall(String operation, SFMCCall<T> callable) throws ETSdkException {
+    return call(client -> {
+      long startNanos = System.nanoTime();
+      try {
+        return callable.call(client);
+      } finally {
+        metrics.recordLatency(operation, startNanos);
+      }
+    });
+  }
+
   /**
    * A SFMC call.
    *
@@ -247,8 +383,8 @@ public class MarketingCloudClient {
   private interface SFMCCall<T> {
 
     /**
-     * Perform a call.
+     * Perform a call with the given client.
      */
-    T call() throws ETSdkException;
+    T call(ETClient client) throws ETSdkException;
   }
 }
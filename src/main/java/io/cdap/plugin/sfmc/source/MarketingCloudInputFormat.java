@@ -17,7 +17,11 @@
 package io.cdap.plugin.sfmc.source;
 
 import com.exacttarget.fuelsdk.ETSdkException;
+import com.google.common.annotations.VisibleForTesting;
 import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.etl.api.FailureCollector;
+import io.cdap.plugin.sfmc.common.MarketingCloudMetrics;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudConstants;
 import io.cdap.plugin.sfmc.source.util.MarketingCloudObjectInfo;
 import io.cdap.plugin.sfmc.source.util.SourceObject;
 import io.cdap.plugin.sfmc.source.util.SourceQueryMode;
@@ -32,15 +36,23 @@ import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
 
 /**
  * Salesforce input format.
  */
 public class MarketingCloudInputFormat extends InputFormat<NullWritable, StructuredRecord> {
   private static final Logger LOG = LoggerFactory.getLogger(MarketingCloudInputFormat.class);
+  private static final int SCHEMA_FETCH_PARALLELISM = 8;
 
   /**
    * Configure the input format to read tables from Salesforce. Should be called from the mapreduce client.
@@ -48,15 +60,19 @@ public class MarketingCloudInputFormat extends InputFormat<NullWritable, Structu
    * @param jobConfig the job configuration
    * @param mode      the query mode
    * @param conf      the plugin conf
+   * @param collector the failure collector the selected fields are validated with
    * @return Collection of MarketingCloudObjectInfo containing table and schema.
    */
   public static List<MarketingCloudObjectInfo> setInput(Configuration jobConfig, SourceQueryMode mode,
-                                                        MarketingCloudSourceConfig conf) {
+                                                        MarketingCloudSourceConfig conf, FailureCollector collector) {
     MarketingCloudJobConfiguration jobConf = new MarketingCloudJobConfiguration(jobConfig);
     jobConf.setPluginConfiguration(conf);
 
     //Depending on the selected objects in the conf, get the schema for each object as MarketingCloudObjectInfo
     List<MarketingCloudObjectInfo> tableInfos = fetchTableInfo(mode, conf);
+    conf.validateSelectedFields(collector, tableInfos);
+    collector.getOrThrowException();
+    tableInfos = selectFields(tableInfos, conf.getSelectedFields());
 
     jobConf.setTableInfos(tableInfos);
 
@@ -72,44 +88,136 @@ public class MarketingCloudInputFormat extends InputFormat<NullWritable, Structu
    * @return Collection of MarketingCloudObjectInfo containing table and schema.
    */
   static List<MarketingCloudObjectInfo> fetchTableInfo(SourceQueryMode mode, MarketingCloudSourceConfig conf) {
+    MarketingCloudClient client;
     try {
-      MarketingCloudClient client = MarketingCloudClient.getOrCreate(conf.getConnection().getClientId(),
-                                                                     conf.getConnection().getClientSecret(),
-                                                                     conf.getConnection().getAuthEndpoint(),
-                                                                     conf.getConnection().getSoapEndpoint());
-      //When mode = SingleObject, fetch fields for the object selected in plugin config
-      if (mode == SourceQueryMode.SINGLE_OBJECT) {
+      client = MarketingCloudClient.getOrCreate(conf.getConnection().getClientId(),
+                                                conf.getConnection().getClientSecret(),
+                                                conf.getConnection().getAuthEndpoint(),
+                                                conf.getConnection().getSoapEndpoint());
+      client.setSchemaCache(conf.getSchemaCache());
+      client.setRateLimits(conf.getMaxRequestsPerSecond(), conf.getMaxConcurrentRequests());
+    } catch (Exception e) {
+      LOG.error("Error retrieving object schema. Check object exists.", e);
+      return Collections.emptyList();
+    }
+    try {
+      return fetchTableInfo(mode, conf, client);
+    } finally {
+      client.releaseRateLimits();
+    }
+  }
+
+  private static List<MarketingCloudObjectInfo> fetchTableInfo(SourceQueryMode mode, MarketingCloudSourceConfig conf,
+                                                               MarketingCloudClient client) {
+    //When mode = SingleObject, fetch fields for the object selected in plugin config
+    if (mode == SourceQueryMode.SINGLE_OBJECT) {
+      try {
         MarketingCloudObjectInfo tableInfo = getTableMetaData(conf.getObject(), conf.getDataExtensionKey(), client);
         return (tableInfo == null) ? Collections.emptyList() : Collections.singletonList(tableInfo);
+      } catch (Exception e) {
+        LOG.error("Error retrieving object schema. Check object exists.", e);
+        return Collections.emptyList();
       }
-      //When mode = MultiObject, get the list of objects provided in plugin config and the fetch fields for each of
-      //then objects.
-      List<MarketingCloudObjectInfo> tableInfos = new ArrayList<>();
-      List<SourceObject> objectList = conf.getObjectList();
-      for (SourceObject object : objectList) {
-        MarketingCloudObjectInfo tableInfo = null;
-        if (object == SourceObject.DATA_EXTENSION) {
-          //if the object = Data Extension then get the list of data extension keys and then fetch fields for each of
-          //the data extension objects.
-          List<String> dataExtensionKeys = Util.splitToList(conf.getDataExtensionKeys(), ',');
-          for (String dataExtensionKey : dataExtensionKeys) {
-            tableInfo = getTableMetaData(object, dataExtensionKey, client);
-            if (tableInfo == null) {
-              continue;
-            }
-            tableInfos.add(tableInfo);
-          }
-        } else {
-          tableInfo = getTableMetaData(object, "", client);
+    }
+    //When mode = MultiObject, get the list of objects provided in plugin config and the fetch fields for each of
+    //then objects. If the object = Data Extension then fetch fields for each of the data extension keys.
+    List<SourceObject> objects = new ArrayList<>();
+    List<String> dataExtensionKeys = new ArrayList<>();
+    for (SourceObject object : conf.getObjectList()) {
+      if (object == SourceObject.DATA_EXTENSION) {
+        for (String dataExtensionKey : Util.splitToList(conf.getDataExtensionKeys(), ',')) {
+          objects.add(object);
+          dataExtensionKeys.add(dataExtensionKey);
+        }
+      } else {
+        objects.add(object);
+        dataExtensionKeys.add("");
+      }
+    }
+    return fetchTableInfos(client, objects, dataExtensionKeys, SCHEMA_FETCH_PARALLELISM);
+  }
+
+  /**
+   * Narrows the objects to the selected fields.
+   *
+   * @param tableInfos     the objects
+   * @param selectedFields the names of the fields to read, empty to read all fields, validated against the objects
+   *                       by {@link MarketingCloudSourceConfig#validateSelectedFields}
+   * @return the objects with only the selected fields
+   */
+  @VisibleForTesting
+  static List<MarketingCloudObjectInfo> selectFields(List<MarketingCloudObjectInfo> tableInfos,
+                                                     List<String> selectedFields) {
+    if (selectedFields.isEmpty()) {
+      return tableInfos;
+    }
+    List<MarketingCloudObjectInfo> selected = new ArrayList<>(tableInfos.size());
+    for (MarketingCloudObjectInfo tableInfo : tableInfos) {
+      selected.add(tableInfo.select(selectedFields));
+    }
+    return selected;
+  }
+
+  /**
+   * Fetches the fields of the objects concurrently, with at most {@code parallelism} requests in flight.
+   *
+   * @param client            the client
+   * @param objects           the objects to fetch the fields for
+   * @param dataExtensionKeys the data extension key of each object, ignored for objects other than data extensions
+   * @param parallelism       the maximum number of concurrent requests
+   * @return the object infos, in the order of the objects
+   * @throws IllegalStateException listing every object whose fields could not be fetched, with the errors attached
+   *                               as suppressed exceptions
+   */
+  @VisibleForTesting
+  static List<MarketingCloudObjectInfo> fetchTableInfos(MarketingCloudClient client, List<SourceObject> objects,
+                                                        List<String> dataExtensionKeys, int parallelism) {
+    if (objects.isEmpty()) {
+      return Collections.emptyList();
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, objects.size()), runnable -> {
+      Thread thread = new Thread(runnable, "sfmc-schema-fetch");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      List<Future<MarketingCloudObjectInfo>> futures = new ArrayList<>(objects.size());
+      for (int i = 0; i < objects.size(); i++) {
+        SourceObject object = objects.get(i);
+        String dataExtensionKey = dataExtensionKeys.get(i);
+        futures.add(executor.submit(() -> getTableMetaData(object, dataExtensionKey, client)));
+      }
+
+      List<MarketingCloudObjectInfo> tableInfos = new ArrayList<>(objects.size());
+      List<String> failedTables = new ArrayList<>();
+      List<Throwable> errors = new ArrayList<>();
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          MarketingCloudObjectInfo tableInfo = futures.get(i).get();
           if (tableInfo != null) {
             tableInfos.add(tableInfo);
           }
+        } catch (ExecutionException e) {
+          String table = objects.get(i) == SourceObject.DATA_EXTENSION ?
+            MarketingCloudConstants.DATA_EXTENSION_PREFIX + dataExtensionKeys.get(i) : objects.get(i).getTableName();
+          LOG.error("Error retrieving the schema of '{}'. Check object exists.", table, e.getCause());
+          failedTables.add(String.format("'%s': %s", table, e.getCause().getMessage()));
+          errors.add(e.getCause());
         }
       }
+      if (!failedTables.isEmpty()) {
+        IllegalStateException exception = new IllegalStateException(
+          String.format("Error retrieving the schema of %d object(s): %s", failedTables.size(),
+                        String.join(", ", failedTables)));
+        errors.forEach(exception::addSuppressed);
+        throw exception;
+      }
       return tableInfos;
-    } catch (Exception e) {
-      LOG.error("Error retrieving object schema. Check object exists.", e);
-      return Collections.emptyList();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while retrieving the object schemas", e);
+    } finally {
+      executor.shutdownNow();
     }
   }
 
@@ -131,15 +239,77 @@ public class MarketingCloudInputFormat extends InputFormat<NullWritable, Structu
     MarketingCloudSourceConfig pluginConf = jobConfig.getPluginConf();
 
     List<MarketingCloudObjectInfo> tableInfos = jobConfig.getTableInfos();
-    List<InputSplit> resultSplits = new ArrayList<>();
+    List<MarketingCloudInputSplit> splits = new ArrayList<>();
+    LocalDateTime now = LocalDateTime.now(pluginConf.getApiTimeZone());
+    MarketingCloudSplitPlanner planner = MarketingCloudSplitPlanner.fromConfig(pluginConf, now);
+    Map<String, IncrementalRange> incrementalRanges = jobConfig.getIncrementalRanges();
+    MarketingCloudRangePartitioner partitioner = null;
+    MarketingCloudClient client = null;
+    if (pluginConf.getPartitionCount() > 1 && pluginConf.getPartitionColumn() != null) {
+      client = connect(pluginConf);
+      partitioner = client == null ? null
+        : new MarketingCloudRangePartitioner(pluginConf.getPartitionColumn(), pluginConf.getPartitionCount());
+    }
 
-    for (MarketingCloudObjectInfo tableInfo : tableInfos) {
-      String tableKey = tableInfo.getObject().name();
-      String tableName = tableInfo.getTableName();
-      resultSplits.add(new MarketingCloudInputSplit(tableKey, tableName));
+    try {
+      for (MarketingCloudObjectInfo tableInfo : tableInfos) {
+        IncrementalRange range = incrementalRanges.get(tableInfo.getTableName());
+        if (range != null) {
+          splits.addAll(planner.plan(tableInfo, range));
+        } else if (partitioner != null && tableInfo.getObject() == SourceObject.DATA_EXTENSION) {
+          splits.addAll(partitioner.plan(client, tableInfo, pluginConf.getFilter()));
+        } else {
+          splits.addAll(planner.plan(tableInfo));
+        }
+      }
+    } finally {
+      if (client != null) {
+        client.releaseRateLimits();
+      }
+    }
+    if (pluginConf.getQueryMode() == SourceQueryMode.MULTI_OBJECT && pluginConf.getMaxRowsPerCombinedSplit() > 0
+      && splits.size() > 1) {
+      splits = combineSplits(pluginConf, tableInfos, splits);
+    }
+    LOG.debug("# of split = {}", splits.size());
+    return new ArrayList<>(splits);
+  }
+
+  /**
+   * Estimates the size of the splits and combines the small ones, so that each small object does not take a task.
+   */
+  private static List<MarketingCloudInputSplit> combineSplits(MarketingCloudSourceConfig conf,
+                                                              List<MarketingCloudObjectInfo> tableInfos,
+                                                              List<MarketingCloudInputSplit> splits) {
+    MarketingCloudClient client = connect(conf);
+    if (client == null) {
+      return splits;
+    }
+    try {
+      MarketingCloudSplitPacker packer = new MarketingCloudSplitPacker(conf.getMaxRowsPerCombinedSplit());
+      return packer.pack(packer.estimate(client, tableInfos, splits, conf.getFilter(), SCHEMA_FETCH_PARALLELISM));
+    } finally {
+      client.releaseRateLimits();
+    }
+  }
+
+  /**
+   * Creates the client used to plan the splits, null if it cannot connect, in which case the splits are planned
+   * without sampling the objects.
+   */
+  @Nullable
+  private static MarketingCloudClient connect(MarketingCloudSourceConfig conf) {
+    try {
+      MarketingCloudClient client = MarketingCloudClient.getOrCreate(conf.getConnection().getClientId(),
+                                                                     conf.getConnection().getClientSecret(),
+                                                                     conf.getConnection().getAuthEndpoint(),
+                                                                     conf.getConnection().getSoapEndpoint());
+      client.setRateLimits(conf.getMaxRequestsPerSecond(), conf.getMaxConcurrentRequests());
+      return client;
+    } catch (Exception e) {
+      LOG.warn("Unable to connect to plan the splits, every object is read without sampling its records.", e);
+      return null;
     }
-    LOG.debug("# of split = {}", resultSplits.size());
-    return resultSplits;
   }
 
   @Override
@@ -149,6 +319,8 @@ public class MarketingCloudInputFormat extends InputFormat<NullWritable, Structu
                                                                                     getConfiguration());
     MarketingCloudSourceConfig pluginConf = jobConfig.getPluginConf();
 
-    return new MarketingCloudRecordReader(pluginConf);
+    return new MarketingCloudRecordReader(pluginConf, jobConfig.getTableInfos(),
+                                          MarketingCloudMetrics.forStage(jobConfig.getMetricsKey()),
+                                          jobConfig.getCheckpointDir());
   }
 }
@@ -22,13 +22,35 @@ import org.apache.hadoop.mapreduce.InputSplit;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
 
 /**
  * Salesforce input split.
+ *
+ * A split reads one object, or a range of it. Splits of small objects can be combined into a single split, whose parts
+ * are read one after the other by the same task. The first part is stored in the fields of the split itself, so the
+ * serialized form of a split that is not combined only gains the count of the other parts at its end.
+ *
+ * The length of a split is always its estimated number of rows. Splits whose size was not estimated are assumed to
+ * read {@link #UNESTIMATED_ROWS} rows per object, shared by the splits the object is cut into.
  */
 public class MarketingCloudInputSplit extends InputSplit implements Writable {
+  /**
+   * The number of rows assumed for an object whose size was not estimated.
+   */
+  public static final long UNESTIMATED_ROWS = 100_000L;
+
   private String objectName;
   private String tableName;
+  private String rangeProperty;
+  private String rangeStart;
+  private String rangeEnd;
+  private boolean rangeIncludesNull;
+  private long length;
+  private List<MarketingCloudInputSplit> otherParts = Collections.emptyList();
 
   // used by mapreduce
   public MarketingCloudInputSplit() {
@@ -45,6 +67,81 @@ public class MarketingCloudInputSplit extends InputSplit implements Writable {
     this.tableName = tableName;
   }
 
+  /**
+   * Constructor for MarketingCloudInputSplit that only reads the records with a property value in the given range.
+   *
+   * @param objectName    The object name
+   * @param tableName     The corresponding table name
+   * @param rangeProperty The property the range applies to, null if the split reads the whole object
+   * @param rangeStart    The inclusive lower bound of the range, null if the range has no lower bound
+   * @param rangeEnd      The exclusive upper bound of the range, null if the range has no upper bound
+   * @param length        The estimated number of rows of the split
+   */
+  public MarketingCloudInputSplit(String objectName, String tableName, @Nullable String rangeProperty,
+                                  @Nullable String rangeStart, @Nullable String rangeEnd, long length) {
+    this.objectName = objectName;
+    this.tableName = tableName;
+    this.rangeProperty = rangeProperty;
+    this.rangeStart = rangeStart;
+    this.rangeEnd = rangeEnd;
+    this.length = length;
+  }
+
+  /**
+   * Combines splits into a single split reading them in order.
+   *
+   * @param parts The splits to combine, none of which is combined itself
+   * @return The combined split, or the only split if a single split is passed
+   */
+  public static MarketingCloudInputSplit combine(List<MarketingCloudInputSplit> parts) {
+    MarketingCloudInputSplit first = parts.get(0);
+    if (parts.size() == 1) {
+      return first;
+    }
+    MarketingCloudInputSplit combined = first.withLength(first.length);
+    combined.otherParts = new ArrayList<>(parts.subList(1, parts.size()));
+    return combined;
+  }
+
+  /**
+   * Returns a copy of this split, which must not be combined, with a new size estimate.
+   *
+   * @param length The estimated number of rows of the split
+   * @return The split with the new estimate
+   */
+  public MarketingCloudInputSplit withLength(long length) {
+    MarketingCloudInputSplit split = new MarketingCloudInputSplit(objectName, tableName, rangeProperty, rangeStart,
+                                                                  rangeEnd, length);
+    split.rangeIncludesNull = rangeIncludesNull;
+    return split;
+  }
+
+  /**
+   * Returns a copy of this split, which must not be combined, that also reads the records without a value of the
+   * range property.
+   *
+   * @return The split reading the records without a value as well
+   */
+  public MarketingCloudInputSplit withNullRangeValues() {
+    MarketingCloudInputSplit split = withLength(length);
+    split.rangeIncludesNull = true;
+    return split;
+  }
+
+  /**
+   * @return The splits combined into this split, in the order they are read, or only this split if it is not
+   * combined
+   */
+  public List<MarketingCloudInputSplit> getParts() {
+    if (otherParts.isEmpty()) {
+      return Collections.singletonList(this);
+    }
+    List<MarketingCloudInputSplit> parts = new ArrayList<>(otherParts.size() + 1);
+    parts.add(withLength(length));
+    parts.addAll(otherParts);
+    return parts;
+  }
+
   public String getObjectName() {
     return objectName;
   }
@@ -53,26 +150,87 @@ public class MarketingCloudInputSplit extends InputSplit implements Writable {
     return tableName;
   }
 
+  @Nullable
+  public String getRangeProperty() {
+    return rangeProperty;
+  }
+
+  @Nullable
+  public String getRangeStart() {
+    return rangeStart;
+  }
+
+  @Nullable
+  public String getRangeEnd() {
+    return rangeEnd;
+  }
+
+  /**
+   * @return true if the split also reads the records without a value of the range property
+   */
+  public boolean isRangeIncludingNull() {
+    return rangeIncludesNull;
+  }
 
   @Override
   public void write(DataOutput dataOutput) throws IOException {
     dataOutput.writeUTF(this.objectName);
     dataOutput.writeUTF(this.tableName);
+    writeNullable(dataOutput, rangeProperty);
+    writeNullable(dataOutput, rangeStart);
+    writeNullable(dataOutput, rangeEnd);
+    dataOutput.writeBoolean(rangeIncludesNull);
+    dataOutput.writeLong(length);
+    dataOutput.writeInt(otherParts.size());
+    for (MarketingCloudInputSplit part : otherParts) {
+      part.write(dataOutput);
+    }
   }
 
   @Override
   public void readFields(DataInput dataInput) throws IOException {
     this.objectName = dataInput.readUTF();
     this.tableName = dataInput.readUTF();
+    this.rangeProperty = readNullable(dataInput);
+    this.rangeStart = readNullable(dataInput);
+    this.rangeEnd = readNullable(dataInput);
+    this.rangeIncludesNull = dataInput.readBoolean();
+    this.length = dataInput.readLong();
+    int otherPartCount = dataInput.readInt();
+    this.otherParts = otherPartCount == 0 ? Collections.emptyList() : new ArrayList<>(otherPartCount);
+    for (int i = 0; i < otherPartCount; i++) {
+      MarketingCloudInputSplit part = new MarketingCloudInputSplit();
+      part.readFields(dataInput);
+      otherParts.add(part);
+    }
   }
 
+  /**
+   * @return The estimated size of the split, the sum of the estimates of its parts if it is combined
+   */
   @Override
   public long getLength() {
-    return 0;
+    long total = length;
+    for (MarketingCloudInputSplit part : otherParts) {
+      total += part.length;
+    }
+    return total;
   }
 
   @Override
   public String[] getLocations() {
     return new String[0];
   }
+
+  private static void writeNullable(DataOutput dataOutput, @Nullable String value) throws IOException {
+    dataOutput.writeBoolean(value != null);
+    if (value != null) {
+      dataOutput.writeUTF(value);
+    }
+  }
+
+  @Nullable
+  private static String readNullable(DataInput dataInput) throws IOException {
+    return dataInput.readBoolean() ? dataInput.readUTF() : null;
+  }
 }
@@ -22,7 +22,10 @@ import io.cdap.plugin.sfmc.source.util.MarketingCloudObjectInfo;
 import org.apache.hadoop.conf.Configuration;
 
 import java.lang.reflect.Type;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
  * Allows to specify and access connection configuration properties of {@link Configuration}.
@@ -30,11 +33,16 @@ import java.util.List;
 public class MarketingCloudJobConfiguration {
   private static final String PLUGIN_CONF_FIELD = "salesforce.plugin.conf";
   private static final String INFO_FIELD = "salesforce.table.info";
+  private static final String METRICS_KEY_FIELD = "salesforce.metrics.key";
+  private static final String CHECKPOINT_DIR_FIELD = "salesforce.checkpoint.dir";
+  private static final String INCREMENTAL_RANGES_FIELD = "salesforce.incremental.ranges";
 
   private static final Type PLUGIN_CONF_TYPE = new TypeToken<MarketingCloudSourceConfig>() {
   }.getType();
   private static final Type INFO_TYPE = new TypeToken<List<MarketingCloudObjectInfo>>() {
   }.getType();
+  private static final Type INCREMENTAL_RANGES_TYPE = new TypeToken<Map<String, IncrementalRange>>() {
+  }.getType();
 
   private static final Gson GSON = new Gson();
 
@@ -64,6 +72,42 @@ public class MarketingCloudJobConfiguration {
     set(INFO_FIELD, GSON.toJson(infoList));
   }
 
+  /**
+   * @return the key of the stage metrics in the run, null if the metrics are not reported
+   */
+  @Nullable
+  public String getMetricsKey() {
+    return getConf().get(METRICS_KEY_FIELD);
+  }
+
+  public void setMetricsKey(String metricsKey) {
+    set(METRICS_KEY_FIELD, metricsKey);
+  }
+
+  /**
+   * @return the checkpoint directory of the run, null if reads are not checkpointed
+   */
+  @Nullable
+  public String getCheckpointDir() {
+    return getConf().get(CHECKPOINT_DIR_FIELD);
+  }
+
+  public void setCheckpointDir(String checkpointDir) {
+    set(CHECKPOINT_DIR_FIELD, checkpointDir);
+  }
+
+  /**
+   * @return the ranges of the objects read incrementally, by table name, empty if the run reads every record
+   */
+  public Map<String, IncrementalRange> getIncrementalRanges() {
+    String ranges = getConf().get(INCREMENTAL_RANGES_FIELD);
+    return ranges == null ? Collections.emptyMap() : GSON.fromJson(ranges, INCREMENTAL_RANGES_TYPE);
+  }
+
+  public void setIncrementalRanges(Map<String, IncrementalRange> ranges) {
+    set(INCREMENTAL_RANGES_FIELD, GSON.toJson(ranges, INCREMENTAL_RANGES_TYPE));
+  }
+
   private void set(String key, String value) {
     getConf().set(key, value);
   }
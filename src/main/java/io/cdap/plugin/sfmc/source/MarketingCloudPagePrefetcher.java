@@ -0,0 +1,271 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.source;
+
+import com.exacttarget.fuelsdk.ETResponse;
+import com.exacttarget.fuelsdk.ETSoapObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Fetches the pages of a retrieve request ahead of the record reader.
+ *
+ * Pages are fetched on a background thread and handed over through a queue of the configured depth, so the round-trip
+ * for the next page overlaps with the conversion of the current one. With a depth of 0, pages are fetched on the
+ * calling thread when they are requested.
+ *
+ * The records of a page are usually the objects of the SDK response, but a fetcher can also hand over records it has
+ * already converted while reading the response.
+ */
+public class MarketingCloudPagePrefetcher implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(MarketingCloudPagePrefetcher.class);
+  private static final String MORE_DATA_AVAILABLE = "MoreDataAvailable";
+  private static final Page END = new Page(Collections.emptyList(), null);
+
+  private final RecordPageFetcher fetcher;
+  private final int depth;
+  private final BlockingQueue<Page> queue;
+  private volatile boolean closed;
+  private ExecutorService executor;
+  private String requestId;
+  private boolean done;
+
+  /**
+   * Constructor for MarketingCloudPagePrefetcher.
+   *
+   * @param fetcher The fetcher for a single page
+   * @param depth   The number of pages fetched ahead of the reader, 0 to fetch pages on demand
+   */
+  public MarketingCloudPagePrefetcher(PageFetcher fetcher, int depth) {
+    this((RecordPageFetcher) requestId -> RecordPage.of(fetcher.fetch(requestId)), depth);
+  }
+
+  private MarketingCloudPagePrefetcher(RecordPageFetcher fetcher, int depth) {
+    this.fetcher = fetcher;
+    this.depth = depth;
+    this.queue = depth > 0 ? new ArrayBlockingQueue<>(depth) : null;
+  }
+
+  /**
+   * Creates a prefetcher for pages whose records are built by the fetcher itself.
+   *
+   * @param fetcher The fetcher for a single page
+   * @param depth   The number of pages fetched ahead of the reader, 0 to fetch pages on demand
+   * @return The prefetcher
+   */
+  public static MarketingCloudPagePrefetcher forRecordPages(RecordPageFetcher fetcher, int depth) {
+    return new MarketingCloudPagePrefetcher(fetcher, depth);
+  }
+
+  /**
+   * Returns the records of the next page.
+   *
+   * @return The records of the next page, null if all pages have been read
+   * @throws IOException if the page could not be fetched
+   */
+  @Nullable
+  public List<?> next() throws IOException {
+    if (done) {
+      return null;
+    }
+    Page page = depth > 0 ? take() : fetch();
+    if (page.error != null) {
+      done = true;
+      if (page.error instanceof IOException) {
+        throw (IOException) page.error;
+      }
+      throw new IOException("Error fetching the next page of records.", page.error);
+    }
+    if (page == END) {
+      done = true;
+      return null;
+    }
+    return page.records;
+  }
+
+  /**
+   * Stops fetching pages. Pages that are still in flight are dropped once they arrive.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+    if (queue != null) {
+      queue.clear();
+    }
+  }
+
+  private Page fetch() {
+    try {
+      RecordPage page = fetcher.fetch(requestId);
+      if (page.isMoreDataAvailable()) {
+        requestId = page.getRequestId();
+      } else {
+        done = true;
+      }
+      return new Page(page.getRecords(), null);
+    } catch (Exception e) {
+      return new Page(null, e);
+    }
+  }
+
+  private Page take() throws IOException {
+    if (executor == null) {
+      executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sfmc-page-prefetch");
+        thread.setDaemon(true);
+        return thread;
+      });
+      executor.execute(this::prefetch);
+    }
+    try {
+      return queue.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the next page of records.");
+    }
+  }
+
+  private void prefetch() {
+    String nextRequestId = null;
+    try {
+      while (!closed) {
+        RecordPage page = fetcher.fetch(nextRequestId);
+        LOG.debug("Prefetched page of {} records", page.getRecords().size());
+        if (!enqueue(new Page(page.getRecords(), null)) || !page.isMoreDataAvailable()) {
+          break;
+        }
+        nextRequestId = page.getRequestId();
+      }
+      enqueue(END);
+    } catch (Exception e) {
+      enqueue(new Page(null, e));
+    }
+  }
+
+  /**
+   * Hands a page over to the reader, waiting for space in the queue until the prefetcher is closed.
+   */
+  private boolean enqueue(Page page) {
+    try {
+      while (!closed) {
+        if (queue.offer(page, 100, TimeUnit.MILLISECONDS)) {
+          return true;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return false;
+  }
+
+  /**
+   * Fetches a single page of records.
+   */
+  public interface PageFetcher {
+
+    /**
+     * Fetches a page.
+     *
+     * @param requestId The request id to continue, null to fetch the first page
+     * @return The response holding the records of the page
+     */
+    ETResponse<? extends ETSoapObject> fetch(@Nullable String requestId) throws Exception;
+  }
+
+  /**
+   * Fetches a single page of records that have already been converted.
+   */
+  public interface RecordPageFetcher {
+
+    /**
+     * Fetches a page.
+     *
+     * @param requestId The request id to continue, null to fetch the first page
+     * @return The page
+     */
+    RecordPage fetch(@Nullable String requestId) throws Exception;
+  }
+
+  /**
+   * The records of a retrieve response, along with what is needed to request the next page.
+   */
+  public static final class RecordPage {
+    private final List<?> records;
+    private final String requestId;
+    private final boolean moreDataAvailable;
+
+    /**
+     * Constructor for RecordPage.
+     *
+     * @param records           The records of the page
+     * @param requestId         The request id of the response
+     * @param moreDataAvailable Whether the request can be continued to fetch the next page
+     */
+    public RecordPage(List<?> records, @Nullable String requestId, boolean moreDataAvailable) {
+      this.records = records;
+      this.requestId = requestId;
+      this.moreDataAvailable = moreDataAvailable;
+    }
+
+    static RecordPage of(ETResponse<? extends ETSoapObject> response) {
+      return new RecordPage(response.getObjects(), response.getRequestId(),
+                            MORE_DATA_AVAILABLE.equals(response.getResponseMessage()));
+    }
+
+    public List<?> getRecords() {
+      return records;
+    }
+
+    @Nullable
+    public String getRequestId() {
+      return requestId;
+    }
+
+    public boolean isMoreDataAvailable() {
+      return moreDataAvailable;
+    }
+  }
+
+  /**
+   * A page of records, or the error fetching it.
+   */
+  private static final class Page {
+    private final List<?> records;
+    private final Exception error;
+
+    private Page(@Nullable List<?> records, @Nullable Exception error) {
+      this.records = records;
+      this.error = error;
+    }
+  }
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sfmc.source;
+
+import com.exacttarget.fuelsdk.ETDataExtensionRow;
+import com.exacttarget.fuelsdk.ETResponse;
+import com.exacttarget.fuelsdk.ETSdkException;
+import com.exacttarget.fuelsdk.ETSoapObject;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudConstants;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudObjectInfo;
+import io.cdap.plugin.sfmc.source.util.SourceObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+
+/**
+ * Partitions a data extension into consecutive ranges of a sortable column, so that several tasks can read it in
+ * parallel.
+ *
+ * The API cannot sort the rows or compute the minimum and maximum of a column, and rows are often stored in the order
+ * of the column, so the first pages of a data extension only hold its lowest values. The key space of number and date
+ * columns is therefore sampled with probes, each reading the first page of a filtered range: the probes gallop past
+ * the extremes of the first page until they find no rows, then the key space found is cut into slices and the first
+ * page of each slice is sampled. Text columns cannot be cut into slices, their sample is the first pages of the data
+ * extension. The boundaries of the ranges are the quantiles of the sample.
+ *
+ * The first range has no lower bound and also reads the rows without a value, and the last range has no upper bound,
+ * so together the ranges cover every row whatever the distribution of the values outside the sample. The values are
+ * ordered the way Salesforce Marketing Cloud compares them: numbers by value, dates by time and text without regard to
+ * case.
+ */
+final class MarketingCloudRangePartitioner {
+  private static final Logger LOG = LoggerFactory.getLogger(MarketingCloudRangePartitioner.class);
+  // number of pages the values of text columns are sampled from
+  static final int SAMPLE_PAGES = 4;
+  // number of slices the key space of number and date columns is sampled from
+  static final int SAMPLE_SLICES = 8;
+  // maximum number of probes looking for each extreme of the key space
+  static final int EXTREME_PROBES = 8;
+  private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("M/d/yyyy h:mm:ss a", Locale.US);
+
+  private final String column;
+  private final int partitions;
+
+  /**
+   * Constructor for MarketingCloudRangePartitioner.
+   *
+   * @param column     The column the data extensions are partitioned on
+   * @param partitions The number of ranges each data extension is cut into
+   */
+  MarketingCloudRangePartitioner(String column, int partitions) {
+    this.column = column;
+    this.partitions = partitions;
+  }
+
+  /**
+   * Plans the splits of a data extension, one per range of the column. A data extension without the column, or whose
+   * values cannot be sampled, is read by a single split.
+   *
+   * @param client    the client
+   * @param tableInfo the data extension
+   * @param filter    the filter string of the source, null or empty to read all records
+   * @return The list of splits reading the data extension
+   */
+  List<MarketingCloudInputSplit> plan(MarketingCloudClient client, MarketingCloudObjectInfo tableInfo,
+                                      @Nullable String filter) {
+    String tableName = tableInfo.getTableName();
+    Schema.Field field = tableInfo.getSchema().getFields().stream()
+      .filter(f -> f.getName().equals(column) || column.equals(tableInfo.lookupFieldsMap(f.getName())))
+      .findFirst()
+      .orElse(null);
+    KeySpace keys = field == null ? null : KeySpace.of(field);
+    Comparator<String> order = field == null ? null : orderOf(field, keys);
+    if (order == null) {
+      LOG.debug("'{}' has no sortable column '{}', it is read by a single split.", tableName, column);
+      return Collections.singletonList(new MarketingCloudInputSplit(SourceObject.DATA_EXTENSION.name(), tableName,
+                                                                    null, null, null,
+                                                                    MarketingCloudInputSplit.UNESTIMATED_ROWS));
+    }
+    // the range filters name the column the way Salesforce Marketing Cloud does, not the way the schema does
+    String property = tableInfo.lookupFieldsMap(field.getName());
+    List<String> boundaries;
+    try {
+      String dataExtensionKey = tableName.replaceAll(MarketingCloudConstants.DATA_EXTENSION_PREFIX, "");
+      MarketingCloudReadRequest request = MarketingCloudReadRequest.of(SourceObject.DATA_EXTENSION, dataExtensionKey,
+                                                                       Collections.singletonList(property), filter);
+      List<String> sample = keys == null ? samplePages(client, request, property, order)
+        : new Sampler(client, request, property, keys).sample();
+      boundaries = boundaries(sample, partitions, order);
+    } catch (ETSdkException e) {
+      LOG.warn("Unable to sample column '{}' of '{}', it is read by a single split.", column, tableName, e);
+      boundaries = Collections.emptyList();
+    }
+
+    List<MarketingCloudInputSplit> splits = new ArrayList<>(boundaries.size() + 1);
+    // the boundaries are quantiles of the sample, so the ranges share the rows assumed for the object evenly
+    long rows = Math.max(MarketingCloudInputSplit.UNESTIMATED_ROWS / (boundaries.size() + 1), 1);
+    String lower = null;
+    for (int i = 0; i <= boundaries.size(); i++) {
+      String upper = i == boundaries.size() ? null : boundaries.get(i);
+      MarketingCloudInputSplit split = new MarketingCloudInputSplit(SourceObject.DATA_EXTENSION.name(), tableName,
+                                                                    property, lower, upper, rows);
+      // the rows without a value are in no range, the first split reads them
+      splits.add(i == 0 ? split.withNullRangeValues() : split);
+      lower = upper;
+    }
+    LOG.debug("Partitioned '{}' into {} splits on '{}'", tableName, splits.size(), column);
+    return splits;
+  }
+
+  /**
+   * Picks the boundaries of the ranges at the quantiles of the sampled values. Values that compare equal are never
+   * split across ranges, so fewer ranges are returned if the sample has fewer distinct values.
+   *
+   * @param values     the sampled values
+   * @param partitions the number of ranges
+   * @param order      the order of the values
+   * @return the boundaries between consecutive ranges, in increasing order, at most one less than the number of ranges
+   */
+  static List<String> boundaries(List<String> values, int partitions, Comparator<String> order) {
+    List<String> sorted = new ArrayList<>(values);
+    sorted.sort(order);
+    List<String> boundaries = new ArrayList<>();
+    for (int i = 1; i < partitions && !sorted.isEmpty(); i++) {
+      String boundary = sorted.get((int) ((long) sorted.size() * i / partitions));
+      boolean afterPrevious = boundaries.isEmpty() || order.compare(boundaries.get(boundaries.size() - 1),
+                                                                     boundary) < 0;
+      if (afterPrevious && order.compare(sorted.get(0), boundary) < 0) {
+        boundaries.add(boundary);
+      }
+    }
+    return boundaries;
+  }
+
+  /**
+   * Retrieves the values of the column from the first pages of the data extension, skipping the values that cannot
+   * be ordered.
+   */
+  private static List<String> samplePages(MarketingCloudClient client, MarketingCloudReadRequest request,
+                                          String property, Comparator<String> order) throws ETSdkException {
+    List<String> values = new ArrayList<>();
+    String requestId = null;
+    for (int page = 0; page < SAMPLE_PAGES; page++) {
+      ETResponse<? extends ETSoapObject> response = client.fetchRecords(request, requestId);
+      for (ETSoapObject row : response.getObjects()) {
+        String value = ((ETDataExtensionRow) row).getColumn(property);
+        if (value != null && !value.isEmpty() && isOrdered(order, value)) {
+          values.add(value);
+        }
+      }
+      if (!response.hasMoreResults()) {
+        break;
+      }
+      requestId = response.getRequestId();
+    }
+    return values;
+  }
+
+  /**
+   * Returns the order of the values of the column, null if its values cannot be ordered.
+   */
+  @Nullable
+  private static Comparator<String> orderOf(Schema.Field field, @Nullable KeySpace keys) {
+    if (keys != null) {
+      return Comparator.comparing(keys::toKey);
+    }
+    Schema schema = field.getSchema().isNullable() ? field.getSchema().getNonNullable() : field.getSchema();
+    return schema.getType() == Schema.Type.STRING && schema.getLogicalType() == null
+      ? String.CASE_INSENSITIVE_ORDER : null;
+  }
+
+  private static boolean isOrdered(Comparator<String> order, String value) {
+    try {
+      order.compare(value, value);
+      return true;
+    } catch (NumberFormatException | DateTimeParseException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Maps the values of a number or date column to numbers and back, so that its key space can be cut into slices.
+   */
+  private static final class KeySpace {
+    private final Function<String, BigDecimal> toKey;
+    private final Function<BigDecimal, String> toValue;
+
+    private KeySpace(Function<String, BigDecimal> toKey, Function<BigDecimal, String> toValue) {
+      this.toKey = toKey;
+      this.toValue = toValue;
+    }
+
+    /**
+     * Returns the key space of the column, null if its values cannot be mapped to numbers.
+     */
+    @Nullable
+    static KeySpace of(Schema.Field field) {
+      Schema schema = field.getSchema().isNullable() ? field.getSchema().getNonNullable() : field.getSchema();
+      if (schema.getLogicalType() == Schema.LogicalType.TIMESTAMP_MICROS) {
+        return new KeySpace(
+          value -> BigDecimal.valueOf(LocalDateTime.parse(value.trim(), DATE_FORMAT).toEpochSecond(ZoneOffset.UTC)),
+          key -> LocalDateTime.ofEpochSecond(key.setScale(0, RoundingMode.FLOOR).longValueExact(), 0, ZoneOffset.UTC)
+            .format(DATE_FORMAT));
+      }
+      switch (schema.getType()) {
+        case INT:
+          return new KeySpace(value -> new BigDecimal(value.trim()),
+                              key -> key.setScale(0, RoundingMode.FLOOR).toPlainString());
+        case DOUBLE:
+          return new KeySpace(value -> new BigDecimal(value.trim()), key -> key.stripTrailingZeros().toPlainString());
+        default:
+          return null;
+      }
+    }
+
+    BigDecimal toKey(String value) {
+      return toKey.apply(value);
+    }
+
+    String toValue(BigDecimal key) {
+      return toValue.apply(key);
+    }
+  }
+
+  /**
+   * Samples the key space of a number or date column with filtered first-page probes.
+   */
+  private static final class Sampler {
+    private final MarketingCloudClient client;
+    private final MarketingCloudReadRequest request;
+    private final String property;
+    private final KeySpace keys;
+
+    private Sampler(MarketingCloudClient client, MarketingCloudReadRequest request, String property, KeySpace keys) {
+      this.client = client;
+      this.request = request;
+      this.property = property;
+      this.keys = keys;
+    }
+
+    /**
+     * Samples the first page of each slice of the key space. The first and last slices have no outer bound, so the
+     * sample also covers the values beyond the extremes found.
+     */
+    List<String> sample() throws ETSdkException {
+      List<BigDecimal> first = new ArrayList<>();
+      if (probe(null, null, first) || first.isEmpty()) {
+        // the data extension holds a single page, its values are all known
+        return toValues(first);
+      }
+      BigDecimal low = Collections.min(first);
+      BigDecimal high = Collections.max(first);
+      BigDecimal upper = extreme(high, low, true);
+      BigDecimal lower = extreme(low, upper, false);
+      BigDecimal width = upper.subtract(lower).divide(BigDecimal.valueOf(SAMPLE_SLICES), MathContext.DECIMAL64);
+      List<BigDecimal> sample = new ArrayList<>();
+      for (int i = 0; i < SAMPLE_SLICES; i++) {
+        BigDecimal start = i == 0 ? null : lower.add(width.multiply(BigDecimal.valueOf(i)));
+        BigDecimal end = i == SAMPLE_SLICES - 1 ? null : lower.add(width.multiply(BigDecimal.valueOf(i + 1)));
+        probe(start, end, sample);
+      }
+      LOG.debug("Sampled {} values of '{}' between {} and {}", sample.size(), property, keys.toValue(lower),
+                keys.toValue(upper));
+      return toValues(sample);
+    }
+
+    /**
+     * Looks for an extreme of the key space. The probes gallop beyond the most extreme value seen, doubling their
+     * step until a probe finds no value, then bisect between that probe and the most extreme value seen until they
+     * are closer than a slice of the key space.
+     *
+     * @param seen     the most extreme value seen in the direction
+     * @param opposite the value seen furthest in the opposite direction
+     * @param up       true to look for the highest value, false for the lowest
+     * @return the extreme found, or a value beyond it by at most a slice
+     */
+    private BigDecimal extreme(BigDecimal seen, BigDecimal opposite, boolean up) throws ETSdkException {
+      BigDecimal step = seen.subtract(opposite).abs().max(BigDecimal.ONE);
+      BigDecimal bound = null;
+      for (int i = 0; i < EXTREME_PROBES; i++) {
+        BigDecimal at;
+        if (bound == null) {
+          at = up ? seen.add(step) : seen.subtract(step);
+        } else {
+          BigDecimal slice = seen.subtract(opposite).abs().divide(BigDecimal.valueOf(SAMPLE_SLICES),
+                                                                 MathContext.DECIMAL64);
+          if (bound.subtract(seen).abs().compareTo(slice) <= 0) {
+            break;
+          }
+          at = seen.add(bound).divide(BigDecimal.valueOf(2), MathContext.DECIMAL64);
+        }
+        List<BigDecimal> found = new ArrayList<>();
+        boolean complete = up ? probe(at, null, found) : probe(null, at, found);
+        if (found.isEmpty()) {
+          bound = at;
+          continue;
+        }
+        seen = up ? seen.max(Collections.max(found)) : seen.min(Collections.min(found));
+        if (complete) {
+          // every value beyond the probe was read
+          return seen;
+        }
+        if (bound == null) {
+          step = step.multiply(BigDecimal.valueOf(2));
+        }
+      }
+      return bound == null ? seen : bound;
+    }
+
+    /**
+     * Reads the first page of the range [start, end) and adds the keys of its values.
+     *
+     * @return true if the page holds every row of the range
+     */
+    private boolean probe(@Nullable BigDecimal start, @Nullable BigDecimal end, List<BigDecimal> found)
+      throws ETSdkException {
+      ETResponse<? extends ETSoapObject> response = client.fetchRecords(
+        request.withRange(property, start == null ? null : keys.toValue(start), end == null ? null : keys.toValue(end)),
+        null);
+      for (ETSoapObject row : response.getObjects()) {
+        String value = ((ETDataExtensionRow) row).getColumn(property);
+        if (value == null || value.isEmpty()) {
+          continue;
+        }
+        try {
+          found.add(keys.toKey(value));
+        } catch (NumberFormatException | DateTimeParseException e) {
+          // values that cannot be ordered are not sampled
+        }
+      }
+      return !response.hasMoreResults();
+    }
+
+    private List<String> toValues(List<BigDecimal> sample) {
+      List<String> values = new ArrayList<>(sample.size());
+      for (BigDecimal key : sample) {
+        values.add(keys.toValue(key));
+      }
+      return values;
+    }
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.source;
+
+import com.custom.fuelsdk.PaginationETSoapObject;
+import com.exacttarget.fuelsdk.ETExpression;
+import com.exacttarget.fuelsdk.ETSdkException;
+import com.exacttarget.fuelsdk.ETSoapObject;
+import com.exacttarget.fuelsdk.internal.FilterPart;
+import io.cdap.plugin.sfmc.source.util.FilterExpressions;
+import io.cdap.plugin.sfmc.source.util.SourceObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * What a split reads from an object: the object type, the projected properties and the filter.
+ *
+ * The request is built once per split, with the filter string parsed once, and once per segment of the split, with
+ * the range of the segment added to the filter. The filter is compiled into the filter part sent with the request
+ * when the request is built, so the pages of a segment, including the retries of a page, send the same filter part
+ * without converting the filter again. The request is never modified once built: the filter expression is copied on
+ * the way in and out, so readers in the same JVM do not share any mutable state through it.
+ */
+public final class MarketingCloudReadRequest {
+  private static final String DATA_EXTENSION_OBJECT_TYPE = "DataExtensionObject[%s]";
+
+  private final SourceObject object;
+  private final String dataExtensionKey;
+  private final List<String> properties;
+  private final List<String> internalProperties;
+  private final ETExpression filter;
+  private final FilterPart filterPart;
+
+  private MarketingCloudReadRequest(SourceObject object, @Nullable String dataExtensionKey, List<String> properties,
+                                    ETExpression filter) throws ETSdkException {
+    this.object = object;
+    this.dataExtensionKey = dataExtensionKey;
+    this.properties = Collections.unmodifiableList(new ArrayList<>(properties));
+    this.internalProperties = Collections.unmodifiableList(
+      PaginationETSoapObject.toInternalProperties(object.getClassRef(), properties));
+    this.filter = FilterExpressions.copy(filter);
+    this.filterPart = PaginationETSoapObject.compileFilter(object.getClassRef(), filter);
+  }
+
+  /**
+   * Builds the request reading an object.
+   *
+   * @param object           The object
+   * @param dataExtensionKey The data extension key, ignored for objects other than data extensions
+   * @param properties       The properties to retrieve, empty to retrieve all retrievable properties. Data extensions
+   *                         must list their columns.
+   * @param filter           The filter string, null or empty to read all records
+   * @return The request
+   * @throws ETSdkException if the filter is not valid or a property is not a property of the object
+   */
+  public static MarketingCloudReadRequest of(SourceObject object, @Nullable String dataExtensionKey,
+                                             List<String> properties, @Nullable String filter)
+    throws ETSdkException {
+    if (object == SourceObject.DATA_EXTENSION && properties.isEmpty()) {
+      throw new IllegalArgumentException("The columns of data extension '" + dataExtensionKey + "' must be listed");
+    }
+    return new MarketingCloudReadRequest(object, object == SourceObject.DATA_EXTENSION ? dataExtensionKey : null,
+                                         properties, FilterExpressions.parse(filter));
+  }
+
+  /**
+   * Builds the request reading the records of this request whose property is in the range [start, end).
+   *
+   * @param property The property the range applies to
+   * @param start    The inclusive lower bound, null if the range has no lower bound
+   * @param end      The exclusive upper bound, null if the range has no upper bound
+   * @return The request restricted to the range
+   * @throws ETSdkException if the property is not a property of the object
+   */
+  public MarketingCloudReadRequest withRange(String property, @Nullable String start, @Nullable String end)
+    throws ETSdkException {
+    return withRange(property, start, end, false);
+  }
+
+  /**
+   * Builds the request reading the records of this request whose property is in the range [start, end), and also the
+   * records without a value of the property if asked to.
+   *
+   * @param property    The property the range applies to
+   * @param start       The inclusive lower bound, null if the range has no lower bound
+   * @param end         The exclusive upper bound, null if the range has no upper bound
+   * @param includeNull Whether the records without a value of the property are read as well
+   * @return The request restricted to the range
+   * @throws ETSdkException if the property is not a property of the object
+   */
+  public MarketingCloudReadRequest withRange(String property, @Nullable String start, @Nullable String end,
+                                             boolean includeNull) throws ETSdkException {
+    ETExpression range = FilterExpressions.range(property, start, end);
+    if (FilterExpressions.isEmpty(range)) {
+      return this;
+    }
+    if (includeNull) {
+      range = FilterExpressions.or(range, FilterExpressions.isNull(property));
+    }
+    return new MarketingCloudReadRequest(object, dataExtensionKey, properties, FilterExpressions.and(filter, range));
+  }
+
+  public SourceObject getObject() {
+    return object;
+  }
+
+  @Nullable
+  public String getDataExtensionKey() {
+    return dataExtensionKey;
+  }
+
+  /**
+   * @return The object type sent in the request, null to use the internal type of the object class
+   */
+  @Nullable
+  public String getObjectType() {
+    return dataExtensionKey == null ? null : String.format(DATA_EXTENSION_OBJECT_TYPE, dataExtensionKey);
+  }
+
+  public Class<? extends ETSoapObject> getObjectClass() {
+    return object.getClassRef();
+  }
+
+  /**
+   * @return The properties to retrieve, empty to retrieve all retrievable properties
+   */
+  public List<String> getProperties() {
+    return properties;
+  }
+
+  /**
+   * @return The internal names of the properties sent in the request
+   */
+  public List<String> getInternalProperties() {
+    return internalProperties;
+  }
+
+  /**
+   * @return A copy of the filter expression, empty if all records are read
+   */
+  public ETExpression getFilter() {
+    return FilterExpressions.copy(filter);
+  }
+
+  /**
+   * @return The compiled filter sent in the request, null if all records are read
+   */
+  @Nullable
+  public FilterPart getFilterPart() {
+    return filterPart;
+  }
+}
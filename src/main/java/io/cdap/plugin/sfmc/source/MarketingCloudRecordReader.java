@@ -17,13 +17,16 @@
 package io.cdap.plugin.sfmc.source;
 
 import com.exacttarget.fuelsdk.ETApiObject;
+import com.exacttarget.fuelsdk.ETExpression;
 import com.exacttarget.fuelsdk.ETResponse;
+import com.exacttarget.fuelsdk.ETSdkException;
 import com.exacttarget.fuelsdk.ETSoapObject;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.sfmc.common.MarketingCloudMetrics;
 import io.cdap.plugin.sfmc.source.util.MarketingCloudConstants;
 import io.cdap.plugin.sfmc.source.util.MarketingCloudObjectInfo;
-import io.cdap.plugin.sfmc.source.util.MarketingCloudUtil;
+import io.cdap.plugin.sfmc.source.util.RecordConversionPlan;
 import io.cdap.plugin.sfmc.source.util.SourceObject;
 import io.cdap.plugin.sfmc.source.util.SourceQueryMode;
 import org.apache.hadoop.io.NullWritable;
@@ -35,64 +38,168 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import javax.annotation.Nullable;
 
 /**
  * Record reader that reads the entire contents of a Salesforce table.
+ *
+ * With a checkpoint directory, the split is read in segments whose records are recorded in a {@link SplitCheckpoint},
+ * so that a retried attempt replays the segments that were completed and only retrieves the remaining ones.
+ *
+ * A combined split is read one part after the other, each part starting once the previous one has been exhausted.
  */
 public class MarketingCloudRecordReader extends RecordReader<NullWritable, StructuredRecord> {
   private static final Logger LOG = LoggerFactory.getLogger(MarketingCloudRecordReader.class);
+  // number of windows the range of a checkpointed split is read in
+  static final int CHECKPOINT_SEGMENTS = 8;
+  // progress reported until the last record has been read, as the length of a split is only an estimate
+  private static final float MAX_PROGRESS_BEFORE_END = 0.99f;
   private final MarketingCloudSourceConfig pluginConf;
   SourceObject sourceObject;
+  // the part of the split being read
   private MarketingCloudInputSplit split;
+  private List<MarketingCloudInputSplit> parts;
+  private int part;
+  private long length;
   private int pos;
   private List<Schema.Field> tableFields;
   private MarketingCloudObjectInfo sfObjectMetaData;
+  private RecordConversionPlan conversionPlan;
+  // what the split reads, without the range of the segment
+  private MarketingCloudReadRequest readRequest;
   private Schema schema;
   private SourceObject object;
   private String dataExtensionKey = "";
   private String tableName;
   private String formattedTableName;
   private String tableNameField;
-  private List<? extends ETApiObject> results;
-  private Iterator<? extends ETApiObject> iterator;
-  private ETApiObject row;
-  private ETResponse<? extends ETSoapObject> response;
-  private boolean hasMoreRecords;
-  private String requestId;
+  private MarketingCloudClient client;
+  private DataExtensionRecordRetriever retriever;
+  private MarketingCloudPagePrefetcher pages;
+  private Iterator<?> iterator;
+  private Object row;
+  private boolean initialized;
+  private boolean finished;
+  private List<String> segmentBoundaries;
+  private int segment;
+  private MarketingCloudReadRequest segmentRequest;
+  private SplitCheckpoint checkpoint;
+  private SplitCheckpoint.SegmentReader replay;
+  private SplitCheckpoint.SegmentWriter spill;
+
+  private final List<MarketingCloudObjectInfo> tableInfos;
+  private final MarketingCloudMetrics metrics;
+  private final String checkpointDir;
 
   MarketingCloudRecordReader(MarketingCloudSourceConfig pluginConf) {
+    this(pluginConf, Collections.emptyList());
+  }
+
+  /**
+   * Constructor for MarketingCloudRecordReader.
+   *
+   * @param pluginConf The plugin conf
+   * @param tableInfos The object infos fetched when the input was configured, used instead of fetching the schema
+   *                   of the split again
+   */
+  MarketingCloudRecordReader(MarketingCloudSourceConfig pluginConf,
+                             @Nullable List<MarketingCloudObjectInfo> tableInfos) {
+    this(pluginConf, tableInfos, MarketingCloudMetrics.forStage(null));
+  }
+
+  /**
+   * Constructor for MarketingCloudRecordReader.
+   *
+   * @param pluginConf The plugin conf
+   * @param tableInfos The object infos fetched when the input was configured, used instead of fetching the schema
+   *                   of the split again
+   * @param metrics    The metrics of the stage, the pages read and the requests are reported to
+   */
+  MarketingCloudRecordReader(MarketingCloudSourceConfig pluginConf,
+                             @Nullable List<MarketingCloudObjectInfo> tableInfos, MarketingCloudMetrics metrics) {
+    this(pluginConf, tableInfos, metrics, null);
+  }
+
+  /**
+   * Constructor for MarketingCloudRecordReader.
+   *
+   * @param pluginConf    The plugin conf
+   * @param tableInfos    The object infos fetched when the input was configured, used instead of fetching the schema
+   *                      of the split again
+   * @param metrics       The metrics of the stage, the pages read and the requests are reported to
+   * @param checkpointDir The checkpoint directory of the run, null to read the split without checkpoints
+   */
+  MarketingCloudRecordReader(MarketingCloudSourceConfig pluginConf,
+                             @Nullable List<MarketingCloudObjectInfo> tableInfos, MarketingCloudMetrics metrics,
+                             @Nullable String checkpointDir) {
     this.pluginConf = pluginConf;
+    this.tableInfos = tableInfos == null ? Collections.emptyList() : tableInfos;
+    this.metrics = metrics;
+    this.checkpointDir = checkpointDir;
   }
 
   @Override
   public void initialize(InputSplit split, TaskAttemptContext context) {
-    this.split = (MarketingCloudInputSplit) split;
+    MarketingCloudInputSplit inputSplit = (MarketingCloudInputSplit) split;
+    this.parts = inputSplit.getParts();
+    this.part = 0;
+    this.split = parts.get(0);
+    this.length = inputSplit.getLength();
     this.pos = 0;
   }
 
   @Override
   public boolean nextKeyValue() throws IOException {
     try {
-      if (results == null) {
-        fetchData();
+      if (!initialized) {
+        startReading();
       }
-      if (!iterator.hasNext()) {
-        if (hasMoreRecords) {
-          fetchData();
+      while (true) {
+        if (replay != null) {
+          StructuredRecord record = replay.next();
+          if (record != null) {
+            row = record;
+            pos++;
+            return true;
+          }
+          replay.close();
+          replay = null;
+          segment++;
+        } else if (iterator != null && iterator.hasNext()) {
+          row = iterator.next();
+          if (spill != null) {
+            row = toRecord(row);
+            spill.write((StructuredRecord) row);
+          }
+          pos++;
+          return true;
+        } else if (pages != null) {
+          List<?> results = pages.next();
+          if (results == null) {
+            completeSegment();
+          } else {
+            LOG.debug("size={}", results.size());
+            metrics.count(MarketingCloudMetrics.PAGES, 1);
+            metrics.count(MarketingCloudMetrics.PAGE_ROWS, results.size());
+            iterator = results.iterator();
+          }
+        } else if (segment < segmentBoundaries.size() - 1) {
+          startSegment();
+        } else if (part < parts.size() - 1) {
+          startNextPart();
         } else {
+          finished = true;
           return false;
         }
       }
-      row = iterator.next();
-      pos++;
     } catch (Exception e) {
       LOG.error("Error communicating with Salesforce Marketing cloud. Check for transport errors", e);
       throw new IOException("Error communicating with Salesforce Marketing cloud. Check for transport errors", e);
     }
-    return true;
   }
 
   @Override
@@ -102,13 +209,23 @@ public class MarketingCloudRecordReader extends RecordReader<NullWritable, Struc
 
   @Override
   public StructuredRecord getCurrentValue() throws IOException {
-    MarketingCloudUtil cloudConversion = new MarketingCloudUtil();
+    if (row instanceof StructuredRecord) {
+      // converted while the response was read, or replayed from the checkpoint
+      return (StructuredRecord) row;
+    }
+    return toRecord(row);
+  }
+
+  private StructuredRecord toRecord(Object row) throws IOException {
+    if (row instanceof StructuredRecord) {
+      return (StructuredRecord) row;
+    }
     StructuredRecord.Builder recordBuilder = StructuredRecord.builder(schema);
     if (pluginConf.getQueryMode() == SourceQueryMode.MULTI_OBJECT) {
       recordBuilder.set(tableNameField, formattedTableName);
     }
     try {
-      cloudConversion.convertRecord(sfObjectMetaData, recordBuilder, row);
+      conversionPlan.convert((ETApiObject) row, recordBuilder);
     } catch (Exception e) {
       LOG.error(String.format("Error decoding row from table %s", tableName), e);
       throw new IOException(String.format("Error decoding row from table %s", tableName), e);
@@ -118,14 +235,38 @@ public class MarketingCloudRecordReader extends RecordReader<NullWritable, Struc
 
   @Override
   public float getProgress() {
-    return pos / (float) split.getLength();
+    //The length of a split is its estimated number of rows, so the progress is capped until the last record has been
+    //read.
+    if (finished) {
+      return 1.0f;
+    }
+    if (length <= 0) {
+      return 0.0f;
+    }
+    return Math.min(pos / (float) length, MAX_PROGRESS_BEFORE_END);
   }
 
   @Override
   public void close() {
+    if (pages != null) {
+      pages.close();
+    }
+    if (client != null) {
+      client.releaseRateLimits();
+    }
+    try {
+      if (replay != null) {
+        replay.close();
+      }
+      if (spill != null) {
+        spill.close();
+      }
+    } catch (IOException e) {
+      LOG.warn("Unable to close the checkpoint of table {}", tableName, e);
+    }
   }
 
-  private void fetchData() throws Exception {
+  private void startReading() throws Exception {
     object = SourceObject.valueOf(split.getObjectName());
     tableName = split.getTableName();
     formattedTableName = tableName.replaceAll("-|\\s", "_");
@@ -134,52 +275,122 @@ public class MarketingCloudRecordReader extends RecordReader<NullWritable, Struc
       dataExtensionKey = tableName.replaceAll(MarketingCloudConstants.DATA_EXTENSION_PREFIX, "");
     }
     tableNameField = pluginConf.getTableNameField();
-    MarketingCloudClient marketingCloudInputFormat =
-      MarketingCloudClient.getOrCreate(pluginConf.getConnection().getClientId(),
-                                       pluginConf.getConnection().getClientSecret(),
-                                       pluginConf.getConnection().getAuthEndpoint(),
-                                       pluginConf.getConnection().getSoapEndpoint());
-    String filterStr = pluginConf.getFilter();
-    //Fetch data
-    if (object == SourceObject.DATA_EXTENSION) {
-      response = marketingCloudInputFormat.fetchDataExtensionRecords(dataExtensionKey, filterStr, requestId);
-      results = response.getObjects();
-      requestId = response.getRequestId();
+    if (client != null) {
+      // the client of the previous part of a combined split
+      client.releaseRateLimits();
+    }
+    client = MarketingCloudClient.getOrCreate(pluginConf.getConnection().getClientId(),
+                                              pluginConf.getConnection().getClientSecret(),
+                                              pluginConf.getConnection().getAuthEndpoint(),
+                                              pluginConf.getConnection().getSoapEndpoint());
+    client.setSchemaCache(pluginConf.getSchemaCache());
+    client.setMetrics(metrics);
+    client.setRateLimits(pluginConf.getMaxRequestsPerSecond(), pluginConf.getMaxConcurrentRequests());
+    initSchema();
+    if (object == SourceObject.DATA_EXTENSION && pluginConf.useStreamingResponses()) {
+      retriever = new DataExtensionRecordRetriever(
+        dataExtensionKey, sfObjectMetaData, conversionPlan, schema,
+        pluginConf.getQueryMode() == SourceQueryMode.MULTI_OBJECT ? tableNameField : null, formattedTableName);
+    }
+    if (checkpointDir == null) {
+      segmentBoundaries = Arrays.asList(split.getRangeStart(), split.getRangeEnd());
     } else {
-      response = marketingCloudInputFormat.fetchObjectRecords(object, filterStr, requestId);
-      results = response.getObjects();
-      requestId = response.getRequestId();
+      segmentBoundaries = MarketingCloudSplitPlanner.segmentBoundaries(split, CHECKPOINT_SEGMENTS);
+      checkpoint = SplitCheckpoint.open(checkpointDir, split, segmentBoundaries.size() - 1);
+    }
+    initialized = true;
+  }
+
+  /**
+   * Starts reading the next part of a combined split, once every segment of the current part has been read.
+   */
+  private void startNextPart() throws Exception {
+    split = parts.get(++part);
+    dataExtensionKey = "";
+    retriever = null;
+    checkpoint = null;
+    segment = 0;
+    startReading();
+  }
+
+  /**
+   * Starts reading the current segment, from the checkpoint if a previous attempt completed it.
+   */
+  private void startSegment() throws Exception {
+    if (checkpoint != null && segment < checkpoint.getCompletedSegments()) {
+      replay = checkpoint.readSegment(segment, schema);
+      return;
     }
-    if (response.getResponseMessage().equals("MoreDataAvailable")) {
-      hasMoreRecords = true;
+    // the records without a value of the range property are read with the first segment of the split
+    segmentRequest = split.getRangeProperty() == null ? readRequest
+      : readRequest.withRange(split.getRangeProperty(), segmentBoundaries.get(segment),
+                              segmentBoundaries.get(segment + 1), segment == 0 && split.isRangeIncludingNull());
+    if (checkpoint != null) {
+      spill = checkpoint.writeSegment(segment);
+    }
+    if (retriever != null) {
+      pages = MarketingCloudPagePrefetcher.forRecordPages(this::fetchRecordPage, pluginConf.getPagePrefetchDepth());
     } else {
-      hasMoreRecords = false;
+      pages = new MarketingCloudPagePrefetcher(this::fetchPage, pluginConf.getPagePrefetchDepth());
     }
-    LOG.debug("size={}", results.size());
-    if (!results.isEmpty()) {
-      fetchSchema(marketingCloudInputFormat);
+  }
+
+  /**
+   * Ends the current segment once all of its pages have been read.
+   */
+  private void completeSegment() throws IOException {
+    pages.close();
+    pages = null;
+    iterator = null;
+    if (spill != null) {
+      spill.commit();
+      spill = null;
     }
-    iterator = results.iterator();
+    segment++;
   }
 
-  private void fetchSchema(MarketingCloudClient client) {
-    //Fetch the column definition
-    List<Schema.Field> schemaFields;
-    try {
+  private MarketingCloudPagePrefetcher.RecordPage fetchRecordPage(@Nullable String requestId)
+    throws ETSdkException {
+    ETExpression expression = requestId == null ? segmentRequest.getFilter() : new ETExpression();
+    return retriever.retrieve(client, requestId, expression);
+  }
+
+  private ETResponse<? extends ETSoapObject> fetchPage(@Nullable String requestId) throws ETSdkException {
+    return client.fetchRecords(segmentRequest, requestId);
+  }
+
+  /**
+   * Resolves the object info of the split and builds the schema shared by all records of the split.
+   */
+  private void initSchema() throws ETSdkException {
+    sfObjectMetaData = tableInfos.stream()
+      .filter(info -> info.getObject() == object && info.getTableName().equals(tableName))
+      .findFirst()
+      .orElse(null);
+    if (sfObjectMetaData == null) {
+      //Fetch the column definition
       if (object == SourceObject.DATA_EXTENSION) {
         sfObjectMetaData = client.fetchDataExtensionSchema(dataExtensionKey);
       } else {
         sfObjectMetaData = client.fetchObjectSchema(object);
       }
-      //Build schema
-      tableFields = sfObjectMetaData.getSchema().getFields();
-      schemaFields = new ArrayList<>(tableFields);
-      if (pluginConf.getQueryMode() == SourceQueryMode.MULTI_OBJECT) {
-        schemaFields.add(Schema.Field.of(tableNameField, Schema.of(Schema.Type.STRING)));
-      }
-    } catch (Exception e) {
-      schemaFields = Collections.emptyList();
+      MarketingCloudObjectInfo selected = pluginConf.getSelectedFields().isEmpty() ? null
+        : sfObjectMetaData.select(pluginConf.getSelectedFields());
+      sfObjectMetaData = selected == null ? sfObjectMetaData : selected;
+    }
+    conversionPlan = RecordConversionPlan.of(sfObjectMetaData, object.getClassRef());
+    // The columns of data extensions are known from the schema, so the SDK does not need to look them up again for
+    // every request. Other objects only narrow the properties if fields were selected, as their schema can list
+    // fields the SDK does not retrieve.
+    List<String> properties = object == SourceObject.DATA_EXTENSION || !pluginConf.getSelectedFields().isEmpty()
+      ? sfObjectMetaData.getPropertyNames() : Collections.emptyList();
+    readRequest = MarketingCloudReadRequest.of(object, dataExtensionKey, properties, pluginConf.getFilter());
+    //Build schema
+    tableFields = sfObjectMetaData.getSchema().getFields();
+    List<Schema.Field> schemaFields = new ArrayList<>(tableFields);
+    if (pluginConf.getQueryMode() == SourceQueryMode.MULTI_OBJECT) {
+      schemaFields.add(Schema.Field.of(tableNameField, Schema.of(Schema.Type.STRING)));
     }
-    schema = Schema.recordOf(tableName.replaceAll("-|\\s", "_"), schemaFields);
+    schema = Schema.recordOf(formattedTableName, schemaFields);
   }
 }
@@ -25,24 +25,29 @@ import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.api.dataset.lib.KeyValue;
 import io.cdap.cdap.etl.api.Emitter;
-import io.cdap.cdap.etl.api.Engine;
 import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.cdap.etl.api.PipelineConfigurer;
 import io.cdap.cdap.etl.api.StageConfigurer;
+import io.cdap.cdap.etl.api.StageContext;
+import io.cdap.cdap.etl.api.StageMetrics;
 import io.cdap.cdap.etl.api.action.SettableArguments;
+import io.cdap.cdap.etl.api.batch.BatchRuntimeContext;
 import io.cdap.cdap.etl.api.batch.BatchSource;
 import io.cdap.cdap.etl.api.batch.BatchSourceContext;
 import io.cdap.plugin.common.LineageRecorder;
 import io.cdap.plugin.common.SourceInputFormatProvider;
+import io.cdap.plugin.sfmc.common.MarketingCloudMetrics;
 import io.cdap.plugin.sfmc.source.util.MarketingCloudConstants;
 import io.cdap.plugin.sfmc.source.util.MarketingCloudObjectInfo;
 import io.cdap.plugin.sfmc.source.util.SourceQueryMode;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -57,7 +62,11 @@ import java.util.stream.Collectors;
 @Metadata
 @Description("Read marketing data from Salesforce Marketing cloud.")
 public class MarketingCloudSource extends BatchSource<NullWritable, StructuredRecord, StructuredRecord> {
+  private static final Logger LOG = LoggerFactory.getLogger(MarketingCloudSource.class);
+
   private final MarketingCloudSourceConfig conf;
+  private String metricsKey;
+  private StageMetrics stageMetrics;
 
   public MarketingCloudSource(MarketingCloudSourceConfig conf) {
     this.conf = conf;
@@ -74,15 +83,7 @@ public class MarketingCloudSource extends BatchSource<NullWritable, StructuredRe
     // getSchema method call
     collector.getOrThrowException();
     //Get Schema
-    stageConfigurer.setOutputSchema(getSchema(conf.getQueryMode()));
-    if (pipelineConfigurer.getEngine() == Engine.SPARK) {
-      pipelineConfigurer.setPipelineProperties(Collections.singletonMap("spark.task.maxFailures", "1"));
-    } else if (pipelineConfigurer.getEngine() == Engine.MAPREDUCE) {
-      Map<String, String> properties = new HashMap<>();
-      properties.put("mapreduce.reduce.maxattempts", "1");
-      properties.put("mapreduce.map.maxattempts", "1");
-      pipelineConfigurer.setPipelineProperties(properties);
-    }
+    stageConfigurer.setOutputSchema(getSchema(conf.getQueryMode(), collector));
   }
 
   @Override
@@ -92,7 +93,15 @@ public class MarketingCloudSource extends BatchSource<NullWritable, StructuredRe
     collector.getOrThrowException();
     SourceQueryMode mode = conf.getQueryMode(collector);
     Configuration hConf = new Configuration();
-    Collection<MarketingCloudObjectInfo> tables = MarketingCloudInputFormat.setInput(hConf, mode, conf);
+    Collection<MarketingCloudObjectInfo> tables = MarketingCloudInputFormat.setInput(hConf, mode, conf, collector);
+    MarketingCloudJobConfiguration jobConf = new MarketingCloudJobConfiguration(hConf);
+    jobConf.setMetricsKey(metricsKey(context));
+    if (conf.getCheckpointDir() != null) {
+      jobConf.setCheckpointDir(getRunCheckpointDir(context));
+    }
+    if (conf.getWatermarkDir() != null) {
+      jobConf.setIncrementalRanges(stageWatermarks(context, tables));
+    }
     SettableArguments arguments = context.getArguments();
     for (MarketingCloudObjectInfo tableInfo : tables) {
       arguments.set(MarketingCloudConstants.TABLE_PREFIX + tableInfo.getFormattedTableName(),
@@ -103,16 +112,42 @@ public class MarketingCloudSource extends BatchSource<NullWritable, StructuredRe
                               new SourceInputFormatProvider(MarketingCloudInputFormat.class, hConf)));
   }
 
+  @Override
+  public void onRunFinish(boolean succeeded, BatchSourceContext context) {
+    super.onRunFinish(succeeded, context);
+    if (conf.getCheckpointDir() != null) {
+      SplitCheckpoint.deleteRun(getRunCheckpointDir(context));
+    }
+    if (conf.getWatermarkDir() != null) {
+      finishWatermarks(succeeded, context);
+    }
+    MarketingCloudMetrics.release(metricsKey(context), context.getMetrics());
+  }
+
+  @Override
+  public void initialize(BatchRuntimeContext context) throws Exception {
+    super.initialize(context);
+    metricsKey = metricsKey(context);
+    stageMetrics = context.getMetrics();
+    MarketingCloudMetrics.forStage(metricsKey).bind(stageMetrics);
+  }
+
+  @Override
+  public void destroy() {
+    MarketingCloudMetrics.release(metricsKey, stageMetrics);
+    super.destroy();
+  }
+
   @Override
   public void transform(KeyValue<NullWritable, StructuredRecord> input, Emitter<StructuredRecord> emitter) {
     emitter.emit(input.getValue());
   }
 
-  private Schema getSchema(SourceQueryMode mode) {
+  private Schema getSchema(SourceQueryMode mode, FailureCollector collector) {
     Schema schema = null;
     if (mode == SourceQueryMode.SINGLE_OBJECT) {
       Configuration hConf = new Configuration();
-      Collection<MarketingCloudObjectInfo> tables = MarketingCloudInputFormat.setInput(hConf, mode, conf);
+      Collection<MarketingCloudObjectInfo> tables = MarketingCloudInputFormat.setInput(hConf, mode, conf, collector);
       if (tables != null && !tables.isEmpty()) {
         schema = tables.iterator().next().getSchema();
       }
@@ -120,6 +155,73 @@ public class MarketingCloudSource extends BatchSource<NullWritable, StructuredRe
     return schema;
   }
 
+  private static String metricsKey(StageContext context) {
+    return MarketingCloudMetrics.stageKey(context.getPipelineName(), context.getLogicalStartTime(),
+                                          context.getStageName());
+  }
+
+  /**
+   * Returns the checkpoint directory of the run, which is the same for every task attempt of the run.
+   */
+  private String getRunCheckpointDir(BatchSourceContext context) {
+    return String.format("%s/%s-%d/%s", conf.getCheckpointDir(), context.getPipelineName(),
+                         context.getLogicalStartTime(), context.getStageName());
+  }
+
+  /**
+   * Computes the incremental range of every object, from the watermark of the last successful run minus the lookback
+   * to the logical start of this run in the API time zone, and stages the end of the range as the next watermark.
+   */
+  private Map<String, IncrementalRange> stageWatermarks(BatchSourceContext context,
+                                                        Collection<MarketingCloudObjectInfo> tables) {
+    String end = MarketingCloudSplitPlanner.formatDate(
+      MarketingCloudSplitPlanner.toApiTime(context.getLogicalStartTime(), conf.getApiTimeZone()));
+    Map<String, IncrementalRange> ranges = new HashMap<>();
+    try {
+      WatermarkStore store = WatermarkStore.create(conf.getWatermarkDir(), conf.getReferenceName());
+      for (MarketingCloudObjectInfo tableInfo : tables) {
+        String tableName = tableInfo.getTableName();
+        String property = tableInfo.getObject().getIncrementalProperty();
+        String watermark = store.get(tableName);
+        String start = watermark == null ? null : MarketingCloudSplitPlanner.formatDate(
+          MarketingCloudSplitPlanner.parseDate(watermark).minusMinutes(conf.getWatermarkLookbackMinutes()));
+        ranges.put(tableName, new IncrementalRange(property == null ? conf.getIncrementalField() : property,
+                                                   start, end));
+        store.stage(tableName, end, getRunId(context));
+        LOG.info("Reading '{}' incrementally from {} to {}", tableName, start == null ? "the beginning" : start, end);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException(
+        String.format("Unable to stage the watermarks in %s", conf.getWatermarkDir()), e);
+    }
+    return ranges;
+  }
+
+  /**
+   * Commits the watermarks staged by the run if it succeeded, otherwise discards them so that the next run reads the
+   * same range again.
+   */
+  private void finishWatermarks(boolean succeeded, BatchSourceContext context) {
+    try {
+      WatermarkStore store = WatermarkStore.create(conf.getWatermarkDir(), conf.getReferenceName());
+      if (succeeded) {
+        store.commit(getRunId(context));
+      } else {
+        store.discard(getRunId(context));
+      }
+    } catch (IOException e) {
+      if (succeeded) {
+        throw new IllegalStateException(
+          String.format("Unable to commit the watermarks in %s", conf.getWatermarkDir()), e);
+      }
+      LOG.warn("Unable to discard the watermarks staged in {}", conf.getWatermarkDir(), e);
+    }
+  }
+
+  private static String getRunId(BatchSourceContext context) {
+    return String.format("%s-%d", context.getPipelineName(), context.getLogicalStartTime());
+  }
+
   private void recordLineage(BatchSourceContext context, MarketingCloudObjectInfo tableInfo) {
     String tableName = tableInfo.getFormattedTableName().replaceAll("-|\\s", "_");
     String outputName = String.format("%s-%s", conf.getReferenceName(), tableName);
@@ -22,16 +22,24 @@ import com.exacttarget.fuelsdk.ETSdkException;
 import io.cdap.cdap.api.annotation.Description;
 import io.cdap.cdap.api.annotation.Macro;
 import io.cdap.cdap.api.annotation.Name;
+import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.plugin.sfmc.common.SalesforceMarketingCloudBaseConfig;
 import io.cdap.plugin.sfmc.source.util.MarketingCloudConstants;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudObjectInfo;
 import io.cdap.plugin.sfmc.source.util.SourceObject;
 import io.cdap.plugin.sfmc.source.util.SourceQueryMode;
 import io.cdap.plugin.sfmc.source.util.Util;
 
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
@@ -111,6 +119,117 @@ public class MarketingCloudSourceConfig extends SalesforceMarketingCloudBaseConf
   @Description("The filter selection criteria. For example, eventDate > '2010-01-01' and subscriberKey = 1001.")
   private String filter;
 
+  @Name(MarketingCloudConstants.PROPERTY_SELECTED_FIELDS)
+  @Macro
+  @Nullable
+  @Description("Comma separated list of the fields to read. Only these fields are part of the output schema and " +
+    "only these columns are retrieved from Salesforce Marketing Cloud. In Multi Object mode, each object is read " +
+    "with the listed fields it has, and every object must have at least one of them. If not set, all fields are " +
+    "read.")
+  private String selectedFields;
+
+  @Name(MarketingCloudConstants.PROPERTY_EVENT_SPLIT_COUNT)
+  @Macro
+  @Nullable
+  @Description("Number of splits each tracking event object is read with. The event dates between the split start " +
+    "and end dates are cut into this many windows, each of which is read by a separate task. Defaults to 1, which " +
+    "reads every object with a single task.")
+  private Integer eventSplitCount;
+
+  @Name(MarketingCloudConstants.PROPERTY_EVENT_SPLIT_START)
+  @Macro
+  @Nullable
+  @Description("Event date the split windows start at, in yyyy-MM-dd or yyyy-MM-ddTHH:mm:ss format. Events before " +
+    "this date are still read by the first split. Required if the number of event splits is greater than 1.")
+  private String eventSplitStartDate;
+
+  @Name(MarketingCloudConstants.PROPERTY_EVENT_SPLIT_END)
+  @Macro
+  @Nullable
+  @Description("Event date the split windows end at, in yyyy-MM-dd or yyyy-MM-ddTHH:mm:ss format. Events after " +
+    "this date are still read by the last split. Defaults to the time the pipeline is started.")
+  private String eventSplitEndDate;
+
+  @Name(MarketingCloudConstants.PROPERTY_PARTITION_COLUMN)
+  @Macro
+  @Nullable
+  @Description("Date, number or text column data extensions are partitioned on. The values of the column are sampled " +
+    "before the run and the data extension is cut into ranges of the column, each of which is read by a separate " +
+    "task. Data extensions without this column, or read incrementally, are read by a single task.")
+  private String partitionColumn;
+
+  @Name(MarketingCloudConstants.PROPERTY_PARTITION_COUNT)
+  @Macro
+  @Nullable
+  @Description("Number of splits each data extension is partitioned into. Defaults to 1, which reads every data " +
+    "extension with a single task.")
+  private Integer partitionCount;
+
+  @Name(MarketingCloudConstants.PROPERTY_MAX_ROWS_PER_COMBINED_SPLIT)
+  @Macro
+  @Nullable
+  @Description("Maximum estimated number of rows of the objects read together by a single task in Multi Object " +
+    "mode. The size of every object is estimated before the run, and small objects are combined into tasks that " +
+    "read them one after the other, so that each object does not need its own task. Set to 0 to read every object " +
+    "with its own task. Defaults to 10000.")
+  private Integer maxRowsPerCombinedSplit;
+
+  @Name(MarketingCloudConstants.PROPERTY_PAGE_PREFETCH_DEPTH)
+  @Macro
+  @Nullable
+  @Description("Number of pages of records fetched ahead while the current page is being processed. The next page " +
+    "is requested in the background, so that the network round-trip overlaps with the processing of the records. " +
+    "Set to 0 to only fetch a page once the previous one has been processed. Defaults to 1.")
+  private Integer pagePrefetchDepth;
+
+  @Name(MarketingCloudConstants.PROPERTY_STREAMING_RESPONSES)
+  @Macro
+  @Nullable
+  @Description("Whether the rows of data extensions are converted into records while the response is read, instead " +
+    "of building the objects of the whole page in memory first. Other objects are always read through the SDK.")
+  private Boolean streamingResponses;
+
+  @Name(MarketingCloudConstants.PROPERTY_CHECKPOINT_DIR)
+  @Macro
+  @Nullable
+  @Description("Directory the records read by each task are checkpointed to, so that a task that is retried " +
+    "resumes its split instead of reading it from the start. It can be a local path or an HDFS path. Only splits " +
+    "with a date range are read in several segments, other splits are read again from the start. Pipelines with a " +
+    "Data Extension sink that fails on error never retry tasks, so the checkpoints are not used. If not set, " +
+    "retried tasks read their split again.")
+  private String checkpointDir;
+
+  @Name(MarketingCloudConstants.PROPERTY_WATERMARK_DIR)
+  @Macro
+  @Nullable
+  @Description("Directory the high watermark of each object is stored in. When set, every run only reads the " +
+    "records added or changed since the previous successful run: tracking events by event date, emails and mailing " +
+    "lists by modified date and data extensions by the incremental column. It can be a local path or an HDFS path.")
+  private String watermarkDir;
+
+  @Name(MarketingCloudConstants.PROPERTY_INCREMENTAL_FIELD)
+  @Macro
+  @Nullable
+  @Description("Date column data extensions are read incrementally on. Required if a watermark directory is set and " +
+    "data extensions are read.")
+  private String incrementalField;
+
+  @Name(MarketingCloudConstants.PROPERTY_WATERMARK_LOOKBACK)
+  @Macro
+  @Nullable
+  @Description("Number of minutes before the watermark of the previous run incremental reads start at, so that " +
+    "records committed late by Salesforce Marketing Cloud are not missed. Records in that window are read again. " +
+    "Defaults to 60.")
+  private Integer watermarkLookbackMinutes;
+
+  @Name(MarketingCloudConstants.PROPERTY_API_TIME_ZONE)
+  @Macro
+  @Nullable
+  @Description("Time zone the dates of the API filters are expressed in, used to compute the end of incremental " +
+    "reads and of event date windows from the start of the run. Defaults to UTC-06:00, the Salesforce Marketing " +
+    "Cloud system time.")
+  private String apiTimeZone;
+
   /**
    * Constructor for MarketingCloudSourceConfig object.
    *
@@ -193,7 +312,7 @@ public class MarketingCloudSourceConfig extends SalesforceMarketingCloudBaseConf
 
   @Nullable
   public SourceObject getObject() {
-    return getSourceObject(objectName, filter);
+    return getSourceObject(objectName);
   }
 
   @Nullable
@@ -212,7 +331,7 @@ public class MarketingCloudSourceConfig extends SalesforceMarketingCloudBaseConf
     List<SourceObject> sourceObjects = new ArrayList<>();
 
     for (String object : objects) {
-      SourceObject sourceObject = getSourceObject(object, filter);
+      SourceObject sourceObject = getSourceObject(object);
       if (sourceObject == null) {
         collector.addFailure("Unsupported object value: " + object,
                              String.format("Supported objects are: %s", SourceObject.getSupportedObjects()))
@@ -235,7 +354,7 @@ public class MarketingCloudSourceConfig extends SalesforceMarketingCloudBaseConf
     List<SourceObject> sourceObjects = new ArrayList<>();
 
     for (String object : objects) {
-      SourceObject sourceObject = getSourceObject(object, filter);
+      SourceObject sourceObject = getSourceObject(object);
       if (sourceObject == null) {
         continue;
       }
@@ -259,6 +378,73 @@ public class MarketingCloudSourceConfig extends SalesforceMarketingCloudBaseConf
     return filter;
   }
 
+  /**
+   * @return the names of the fields to read, empty to read all fields
+   */
+  public List<String> getSelectedFields() {
+    return Util.splitToList(selectedFields, ',').stream()
+      .filter(field -> !field.isEmpty())
+      .collect(Collectors.toList());
+  }
+
+  public int getEventSplitCount() {
+    return eventSplitCount == null ? 1 : eventSplitCount;
+  }
+
+  @Nullable
+  public String getEventSplitStartDate() {
+    return eventSplitStartDate;
+  }
+
+  @Nullable
+  public String getEventSplitEndDate() {
+    return eventSplitEndDate;
+  }
+
+  @Nullable
+  public String getPartitionColumn() {
+    return Util.isNullOrEmpty(partitionColumn) ? null : partitionColumn;
+  }
+
+  public int getPartitionCount() {
+    return partitionCount == null ? 1 : partitionCount;
+  }
+
+  public int getMaxRowsPerCombinedSplit() {
+    return maxRowsPerCombinedSplit == null ? 10000 : maxRowsPerCombinedSplit;
+  }
+
+  public int getPagePrefetchDepth() {
+    return pagePrefetchDepth == null ? 1 : pagePrefetchDepth;
+  }
+
+  public boolean useStreamingResponses() {
+    return streamingResponses == null ? false : streamingResponses;
+  }
+
+  @Nullable
+  public String getCheckpointDir() {
+    return Util.isNullOrEmpty(checkpointDir) ? null : checkpointDir;
+  }
+
+  @Nullable
+  public String getWatermarkDir() {
+    return Util.isNullOrEmpty(watermarkDir) ? null : watermarkDir;
+  }
+
+  @Nullable
+  public String getIncrementalField() {
+    return Util.isNullOrEmpty(incrementalField) ? null : incrementalField;
+  }
+
+  public int getWatermarkLookbackMinutes() {
+    return watermarkLookbackMinutes == null ? 60 : watermarkLookbackMinutes;
+  }
+
+  public ZoneId getApiTimeZone() {
+    return ZoneId.of(Util.isNullOrEmpty(apiTimeZone) ? MarketingCloudConstants.DEFAULT_API_TIME_ZONE : apiTimeZone);
+  }
+
   /**
    * Validates {@link MarketingCloudSourceConfig} instance.
    */
@@ -266,19 +452,54 @@ public class MarketingCloudSourceConfig extends SalesforceMarketingCloudBaseConf
     validateCredentials(collector);
     validateQueryMode(collector);
     validateFilter(collector);
+    validateEventSplits(collector);
+    validatePartitions(collector);
+    validateCombinedSplits(collector);
+    validatePagePrefetchDepth(collector);
+    validateIncremental(collector);
+    validateSchemaCache(collector);
+    validateRateLimits(collector);
   }
 
-  private SourceObject getSourceObject(String objectName, String filter) {
-    Optional<SourceObject> sourceObject = SourceObject.fromValue(objectName);
-    if (sourceObject.isPresent()) {
-      SourceObject obj = sourceObject.get();
-      obj.setFilter(filter);
-      return obj;
-    } else {
-      return null;
+  /**
+   * Validates the selected fields against the fields of the objects read: every object must have at least one of
+   * them, and each of them must be a field of at least one object.
+   *
+   * @param collector  the failure collector
+   * @param tableInfos the objects read, with all their fields
+   */
+  public void validateSelectedFields(FailureCollector collector, List<MarketingCloudObjectInfo> tableInfos) {
+    List<String> fields = getSelectedFields();
+    if (containsMacro(MarketingCloudConstants.PROPERTY_SELECTED_FIELDS) || fields.isEmpty()) {
+      return;
+    }
+    Set<String> unknownFields = new LinkedHashSet<>(fields);
+    for (MarketingCloudObjectInfo tableInfo : tableInfos) {
+      MarketingCloudObjectInfo selected = tableInfo.select(fields);
+      if (selected == null) {
+        collector.addFailure(String.format("Object '%s' has none of the selected fields.", tableInfo.getTableName()),
+                             "Select at least one field of every object read.")
+          .withConfigProperty(MarketingCloudConstants.PROPERTY_SELECTED_FIELDS);
+        continue;
+      }
+      for (Schema.Field field : selected.getSchema().getFields()) {
+        unknownFields.remove(field.getName());
+        unknownFields.remove(selected.lookupFieldsMap(field.getName()));
+      }
+    }
+    if (!tableInfos.isEmpty() && !unknownFields.isEmpty()) {
+      collector.addFailure(String.format("Selected fields %s are not fields of any object read.", unknownFields),
+                           "Remove them or correct their names.")
+        .withConfigProperty(MarketingCloudConstants.PROPERTY_SELECTED_FIELDS);
     }
   }
 
+  @Nullable
+  private SourceObject getSourceObject(String objectName) {
+    // The filter is part of the read request of each split, SourceObject values are shared by every reader in the JVM
+    return SourceObject.fromValue(objectName).orElse(null);
+  }
+
   private void validateCredentials(FailureCollector collector) {
 
     if (getConnection() != null) {
@@ -376,6 +597,106 @@ public class MarketingCloudSourceConfig extends SalesforceMarketingCloudBaseConf
     }
   }
 
+  private void validateEventSplits(FailureCollector collector) {
+    if (containsMacro(MarketingCloudConstants.PROPERTY_EVENT_SPLIT_COUNT)
+      || containsMacro(MarketingCloudConstants.PROPERTY_EVENT_SPLIT_START)
+      || containsMacro(MarketingCloudConstants.PROPERTY_EVENT_SPLIT_END)) {
+      return;
+    }
+    if (getEventSplitCount() < 1) {
+      collector.addFailure("Number of event splits must be at least 1.", null)
+        .withConfigProperty(MarketingCloudConstants.PROPERTY_EVENT_SPLIT_COUNT);
+      return;
+    }
+    if (getEventSplitCount() == 1) {
+      return;
+    }
+    if (Util.isNullOrEmpty(eventSplitStartDate)) {
+      collector.addFailure("Event split start date must be specified when reading with more than 1 event split.",
+                           null)
+        .withConfigProperty(MarketingCloudConstants.PROPERTY_EVENT_SPLIT_START);
+      return;
+    }
+    LocalDateTime start = parseEventSplitDate(eventSplitStartDate, MarketingCloudConstants.PROPERTY_EVENT_SPLIT_START,
+                                              collector);
+    LocalDateTime end = Util.isNullOrEmpty(eventSplitEndDate) ? null :
+      parseEventSplitDate(eventSplitEndDate, MarketingCloudConstants.PROPERTY_EVENT_SPLIT_END, collector);
+    if (start != null && end != null && !start.isBefore(end)) {
+      collector.addFailure("Event split end date must be after the start date.", null)
+        .withConfigProperty(MarketingCloudConstants.PROPERTY_EVENT_SPLIT_END);
+    }
+  }
+
+  private void validatePartitions(FailureCollector collector) {
+    if (containsMacro(MarketingCloudConstants.PROPERTY_PARTITION_COUNT)
+      || containsMacro(MarketingCloudConstants.PROPERTY_PARTITION_COLUMN)) {
+      return;
+    }
+    if (getPartitionCount() < 1) {
+      collector.addFailure("Number of partitions must be at least 1.", null)
+        .withConfigProperty(MarketingCloudConstants.PROPERTY_PARTITION_COUNT);
+    } else if (getPartitionCount() > 1 && getPartitionColumn() == null) {
+      collector.addFailure("Partition column must be specified when reading with more than 1 partition.", null)
+        .withConfigProperty(MarketingCloudConstants.PROPERTY_PARTITION_COLUMN);
+    }
+  }
+
+  private void validateCombinedSplits(FailureCollector collector) {
+    if (!containsMacro(MarketingCloudConstants.PROPERTY_MAX_ROWS_PER_COMBINED_SPLIT)
+      && getMaxRowsPerCombinedSplit() < 0) {
+      collector.addFailure("Maximum rows per combined split must not be negative.", null)
+        .withConfigProperty(MarketingCloudConstants.PROPERTY_MAX_ROWS_PER_COMBINED_SPLIT);
+    }
+  }
+
+  private void validatePagePrefetchDepth(FailureCollector collector) {
+    if (!containsMacro(MarketingCloudConstants.PROPERTY_PAGE_PREFETCH_DEPTH) && getPagePrefetchDepth() < 0) {
+      collector.addFailure("Page prefetch depth must not be negative.", null)
+        .withConfigProperty(MarketingCloudConstants.PROPERTY_PAGE_PREFETCH_DEPTH);
+    }
+  }
+
+  private void validateIncremental(FailureCollector collector) {
+    if (!containsMacro(MarketingCloudConstants.PROPERTY_WATERMARK_LOOKBACK) && getWatermarkLookbackMinutes() < 0) {
+      collector.addFailure("Watermark lookback must not be negative.", null)
+        .withConfigProperty(MarketingCloudConstants.PROPERTY_WATERMARK_LOOKBACK);
+    }
+    if (!containsMacro(MarketingCloudConstants.PROPERTY_API_TIME_ZONE)) {
+      try {
+        getApiTimeZone();
+      } catch (DateTimeException e) {
+        collector.addFailure(String.format("Invalid time zone '%s'.", apiTimeZone),
+                             "Specify a zone id such as 'America/Chicago' or an offset such as 'UTC-06:00'.")
+          .withConfigProperty(MarketingCloudConstants.PROPERTY_API_TIME_ZONE);
+      }
+    }
+    if (containsMacro(MarketingCloudConstants.PROPERTY_WATERMARK_DIR) || getWatermarkDir() == null
+      || containsMacro(MarketingCloudConstants.PROPERTY_INCREMENTAL_FIELD) || getIncrementalField() != null
+      || containsMacro(MarketingCloudConstants.PROPERTY_QUERY_MODE)
+      || containsMacro(MarketingCloudConstants.PROPERTY_OBJECT_NAME)
+      || containsMacro(MarketingCloudConstants.PROPERTY_OBJECT_LIST)) {
+      return;
+    }
+    boolean readsDataExtensions = getQueryMode() == SourceQueryMode.MULTI_OBJECT
+      ? getObjectList().contains(SourceObject.DATA_EXTENSION) : getObject() == SourceObject.DATA_EXTENSION;
+    if (readsDataExtensions) {
+      collector.addFailure("Incremental column must be specified when reading data extensions incrementally.", null)
+        .withConfigProperty(MarketingCloudConstants.PROPERTY_INCREMENTAL_FIELD);
+    }
+  }
+
+  @Nullable
+  private LocalDateTime parseEventSplitDate(String value, String property, FailureCollector collector) {
+    try {
+      return MarketingCloudSplitPlanner.parseDate(value);
+    } catch (DateTimeParseException e) {
+      collector.addFailure(String.format("Invalid date '%s'.", value),
+                           "Specify the date in yyyy-MM-dd or yyyy-MM-ddTHH:mm:ss format.")
+        .withConfigProperty(property);
+      return null;
+    }
+  }
+
   public List<String> getActualDataExtensionKeys(FailureCollector collector) {
     List<String> actualDataExtensionKeys = new ArrayList<>();
     try {
@@ -0,0 +1,201 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sfmc.source;
+
+import com.exacttarget.fuelsdk.ETResponse;
+import com.exacttarget.fuelsdk.ETSoapObject;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudConstants;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudObjectInfo;
+import io.cdap.plugin.sfmc.source.util.SourceObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
+
+/**
+ * Combines the splits of small objects, so that reading many small objects does not take a task, and its
+ * authentication, per object.
+ *
+ * The size of a split is estimated by retrieving the first page of its records. A split whose records fit in the
+ * first page is estimated at its exact row count and is packed with other small splits into combined splits of at
+ * most {@code maxRows} rows. A split with more pages is counted as larger than {@code maxRows}, as the first page is
+ * only a lower bound of its size, and is read by a split of its own. Objects that were cut into several splits, by
+ * event windows or by range partitions, are known to be large and are not probed: their splits keep their share of
+ * the rows assumed for the object, counted as larger than {@code maxRows}. The splits are returned largest first, so
+ * that the longest reads are scheduled before the short ones.
+ */
+final class MarketingCloudSplitPacker {
+  private static final Logger LOG = LoggerFactory.getLogger(MarketingCloudSplitPacker.class);
+
+  private final long maxRows;
+
+  /**
+   * Constructor for MarketingCloudSplitPacker.
+   *
+   * @param maxRows The maximum number of estimated rows of a combined split
+   */
+  MarketingCloudSplitPacker(long maxRows) {
+    this.maxRows = maxRows;
+  }
+
+  /**
+   * Estimates the number of rows of each split, with at most {@code parallelism} requests in flight.
+   *
+   * @param client      the client
+   * @param tableInfos  the objects read by the splits
+   * @param splits      the splits
+   * @param filter      the filter string of the source, null or empty to read all records
+   * @param parallelism the maximum number of concurrent requests
+   * @return the splits, in the same order, with their estimated number of rows as their length
+   */
+  List<MarketingCloudInputSplit> estimate(MarketingCloudClient client, List<MarketingCloudObjectInfo> tableInfos,
+                                          List<MarketingCloudInputSplit> splits, @Nullable String filter,
+                                          int parallelism) {
+    if (splits.isEmpty()) {
+      return splits;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, splits.size()), runnable -> {
+      Thread thread = new Thread(runnable, "sfmc-split-estimate");
+      thread.setDaemon(true);
+      return thread;
+    });
+    Map<String, Integer> splitCounts = new HashMap<>();
+    for (MarketingCloudInputSplit split : splits) {
+      splitCounts.merge(split.getObjectName() + "/" + split.getTableName(), 1, Integer::sum);
+    }
+    try {
+      List<Future<Long>> futures = new ArrayList<>(splits.size());
+      for (MarketingCloudInputSplit split : splits) {
+        if (splitCounts.get(split.getObjectName() + "/" + split.getTableName()) > 1) {
+          futures.add(null);
+          continue;
+        }
+        MarketingCloudObjectInfo tableInfo = findTableInfo(tableInfos, split);
+        futures.add(executor.submit(() -> estimateRows(client, tableInfo, split, filter)));
+      }
+
+      List<MarketingCloudInputSplit> estimated = new ArrayList<>(splits.size());
+      for (int i = 0; i < futures.size(); i++) {
+        MarketingCloudInputSplit split = splits.get(i);
+        if (futures.get(i) == null) {
+          estimated.add(split.withLength(Math.max(split.getLength(), maxRows + 1)));
+          continue;
+        }
+        long rows;
+        try {
+          rows = futures.get(i).get();
+        } catch (ExecutionException e) {
+          // a split that cannot be estimated is read on its own, the read reports the error if it persists
+          LOG.warn("Unable to estimate the size of '{}', it is read by a split of its own.", split.getTableName(),
+                   e.getCause());
+          rows = maxRows + 1;
+        }
+        estimated.add(split.withLength(rows));
+      }
+      return estimated;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while estimating the size of the splits", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Packs the splits whose estimated size is at most {@code maxRows} into combined splits, first fit by decreasing
+   * size. Larger splits are kept as they are.
+   *
+   * @param splits the splits, with their estimated number of rows as their length
+   * @return the splits to read, largest first
+   */
+  List<MarketingCloudInputSplit> pack(List<MarketingCloudInputSplit> splits) {
+    List<MarketingCloudInputSplit> sorted = new ArrayList<>(splits);
+    sorted.sort(Comparator.comparingLong(MarketingCloudInputSplit::getLength).reversed());
+
+    List<MarketingCloudInputSplit> packed = new ArrayList<>();
+    List<List<MarketingCloudInputSplit>> bins = new ArrayList<>();
+    List<Long> binRows = new ArrayList<>();
+    for (MarketingCloudInputSplit split : sorted) {
+      if (split.getLength() > maxRows) {
+        packed.add(split);
+        continue;
+      }
+      int bin = 0;
+      while (bin < bins.size() && binRows.get(bin) + split.getLength() > maxRows) {
+        bin++;
+      }
+      if (bin == bins.size()) {
+        bins.add(new ArrayList<>());
+        binRows.add(0L);
+      }
+      bins.get(bin).add(split);
+      binRows.set(bin, binRows.get(bin) + split.getLength());
+    }
+    for (List<MarketingCloudInputSplit> bin : bins) {
+      packed.add(MarketingCloudInputSplit.combine(bin));
+    }
+    packed.sort(Comparator.comparingLong(MarketingCloudInputSplit::getLength).reversed());
+    LOG.debug("Packed {} splits into {} splits", splits.size(), packed.size());
+    return packed;
+  }
+
+  /**
+   * Retrieves the first page of the records of the split, with a single property.
+   */
+  private long estimateRows(MarketingCloudClient client, @Nullable MarketingCloudObjectInfo tableInfo,
+                            MarketingCloudInputSplit split, @Nullable String filter) throws Exception {
+    SourceObject object = SourceObject.valueOf(split.getObjectName());
+    String dataExtensionKey = split.getTableName().replaceAll(MarketingCloudConstants.DATA_EXTENSION_PREFIX, "");
+    // Data extensions must list a column and tracking events all have an event date, other objects are retrieved
+    // with their default properties, as not every field of their schema can be retrieved.
+    List<String> properties;
+    if (object.isTrackingEvent()) {
+      properties = Collections.singletonList(MarketingCloudConstants.EVENT_DATE);
+    } else if (object != SourceObject.DATA_EXTENSION || tableInfo == null) {
+      properties = Collections.emptyList();
+    } else {
+      properties = tableInfo.getPropertyNames().subList(0, Math.min(1, tableInfo.getPropertyNames().size()));
+    }
+    MarketingCloudReadRequest request = MarketingCloudReadRequest.of(object, dataExtensionKey, properties, filter);
+    if (split.getRangeProperty() != null) {
+      request = request.withRange(split.getRangeProperty(), split.getRangeStart(), split.getRangeEnd());
+    }
+    ETResponse<? extends ETSoapObject> response = client.fetchRecords(request, null);
+    long rows = response.getObjects().size();
+    return response.hasMoreResults() ? Math.max(rows, maxRows + 1) : rows;
+  }
+
+  @Nullable
+  private static MarketingCloudObjectInfo findTableInfo(List<MarketingCloudObjectInfo> tableInfos,
+                                                        MarketingCloudInputSplit split) {
+    return tableInfos.stream()
+      .filter(info -> info.getObject().name().equals(split.getObjectName())
+        && info.getTableName().equals(split.getTableName()))
+      .findFirst()
+      .orElse(null);
+  }
+}
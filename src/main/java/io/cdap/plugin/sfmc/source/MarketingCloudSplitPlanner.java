@@ -0,0 +1,210 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.source;
+
+import io.cdap.plugin.sfmc.source.util.MarketingCloudConstants;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudObjectInfo;
+import io.cdap.plugin.sfmc.source.util.SourceObject;
+import io.cdap.plugin.sfmc.source.util.Util;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Plans the input splits for the objects read by the {@link MarketingCloudInputFormat}.
+ *
+ * Tracking event objects are cut into {@code eventDate} windows so that several tasks can read the same object in
+ * parallel. The first window has no lower bound and the last window has no upper bound, so together the windows
+ * always cover every event matched by the user filter. Objects read incrementally are restricted to their incremental
+ * range instead, whose bounds are kept by the first and last windows.
+ */
+public class MarketingCloudSplitPlanner {
+  private static final DateTimeFormatter BOUNDARY_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+  private static final long MIN_SEGMENT_SECONDS = 60;
+
+  private final int eventSplitCount;
+  private final LocalDateTime start;
+  private final LocalDateTime end;
+
+  /**
+   * Constructor for MarketingCloudSplitPlanner.
+   *
+   * @param eventSplitCount The number of windows each tracking event object is cut into
+   * @param start           The event date the windows start at, null to read events with a single split
+   * @param end             The event date the windows end at
+   */
+  MarketingCloudSplitPlanner(int eventSplitCount, @Nullable LocalDateTime start, LocalDateTime end) {
+    this.eventSplitCount = eventSplitCount;
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * Creates the planner for the passed plugin conf.
+   *
+   * @param conf the plugin conf
+   * @param now  the time used as the end of the windows if the conf does not specify one
+   * @return The instance of MarketingCloudSplitPlanner
+   */
+  static MarketingCloudSplitPlanner fromConfig(MarketingCloudSourceConfig conf, LocalDateTime now) {
+    LocalDateTime start = Util.isNullOrEmpty(conf.getEventSplitStartDate()) ? null :
+      parseDate(conf.getEventSplitStartDate());
+    LocalDateTime end = Util.isNullOrEmpty(conf.getEventSplitEndDate()) ? now : parseDate(conf.getEventSplitEndDate());
+    return new MarketingCloudSplitPlanner(conf.getEventSplitCount(), start, end);
+  }
+
+  /**
+   * Parses a date in yyyy-MM-dd or yyyy-MM-ddTHH:mm:ss format.
+   *
+   * @param value the date string
+   * @return The parsed date
+   */
+  static LocalDateTime parseDate(String value) {
+    String date = value.trim();
+    return date.indexOf('T') < 0 ? LocalDate.parse(date).atStartOfDay() : LocalDateTime.parse(date);
+  }
+
+  /**
+   * Plans the splits for the passed object. Objects other than tracking events are always read by a single split.
+   *
+   * @param tableInfo the object to plan the splits for
+   * @return The list of splits reading the object
+   */
+  List<MarketingCloudInputSplit> plan(MarketingCloudObjectInfo tableInfo) {
+    SourceObject object = tableInfo.getObject();
+    if (!object.isTrackingEvent() || start == null) {
+      return Collections.singletonList(new MarketingCloudInputSplit(object.name(), tableInfo.getTableName(), null,
+                                                                    null, null,
+                                                                    MarketingCloudInputSplit.UNESTIMATED_ROWS));
+    }
+    return planWindows(tableInfo, start, end, null, null);
+  }
+
+  /**
+   * Plans the splits for the passed object, restricted to the range of an incremental read. Tracking events are cut
+   * into windows between the start of the range, or the split start date if the object was never read before, and the
+   * end of the range. Other objects are read by a single split covering the range.
+   *
+   * @param tableInfo the object to plan the splits for
+   * @param range     the incremental range of the object
+   * @return The list of splits reading the object
+   */
+  List<MarketingCloudInputSplit> plan(MarketingCloudObjectInfo tableInfo, IncrementalRange range) {
+    SourceObject object = tableInfo.getObject();
+    LocalDateTime windowStart = range.getStart() == null ? start : parseDate(range.getStart());
+    if (!object.isTrackingEvent() || windowStart == null) {
+      return Collections.singletonList(new MarketingCloudInputSplit(object.name(), tableInfo.getTableName(),
+                                                                    range.getProperty(), range.getStart(),
+                                                                    range.getEnd(),
+                                                                    MarketingCloudInputSplit.UNESTIMATED_ROWS));
+    }
+    return planWindows(tableInfo, windowStart, parseDate(range.getEnd()), range.getStart(), range.getEnd());
+  }
+
+  /**
+   * Cuts the event dates between the window start and end into windows, the first one starting at the lower bound
+   * and the last one ending at the upper bound.
+   */
+  private List<MarketingCloudInputSplit> planWindows(MarketingCloudObjectInfo tableInfo, LocalDateTime windowStart,
+                                                     LocalDateTime windowEnd, @Nullable String lowerBound,
+                                                     @Nullable String upperBound) {
+    String objectName = tableInfo.getObject().name();
+    String tableName = tableInfo.getTableName();
+    if (eventSplitCount <= 1 || !windowStart.isBefore(windowEnd)) {
+      String rangeProperty = lowerBound == null && upperBound == null ? null : MarketingCloudConstants.EVENT_DATE;
+      return Collections.singletonList(new MarketingCloudInputSplit(objectName, tableName, rangeProperty, lowerBound,
+                                                                    upperBound,
+                                                                    MarketingCloudInputSplit.UNESTIMATED_ROWS));
+    }
+
+    long seconds = Duration.between(windowStart, windowEnd).getSeconds();
+    int windows = (int) Math.min(eventSplitCount, Math.max(seconds, 1));
+    long step = seconds / windows;
+
+    //The rows of the object are not estimated yet, the windows share the rows assumed for it evenly.
+    long rows = Math.max(MarketingCloudInputSplit.UNESTIMATED_ROWS / windows, 1);
+    List<MarketingCloudInputSplit> splits = new ArrayList<>(windows);
+    String lower = lowerBound;
+    for (int i = 1; i <= windows; i++) {
+      String upper = i == windows ? upperBound : windowStart.plusSeconds(step * i).format(BOUNDARY_FORMAT);
+      splits.add(new MarketingCloudInputSplit(objectName, tableName, MarketingCloudConstants.EVENT_DATE, lower,
+                                              upper, rows));
+      lower = upper;
+    }
+    return splits;
+  }
+
+  /**
+   * Converts an instant to the local date time of the time zone the API filters are expressed in, independently of
+   * the default time zone of the JVM.
+   *
+   * @param epochMillis the instant in milliseconds since the epoch
+   * @param zone        the time zone of the API
+   * @return The date time in the API time zone
+   */
+  static LocalDateTime toApiTime(long epochMillis, ZoneId zone) {
+    return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), zone);
+  }
+
+  /**
+   * Formats a date the way the bounds of the split ranges are written.
+   *
+   * @param date the date
+   * @return The formatted date
+   */
+  static String formatDate(LocalDateTime date) {
+    return date.format(BOUNDARY_FORMAT);
+  }
+
+  /**
+   * Cuts the range of a split into consecutive windows of at least a minute, so that the split can be read and
+   * checkpointed one window at a time. Only ranges with both bounds can be cut, other splits are a single segment.
+   *
+   * @param split       the split
+   * @param maxSegments the maximum number of windows
+   * @return the boundaries of the windows, one more than the number of windows, starting and ending with the bounds
+   * of the range of the split
+   */
+  static List<String> segmentBoundaries(MarketingCloudInputSplit split, int maxSegments) {
+    List<String> boundaries = new ArrayList<>();
+    boundaries.add(split.getRangeStart());
+    if (split.getRangeStart() != null && split.getRangeEnd() != null) {
+      try {
+        LocalDateTime lower = parseDate(split.getRangeStart());
+        long seconds = Duration.between(lower, parseDate(split.getRangeEnd())).getSeconds();
+        int segments = (int) Math.max(1, Math.min(maxSegments, seconds / MIN_SEGMENT_SECONDS));
+        for (int i = 1; i < segments; i++) {
+          boundaries.add(lower.plusSeconds(seconds * i / segments).format(BOUNDARY_FORMAT));
+        }
+      } catch (DateTimeParseException e) {
+        // a range that is not a date range is read as a single segment
+      }
+    }
+    boundaries.add(split.getRangeEnd());
+    return boundaries;
+  }
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.source;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import javax.annotation.Nullable;
+
+/**
+ * Checkpoint of the records read from an input split, kept so that a retried task attempt resumes the split.
+ *
+ * A split is read in consecutive segments, each a window of the range of the split. The records of a segment are
+ * written to a file as they are read, and once the segment has been read completely the file is committed and the
+ * number of completed segments is recorded. A later attempt replays the records of the completed segments from their
+ * files and only retrieves the remaining segments from the API. Records of a segment that was not completed are
+ * discarded, so the records are neither lost nor read twice.
+ *
+ * The checkpoints of a run are stored under a directory of their own, one directory per split, which is deleted once
+ * the run has finished.
+ */
+final class SplitCheckpoint {
+  private static final Logger LOG = LoggerFactory.getLogger(SplitCheckpoint.class);
+  private static final Gson GSON = new Gson();
+  private static final String STATE_FILE = "state.json";
+  private static final String SEGMENT_FILE = "segment-%05d.records";
+
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte INT = 2;
+  private static final byte LONG = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte BOOLEAN = 5;
+
+  private final FileSystem fileSystem;
+  private final Path directory;
+  private final int segments;
+  private State state;
+
+  @VisibleForTesting
+  SplitCheckpoint(FileSystem fileSystem, Path directory, int segments) throws IOException {
+    this.fileSystem = fileSystem;
+    this.directory = directory;
+    this.segments = segments;
+    this.state = readState();
+  }
+
+  /**
+   * Opens the checkpoint of a split, resuming from what a previous attempt recorded.
+   *
+   * @param runDirectory The checkpoint directory of the run, a local path or any URI supported by Hadoop
+   * @param split        The split being read
+   * @param segments     The number of segments the split is read in
+   * @return The checkpoint
+   * @throws IOException if the file system of the directory could not be created
+   */
+  static SplitCheckpoint open(String runDirectory, MarketingCloudInputSplit split, int segments) throws IOException {
+    Path path = new Path(runDirectory, getSplitId(split));
+    return new SplitCheckpoint(path.getFileSystem(new Configuration()), path, segments);
+  }
+
+  /**
+   * Deletes the checkpoints of a run.
+   *
+   * @param runDirectory The checkpoint directory of the run
+   */
+  static void deleteRun(String runDirectory) {
+    try {
+      Path path = new Path(runDirectory);
+      path.getFileSystem(new Configuration()).delete(path, true);
+    } catch (IOException e) {
+      LOG.warn("Unable to delete the checkpoint directory {}", runDirectory, e);
+    }
+  }
+
+  /**
+   * Returns the id of the split, the same for every attempt reading it.
+   */
+  static String getSplitId(MarketingCloudInputSplit split) {
+    String key = String.join("\u0000", split.getObjectName(), split.getTableName(),
+                             String.valueOf(split.getRangeProperty()), String.valueOf(split.getRangeStart()),
+                             String.valueOf(split.getRangeEnd()));
+    return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString();
+  }
+
+  /**
+   * @return the number of segments whose records were all read by previous attempts
+   */
+  int getCompletedSegments() {
+    return state.completedSegments;
+  }
+
+  /**
+   * Opens the records of a completed segment.
+   *
+   * @param segment The segment, lower than the number of completed segments
+   * @param schema  The schema of the records
+   * @return The reader of the records
+   * @throws IOException if the records could not be read
+   */
+  SegmentReader readSegment(int segment, Schema schema) throws IOException {
+    return new SegmentReader(new DataInputStream(new BufferedInputStream(fileSystem.open(getSegmentFile(segment)))),
+                             schema);
+  }
+
+  /**
+   * Starts recording the records of a segment.
+   *
+   * @param segment The segment, which must be the first segment that is not completed
+   * @return The writer of the records
+   * @throws IOException if the file of the segment could not be created
+   */
+  SegmentWriter writeSegment(int segment) throws IOException {
+    if (segment != state.completedSegments) {
+      throw new IllegalStateException(String.format("Segment %d cannot be written after %d completed segments",
+                                                    segment, state.completedSegments));
+    }
+    Path file = getSegmentFile(segment);
+    Path temporaryFile = file.suffix("." + UUID.randomUUID() + ".tmp");
+    return new SegmentWriter(fileSystem.create(temporaryFile, true), temporaryFile, file);
+  }
+
+  private Path getSegmentFile(int segment) {
+    return new Path(directory, String.format(SEGMENT_FILE, segment));
+  }
+
+  private State readState() throws IOException {
+    Path file = new Path(directory, STATE_FILE);
+    if (!fileSystem.exists(file)) {
+      return new State(segments, 0, 0);
+    }
+    try (Reader reader = new InputStreamReader(fileSystem.open(file), StandardCharsets.UTF_8)) {
+      State state = GSON.fromJson(reader, State.class);
+      if (state != null && state.segments == segments) {
+        LOG.info("Resuming the split from checkpoint {} after {} of {} segments and {} records",
+                 directory, state.completedSegments, segments, state.records);
+        return state;
+      }
+    } catch (JsonParseException e) {
+      LOG.warn("Ignoring the invalid checkpoint {}", file, e);
+    }
+    return new State(segments, 0, 0);
+  }
+
+  private void writeState(State state) throws IOException {
+    Path file = new Path(directory, STATE_FILE);
+    Path temporaryFile = file.suffix("." + UUID.randomUUID() + ".tmp");
+    try (FSDataOutputStream out = fileSystem.create(temporaryFile, true)) {
+      out.write(GSON.toJson(state).getBytes(StandardCharsets.UTF_8));
+    }
+    rename(temporaryFile, file);
+  }
+
+  private void rename(Path source, Path target) throws IOException {
+    if (fileSystem.exists(target)) {
+      fileSystem.delete(target, false);
+    }
+    if (!fileSystem.rename(source, target)) {
+      throw new IOException(String.format("Unable to rename checkpoint file %s to %s", source, target));
+    }
+  }
+
+  /**
+   * Writes the records of a segment. The records are only part of the checkpoint once the segment is committed.
+   */
+  final class SegmentWriter implements Closeable {
+    private final DataOutputStream out;
+    private final Path temporaryFile;
+    private final Path file;
+    private long records;
+    private boolean closed;
+
+    private SegmentWriter(FSDataOutputStream out, Path temporaryFile, Path file) {
+      this.out = new DataOutputStream(new BufferedOutputStream(out));
+      this.temporaryFile = temporaryFile;
+      this.file = file;
+    }
+
+    void write(StructuredRecord record) throws IOException {
+      out.writeBoolean(true);
+      List<Schema.Field> fields = record.getSchema().getFields();
+      for (Schema.Field field : fields) {
+        writeValue(record.get(field.getName()));
+      }
+      records++;
+    }
+
+    /**
+     * Records the segment as completed.
+     */
+    void commit() throws IOException {
+      out.writeBoolean(false);
+      close();
+      rename(temporaryFile, file);
+      State completed = new State(segments, state.completedSegments + 1, state.records + records);
+      writeState(completed);
+      state = completed;
+    }
+
+    /**
+     * Stops writing the segment. Unless it was committed, the records written are discarded.
+     */
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      out.close();
+    }
+
+    private void writeValue(@Nullable Object value) throws IOException {
+      if (value == null) {
+        out.writeByte(NULL);
+      } else if (value instanceof Integer) {
+        out.writeByte(INT);
+        out.writeInt((Integer) value);
+      } else if (value instanceof Long) {
+        out.writeByte(LONG);
+        out.writeLong((Long) value);
+      } else if (value instanceof Double) {
+        out.writeByte(DOUBLE);
+        out.writeDouble((Double) value);
+      } else if (value instanceof Boolean) {
+        out.writeByte(BOOLEAN);
+        out.writeBoolean((Boolean) value);
+      } else {
+        byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+        out.writeByte(STRING);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+    }
+  }
+
+  /**
+   * Reads the records of a completed segment.
+   */
+  static final class SegmentReader implements Closeable {
+    private final DataInputStream in;
+    private final Schema schema;
+    private final List<Schema.Field> fields;
+
+    private SegmentReader(DataInputStream in, Schema schema) {
+      this.in = in;
+      this.schema = schema;
+      this.fields = schema.getFields();
+    }
+
+    /**
+     * @return the next record, null once all records have been read
+     */
+    @Nullable
+    StructuredRecord next() throws IOException {
+      if (!in.readBoolean()) {
+        return null;
+      }
+      StructuredRecord.Builder recordBuilder = StructuredRecord.builder(schema);
+      for (Schema.Field field : fields) {
+        recordBuilder.set(field.getName(), readValue());
+      }
+      return recordBuilder.build();
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+
+    @Nullable
+    private Object readValue() throws IOException {
+      byte type = in.readByte();
+      switch (type) {
+        case NULL:
+          return null;
+        case INT:
+          return in.readInt();
+        case LONG:
+          return in.readLong();
+        case DOUBLE:
+          return in.readDouble();
+        case BOOLEAN:
+          return in.readBoolean();
+        case STRING:
+          byte[] bytes = new byte[in.readInt()];
+          in.readFully(bytes);
+          return new String(bytes, StandardCharsets.UTF_8);
+        default:
+          throw new IOException("Invalid value type " + type + " in checkpoint");
+      }
+    }
+  }
+
+  /**
+   * Progress of the split, stored as JSON.
+   */
+  private static final class State {
+    private final int segments;
+    private final int completedSegments;
+    private final long records;
+
+    private State(int segments, int completedSegments, long records) {
+      this.segments = segments;
+      this.completedSegments = completedSegments;
+      this.records = records;
+    }
+  }
+}
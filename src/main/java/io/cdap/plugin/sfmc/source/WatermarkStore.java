@@ -0,0 +1,175 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.source;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.Nullable;
+
+/**
+ * Store of the high watermarks of the objects read incrementally, one JSON file per object in a local or HDFS
+ * directory.
+ *
+ * The watermark a run reads up to is staged as a pending file named after the run when the run is prepared, and only
+ * replaces the current watermark once the run succeeded. A failed run discards its pending files, so the next run
+ * reads the same range again.
+ */
+final class WatermarkStore {
+  private static final Gson GSON = new Gson();
+  private static final String EXTENSION = ".json";
+  private static final String PENDING_EXTENSION = ".pending";
+
+  private final FileSystem fileSystem;
+  private final Path directory;
+
+  @VisibleForTesting
+  WatermarkStore(FileSystem fileSystem, Path directory) {
+    this.fileSystem = fileSystem;
+    this.directory = directory;
+  }
+
+  /**
+   * Creates the store of the watermarks of a source.
+   *
+   * @param directory     The watermark directory, a local path or any URI supported by Hadoop
+   * @param referenceName The reference name of the source, which keeps the watermarks of different sources apart
+   * @return The store
+   * @throws IOException if the file system of the directory could not be created
+   */
+  static WatermarkStore create(String directory, String referenceName) throws IOException {
+    Path path = new Path(directory, referenceName);
+    return new WatermarkStore(path.getFileSystem(new Configuration()), path);
+  }
+
+  /**
+   * Returns the watermark of the object recorded by the last successful run.
+   *
+   * @param tableName The table name of the object
+   * @return The watermark, null if the object was never read successfully
+   * @throws IOException if the watermark file could not be read
+   */
+  @Nullable
+  String get(String tableName) throws IOException {
+    Path file = new Path(directory, encode(tableName) + EXTENSION);
+    if (!fileSystem.exists(file)) {
+      return null;
+    }
+    try (Reader reader = new InputStreamReader(fileSystem.open(file), StandardCharsets.UTF_8)) {
+      Entry entry = GSON.fromJson(reader, Entry.class);
+      return entry == null ? null : entry.watermark;
+    } catch (JsonParseException e) {
+      throw new IOException(String.format("Watermark file %s is not valid", file), e);
+    }
+  }
+
+  /**
+   * Stages the watermark the run reads the object up to.
+   *
+   * @param tableName The table name of the object
+   * @param watermark The watermark
+   * @param runId     The id of the run
+   * @throws IOException if the pending file could not be written
+   */
+  void stage(String tableName, String watermark, String runId) throws IOException {
+    fileSystem.mkdirs(directory);
+    Path file = new Path(directory, encode(tableName) + EXTENSION + getPendingSuffix(runId));
+    try (FSDataOutputStream out = fileSystem.create(file, true)) {
+      out.write(GSON.toJson(new Entry(watermark)).getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Makes the watermarks staged by the run the current ones.
+   *
+   * @param runId The id of the run
+   * @throws IOException if a watermark could not be replaced
+   */
+  void commit(String runId) throws IOException {
+    String suffix = getPendingSuffix(runId);
+    for (Path pending : getPendingFiles(runId)) {
+      String name = pending.getName();
+      Path file = new Path(directory, name.substring(0, name.length() - suffix.length()));
+      fileSystem.delete(file, false);
+      if (!fileSystem.rename(pending, file)) {
+        throw new IOException(String.format("Unable to rename %s to %s", pending, file));
+      }
+    }
+  }
+
+  /**
+   * Discards the watermarks staged by the run, leaving the current ones in place.
+   *
+   * @param runId The id of the run
+   * @throws IOException if a pending file could not be deleted
+   */
+  void discard(String runId) throws IOException {
+    for (Path pending : getPendingFiles(runId)) {
+      fileSystem.delete(pending, false);
+    }
+  }
+
+  private Path[] getPendingFiles(String runId) throws IOException {
+    if (!fileSystem.exists(directory)) {
+      return new Path[0];
+    }
+    String suffix = EXTENSION + getPendingSuffix(runId);
+    FileStatus[] statuses = fileSystem.listStatus(directory, path -> path.getName().endsWith(suffix));
+    Path[] paths = new Path[statuses.length];
+    for (int i = 0; i < statuses.length; i++) {
+      paths[i] = statuses[i].getPath();
+    }
+    return paths;
+  }
+
+  private static String getPendingSuffix(String runId) {
+    return "." + encode(runId) + PENDING_EXTENSION;
+  }
+
+  private static String encode(String value) {
+    try {
+      return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+    } catch (UnsupportedEncodingException e) {
+      // UTF-8 is always supported
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * The watermark of an object.
+   */
+  private static final class Entry {
+    private String watermark;
+
+    private Entry(String watermark) {
+      this.watermark = watermark;
+    }
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.source.util;
+
+import com.exacttarget.fuelsdk.ETApiObject;
+
+import javax.annotation.Nullable;
+
+/**
+ * Reads the raw value of a single field from a Salesforce Marketing Cloud object.
+ */
+public interface FieldAccessor {
+
+  /**
+   * Reads the field value.
+   *
+   * @param row The object to read the value from
+   * @return The raw field value
+   */
+  @Nullable
+  Object get(ETApiObject row);
+}
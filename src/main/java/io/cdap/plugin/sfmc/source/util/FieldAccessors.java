@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.source.util;
+
+import com.exacttarget.fuelsdk.ETApiObject;
+import com.exacttarget.fuelsdk.ETDataExtensionRow;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled field accessors for the Salesforce Marketing Cloud objects.
+ *
+ * The getter of a field is looked up once per object class and compiled into a {@link FieldAccessor}, so reading a
+ * field value does not go through reflection for every row.
+ */
+public final class FieldAccessors {
+  private static final Logger LOG = LoggerFactory.getLogger(FieldAccessors.class);
+  private static final FieldAccessor NULL_ACCESSOR = row -> null;
+  private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, ETApiObject.class);
+  private static final ClassValue<Map<String, FieldAccessor>> GETTERS = new ClassValue<Map<String, FieldAccessor>>() {
+    @Override
+    protected Map<String, FieldAccessor> computeValue(Class<?> type) {
+      return new ConcurrentHashMap<>();
+    }
+  };
+
+  private FieldAccessors() {
+  }
+
+  /**
+   * Returns the accessors for all fields of the object schema, in the order of the schema fields.
+   *
+   * @param objectInfo The object info
+   * @param rowType    The class of the rows the values are read from
+   * @return The array of accessors
+   */
+  public static FieldAccessor[] forObject(MarketingCloudObjectInfo objectInfo, Class<?> rowType) {
+    List<Schema.Field> fields = objectInfo.getSchema().getFields();
+    FieldAccessor[] accessors = new FieldAccessor[fields.size()];
+    for (int i = 0; i < accessors.length; i++) {
+      String fieldName = fields.get(i).getName();
+      if (ETDataExtensionRow.class.isAssignableFrom(rowType)) {
+        accessors[i] = forColumn(objectInfo.lookupFieldsMap(fieldName));
+      } else {
+        accessors[i] = forField(rowType, fieldName);
+      }
+    }
+    return accessors;
+  }
+
+  /**
+   * Returns the accessor for a data extension column.
+   *
+   * @param columnName The column name as known by the API
+   * @return The accessor reading the column of a {@link ETDataExtensionRow}
+   */
+  public static FieldAccessor forColumn(String columnName) {
+    return row -> ((ETDataExtensionRow) row).getColumn(columnName);
+  }
+
+  /**
+   * Returns the accessor calling the getter of the field. Accessors are compiled once per class and field.
+   *
+   * @param type      The object class
+   * @param fieldName The field name
+   * @return The accessor, which returns null if the class has no getter for the field
+   */
+  public static FieldAccessor forField(Class<?> type, String fieldName) {
+    return GETTERS.get(type).computeIfAbsent(fieldName, name -> compile(type, name));
+  }
+
+  private static FieldAccessor compile(Class<?> type, String fieldName) {
+    Method getter;
+    try {
+      getter = type.getMethod("get" + fieldName.substring(0, 1).toUpperCase() + fieldName.substring(1));
+    } catch (NoSuchMethodException e) {
+      LOG.warn("No getter found for {}.{}, the field will be read as null", type.getSimpleName(), fieldName);
+      return NULL_ACCESSOR;
+    }
+
+    MethodHandle handle;
+    try {
+      handle = MethodHandles.publicLookup().unreflect(getter);
+    } catch (IllegalAccessException e) {
+      LOG.warn("Getter for {}.{} is not accessible, the field will be read as null", type.getSimpleName(), fieldName);
+      return NULL_ACCESSOR;
+    }
+
+    try {
+      //Spin a class implementing FieldAccessor that calls the getter directly, which the JIT can inline.
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      CallSite site = LambdaMetafactory.metafactory(lookup, "get", MethodType.methodType(FieldAccessor.class),
+                                                    ACCESSOR_TYPE, handle, handle.type().wrap());
+      return (FieldAccessor) site.getTarget().invoke();
+    } catch (Throwable t) {
+      LOG.debug("Falling back to a method handle for {}.{}", type.getSimpleName(), fieldName, t);
+    }
+
+    MethodHandle generic = handle.asType(ACCESSOR_TYPE);
+    return row -> {
+      try {
+        return (Object) generic.invokeExact(row);
+      } catch (RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable t) {
+        throw new IllegalStateException(String.format("Error while fetching %s.%s value", type.getSimpleName(),
+                                                      fieldName), t);
+      }
+    };
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.source.util;
+
+import com.exacttarget.fuelsdk.ETExpression;
+import com.exacttarget.fuelsdk.ETSdkException;
+
+import javax.annotation.Nullable;
+
+/**
+ * Utility class to build the filter expressions sent to Salesforce Marketing Cloud.
+ */
+public class FilterExpressions {
+
+  /**
+   * Parses the filter string, an empty expression is returned if there is no filter.
+   *
+   * @param filter The filter string
+   * @return The parsed expression
+   * @throws ETSdkException The FuelSDKException if the filter string is not valid
+   */
+  public static ETExpression parse(@Nullable String filter) throws ETSdkException {
+    if (Util.isNullOrEmpty(filter)) {
+      return new ETExpression();
+    }
+    return ETExpression.parse(filter);
+  }
+
+  /**
+   * Combines two expressions with AND. Empty expressions are ignored.
+   *
+   * @param left  The left expression
+   * @param right The right expression
+   * @return The combined expression
+   */
+  public static ETExpression and(ETExpression left, ETExpression right) {
+    if (isEmpty(left)) {
+      return right;
+    }
+    if (isEmpty(right)) {
+      return left;
+    }
+    ETExpression expression = new ETExpression();
+    expression.setOperator(ETExpression.Operator.AND);
+    expression.addSubexpression(left);
+    expression.addSubexpression(right);
+    return expression;
+  }
+
+  /**
+   * Builds the expression matching the property values in the range [start, end).
+   *
+   * @param property The property name
+   * @param start    The inclusive lower bound, null if the range has no lower bound
+   * @param end      The exclusive upper bound, null if the range has no upper bound
+   * @return The range expression, empty if the range has no bounds
+   */
+  public static ETExpression range(String property, @Nullable String start, @Nullable String end) {
+    ETExpression lower = new ETExpression();
+    if (start != null) {
+      lower = compare(property, ETExpression.Operator.GREATER_THAN_OR_EQUALS, start);
+    }
+    ETExpression upper = new ETExpression();
+    if (end != null) {
+      upper = compare(property, ETExpression.Operator.LESS_THAN, end);
+    }
+    return and(lower, upper);
+  }
+
+  /**
+   * Copies the expression and all of its nested subexpressions, so the copy can be changed without affecting the
+   * expression.
+   *
+   * @param expression The expression
+   * @return The copy
+   */
+  public static ETExpression copy(ETExpression expression) {
+    ETExpression copy = new ETExpression();
+    copy.setProperty(expression.getProperty());
+    copy.setOperator(expression.getOperator());
+    for (String value : expression.getValues()) {
+      copy.addValue(value);
+    }
+    for (ETExpression subexpression : expression.getSubexpressions()) {
+      copy.addSubexpression(copy(subexpression));
+    }
+    return copy;
+  }
+
+  /**
+   * Returns whether the expression has nothing to filter on.
+   *
+   * @param expression The expression
+   * @return true if the expression is empty
+   */
+  public static boolean isEmpty(@Nullable ETExpression expression) {
+    return expression == null || expression.getOperator() == null;
+  }
+
+  /**
+   * Combines two expressions with OR. Neither expression may be empty.
+   *
+   * @param left  The left expression
+   * @param right The right expression
+   * @return The combined expression
+   */
+  public static ETExpression or(ETExpression left, ETExpression right) {
+    ETExpression expression = new ETExpression();
+    expression.setOperator(ETExpression.Operator.OR);
+    expression.addSubexpression(left);
+    expression.addSubexpression(right);
+    return expression;
+  }
+
+  /**
+   * Builds the expression matching the records without a value of the property.
+   *
+   * @param property The property name
+   * @return The expression
+   */
+  public static ETExpression isNull(String property) {
+    ETExpression expression = new ETExpression();
+    expression.setProperty(property);
+    expression.setOperator(ETExpression.Operator.IS_NULL);
+    return expression;
+  }
+
+  private static ETExpression compare(String property, ETExpression.Operator operator, String value) {
+    ETExpression expression = new ETExpression();
+    expression.setProperty(property);
+    expression.setOperator(operator);
+    expression.addValue(value);
+    return expression;
+  }
+}
@@ -92,6 +92,91 @@ public interface MarketingCloudConstants {
    */
   String PROPERTY_FILTER = "filter";
 
+  /**
+   * Configuration property name used to specify the fields read from the objects.
+   */
+  String PROPERTY_SELECTED_FIELDS = "selectedFields";
+
+  /**
+   * Configuration property name used to specify the number of splits tracking events are read with.
+   */
+  String PROPERTY_EVENT_SPLIT_COUNT = "eventSplitCount";
+
+  /**
+   * Configuration property name used to specify the event date the split windows start at.
+   */
+  String PROPERTY_EVENT_SPLIT_START = "eventSplitStartDate";
+
+  /**
+   * Configuration property name used to specify the event date the split windows end at.
+   */
+  String PROPERTY_EVENT_SPLIT_END = "eventSplitEndDate";
+
+  /**
+   * Configuration property name used to specify the column data extensions are partitioned on.
+   */
+  String PROPERTY_PARTITION_COLUMN = "partitionColumn";
+
+  /**
+   * Configuration property name used to specify the number of splits data extensions are partitioned into.
+   */
+  String PROPERTY_PARTITION_COUNT = "partitionCount";
+
+  /**
+   * Configuration property name used to specify the number of rows up to which small objects are read by one split.
+   */
+  String PROPERTY_MAX_ROWS_PER_COMBINED_SPLIT = "maxRowsPerCombinedSplit";
+
+  /**
+   * Configuration property name used to specify the number of pages fetched ahead of the reader.
+   */
+  String PROPERTY_PAGE_PREFETCH_DEPTH = "pagePrefetchDepth";
+
+  /**
+   * Configuration property name used to specify whether data extension rows are parsed from the response stream.
+   */
+  String PROPERTY_STREAMING_RESPONSES = "streamingResponses";
+
+  /**
+   * Configuration property name used to specify the directory the records read are checkpointed to.
+   */
+  String PROPERTY_CHECKPOINT_DIR = "checkpointDir";
+
+  /**
+   * Configuration property name used to specify the directory the watermarks of incremental reads are stored in.
+   */
+  String PROPERTY_WATERMARK_DIR = "watermarkDir";
+
+  /**
+   * Configuration property name used to specify the date column data extensions are read incrementally on.
+   */
+  String PROPERTY_INCREMENTAL_FIELD = "incrementalField";
+
+  /**
+   * Configuration property name used to specify how far before the watermark incremental reads start.
+   */
+  String PROPERTY_WATERMARK_LOOKBACK = "watermarkLookbackMinutes";
+
+  /**
+   * Configuration property name used to specify the time zone the dates of the API filters are expressed in.
+   */
+  String PROPERTY_API_TIME_ZONE = "apiTimeZone";
+
+  /**
+   * Time zone of the Salesforce Marketing Cloud system time, Central Standard Time without daylight saving.
+   */
+  String DEFAULT_API_TIME_ZONE = "UTC-06:00";
+
+  /**
+   * Event date property name of the tracking event objects.
+   */
+  String EVENT_DATE = "eventDate";
+
+  /**
+   * Modified date property name of the Email and Mailing List objects.
+   */
+  String MODIFIED_DATE = "modifiedDate";
+
   /**
    *  Subscribers property name used in MailingList Object.
    */
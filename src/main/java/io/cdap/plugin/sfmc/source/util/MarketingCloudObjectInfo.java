@@ -17,9 +17,11 @@
 package io.cdap.plugin.sfmc.source.util;
 
 import io.cdap.cdap.api.data.schema.Schema;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 
 /**
  * Information about a Salesforce table.
@@ -57,6 +59,14 @@ public class MarketingCloudObjectInfo {
 
   }
 
+  private MarketingCloudObjectInfo(SourceObject object, String dataExtensionKey, Schema schema,
+                                   Map<String, String> mapSchemaFieldToSFMCField) {
+    this.object = object;
+    this.dataExtensionKey = dataExtensionKey;
+    this.schema = schema;
+    this.mapSchemaFieldToSFMCField = mapSchemaFieldToSFMCField;
+  }
+
   public SourceObject getObject() {
     return object;
   }
@@ -87,6 +97,37 @@ public class MarketingCloudObjectInfo {
     return schema;
   }
 
+  /**
+   * Narrows the object to the given fields, keeping the order of the schema. A field is selected by its schema name
+   * or by its Salesforce Marketing Cloud name.
+   *
+   * @param fieldNames The names of the fields to keep
+   * @return The object info with only the selected fields, null if the object has none of them
+   */
+  @Nullable
+  public MarketingCloudObjectInfo select(Collection<String> fieldNames) {
+    List<Schema.Field> fields = schema.getFields().stream()
+      .filter(field -> fieldNames.contains(field.getName()) || fieldNames.contains(lookupFieldsMap(field.getName())))
+      .collect(Collectors.toList());
+    if (fields.isEmpty()) {
+      return null;
+    }
+    return new MarketingCloudObjectInfo(object, dataExtensionKey, Schema.recordOf(schema.getRecordName(), fields),
+                                        mapSchemaFieldToSFMCField);
+  }
+
+  /**
+   * Returns the Salesforce Marketing Cloud names of the fields of the schema, which are the properties retrieved to
+   * read the object.
+   *
+   * @return The property names, in the order of the schema
+   */
+  public List<String> getPropertyNames() {
+    return schema.getFields().stream()
+      .map(field -> lookupFieldsMap(field.getName()))
+      .collect(Collectors.toList());
+  }
+
 
 
   public String lookupFieldsMap(String schemaFieldName) {
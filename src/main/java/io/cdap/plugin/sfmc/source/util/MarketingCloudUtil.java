@@ -17,42 +17,18 @@
 package io.cdap.plugin.sfmc.source.util;
 
 import com.exacttarget.fuelsdk.ETApiObject;
-import com.exacttarget.fuelsdk.ETDataExtensionRow;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.Method;
 import java.util.Date;
-import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Salesforce Marketing Cloud Conversion
  */
 public class MarketingCloudUtil {
-  private static final Logger LOG = LoggerFactory.getLogger(MarketingCloudUtil.class);
-
-  //private static MarketingCloudClient client;
-
-  private static Object getFieldValue(ETApiObject row, String fieldName) {
-    try {
-      Method method = row.getClass().getMethod(createGetterName(fieldName));
-      return method.invoke(row);
-    } catch (Exception e) {
-      LOG.error(String.format("Error while fetching %s.%s value", row.getClass().getSimpleName(), fieldName), e);
-      return null;
-    }
-  }
-
-  private static String createGetterName(String name) {
-    String sb = "get" + name.substring(0, 1).toUpperCase() +
-      name.substring(1);
-    return sb;
-  }
 
   @VisibleForTesting
   public static String convertToStringValue(Object fieldValue) {
@@ -112,21 +88,25 @@ public class MarketingCloudUtil {
     }
   }
 
+  /**
+   * Converts the row into the record builder. Callers converting many rows of the same object should build a
+   * {@link RecordConversionPlan} once and reuse it.
+   */
   public static void convertRecord(MarketingCloudObjectInfo sfObjectMetaData, StructuredRecord.Builder recordBuilder,
                                    ETApiObject row) {
-    List<Schema.Field> tableFields = sfObjectMetaData.getSchema().getFields();
-    for (Schema.Field field : tableFields) {
-      String fieldName = field.getName();
-      Object rawFieldValue = null;
-      if (row instanceof ETDataExtensionRow) {
-        String apiFieldName = sfObjectMetaData.lookupFieldsMap(fieldName);
-        rawFieldValue = ((ETDataExtensionRow) row).getColumn(apiFieldName);
-      } else {
-        rawFieldValue = getFieldValue(row, fieldName);
-      }
-      Object fieldValue = convertToValue(fieldName, field.getSchema(), rawFieldValue);
-      recordBuilder.set(fieldName, fieldValue);
-    }
+    RecordConversionPlan.of(sfObjectMetaData, row.getClass()).convert(row, recordBuilder);
+  }
+
+  /**
+   * Converts the row into the record builder using a conversion plan that has been built up front.
+   *
+   * @param conversionPlan The conversion plan of the object, see {@link RecordConversionPlan#of}
+   * @param recordBuilder  The builder the field values are set on
+   * @param row            The row to convert
+   */
+  public static void convertRecord(RecordConversionPlan conversionPlan, StructuredRecord.Builder recordBuilder,
+                                   ETApiObject row) {
+    conversionPlan.convert(row, recordBuilder);
   }
 
   private static Object transformLogicalType(String fieldName, Schema.LogicalType logicalType, Object value) {
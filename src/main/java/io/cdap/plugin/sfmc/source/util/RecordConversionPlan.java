@@ -0,0 +1,182 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.source.util;
+
+import com.exacttarget.fuelsdk.ETApiObject;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Conversion of Salesforce Marketing Cloud rows into records of an object schema.
+ *
+ * The plan is built once per object info and row type: every schema field gets a slot holding its name, the accessor
+ * reading the API value and a converter specialized for the field type, so converting a row does not inspect the
+ * schema again.
+ */
+public final class RecordConversionPlan {
+
+  private static final String NULL_TEXT = "null";
+
+  private final String[] fieldNames;
+  private final FieldAccessor[] accessors;
+  private final ValueConverter[] converters;
+
+  private RecordConversionPlan(String[] fieldNames, FieldAccessor[] accessors, ValueConverter[] converters) {
+    this.fieldNames = fieldNames;
+    this.accessors = accessors;
+    this.converters = converters;
+  }
+
+  /**
+   * Builds the plan for the object schema.
+   *
+   * @param objectInfo The object info
+   * @param rowType    The class of the rows the values are read from
+   * @return The conversion plan
+   * @throws IllegalStateException if a field of the schema has a type that is not supported
+   */
+  public static RecordConversionPlan of(MarketingCloudObjectInfo objectInfo, Class<?> rowType) {
+    List<Schema.Field> fields = objectInfo.getSchema().getFields();
+    String[] fieldNames = new String[fields.size()];
+    ValueConverter[] converters = new ValueConverter[fields.size()];
+    for (int i = 0; i < fieldNames.length; i++) {
+      Schema.Field field = fields.get(i);
+      fieldNames[i] = field.getName();
+      converters[i] = converterFor(field.getName(), field.getSchema());
+    }
+    return new RecordConversionPlan(fieldNames, FieldAccessors.forObject(objectInfo, rowType), converters);
+  }
+
+  /**
+   * Sets the converted values of the row on the record builder.
+   *
+   * @param row           The row to convert
+   * @param recordBuilder The builder the field values are set on
+   */
+  public void convert(ETApiObject row, StructuredRecord.Builder recordBuilder) {
+    for (int i = 0; i < fieldNames.length; i++) {
+      recordBuilder.set(fieldNames[i], converters[i].convert(accessors[i].get(row)));
+    }
+  }
+
+  /**
+   * Sets the converted values on the record builder, for values that were read without going through the row
+   * objects of the SDK.
+   *
+   * @param values        The API values, in the order of the schema fields, null for values that were not read
+   * @param recordBuilder The builder the field values are set on
+   */
+  public void convert(Object[] values, StructuredRecord.Builder recordBuilder) {
+    for (int i = 0; i < fieldNames.length; i++) {
+      recordBuilder.set(fieldNames[i], converters[i].convert(values[i]));
+    }
+  }
+
+  private static ValueConverter converterFor(String fieldName, Schema fieldSchema) {
+    Schema schema = fieldSchema.isNullable() ? fieldSchema.getNonNullable() : fieldSchema;
+    Schema.LogicalType logicalType = schema.getLogicalType();
+    if (logicalType != null) {
+      if (logicalType == Schema.LogicalType.TIMESTAMP_MICROS) {
+        return RecordConversionPlan::toTimestamp;
+      }
+      throw new IllegalStateException(
+        String.format("Field '%s' is of unsupported type '%s'", fieldName, logicalType.getToken()));
+    }
+    switch (schema.getType()) {
+      case STRING:
+        // Missing values are read as the "null" text, as the previous conversion did
+        return RecordConversionPlan::toStringValue;
+      case INT:
+        return RecordConversionPlan::toInteger;
+      case DOUBLE:
+        return RecordConversionPlan::toDouble;
+      case BOOLEAN:
+        return RecordConversionPlan::toBoolean;
+      default:
+        throw new IllegalStateException(
+          String.format("Record type '%s' is not supported for field '%s'", schema.getType().name(), fieldName));
+    }
+  }
+
+  private static Object toStringValue(@Nullable Object value) {
+    if (value == null) {
+      return NULL_TEXT;
+    }
+    return value instanceof String ? value : value.toString();
+  }
+
+  @Nullable
+  private static Object toInteger(@Nullable Object value) {
+    if (value == null || value instanceof Integer) {
+      return value;
+    }
+    if (value instanceof Number) {
+      // numbers that are not integers or do not fit an int are rejected, like their text is by Integer.parseInt
+      try {
+        return new BigDecimal(value.toString()).intValueExact();
+      } catch (NumberFormatException | ArithmeticException e) {
+        throw new NumberFormatException(String.format("Value '%s' is not an integer", value));
+      }
+    }
+    String text = value.toString();
+    return text.isEmpty() ? null : Integer.parseInt(text);
+  }
+
+  @Nullable
+  private static Object toDouble(@Nullable Object value) {
+    if (value == null || value instanceof Double) {
+      return value;
+    }
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    }
+    String text = value.toString();
+    return text.isEmpty() ? null : Double.parseDouble(text);
+  }
+
+  @Nullable
+  private static Object toBoolean(@Nullable Object value) {
+    if (value == null || value instanceof Boolean) {
+      return value;
+    }
+    String text = value.toString();
+    return text.isEmpty() ? null : Boolean.parseBoolean(text);
+  }
+
+  @Nullable
+  private static Object toTimestamp(@Nullable Object value) {
+    if (value instanceof Date) {
+      return TimeUnit.MILLISECONDS.toMicros(((Date) value).getTime());
+    }
+    return null;
+  }
+
+  /**
+   * Converts an API value into the value of a record field.
+   */
+  private interface ValueConverter {
+    @Nullable
+    Object convert(@Nullable Object value);
+  }
+}
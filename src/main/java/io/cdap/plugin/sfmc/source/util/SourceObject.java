@@ -30,6 +30,7 @@ import java.util.Arrays;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.annotation.Nullable;
 
 /**
  * Indicates the object for which data to be fetched from MarketingCloud.
@@ -39,53 +40,54 @@ public enum SourceObject {
   /**
    * This indicates data to be fetched from Data Extension.
    */
-  DATA_EXTENSION("Data Extension", "dataextension", ETDataExtensionRow.class),
+  DATA_EXTENSION("Data Extension", "dataextension", ETDataExtensionRow.class, false),
 
   /**
    * This indicates data to be fetched from Email.
    */
-  EMAIL("Email", "email", ETEmail.class),
+  EMAIL("Email", "email", ETEmail.class, false),
 
   /**
    * This indicates data to be fetched from Mailing List.
    */
-  MAILING_LIST("Mailing List", "mailinglist", ETList.class),
+  MAILING_LIST("Mailing List", "mailinglist", ETList.class, false),
 
   /**
    * This indicates data to be fetched from Tracking Bounce Events.
    */
-  TRACKING_BOUNCE_EVENT("Bounce Event", "bounce", ETBounceEvent.class),
+  TRACKING_BOUNCE_EVENT("Bounce Event", "bounce", ETBounceEvent.class, true),
 
   /**
    * This indicates data to be fetched from Tracking Open Events.
    */
-  TRACKING_OPEN_EVENT("Open Event", "open", ETOpenEvent.class),
+  TRACKING_OPEN_EVENT("Open Event", "open", ETOpenEvent.class, true),
   
   /**
    * This indicates data to be fetched from Tracking UnSub Events.
    */
-  TRACKING_UNSUB_EVENT("Unsub Event", "unsub", ETUnsubEvent.class),
+  TRACKING_UNSUB_EVENT("Unsub Event", "unsub", ETUnsubEvent.class, true),
 
   /**
    * This indicates data to be fetched from Tracking Sent Events.
    */
-  TRACKING_SENT_EVENT("Sent Event", "sent", ETSentEvent.class),
+  TRACKING_SENT_EVENT("Sent Event", "sent", ETSentEvent.class, true),
 
   /**
    * This indicates data to be fetched from Tracking Notsent Events.
    */
-  TRACKING_NOTSENT_EVENT("Notsent Event", "notsent", ETNotSentEvent.class);
+  TRACKING_NOTSENT_EVENT("Notsent Event", "notsent", ETNotSentEvent.class, true);
 
   private final String value;
   private final String tableName;
   private final Class<? extends ETSoapObject> classRef;
-  private String filter = "";
+  private final boolean trackingEvent;
 
 
-  SourceObject(String value, String tableName, Class<? extends ETSoapObject> classRef) {
+  SourceObject(String value, String tableName, Class<? extends ETSoapObject> classRef, boolean trackingEvent) {
     this.value = value;
     this.tableName = tableName;
     this.classRef = classRef;
+    this.trackingEvent = trackingEvent;
   }
 
   /**
@@ -117,12 +119,27 @@ public enum SourceObject {
     return classRef;
   }
 
-  public String getFilter() {
-    return filter;
+  /**
+   * Returns whether the object is a tracking event, i.e. whether its records carry an {@code eventDate}.
+   *
+   * @return true for tracking event objects
+   */
+  public boolean isTrackingEvent() {
+    return trackingEvent;
   }
 
-  public void setFilter(String filter) {
-    this.filter = filter;
+  /**
+   * Returns the date property the object is read incrementally on. Data extensions have no common date property, the
+   * column is chosen by the user instead.
+   *
+   * @return the date property, null for data extensions
+   */
+  @Nullable
+  public String getIncrementalProperty() {
+    if (trackingEvent) {
+      return MarketingCloudConstants.EVENT_DATE;
+    }
+    return this == DATA_EXTENSION ? null : MarketingCloudConstants.MODIFIED_DATE;
   }
 
 }
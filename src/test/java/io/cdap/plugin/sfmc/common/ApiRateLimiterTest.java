@@ -0,0 +1,223 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sfmc.common;
+
+import com.exacttarget.fuelsdk.ETSdkException;
+import io.cdap.cdap.api.metrics.Metrics;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ApiRateLimiterTest {
+
+  private final MarketingCloudMetrics metrics = MarketingCloudMetrics.forStage(null);
+
+  @Test
+  public void testRetriesThrottledCalls() throws Exception {
+    ApiRateLimiter limiter = new ApiRateLimiter(1, 10, new Random(0));
+    limiter.limit(100, 0);
+    Metrics stageMetrics = Mockito.mock(Metrics.class);
+    metrics.bind(stageMetrics);
+    AtomicInteger calls = new AtomicInteger();
+
+    String result = limiter.call(metrics, () -> {
+      if (calls.incrementAndGet() <= 2) {
+        throw new ETSdkException("Create request failed: Server Busy, please retry");
+      }
+      return "ok";
+    });
+
+    Assert.assertEquals("ok", result);
+    Assert.assertEquals(3, calls.get());
+    Assert.assertTrue(limiter.getRate() < 100);
+    Mockito.verify(stageMetrics, Mockito.times(2)).countLong(MarketingCloudMetrics.THROTTLED, 1L);
+  }
+
+  @Test
+  public void testDoesNotRetryOtherErrors() {
+    ApiRateLimiter limiter = new ApiRateLimiter(1, 10, new Random(0));
+    AtomicInteger calls = new AtomicInteger();
+    try {
+      limiter.call(metrics, () -> {
+        calls.incrementAndGet();
+        throw new ETSdkException("Create request failed: Invalid column name");
+      });
+      Assert.fail("Expected the call to fail");
+    } catch (ETSdkException e) {
+      Assert.assertEquals(1, calls.get());
+    }
+  }
+
+  @Test
+  public void testGivesUpAfterRetries() {
+    ApiRateLimiter limiter = new ApiRateLimiter(1, 2, new Random(0));
+    AtomicInteger calls = new AtomicInteger();
+    try {
+      limiter.call(metrics, () -> {
+        calls.incrementAndGet();
+        throw new ETSdkException("Retrieve request failed with HTTP status 429");
+      });
+      Assert.fail("Expected the call to fail");
+    } catch (ETSdkException e) {
+      Assert.assertEquals(ApiRateLimiter.MAX_THROTTLED_RETRIES + 1, calls.get());
+    }
+  }
+
+  @Test
+  public void testLimitsConcurrentCalls() throws Exception {
+    ApiRateLimiter limiter = new ApiRateLimiter();
+    limiter.limit(0, 2);
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(6);
+    try {
+      List<Callable<Integer>> tasks = new ArrayList<>();
+      for (int i = 0; i < 12; i++) {
+        tasks.add(() -> limiter.call(metrics, () -> {
+          maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+          sleep(10);
+          return inFlight.decrementAndGet();
+        }));
+      }
+      for (Future<Integer> future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Assert.assertEquals(2, maxInFlight.get());
+  }
+
+  @Test
+  public void testLimitsRate() throws Exception {
+    ApiRateLimiter limiter = new ApiRateLimiter();
+    limiter.limit(20, 0);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < 30; i++) {
+      limiter.call(metrics, () -> null);
+    }
+
+    // the first second worth of calls is a burst, the other ten wait for the bucket to refill
+    Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 400);
+  }
+
+  @Test
+  public void testStrictestLimitsApply() throws Exception {
+    ApiRateLimiter limiter = new ApiRateLimiter();
+    limiter.limit(50, 0);
+    limiter.limit(100, 4);
+    limiter.limit(0, 0);
+
+    Assert.assertEquals(50, limiter.getRate(), 0);
+  }
+
+  @Test
+  public void testReleasedLimitsNoLongerApply() {
+    ApiRateLimiter limiter = new ApiRateLimiter();
+    ApiRateLimiter.Limits strict = limiter.limit(10, 2);
+    ApiRateLimiter.Limits loose = limiter.limit(100, 8);
+    Assert.assertEquals(10, limiter.getRate(), 0);
+    Assert.assertEquals(2, limiter.getMaxConcurrentRequests());
+
+    strict.release();
+    strict.release();
+    Assert.assertEquals(100, limiter.getRate(), 0);
+    Assert.assertEquals(8, limiter.getMaxConcurrentRequests());
+
+    loose.release();
+    Assert.assertEquals(0, limiter.getRate(), 0);
+    Assert.assertEquals(0, limiter.getMaxConcurrentRequests());
+  }
+
+  @Test
+  public void testLimitersAreSharedPerClientAndEndpoint() {
+    ApiRateLimiter limiter = ApiRateLimiter.forClient("client", "https://soap1.example.com/");
+    Assert.assertSame(limiter, ApiRateLimiter.forClient("client", "https://soap1.example.com/"));
+    Assert.assertNotSame(limiter, ApiRateLimiter.forClient("client", "https://soap2.example.com/"));
+    Assert.assertNotSame(limiter, ApiRateLimiter.forClient("other", "https://soap1.example.com/"));
+  }
+
+  @Test(timeout = 10000)
+  public void testNestedCallsDoNotTakeAnotherSlot() throws Exception {
+    ApiRateLimiter limiter = new ApiRateLimiter();
+    limiter.limit(0, 1);
+
+    String result = limiter.call(metrics, () -> limiter.call(metrics, () -> "nested"));
+
+    Assert.assertEquals("nested", result);
+  }
+
+  @Test
+  public void testThrottlingFaultFromServer() throws Exception {
+    try (FakeMarketingCloudServer server = FakeMarketingCloudServer.start()) {
+      server.data().createDataExtension("key", Arrays.asList("Id"));
+      server.throttle("Retrieve", 2);
+      ApiRateLimiter limiter = new ApiRateLimiter(1, 10, new Random(0));
+
+      String status = limiter.call(metrics, () -> server.soapClient().call("Retrieve", writer -> {
+        StreamingSoapClient.writeRequestStart(writer, "RetrieveRequestMsg");
+        writer.writeStartElement("RetrieveRequest");
+        StreamingSoapClient.writeElement(writer, "ObjectType", "DataExtensionObject[key]");
+        StreamingSoapClient.writeElement(writer, "Properties", "Id");
+        writer.writeEndElement();
+        writer.writeEndElement();
+      }, reader -> {
+        String overallStatus = null;
+        while (StreamingSoapClient.nextElement(reader)) {
+          if ("OverallStatus".equals(reader.getLocalName())) {
+            overallStatus = reader.getElementText();
+          } else {
+            StreamingSoapClient.skipElement(reader);
+          }
+        }
+        return overallStatus;
+      }));
+
+      Assert.assertEquals("OK", status);
+      Assert.assertEquals(3, server.getRequestCount("Retrieve"));
+    }
+  }
+
+  @Test
+  public void testIsThrottlingFault() {
+    Assert.assertTrue(ApiRateLimiter.isThrottlingFault(new ETSdkException("The request was throttled")));
+    Assert.assertTrue(ApiRateLimiter.isThrottlingFault(
+      new ETSdkException("Create request failed", new RuntimeException("HTTP status 503"))));
+    Assert.assertFalse(ApiRateLimiter.isThrottlingFault(new ETSdkException("Login failed")));
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
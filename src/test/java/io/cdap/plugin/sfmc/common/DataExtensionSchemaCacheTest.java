@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sfmc.common;
+
+import com.exacttarget.fuelsdk.ETClient;
+import com.exacttarget.fuelsdk.ETConfiguration;
+import com.exacttarget.fuelsdk.ETDataExtensionColumn;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class DataExtensionSchemaCacheTest {
+  private static final long TTL = 1000L;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final AtomicLong clock = new AtomicLong(10000L);
+  private final AtomicInteger columnLoads = new AtomicInteger();
+  private final AtomicInteger modifiedDateLoads = new AtomicInteger();
+  private Date modifiedDate = new Date(500L);
+  private DataExtensionSchemaCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    FileSystem fileSystem = FileSystem.getLocal(new Configuration());
+    cache = new DataExtensionSchemaCache(fileSystem, new Path(temporaryFolder.newFolder().toURI()), TTL, clock::get);
+  }
+
+  @Test
+  public void testColumnsAreCached() throws Exception {
+    List<ETDataExtensionColumn> columns = getColumns("DE/1");
+    Assert.assertEquals(1, columnLoads.get());
+
+    List<ETDataExtensionColumn> cached = getColumns("DE/1");
+    Assert.assertEquals(1, columnLoads.get());
+    Assert.assertEquals(1, modifiedDateLoads.get());
+    Assert.assertEquals(columns.get(0).getName(), cached.get(0).getName());
+    Assert.assertEquals(columns.get(0).getType(), cached.get(0).getType());
+    Assert.assertEquals(columns.get(0).getLength(), cached.get(0).getLength());
+    Assert.assertEquals(columns.get(0).getIsRequired(), cached.get(0).getIsRequired());
+    Assert.assertEquals(columns.get(0).getIsPrimaryKey(), cached.get(0).getIsPrimaryKey());
+  }
+
+  @Test
+  public void testExpiredEntryIsUsedWhenUnmodified() throws Exception {
+    getColumns("DE");
+    clock.addAndGet(TTL);
+    getColumns("DE");
+    Assert.assertEquals(2, modifiedDateLoads.get());
+    Assert.assertEquals(1, columnLoads.get());
+
+    // The entry is valid for another TTL once the modified date has been checked
+    getColumns("DE");
+    Assert.assertEquals(2, modifiedDateLoads.get());
+  }
+
+  @Test
+  public void testExpiredEntryIsReloadedWhenModified() throws Exception {
+    getColumns("DE");
+    clock.addAndGet(TTL);
+    modifiedDate = new Date(600L);
+    getColumns("DE");
+    Assert.assertEquals(2, columnLoads.get());
+  }
+
+  @Test
+  public void testAccountsSharingKeyAreCachedSeparately() throws Exception {
+    getColumns("account1", "DE", "Email Address");
+    List<ETDataExtensionColumn> columns = getColumns("account2", "DE", "Subscriber Key");
+    Assert.assertEquals(2, columnLoads.get());
+    Assert.assertEquals("Subscriber Key", columns.get(0).getName());
+
+    Assert.assertEquals("Email Address", getColumns("account1", "DE", "Email Address").get(0).getName());
+    Assert.assertEquals("Subscriber Key", getColumns("account2", "DE", "Subscriber Key").get(0).getName());
+    Assert.assertEquals(2, columnLoads.get());
+  }
+
+  @Test
+  public void testAccountOfClient() {
+    ETConfiguration conf = new ETConfiguration();
+    conf.set("clientId", "client");
+    conf.set("soapEndpoint", "https://soap1.example.com/");
+    ETClient client = Mockito.mock(ETClient.class);
+    Mockito.when(client.getConfiguration()).thenReturn(conf);
+
+    Assert.assertEquals("client@https://soap1.example.com/", DataExtensionSchemaCache.accountOf(client));
+  }
+
+  private List<ETDataExtensionColumn> getColumns(String key) throws Exception {
+    return getColumns("account", key, "Email Address");
+  }
+
+  private List<ETDataExtensionColumn> getColumns(String account, String key, String columnName) throws Exception {
+    return cache.getColumns(account, key, () -> {
+      modifiedDateLoads.incrementAndGet();
+      return modifiedDate;
+    }, () -> {
+      columnLoads.incrementAndGet();
+      ETDataExtensionColumn column = new ETDataExtensionColumn();
+      column.setName(columnName);
+      column.setType(ETDataExtensionColumn.Type.EMAIL_ADDRESS);
+      column.setLength(254);
+      column.setIsRequired(true);
+      column.setIsPrimaryKey(false);
+      return Collections.singletonList(column);
+    });
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sfmc.common;
+
+import com.exacttarget.fuelsdk.ETClient;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ETClientRegistryTest {
+
+  private final AtomicLong clock = new AtomicLong(1000L);
+  private final AtomicInteger created = new AtomicInteger();
+  private ETClientRegistry registry;
+
+  @Before
+  public void setUp() {
+    registry = new ETClientRegistry((clientId, clientSecret, authEndpoint, soapEndpoint) -> {
+      created.incrementAndGet();
+      return Mockito.mock(ETClient.class);
+    }, clock::get);
+  }
+
+  @Test
+  public void testClientIsShared() throws Exception {
+    ETClient client = registry.acquire("id", "secret", "auth", "soap");
+    Assert.assertSame(client, registry.acquire("id", "secret", "auth", "soap"));
+    Assert.assertNotSame(client, registry.acquire("id", "secret", "auth", "otherSoap"));
+    Assert.assertEquals(2, created.get());
+    Assert.assertEquals(2, registry.size());
+  }
+
+  @Test
+  public void testClientIsKeptPerSecret() throws Exception {
+    ETClient client = registry.acquire("id", "secret", "auth", "soap");
+    ETClient otherClient = registry.acquire("id", "newSecret", "auth", "soap");
+    Assert.assertNotSame(client, otherClient);
+    // a different secret does not replace the client of the first one
+    Assert.assertSame(client, registry.acquire("id", "secret", "auth", "soap"));
+    Assert.assertSame(otherClient, registry.acquire("id", "newSecret", "auth", "soap"));
+    Assert.assertEquals(2, created.get());
+    Assert.assertEquals(2, registry.size());
+  }
+
+  @Test
+  public void testTokenIsRefreshedOnAcquire() throws Exception {
+    ETClient client = registry.acquire("id", "secret", "auth", "soap");
+    registry.acquire("id", "secret", "auth", "soap");
+    Mockito.verify(client, Mockito.never()).refreshToken();
+
+    clock.addAndGet(ETClientRegistry.TOKEN_REFRESH_INTERVAL_MS);
+    registry.acquire("id", "secret", "auth", "soap");
+    Mockito.verify(client, Mockito.times(1)).refreshToken();
+  }
+
+  @Test
+  public void testIdleClientIsEvicted() throws Exception {
+    ETClient idle = registry.acquire("id", "secret", "auth", "soap");
+    clock.addAndGet(ETClientRegistry.IDLE_TIMEOUT_MS + 1);
+    registry.acquire("otherId", "secret", "auth", "soap");
+    Assert.assertEquals(1, registry.size());
+    Assert.assertNotSame(idle, registry.acquire("id", "secret", "auth", "soap"));
+    Assert.assertEquals(3, created.get());
+  }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sfmc.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Predicate;
+import javax.annotation.Nullable;
+
+/**
+ * In-memory data extensions and tracking events served by the {@link FakeMarketingCloudServer}.
+ *
+ * Rows are maps from property name to text value, as they travel in the SOAP API. Retrieves are paged: the rows
+ * matching a request are captured when it is made, and continued by request id until all pages have been read.
+ */
+public final class FakeMarketingCloudData {
+  public static final String DATA_EXTENSION_OBJECT = "DataExtensionObject";
+
+  private final Map<String, DataExtension> dataExtensions = new HashMap<>();
+  private final Map<String, List<Map<String, String>>> objects = new HashMap<>();
+  private final Map<String, Cursor> cursors = new HashMap<>();
+
+  /**
+   * Creates an empty data extension.
+   *
+   * @param key the customer key of the data extension
+   * @param columns the column names
+   * @param primaryKeys the columns that make up the primary key, none for a data extension without primary key
+   */
+  public synchronized void createDataExtension(String key, List<String> columns, String... primaryKeys) {
+    dataExtensions.put(key, new DataExtension(columns, primaryKeys));
+  }
+
+  /**
+   * Adds rows to a data extension, without checking the primary key.
+   */
+  public synchronized void addRows(String key, List<Map<String, String>> rows) {
+    for (Map<String, String> row : rows) {
+      getDataExtension(key).rows.add(new LinkedHashMap<>(row));
+    }
+  }
+
+  /**
+   * Returns a copy of the rows of a data extension.
+   */
+  public synchronized List<Map<String, String>> getRows(String key) {
+    List<Map<String, String>> rows = new ArrayList<>();
+    for (Map<String, String> row : getDataExtension(key).rows) {
+      rows.add(new LinkedHashMap<>(row));
+    }
+    return rows;
+  }
+
+  /**
+   * Adds objects of another type than data extension rows, such as tracking events.
+   *
+   * @param objectType the object type, such as NotSentEvent
+   * @param rows the property values of the objects
+   */
+  public synchronized void addObjects(String objectType, List<Map<String, String>> rows) {
+    List<Map<String, String>> existing = objects.computeIfAbsent(objectType, type -> new ArrayList<>());
+    for (Map<String, String> row : rows) {
+      existing.add(new LinkedHashMap<>(row));
+    }
+  }
+
+  /**
+   * Starts a retrieve.
+   *
+   * @param objectType the object type, DataExtensionObject[key] for the rows of a data extension
+   * @param properties the properties to return
+   * @param filter the filter rows must match, null to return all rows
+   * @param pageSize the maximum number of rows of a page
+   * @return the first page
+   */
+  synchronized Page retrieve(String objectType, List<String> properties,
+                             @Nullable Predicate<Map<String, String>> filter, int pageSize) {
+    List<Map<String, String>> source;
+    String key = getDataExtensionKey(objectType);
+    if (key != null) {
+      DataExtension dataExtension = dataExtensions.get(key);
+      if (dataExtension == null) {
+        throw new IllegalArgumentException(String.format("Unable to find DataExtension with key %s", key));
+      }
+      for (String property : properties) {
+        if (!dataExtension.columns.contains(property)) {
+          throw new IllegalArgumentException(String.format(
+            "The Request Property(s) %s do not match with the fields of DataExtensionObject retrieve", property));
+        }
+      }
+      source = dataExtension.rows;
+    } else {
+      source = objects.getOrDefault(objectType, Collections.emptyList());
+    }
+    List<Map<String, String>> matched = new ArrayList<>();
+    for (Map<String, String> row : source) {
+      if (filter == null || filter.test(row)) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String property : properties) {
+          values.put(property, row.get(property));
+        }
+        matched.add(values);
+      }
+    }
+    Cursor cursor = new Cursor(key == null ? objectType : DATA_EXTENSION_OBJECT, matched, pageSize);
+    return cursor.nextPage(cursors);
+  }
+
+  /**
+   * Continues a retrieve.
+   *
+   * @param requestId the request id of the previous page
+   * @return the next page
+   */
+  synchronized Page continueRetrieve(String requestId) {
+    Cursor cursor = cursors.remove(requestId);
+    if (cursor == null) {
+      throw new IllegalArgumentException(String.format("Unknown or expired RequestID %s", requestId));
+    }
+    return cursor.nextPage(cursors);
+  }
+
+  /**
+   * Inserts a row into a data extension.
+   *
+   * @return null if the row was inserted, the error message otherwise
+   */
+  @Nullable
+  synchronized String insert(String key, Map<String, String> row) {
+    DataExtension dataExtension = dataExtensions.get(key);
+    if (dataExtension == null) {
+      return String.format("Unable to find DataExtension with key %s", key);
+    }
+    if (dataExtension.find(row) != null) {
+      return "Violation of PRIMARY KEY constraint. Cannot insert duplicate key row in object.";
+    }
+    dataExtension.rows.add(new LinkedHashMap<>(row));
+    return null;
+  }
+
+  /**
+   * Updates the row of a data extension with the same primary key.
+   *
+   * @param add whether to insert the row if there is none with the same primary key
+   * @return null if the row was updated or inserted, the error message otherwise
+   */
+  @Nullable
+  synchronized String update(String key, Map<String, String> row, boolean add) {
+    DataExtension dataExtension = dataExtensions.get(key);
+    if (dataExtension == null) {
+      return String.format("Unable to find DataExtension with key %s", key);
+    }
+    if (dataExtension.primaryKeys.isEmpty()) {
+      return "Updating a data extension without primary key is not supported.";
+    }
+    Map<String, String> existing = dataExtension.find(row);
+    if (existing != null) {
+      existing.putAll(row);
+      return null;
+    }
+    if (add) {
+      dataExtension.rows.add(new LinkedHashMap<>(row));
+      return null;
+    }
+    return "The row to update does not exist.";
+  }
+
+  private DataExtension getDataExtension(String key) {
+    DataExtension dataExtension = dataExtensions.get(key);
+    if (dataExtension == null) {
+      throw new IllegalArgumentException(String.format("Data extension %s does not exist", key));
+    }
+    return dataExtension;
+  }
+
+  @Nullable
+  static String getDataExtensionKey(String objectType) {
+    if (objectType.startsWith(DATA_EXTENSION_OBJECT + "[") && objectType.endsWith("]")) {
+      return objectType.substring(DATA_EXTENSION_OBJECT.length() + 1, objectType.length() - 1);
+    }
+    return null;
+  }
+
+  /**
+   * A page of retrieved rows.
+   */
+  static final class Page {
+    final String objectType;
+    final List<Map<String, String>> rows;
+    final String requestId;
+    final boolean moreDataAvailable;
+
+    private Page(String objectType, List<Map<String, String>> rows, String requestId, boolean moreDataAvailable) {
+      this.objectType = objectType;
+      this.rows = rows;
+      this.requestId = requestId;
+      this.moreDataAvailable = moreDataAvailable;
+    }
+  }
+
+  private static final class DataExtension {
+    private final List<String> columns;
+    private final List<String> primaryKeys;
+    private final List<Map<String, String>> rows = new ArrayList<>();
+
+    private DataExtension(List<String> columns, String... primaryKeys) {
+      this.columns = new ArrayList<>(columns);
+      this.primaryKeys = new ArrayList<>();
+      Collections.addAll(this.primaryKeys, primaryKeys);
+    }
+
+    @Nullable
+    private Map<String, String> find(Map<String, String> row) {
+      if (primaryKeys.isEmpty()) {
+        return null;
+      }
+      for (Map<String, String> existing : rows) {
+        boolean same = true;
+        for (String primaryKey : primaryKeys) {
+          same &= Objects.equals(existing.get(primaryKey), row.get(primaryKey));
+        }
+        if (same) {
+          return existing;
+        }
+      }
+      return null;
+    }
+  }
+
+  private static final class Cursor {
+    private final String objectType;
+    private final List<Map<String, String>> rows;
+    private final int pageSize;
+    private final String requestId = UUID.randomUUID().toString();
+    private int position;
+
+    private Cursor(String objectType, List<Map<String, String>> rows, int pageSize) {
+      this.objectType = objectType;
+      this.rows = rows;
+      this.pageSize = pageSize;
+    }
+
+    private Page nextPage(Map<String, Cursor> cursors) {
+      int end = Math.min(position + pageSize, rows.size());
+      List<Map<String, String>> page = new ArrayList<>(rows.subList(position, end));
+      position = end;
+      boolean more = position < rows.size();
+      if (more) {
+        // like the API, every page of a retrieve shares the request id of the first one
+        cursors.put(requestId, this);
+      }
+      return new Page(objectType, page, requestId, more);
+    }
+  }
+}
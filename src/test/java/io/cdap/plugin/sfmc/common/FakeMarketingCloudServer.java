@@ -0,0 +1,827 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sfmc.common;
+
+import com.exacttarget.fuelsdk.ETClient;
+import com.exacttarget.fuelsdk.ETConfiguration;
+import com.google.common.io.ByteStreams;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.mockito.Mockito;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Stand-in for the Salesforce Marketing Cloud OAuth and SOAP endpoints, to test the plugins without a tenant.
+ *
+ * The server issues tokens on /v2/token and answers the Retrieve, Create and Update operations on /Service.asmx
+ * from the rows held in {@link FakeMarketingCloudData}. Retrieves are paged with MoreDataAvailable and
+ * ContinueRequest, like the API. For load tests, the server can add latency to every call, throttle calls, fail
+ * chosen rows, and record the exchanges to replay them later. Recording can also proxy the calls to a real tenant,
+ * so that the fixtures hold real responses.
+ */
+public final class FakeMarketingCloudServer implements Closeable {
+  public static final String CLIENT_ID = "fake-client-id";
+  public static final String CLIENT_SECRET = "fake-client-secret";
+  public static final String THROTTLED_MESSAGE = "Too many requests. The request was throttled, retry later.";
+  public static final int DEFAULT_PAGE_SIZE = 2500;
+
+  private static final String SOAP_NS = "http://schemas.xmlsoap.org/soap/envelope/";
+  private static final String TOKEN_PATH = "/v2/token";
+  private static final String SERVICE_PATH = "/Service.asmx";
+  private static final int TOKEN_EXPIRY_SECONDS = 1080;
+  private static final Pattern FIXTURE_NAME = Pattern.compile("(\\d+)-(\\w+)-(\\d+)\\.response\\.xml");
+  private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+  private static final Gson GSON = new Gson();
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final FakeMarketingCloudData data = new FakeMarketingCloudData();
+  private final Set<String> tokens = ConcurrentHashMap.newKeySet();
+  private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+  private final List<Fault> faults = new CopyOnWriteArrayList<>();
+  private final List<RowFailure> rowFailures = new CopyOnWriteArrayList<>();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+  private final AtomicInteger exchanges = new AtomicInteger();
+  private final Random random = new Random(0);
+  private volatile int pageSize = DEFAULT_PAGE_SIZE;
+  private volatile long minLatencyMillis;
+  private volatile long maxLatencyMillis;
+  private volatile double throttleRate;
+  private volatile Path recordDir;
+  private volatile Map<String, Deque<Path>> replays;
+  private volatile String proxyAuthEndpoint;
+  private volatile String proxySoapEndpoint;
+
+  private FakeMarketingCloudServer(HttpServer server, ExecutorService executor) {
+    this.server = server;
+    this.executor = executor;
+  }
+
+  /**
+   * Starts a server on a free local port.
+   */
+  public static FakeMarketingCloudServer start() throws IOException {
+    HttpServer httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "fake-sfmc");
+      thread.setDaemon(true);
+      return thread;
+    });
+    FakeMarketingCloudServer fake = new FakeMarketingCloudServer(httpServer, executor);
+    httpServer.createContext(TOKEN_PATH, fake::handleToken);
+    httpServer.createContext(SERVICE_PATH, fake::handleSoap);
+    httpServer.setExecutor(executor);
+    httpServer.start();
+    return fake;
+  }
+
+  /**
+   * Returns the base URL to use as auth endpoint.
+   */
+  public String getAuthEndpoint() {
+    return String.format("http://localhost:%d/", server.getAddress().getPort());
+  }
+
+  /**
+   * Returns the base URL to use as SOAP endpoint.
+   */
+  public String getSoapEndpoint() {
+    return getAuthEndpoint();
+  }
+
+  /**
+   * Returns a streaming client sending its requests to this server, with a valid token.
+   */
+  public StreamingSoapClient soapClient() {
+    return new StreamingSoapClient(StreamingSoapClient.getServiceUrl(getSoapEndpoint()), this::issueToken,
+                                   5000, 60000);
+  }
+
+  /**
+   * Returns an SDK client holding the SOAP endpoint of this server and a valid token, for the code that sends its
+   * requests with a {@link StreamingSoapClient}. Requests sent through the SDK itself are not answered.
+   */
+  public ETClient sdkClient() {
+    ETConfiguration conf = new ETConfiguration();
+    conf.set("soapEndpoint", getSoapEndpoint());
+    conf.set("cxfConnectTimeout", "5000");
+    conf.set("cxfReceiveTimeout", "60000");
+    ETClient client = Mockito.mock(ETClient.class);
+    Mockito.when(client.getConfiguration()).thenReturn(conf);
+    Mockito.when(client.getAccessToken()).thenAnswer(invocation -> issueToken());
+    return client;
+  }
+
+  public FakeMarketingCloudData data() {
+    return data;
+  }
+
+  /**
+   * Sets the maximum number of rows returned by a page of a retrieve.
+   */
+  public FakeMarketingCloudServer setPageSize(int pageSize) {
+    this.pageSize = pageSize;
+    return this;
+  }
+
+  /**
+   * Delays every SOAP call by a random duration in the given range.
+   */
+  public FakeMarketingCloudServer setLatency(long min, long max, TimeUnit unit) {
+    this.minLatencyMillis = unit.toMillis(min);
+    this.maxLatencyMillis = unit.toMillis(max);
+    return this;
+  }
+
+  /**
+   * Throttles the given share of SOAP calls, picked at random with a fixed seed.
+   *
+   * @param rate the share of calls to throttle, between 0 and 1
+   */
+  public FakeMarketingCloudServer setThrottleRate(double rate) {
+    this.throttleRate = rate;
+    return this;
+  }
+
+  /**
+   * Throttles the next calls of an operation.
+   *
+   * @param action the SOAP action, such as Create, null for any
+   * @param times the number of calls to throttle
+   */
+  public FakeMarketingCloudServer throttle(@Nullable String action, int times) {
+    return injectFault(action, times, HttpURLConnection.HTTP_INTERNAL_ERROR, THROTTLED_MESSAGE);
+  }
+
+  /**
+   * Answers the next calls of an operation with a SOAP fault.
+   *
+   * @param action the SOAP action, such as Create, null for any
+   * @param times the number of calls to fail
+   * @param status the HTTP status of the fault
+   * @param faultString the fault message
+   */
+  public FakeMarketingCloudServer injectFault(@Nullable String action, int times, int status, String faultString) {
+    faults.add(new Fault(action, times, status, faultString));
+    return this;
+  }
+
+  /**
+   * Fails the rows matching the predicate in Create and Update calls, the other rows of the call succeed.
+   */
+  public FakeMarketingCloudServer failRows(Predicate<Map<String, String>> rows, int errorCode, String message) {
+    rowFailures.add(new RowFailure(rows, errorCode, message));
+    return this;
+  }
+
+  /**
+   * Invalidates all tokens issued so far, calls with them fail until a new token is requested.
+   */
+  public void expireTokens() {
+    tokens.clear();
+  }
+
+  /**
+   * Writes every SOAP exchange into the directory, as numbered request and response files.
+   */
+  public FakeMarketingCloudServer record(Path dir) throws IOException {
+    Files.createDirectories(dir);
+    this.recordDir = dir;
+    return this;
+  }
+
+  /**
+   * Answers SOAP calls with the responses recorded in the directory instead of the data of the server. Responses
+   * are replayed in the order they were recorded, separately for every operation.
+   */
+  public FakeMarketingCloudServer replay(Path dir) throws IOException {
+    Map<String, Deque<Path>> recorded = new HashMap<>();
+    try (Stream<Path> files = Files.list(dir)) {
+      for (Path file : files.sorted().collect(Collectors.toList())) {
+        Matcher matcher = FIXTURE_NAME.matcher(file.getFileName().toString());
+        if (matcher.matches()) {
+          recorded.computeIfAbsent(matcher.group(2), action -> new ArrayDeque<>()).add(file);
+        }
+      }
+    }
+    this.replays = recorded;
+    return this;
+  }
+
+  /**
+   * Forwards token requests and SOAP calls to a real tenant instead of answering them, typically to record them.
+   */
+  public FakeMarketingCloudServer proxyTo(String authEndpoint, String soapEndpoint) {
+    this.proxyAuthEndpoint = authEndpoint.endsWith("/") ? authEndpoint : authEndpoint + "/";
+    this.proxySoapEndpoint = StreamingSoapClient.getServiceUrl(soapEndpoint);
+    return this;
+  }
+
+  /**
+   * Returns the number of calls received for an operation.
+   */
+  public int getRequestCount(String action) {
+    AtomicInteger count = requestCounts.get(action);
+    return count == null ? 0 : count.get();
+  }
+
+  /**
+   * Returns the highest number of SOAP calls that were being answered at the same time.
+   */
+  public int getMaxConcurrentRequests() {
+    return maxInFlight.get();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private String issueToken() {
+    String token = UUID.randomUUID().toString();
+    tokens.add(token);
+    return token;
+  }
+
+  private void handleToken(HttpExchange exchange) throws IOException {
+    byte[] request = ByteStreams.toByteArray(exchange.getRequestBody());
+    if (proxyAuthEndpoint != null) {
+      forward(exchange, proxyAuthEndpoint + TOKEN_PATH.substring(1), request);
+      return;
+    }
+    JsonObject credentials = GSON.fromJson(new String(request, StandardCharsets.UTF_8), JsonObject.class);
+    if (credentials == null || !credentials.has("client_id") || !credentials.has("client_secret")
+      || !CLIENT_ID.equals(credentials.get("client_id").getAsString())
+      || !CLIENT_SECRET.equals(credentials.get("client_secret").getAsString())) {
+      send(exchange, HttpURLConnection.HTTP_UNAUTHORIZED, "application/json",
+           "{\"error\":\"invalid_client\",\"error_description\":\"Client authentication failed.\"}"
+             .getBytes(StandardCharsets.UTF_8));
+      return;
+    }
+    JsonObject token = new JsonObject();
+    token.addProperty("access_token", issueToken());
+    token.addProperty("token_type", "Bearer");
+    token.addProperty("expires_in", TOKEN_EXPIRY_SECONDS);
+    token.addProperty("scope", "data_extensions_read data_extensions_write tracking_events_read");
+    token.addProperty("soap_instance_url", getSoapEndpoint());
+    token.addProperty("rest_instance_url", getAuthEndpoint());
+    send(exchange, HttpURLConnection.HTTP_OK, "application/json", GSON.toJson(token).getBytes(StandardCharsets.UTF_8));
+  }
+
+  private void handleSoap(HttpExchange exchange) throws IOException {
+    byte[] request = ByteStreams.toByteArray(exchange.getRequestBody());
+    String action = getAction(exchange, request);
+    requestCounts.computeIfAbsent(action, a -> new AtomicInteger()).incrementAndGet();
+    int current = inFlight.incrementAndGet();
+    maxInFlight.accumulateAndGet(current, Math::max);
+    try {
+      sleep();
+      Response response = respond(exchange, action, request);
+      if (recordDir != null) {
+        int exchangeId = exchanges.incrementAndGet();
+        Files.write(recordDir.resolve(String.format("%05d-%s.request.xml", exchangeId, action)), request);
+        Files.write(recordDir.resolve(String.format("%05d-%s-%d.response.xml", exchangeId, action, response.status)),
+                    response.body);
+      }
+      send(exchange, response.status, "text/xml; charset=utf-8", response.body);
+    } finally {
+      inFlight.decrementAndGet();
+    }
+  }
+
+  private Response respond(HttpExchange exchange, String action, byte[] request) throws IOException {
+    if (replays != null) {
+      return replay(action);
+    }
+    if (proxySoapEndpoint != null) {
+      return proxy(exchange, request);
+    }
+    Fault fault = takeFault(action);
+    if (fault != null) {
+      return new Response(fault.status, fault(fault.faultString));
+    }
+    try {
+      Document document = parse(request);
+      Element header = child(document.getDocumentElement(), "Header");
+      Element token = header == null ? null : child(header, "fueloauth");
+      if (token == null || !tokens.contains(token.getTextContent().trim())) {
+        return new Response(HttpURLConnection.HTTP_INTERNAL_ERROR,
+                            fault("Login failed: the token is expired or invalid"));
+      }
+      Element body = child(document.getDocumentElement(), "Body");
+      Element operation = body == null ? null : firstChild(body);
+      if (operation == null) {
+        return new Response(HttpURLConnection.HTTP_INTERNAL_ERROR, fault("The request has no body"));
+      }
+      switch (operation.getLocalName()) {
+        case "RetrieveRequestMsg":
+          return new Response(HttpURLConnection.HTTP_OK, retrieve(operation));
+        case "CreateRequest":
+          return new Response(HttpURLConnection.HTTP_OK, save("CreateResponse", operation, false));
+        case "UpdateRequest":
+          return new Response(HttpURLConnection.HTTP_OK, save("UpdateResponse", operation, true));
+        default:
+          return new Response(HttpURLConnection.HTTP_INTERNAL_ERROR,
+                              fault(String.format("Operation %s is not supported", operation.getLocalName())));
+      }
+    } catch (SAXException | ParserConfigurationException | XMLStreamException e) {
+      return new Response(HttpURLConnection.HTTP_INTERNAL_ERROR, fault("Invalid request: " + e.getMessage()));
+    }
+  }
+
+  private byte[] retrieve(Element requestMsg) throws XMLStreamException {
+    Element request = child(requestMsg, "RetrieveRequest");
+    FakeMarketingCloudData.Page page;
+    try {
+      Element continueRequest = request == null ? null : child(request, "ContinueRequest");
+      if (continueRequest != null) {
+        page = data.continueRetrieve(continueRequest.getTextContent());
+      } else if (request == null || child(request, "ObjectType") == null) {
+        throw new IllegalArgumentException("ObjectType is required");
+      } else {
+        List<String> properties = new ArrayList<>();
+        for (Element property : children(request, "Properties")) {
+          properties.add(property.getTextContent());
+        }
+        Element filter = child(request, "Filter");
+        page = data.retrieve(child(request, "ObjectType").getTextContent(), properties,
+                             filter == null ? null : parseFilter(filter), pageSize);
+      }
+    } catch (IllegalArgumentException e) {
+      return envelope("RetrieveResponseMsg", writer -> {
+        StreamingSoapClient.writeElement(writer, "OverallStatus", "Error: " + e.getMessage());
+        StreamingSoapClient.writeElement(writer, "RequestID", UUID.randomUUID().toString());
+      });
+    }
+    return envelope("RetrieveResponseMsg", writer -> {
+      StreamingSoapClient.writeElement(writer, "OverallStatus", page.moreDataAvailable ? "MoreDataAvailable" : "OK");
+      StreamingSoapClient.writeElement(writer, "RequestID", page.requestId);
+      for (Map<String, String> row : page.rows) {
+        writer.writeStartElement("Results");
+        writer.writeAttribute("xsi", StreamingSoapClient.XSI_NS, "type", page.objectType);
+        writeNil(writer, "PartnerKey");
+        writeNil(writer, "ObjectID");
+        if (FakeMarketingCloudData.DATA_EXTENSION_OBJECT.equals(page.objectType)) {
+          StreamingSoapClient.writeElement(writer, "Type", page.objectType);
+          writer.writeStartElement("Properties");
+          for (Map.Entry<String, String> value : row.entrySet()) {
+            writer.writeStartElement("Property");
+            StreamingSoapClient.writeElement(writer, "Name", value.getKey());
+            StreamingSoapClient.writeElement(writer, "Value", value.getValue());
+            writer.writeEndElement();
+          }
+          writer.writeEndElement();
+        } else {
+          for (Map.Entry<String, String> value : row.entrySet()) {
+            if (value.getValue() != null) {
+              writeProperty(writer, value.getKey().split("\\."), 0, value.getValue());
+            }
+          }
+        }
+        writer.writeEndElement();
+      }
+    });
+  }
+
+  private byte[] save(String responseName, Element request, boolean update) throws XMLStreamException {
+    boolean add = false;
+    for (Element saveAction : descendants(request, "SaveAction")) {
+      add |= "UpdateAdd".equals(saveAction.getTextContent());
+    }
+    List<String> errors = new ArrayList<>();
+    List<Integer> errorCodes = new ArrayList<>();
+    for (Element object : children(request, "Objects")) {
+      Element customerKey = child(object, "CustomerKey");
+      Map<String, String> row = new LinkedHashMap<>();
+      Element properties = child(object, "Properties");
+      for (Element property : properties == null ? new ArrayList<Element>() : children(properties, "Property")) {
+        Element value = child(property, "Value");
+        row.put(child(property, "Name").getTextContent(), value == null ? null : value.getTextContent());
+      }
+      RowFailure failure = rowFailures.stream().filter(f -> f.rows.test(row)).findFirst().orElse(null);
+      String error;
+      if (failure != null) {
+        error = failure.message;
+        errorCodes.add(failure.errorCode);
+      } else if (customerKey == null) {
+        error = "CustomerKey is required to save a DataExtensionObject";
+        errorCodes.add(null);
+      } else {
+        error = update ? data.update(customerKey.getTextContent(), row, add)
+          : data.insert(customerKey.getTextContent(), row);
+        errorCodes.add(null);
+      }
+      errors.add(error);
+    }
+    long failed = errors.stream().filter(error -> error != null).count();
+    String resultType = update ? "DataExtensionUpdateResult" : "DataExtensionCreateResult";
+    String verb = update ? "Updated" : "Created";
+    return envelope(responseName, writer -> {
+      for (int i = 0; i < errors.size(); i++) {
+        writer.writeStartElement("Results");
+        writer.writeAttribute("xsi", StreamingSoapClient.XSI_NS, "type", resultType);
+        StreamingSoapClient.writeElement(writer, "StatusCode", errors.get(i) == null ? "OK" : "Error");
+        StreamingSoapClient.writeElement(writer, "StatusMessage", errors.get(i) == null ?
+          verb + " DataExtensionObject" : errors.get(i));
+        StreamingSoapClient.writeElement(writer, "OrdinalID", String.valueOf(i));
+        if (errorCodes.get(i) != null) {
+          StreamingSoapClient.writeElement(writer, "ErrorCode", String.valueOf(errorCodes.get(i)));
+        }
+        writer.writeEndElement();
+      }
+      StreamingSoapClient.writeElement(writer, "RequestID", UUID.randomUUID().toString());
+      StreamingSoapClient.writeElement(writer, "OverallStatus", failed == 0 ? "OK" :
+        failed == errors.size() ? "Error" : "Has Errors");
+    });
+  }
+
+  private Response replay(String action) throws IOException {
+    Deque<Path> recorded = replays.get(action);
+    Path file;
+    synchronized (this) {
+      file = recorded == null ? null : recorded.poll();
+    }
+    if (file == null) {
+      return new Response(HttpURLConnection.HTTP_INTERNAL_ERROR,
+                          fault(String.format("No recorded response left for %s", action)));
+    }
+    Matcher matcher = FIXTURE_NAME.matcher(file.getFileName().toString());
+    matcher.matches();
+    return new Response(Integer.parseInt(matcher.group(3)), Files.readAllBytes(file));
+  }
+
+  private Response proxy(HttpExchange exchange, byte[] request) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(proxySoapEndpoint).openConnection();
+    connection.setDoOutput(true);
+    connection.setRequestMethod("POST");
+    for (String header : new String[] {"Content-Type", "SOAPAction"}) {
+      String value = exchange.getRequestHeaders().getFirst(header);
+      if (value != null) {
+        connection.setRequestProperty(header, value);
+      }
+    }
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(request);
+    }
+    int status = connection.getResponseCode();
+    InputStream in = status < HttpURLConnection.HTTP_BAD_REQUEST ? connection.getInputStream() :
+      connection.getErrorStream();
+    try (InputStream response = in) {
+      return new Response(status, response == null ? new byte[0] : ByteStreams.toByteArray(response));
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  private void forward(HttpExchange exchange, String url, byte[] request) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+    connection.setDoOutput(true);
+    connection.setRequestMethod("POST");
+    connection.setRequestProperty("Content-Type", "application/json");
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(request);
+    }
+    int status = connection.getResponseCode();
+    InputStream in = status < HttpURLConnection.HTTP_BAD_REQUEST ? connection.getInputStream() :
+      connection.getErrorStream();
+    try (InputStream response = in) {
+      byte[] body = response == null ? new byte[0] : ByteStreams.toByteArray(response);
+      if (status == HttpURLConnection.HTTP_OK) {
+        // the client has to keep sending its SOAP calls through this server
+        JsonObject token = GSON.fromJson(new String(body, StandardCharsets.UTF_8), JsonObject.class);
+        token.addProperty("soap_instance_url", getSoapEndpoint());
+        body = GSON.toJson(token).getBytes(StandardCharsets.UTF_8);
+      }
+      send(exchange, status, "application/json", body);
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  @Nullable
+  private Fault takeFault(String action) {
+    for (Fault fault : faults) {
+      if ((fault.action == null || fault.action.equals(action)) && fault.remaining.getAndDecrement() > 0) {
+        return fault;
+      }
+    }
+    if (throttleRate > 0) {
+      synchronized (random) {
+        if (random.nextDouble() < throttleRate) {
+          return new Fault(action, 0, HttpURLConnection.HTTP_INTERNAL_ERROR, THROTTLED_MESSAGE);
+        }
+      }
+    }
+    return null;
+  }
+
+  private void sleep() {
+    long latency = minLatencyMillis;
+    if (maxLatencyMillis > minLatencyMillis) {
+      synchronized (random) {
+        latency += (long) (random.nextDouble() * (maxLatencyMillis - minLatencyMillis));
+      }
+    }
+    if (latency > 0) {
+      try {
+        TimeUnit.MILLISECONDS.sleep(latency);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static String getAction(HttpExchange exchange, byte[] request) {
+    String action = exchange.getRequestHeaders().getFirst("SOAPAction");
+    if (action != null) {
+      // the SDK sends the action quoted
+      action = action.replace("\"", "").trim();
+      if (!action.isEmpty()) {
+        return action;
+      }
+    }
+    String body = new String(request, StandardCharsets.UTF_8);
+    for (String operation : new String[] {"Retrieve", "Create", "Update"}) {
+      if (body.contains(operation + "Request")) {
+        return operation;
+      }
+    }
+    return "Unknown";
+  }
+
+  private static Predicate<Map<String, String>> parseFilter(Element part) {
+    String type = part.getAttributeNS(StreamingSoapClient.XSI_NS, "type");
+    type = type.substring(type.indexOf(':') + 1);
+    if ("ComplexFilterPart".equals(type)) {
+      Predicate<Map<String, String>> left = parseFilter(child(part, "LeftOperand"));
+      Predicate<Map<String, String>> right = parseFilter(child(part, "RightOperand"));
+      return "OR".equals(child(part, "LogicalOperator").getTextContent()) ? left.or(right) : left.and(right);
+    }
+    String property = child(part, "Property").getTextContent();
+    String operator = child(part, "SimpleOperator").getTextContent();
+    List<String> values = new ArrayList<>();
+    for (Element value : children(part, "Value")) {
+      values.add(value.getTextContent());
+    }
+    for (Element value : children(part, "DateValue")) {
+      values.add(value.getTextContent());
+    }
+    return row -> matches(row.get(property), operator, values);
+  }
+
+  private static boolean matches(@Nullable String value, String operator, List<String> operands) {
+    switch (operator) {
+      case "isNull":
+        return value == null || value.isEmpty();
+      case "isNotNull":
+        return value != null && !value.isEmpty();
+      case "IN":
+        return value != null && operands.contains(value);
+      case "like":
+        return value != null && value.matches(operands.get(0).replace("%", ".*").replace("_", "."));
+      case "between":
+        return value != null && compare(value, operands.get(0)) >= 0 && compare(value, operands.get(1)) <= 0;
+      default:
+        if (value == null) {
+          return "notEquals".equals(operator);
+        }
+        int comparison = compare(value, operands.get(0));
+        switch (operator) {
+          case "equals":
+            return comparison == 0;
+          case "notEquals":
+            return comparison != 0;
+          case "greaterThan":
+            return comparison > 0;
+          case "greaterThanOrEqual":
+            return comparison >= 0;
+          case "lessThan":
+            return comparison < 0;
+          case "lessThanOrEqual":
+            return comparison <= 0;
+          default:
+            throw new IllegalArgumentException(String.format("Unsupported SimpleOperator %s", operator));
+        }
+    }
+  }
+
+  private static int compare(String value, String operand) {
+    try {
+      return Double.compare(Double.parseDouble(value), Double.parseDouble(operand));
+    } catch (NumberFormatException e) {
+      // dates are sent and stored in ISO format, which compares as text
+      return value.compareTo(operand);
+    }
+  }
+
+  private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", contentType);
+    exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  private static byte[] envelope(String responseName, StreamingSoapClient.BodyWriter body) throws XMLStreamException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(out, StandardCharsets.UTF_8.name());
+    writer.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+    writer.writeStartElement("soap", "Envelope", SOAP_NS);
+    writer.writeNamespace("soap", SOAP_NS);
+    writer.writeNamespace("xsi", StreamingSoapClient.XSI_NS);
+    writer.writeStartElement("soap", "Body", SOAP_NS);
+    if (responseName == null) {
+      body.write(writer);
+    } else {
+      StreamingSoapClient.writeRequestStart(writer, responseName);
+      body.write(writer);
+      writer.writeEndElement();
+    }
+    writer.writeEndElement();
+    writer.writeEndElement();
+    writer.writeEndDocument();
+    writer.close();
+    return out.toByteArray();
+  }
+
+  private static byte[] fault(String faultString) {
+    try {
+      return envelope(null, writer -> {
+        writer.writeStartElement("soap", "Fault", SOAP_NS);
+        writer.writeStartElement("faultcode");
+        writer.writeCharacters("soap:Server");
+        writer.writeEndElement();
+        writer.writeStartElement("faultstring");
+        writer.writeCharacters(faultString);
+        writer.writeEndElement();
+        writer.writeEndElement();
+      });
+    } catch (XMLStreamException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void writeNil(XMLStreamWriter writer, String name) throws XMLStreamException {
+    writer.writeEmptyElement(name);
+    writer.writeAttribute("xsi", StreamingSoapClient.XSI_NS, "nil", "true");
+  }
+
+  private static void writeProperty(XMLStreamWriter writer, String[] path, int index,
+                                    String value) throws XMLStreamException {
+    // nested properties such as Client.ID are written as nested elements
+    writer.writeStartElement(path[index]);
+    if (index == path.length - 1) {
+      writer.writeCharacters(value);
+    } else {
+      writeProperty(writer, path, index + 1, value);
+    }
+    writer.writeEndElement();
+  }
+
+  private static Document parse(byte[] request) throws ParserConfigurationException, SAXException, IOException {
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setNamespaceAware(true);
+    factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+    return factory.newDocumentBuilder().parse(new ByteArrayInputStream(request));
+  }
+
+  @Nullable
+  static Element child(Element parent, String localName) {
+    for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+      if (node instanceof Element && localName.equals(node.getLocalName())) {
+        return (Element) node;
+      }
+    }
+    return null;
+  }
+
+  static List<Element> children(Element parent, String localName) {
+    List<Element> children = new ArrayList<>();
+    for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+      if (node instanceof Element && localName.equals(node.getLocalName())) {
+        children.add((Element) node);
+      }
+    }
+    return children;
+  }
+
+  @Nullable
+  private static Element firstChild(Element parent) {
+    for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+      if (node instanceof Element) {
+        return (Element) node;
+      }
+    }
+    return null;
+  }
+
+  private static List<Element> descendants(Element parent, String localName) {
+    List<Element> descendants = new ArrayList<>();
+    for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+      if (node instanceof Element) {
+        if (localName.equals(node.getLocalName())) {
+          descendants.add((Element) node);
+        }
+        descendants.addAll(descendants((Element) node, localName));
+      }
+    }
+    return descendants;
+  }
+
+  private static final class Response {
+    private final int status;
+    private final byte[] body;
+
+    private Response(int status, byte[] body) {
+      this.status = status;
+      this.body = body;
+    }
+  }
+
+  private static final class Fault {
+    private final String action;
+    private final AtomicInteger remaining;
+    private final int status;
+    private final String faultString;
+
+    private Fault(@Nullable String action, int times, int status, String faultString) {
+      this.action = action;
+      this.remaining = new AtomicInteger(times);
+      this.status = status;
+      this.faultString = faultString;
+    }
+  }
+
+  private static final class RowFailure {
+    private final Predicate<Map<String, String>> rows;
+    private final int errorCode;
+    private final String message;
+
+    private RowFailure(Predicate<Map<String, String>> rows, int errorCode, String message) {
+      this.rows = rows;
+      this.errorCode = errorCode;
+      this.message = message;
+    }
+  }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sfmc.common;
+
+import com.exacttarget.fuelsdk.ETSdkException;
+import com.google.common.io.ByteStreams;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+public class FakeMarketingCloudServerTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private FakeMarketingCloudServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    server = FakeMarketingCloudServer.start();
+    server.data().createDataExtension("contacts", Arrays.asList("Id", "Name"), "Id");
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  @Test
+  public void testToken() throws Exception {
+    HttpURLConnection connection = postToken(FakeMarketingCloudServer.CLIENT_ID,
+                                             FakeMarketingCloudServer.CLIENT_SECRET);
+    Assert.assertEquals(200, connection.getResponseCode());
+    try (InputStream in = connection.getInputStream()) {
+      JsonObject token = new Gson().fromJson(new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8),
+                                             JsonObject.class);
+      Assert.assertFalse(token.get("access_token").getAsString().isEmpty());
+      Assert.assertEquals(server.getSoapEndpoint(), token.get("soap_instance_url").getAsString());
+    }
+
+    Assert.assertEquals(401, postToken(FakeMarketingCloudServer.CLIENT_ID, "wrong").getResponseCode());
+  }
+
+  @Test
+  public void testRetrievePages() throws Exception {
+    server.data().addRows("contacts", Arrays.asList(row("1", "a"), row("2", "b"), row("3", "c")));
+    server.setPageSize(2);
+
+    Page first = retrieve(null);
+    Page second = retrieve(first.requestId);
+
+    Assert.assertEquals("MoreDataAvailable", first.status);
+    Assert.assertEquals(Arrays.asList(row("1", "a"), row("2", "b")), first.rows);
+    Assert.assertEquals("OK", second.status);
+    Assert.assertEquals(Collections.singletonList(row("3", "c")), second.rows);
+    Assert.assertEquals(first.requestId, second.requestId);
+  }
+
+  @Test
+  public void testRetrieveUnknownProperty() throws Exception {
+    Page page = server.soapClient().call("Retrieve", writer -> {
+      StreamingSoapClient.writeRequestStart(writer, "RetrieveRequestMsg");
+      writer.writeStartElement("RetrieveRequest");
+      StreamingSoapClient.writeElement(writer, "ObjectType", "DataExtensionObject[contacts]");
+      StreamingSoapClient.writeElement(writer, "Properties", "Unknown");
+      writer.writeEndElement();
+      writer.writeEndElement();
+    }, FakeMarketingCloudServerTest::readPage);
+
+    Assert.assertTrue(page.status.startsWith("Error: The Request Property(s) Unknown"));
+  }
+
+  @Test
+  public void testCreateAndUpdate() throws Exception {
+    Assert.assertEquals("OK", save("Create", null, row("1", "a"), row("2", "b")).status);
+    Assert.assertEquals("Has Errors", save("Create", null, row("1", "c"), row("3", "c")).status);
+    Assert.assertEquals("Error", save("Update", null, row("4", "d")).status);
+    Assert.assertEquals("OK", save("Update", "UpdateAdd", row("1", "e"), row("4", "d")).status);
+
+    Assert.assertEquals(Arrays.asList(row("1", "e"), row("2", "b"), row("3", "c"), row("4", "d")),
+                        server.data().getRows("contacts"));
+  }
+
+  @Test
+  public void testFailRows() throws Exception {
+    server.failRows(row -> "2".equals(row.get("Id")), 10006, "Unable to save the row");
+
+    SaveResult result = save("Create", null, row("1", "a"), row("2", "b"));
+
+    Assert.assertEquals("Has Errors", result.status);
+    Assert.assertEquals(Arrays.asList("OK", "Error"), result.statusCodes);
+    Assert.assertEquals(Arrays.asList(null, "10006"), result.errorCodes);
+    Assert.assertEquals(Collections.singletonList(row("1", "a")), server.data().getRows("contacts"));
+  }
+
+  @Test
+  public void testThrottle() throws Exception {
+    server.throttle("Create", 1);
+    try {
+      save("Create", null, row("1", "a"));
+      Assert.fail("Expected the throttled call to fail");
+    } catch (ETSdkException e) {
+      Assert.assertTrue(e.getMessage().contains(FakeMarketingCloudServer.THROTTLED_MESSAGE));
+    }
+
+    Assert.assertEquals("OK", save("Create", null, row("1", "a")).status);
+    Assert.assertEquals(2, server.getRequestCount("Create"));
+  }
+
+  @Test(expected = ETSdkException.class)
+  public void testExpiredToken() throws Exception {
+    StreamingSoapClient client = new StreamingSoapClient(
+      StreamingSoapClient.getServiceUrl(server.getSoapEndpoint()), () -> "unknown-token", 5000, 5000);
+    client.call("Create", writer -> StreamingSoapClient.writeRequestStart(writer, "CreateRequest"),
+                reader -> null);
+  }
+
+  @Test
+  public void testRecordAndReplay() throws Exception {
+    Path fixtures = temporaryFolder.newFolder().toPath();
+    server.data().addRows("contacts", Collections.singletonList(row("1", "a")));
+    server.record(fixtures);
+    Page recorded = retrieve(null);
+
+    try (FakeMarketingCloudServer replaying = FakeMarketingCloudServer.start()) {
+      replaying.replay(fixtures);
+      Page replayed = replaying.soapClient().call("Retrieve", writer -> writeRetrieve(writer, null),
+                                                  FakeMarketingCloudServerTest::readPage);
+      Assert.assertEquals(recorded.requestId, replayed.requestId);
+      Assert.assertEquals(recorded.rows, replayed.rows);
+    }
+  }
+
+  private HttpURLConnection postToken(String clientId, String clientSecret) throws Exception {
+    HttpURLConnection connection = (HttpURLConnection) new URL(server.getAuthEndpoint() + "v2/token")
+      .openConnection();
+    connection.setDoOutput(true);
+    connection.setRequestMethod("POST");
+    JsonObject credentials = new JsonObject();
+    credentials.addProperty("grant_type", "client_credentials");
+    credentials.addProperty("client_id", clientId);
+    credentials.addProperty("client_secret", clientSecret);
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(credentials.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    return connection;
+  }
+
+  private Page retrieve(String requestId) throws ETSdkException {
+    return server.soapClient().call("Retrieve", writer -> writeRetrieve(writer, requestId),
+                                    FakeMarketingCloudServerTest::readPage);
+  }
+
+  private SaveResult save(String action, String saveAction, Map<String, String>... rows) throws ETSdkException {
+    return server.soapClient().call(action, writer -> {
+      StreamingSoapClient.writeRequestStart(writer, action + "Request");
+      if (saveAction != null) {
+        writer.writeStartElement("Options");
+        writer.writeStartElement("SaveOptions");
+        writer.writeStartElement("SaveOption");
+        StreamingSoapClient.writeElement(writer, "PropertyName", "DataExtensionObject");
+        StreamingSoapClient.writeElement(writer, "SaveAction", saveAction);
+        writer.writeEndElement();
+        writer.writeEndElement();
+        writer.writeEndElement();
+      }
+      for (Map<String, String> row : rows) {
+        writer.writeStartElement("Objects");
+        writer.writeAttribute("xsi", StreamingSoapClient.XSI_NS, "type", "DataExtensionObject");
+        StreamingSoapClient.writeElement(writer, "CustomerKey", "contacts");
+        writer.writeStartElement("Properties");
+        for (Map.Entry<String, String> value : row.entrySet()) {
+          writer.writeStartElement("Property");
+          StreamingSoapClient.writeElement(writer, "Name", value.getKey());
+          StreamingSoapClient.writeElement(writer, "Value", value.getValue());
+          writer.writeEndElement();
+        }
+        writer.writeEndElement();
+        writer.writeEndElement();
+      }
+      writer.writeEndElement();
+    }, FakeMarketingCloudServerTest::readSaveResult);
+  }
+
+  private static void writeRetrieve(XMLStreamWriter writer, String requestId) throws XMLStreamException {
+    StreamingSoapClient.writeRequestStart(writer, "RetrieveRequestMsg");
+    writer.writeStartElement("RetrieveRequest");
+    if (requestId == null) {
+      StreamingSoapClient.writeElement(writer, "ObjectType", "DataExtensionObject[contacts]");
+      StreamingSoapClient.writeElement(writer, "Properties", "Id");
+      StreamingSoapClient.writeElement(writer, "Properties", "Name");
+    } else {
+      StreamingSoapClient.writeElement(writer, "ContinueRequest", requestId);
+    }
+    writer.writeEndElement();
+    writer.writeEndElement();
+  }
+
+  private static Page readPage(XMLStreamReader reader) throws XMLStreamException {
+    Page page = new Page();
+    while (StreamingSoapClient.nextElement(reader)) {
+      switch (reader.getLocalName()) {
+        case "OverallStatus":
+          page.status = reader.getElementText();
+          break;
+        case "RequestID":
+          page.requestId = reader.getElementText();
+          break;
+        case "Results":
+          page.rows.add(readProperties(reader));
+          break;
+        default:
+          StreamingSoapClient.skipElement(reader);
+      }
+    }
+    return page;
+  }
+
+  private static Map<String, String> readProperties(XMLStreamReader reader) throws XMLStreamException {
+    Map<String, String> row = new LinkedHashMap<>();
+    while (StreamingSoapClient.nextElement(reader)) {
+      if (!"Properties".equals(reader.getLocalName())) {
+        StreamingSoapClient.skipElement(reader);
+        continue;
+      }
+      while (StreamingSoapClient.nextElement(reader)) {
+        String name = null;
+        String value = null;
+        while (StreamingSoapClient.nextElement(reader)) {
+          if ("Name".equals(reader.getLocalName())) {
+            name = reader.getElementText();
+          } else {
+            value = reader.getElementText();
+          }
+        }
+        row.put(name, value);
+      }
+    }
+    return row;
+  }
+
+  private static SaveResult readSaveResult(XMLStreamReader reader) throws XMLStreamException {
+    SaveResult result = new SaveResult();
+    while (StreamingSoapClient.nextElement(reader)) {
+      if ("OverallStatus".equals(reader.getLocalName())) {
+        result.status = reader.getElementText();
+      } else if ("Results".equals(reader.getLocalName())) {
+        Map<String, String> values = new HashMap<>();
+        while (StreamingSoapClient.nextElement(reader)) {
+          values.put(reader.getLocalName(), reader.getElementText());
+        }
+        result.statusCodes.add(values.get("StatusCode"));
+        result.errorCodes.add(values.get("ErrorCode"));
+      } else {
+        StreamingSoapClient.skipElement(reader);
+      }
+    }
+    return result;
+  }
+
+  private static Map<String, String> row(String id, String name) {
+    Map<String, String> row = new LinkedHashMap<>();
+    row.put("Id", id);
+    row.put("Name", name);
+    return row;
+  }
+
+  private static final class Page {
+    private final List<Map<String, String>> rows = new ArrayList<>();
+    private String status;
+    private String requestId;
+  }
+
+  private static final class SaveResult {
+    private final List<String> statusCodes = new ArrayList<>();
+    private final List<String> errorCodes = new ArrayList<>();
+    private String status;
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sfmc.common;
+
+import io.cdap.cdap.api.metrics.Metrics;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class MarketingCloudMetricsTest {
+
+  @Test
+  public void testCountsBeforeBindAreReported() {
+    MarketingCloudMetrics metrics = MarketingCloudMetrics.forStage(null);
+    metrics.count(MarketingCloudMetrics.PAGES, 1);
+    metrics.count(MarketingCloudMetrics.PAGES, 2);
+    Metrics stageMetrics = Mockito.mock(Metrics.class);
+
+    metrics.bind(stageMetrics);
+    metrics.count(MarketingCloudMetrics.PAGE_ROWS, 10);
+
+    Mockito.verify(stageMetrics).countLong(MarketingCloudMetrics.PAGES, 3L);
+    Mockito.verify(stageMetrics).countLong(MarketingCloudMetrics.PAGE_ROWS, 10L);
+  }
+
+  @Test
+  public void testRecordLatency() {
+    MarketingCloudMetrics metrics = MarketingCloudMetrics.forStage(null);
+    Metrics stageMetrics = Mockito.mock(Metrics.class);
+    metrics.bind(stageMetrics);
+
+    metrics.recordLatency(MarketingCloudMetrics.RETRIEVE, System.nanoTime());
+
+    Mockito.verify(stageMetrics).countLong("soap.retrieve.requests", 1L);
+    Mockito.verify(stageMetrics).countLong("soap.retrieve.latency.lt.100ms", 1L);
+  }
+
+  @Test
+  public void testBuckets() {
+    Assert.assertEquals("lt.100ms", MarketingCloudMetrics.getBucket(0));
+    Assert.assertEquals("lt.250ms", MarketingCloudMetrics.getBucket(100));
+    Assert.assertEquals("lt.60000ms", MarketingCloudMetrics.getBucket(59999));
+    Assert.assertEquals("ge.60000ms", MarketingCloudMetrics.getBucket(60000));
+  }
+
+  @Test
+  public void testReleaseReportsPendingCountsAndForgetsStage() {
+    String stageKey = MarketingCloudMetrics.stageKey("pipeline", 1000L, "stage");
+    MarketingCloudMetrics metrics = MarketingCloudMetrics.forStage(stageKey);
+    Metrics taskMetrics = Mockito.mock(Metrics.class);
+    metrics.bind(taskMetrics);
+    metrics.bind(taskMetrics);
+
+    // the stage is kept as long as an initialized plugin holds it
+    MarketingCloudMetrics.release(stageKey, taskMetrics);
+    Assert.assertSame(metrics, MarketingCloudMetrics.forStage(stageKey));
+    MarketingCloudMetrics.release(stageKey, taskMetrics);
+    Assert.assertNotSame(metrics, MarketingCloudMetrics.forStage(stageKey));
+
+    // counts made where the metrics were never bound are reported when the run finishes
+    MarketingCloudMetrics unbound = MarketingCloudMetrics.forStage(stageKey);
+    unbound.count(MarketingCloudMetrics.PAGES, 2);
+    Metrics runMetrics = Mockito.mock(Metrics.class);
+    MarketingCloudMetrics.release(stageKey, runMetrics);
+    Mockito.verify(runMetrics).countLong(MarketingCloudMetrics.PAGES, 2L);
+    Assert.assertNotSame(unbound, MarketingCloudMetrics.forStage(stageKey));
+    MarketingCloudMetrics.release(stageKey, null);
+  }
+
+  @Test
+  public void testRunsDoNotShareMetrics() {
+    Assert.assertNotSame(MarketingCloudMetrics.forStage(MarketingCloudMetrics.stageKey("pipeline", 1L, "stage")),
+                         MarketingCloudMetrics.forStage(MarketingCloudMetrics.stageKey("pipeline", 2L, "stage")));
+  }
+
+  @Test
+  public void testStagesShareMetrics() {
+    Assert.assertSame(MarketingCloudMetrics.forStage("stage"), MarketingCloudMetrics.forStage("stage"));
+    Assert.assertNotSame(MarketingCloudMetrics.forStage("stage"), MarketingCloudMetrics.forStage("other"));
+    Assert.assertNotSame(MarketingCloudMetrics.forStage(null), MarketingCloudMetrics.forStage(null));
+  }
+}
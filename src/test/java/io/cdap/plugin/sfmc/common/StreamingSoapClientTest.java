@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.common;
+
+import com.exacttarget.fuelsdk.ETSdkException;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpServer;
+import io.cdap.cdap.api.metrics.Metrics;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class StreamingSoapClientTest {
+
+  private final AtomicReference<String> request = new AtomicReference<>();
+  private final AtomicReference<String> soapAction = new AtomicReference<>();
+  private HttpServer server;
+  private volatile int responseStatus;
+  private volatile String response;
+
+  @Before
+  public void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/Service.asmx", exchange -> {
+      request.set(new String(ByteStreams.toByteArray(exchange.getRequestBody()), StandardCharsets.UTF_8));
+      soapAction.set(exchange.getRequestHeaders().getFirst("SOAPAction"));
+      byte[] body = response.getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(responseStatus, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testCall() throws Exception {
+    responseStatus = 200;
+    response = envelope("<RetrieveResponseMsg xmlns=\"http://exacttarget.com/wsdl/partnerAPI\">" +
+                          "<OverallStatus>OK</OverallStatus><RequestID>abc</RequestID></RetrieveResponseMsg>");
+
+    String requestId = newClient().call("Retrieve", writer -> {
+      StreamingSoapClient.writeRequestStart(writer, "RetrieveRequestMsg");
+      StreamingSoapClient.writeElement(writer, "ObjectType", "Email");
+      writer.writeEndElement();
+    }, reader -> {
+      Assert.assertEquals("RetrieveResponseMsg", reader.getLocalName());
+      String id = null;
+      while (StreamingSoapClient.nextElement(reader)) {
+        if ("RequestID".equals(reader.getLocalName())) {
+          id = reader.getElementText();
+        } else {
+          StreamingSoapClient.skipElement(reader);
+        }
+      }
+      return id;
+    });
+
+    Assert.assertEquals("abc", requestId);
+    Assert.assertEquals("Retrieve", soapAction.get());
+    Assert.assertTrue(request.get().contains("<fueloauth xmlns=\"http://exacttarget.com\">token</fueloauth>"));
+    Assert.assertTrue(request.get().contains(
+      "<RetrieveRequestMsg xmlns=\"http://exacttarget.com/wsdl/partnerAPI\"><ObjectType>Email</ObjectType>" +
+        "</RetrieveRequestMsg>"));
+  }
+
+  @Test
+  public void testFault() {
+    responseStatus = 500;
+    response = envelope("<soap:Fault><faultcode>soap:Client</faultcode>" +
+                          "<faultstring>Token Expired</faultstring></soap:Fault>");
+    try {
+      newClient().call("Create", writer -> StreamingSoapClient.writeRequestStart(writer, "CreateRequest"),
+                       reader -> "unexpected");
+      Assert.fail("Expected the SOAP fault to fail the call");
+    } catch (ETSdkException e) {
+      Assert.assertEquals("Create request failed: Token Expired", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testMetrics() throws Exception {
+    responseStatus = 200;
+    response = envelope("<CreateResponse xmlns=\"http://exacttarget.com/wsdl/partnerAPI\"/>");
+    MarketingCloudMetrics metrics = MarketingCloudMetrics.forStage(null);
+    Metrics stageMetrics = Mockito.mock(Metrics.class);
+    metrics.bind(stageMetrics);
+
+    newClient().withMetrics(metrics).call(
+      "Create", writer -> StreamingSoapClient.writeRequestStart(writer, "CreateRequest"), reader -> null);
+
+    Mockito.verify(stageMetrics).countLong("soap.create.request.bytes", request.get().length());
+    Mockito.verify(stageMetrics).countLong("soap.create.response.bytes", response.length());
+  }
+
+  @Test
+  public void testServiceUrl() {
+    Assert.assertEquals("https://host/Service.asmx", StreamingSoapClient.getServiceUrl("https://host"));
+    Assert.assertEquals("https://host/Service.asmx", StreamingSoapClient.getServiceUrl("https://host/"));
+    Assert.assertEquals("https://host/Service.asmx", StreamingSoapClient.getServiceUrl("https://host/Service.asmx"));
+  }
+
+  private StreamingSoapClient newClient() {
+    String endpoint = String.format("http://localhost:%d/Service.asmx", server.getAddress().getPort());
+    return new StreamingSoapClient(endpoint, () -> "token", 10000, 10000);
+  }
+
+  static String envelope(String body) {
+    return "<?xml version=\"1.0\" encoding=\"utf-8\"?>" +
+      "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\" " +
+      "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"><soap:Header/><soap:Body>" + body +
+      "</soap:Body></soap:Envelope>";
+  }
+}
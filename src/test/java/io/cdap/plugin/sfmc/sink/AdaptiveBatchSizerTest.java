@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.sink;
+
+import com.exacttarget.fuelsdk.ETDataExtensionRow;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptiveBatchSizerTest {
+
+  @Test
+  public void testGrowsOnFastFullBatches() {
+    AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 200, 1024 * 1024, 10000);
+    Assert.assertEquals(100, sizer.getBatchSize());
+
+    sizer.onResponse(100, 1000);
+    Assert.assertEquals(125, sizer.getBatchSize());
+
+    // a batch closed before reaching the limit does not tell whether a larger one would be fast
+    sizer.onResponse(10, 1000);
+    Assert.assertEquals(125, sizer.getBatchSize());
+
+    for (int i = 0; i < 10; i++) {
+      sizer.onResponse(sizer.getBatchSize(), 1000);
+    }
+    Assert.assertEquals(200, sizer.getBatchSize());
+    Assert.assertEquals(12, sizer.getBatches());
+    Assert.assertEquals(4, sizer.getIncreases());
+  }
+
+  @Test
+  public void testHoldsBetweenHalfAndTargetLatency() {
+    AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 200, 1024 * 1024, 10000);
+    sizer.onResponse(100, 7000);
+    Assert.assertEquals(100, sizer.getBatchSize());
+    Assert.assertEquals(0, sizer.getIncreases());
+    Assert.assertEquals(0, sizer.getDecreases());
+  }
+
+  @Test
+  public void testShrinksOnSlowBatchesAndFailures() {
+    AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(10, 1000, 1024 * 1024, 10000);
+    for (int i = 0; i < 30; i++) {
+      sizer.onResponse(sizer.getBatchSize(), 100);
+    }
+    Assert.assertEquals(1000, sizer.getBatchSize());
+
+    sizer.onResponse(1000, 12500);
+    Assert.assertEquals(800, sizer.getBatchSize());
+
+    // never more than halved by a single slow batch
+    sizer.onResponse(800, 100000);
+    Assert.assertEquals(400, sizer.getBatchSize());
+
+    sizer.onFailure(400);
+    Assert.assertEquals(200, sizer.getBatchSize());
+
+    for (int i = 0; i < 10; i++) {
+      sizer.onFailure(sizer.getBatchSize());
+    }
+    Assert.assertEquals(10, sizer.getBatchSize());
+    Assert.assertEquals(8, sizer.getDecreases());
+  }
+
+  @Test
+  public void testMinBatchSizeIsBoundedByMax() {
+    AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(500, 100, 1024, 1000);
+    Assert.assertEquals(100, sizer.getBatchSize());
+  }
+
+  @Test
+  public void testEstimatePayloadBytes() {
+    ETDataExtensionRow row = new ETDataExtensionRow();
+    row.setColumn("name", "value");
+    row.setColumn("empty", null);
+    Assert.assertEquals(200 + 48 + 4 + 5 + 48 + 5, AdaptiveBatchSizer.estimatePayloadBytes(row));
+  }
+}
@@ -24,8 +24,13 @@ import com.exacttarget.fuelsdk.ETResult;
 import com.exacttarget.fuelsdk.ETSdkException;
 import com.exacttarget.fuelsdk.ETSoapConnection;
 import com.exacttarget.fuelsdk.internal.CreateResponse;
+import com.exacttarget.fuelsdk.internal.DataExtensionCreateResult;
+import com.exacttarget.fuelsdk.internal.SaveAction;
+import com.exacttarget.fuelsdk.internal.SaveOption;
 import com.exacttarget.fuelsdk.internal.Soap;
+import com.exacttarget.fuelsdk.internal.UpdateRequest;
 import com.exacttarget.fuelsdk.internal.UpdateResponse;
+import com.exacttarget.fuelsdk.internal.UpdateResult;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.etl.api.validation.ValidationException;
 import io.cdap.cdap.etl.mock.validation.MockFailureCollector;
@@ -33,15 +38,24 @@ import org.apache.cxf.frontend.ClientProxy;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.net.SocketTimeoutException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import javax.xml.namespace.QName;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPFactory;
+import javax.xml.ws.WebServiceException;
+import javax.xml.ws.soap.SOAPFaultException;
 
 @RunWith(PowerMockRunner.class)
 @PrepareForTest({ETDataExtension.class, ClientProxy.class, DataExtensionClient.class,
@@ -277,5 +291,157 @@ public class DataExtensionClientTest {
     DataExtensionClient dataExtensionClient = Mockito.spy(new DataExtensionClient(client, dataExtensionKey));
     Assert.assertNotNull(dataExtensionClient.upsert(row));
   }
-}
 
+  @Test
+  public void testUpsertWithUpdateAdd() throws Exception {
+    List<ETDataExtensionRow> rows = new ArrayList<>();
+    rows.add(new ETDataExtensionRow());
+    ETClient client = Mockito.mock(ETClient.class);
+    Soap soap = mockSoap(client, primaryKeyColumns());
+    UpdateResponse updateResponse = Mockito.mock(UpdateResponse.class);
+    Mockito.when(updateResponse.getOverallStatus()).thenReturn("OK");
+    Mockito.when(soap.update(Mockito.any())).thenReturn(updateResponse);
+    DataExtensionClient dataExtensionClient = new DataExtensionClient(client, "DE");
+
+    Assert.assertNotNull(dataExtensionClient.upsert(rows));
+    Assert.assertNotNull(dataExtensionClient.upsert(rows));
+
+    ArgumentCaptor<UpdateRequest> request = ArgumentCaptor.forClass(UpdateRequest.class);
+    Mockito.verify(soap, Mockito.times(2)).update(request.capture());
+    Mockito.verify(soap, Mockito.never()).create(Mockito.any());
+    List<SaveOption> saveOptions = request.getValue().getOptions().getSaveOptions().getSaveOption();
+    Assert.assertEquals(1, saveOptions.size());
+    Assert.assertEquals("*", saveOptions.get(0).getPropertyName());
+    Assert.assertEquals(SaveAction.UPDATE_ADD, saveOptions.get(0).getSaveAction());
+  }
+
+  @Test
+  public void testUpsertFallsBackToInsertThenUpdate() throws Exception {
+    List<ETDataExtensionRow> rows = new ArrayList<>();
+    rows.add(new ETDataExtensionRow());
+    ETClient client = Mockito.mock(ETClient.class);
+    Soap soap = mockSoap(client, primaryKeyColumns());
+    Mockito.when(soap.update(Mockito.any())).thenThrow(soapFault("Save action UpdateAdd is not supported for " +
+                                                                   "this object"));
+    CreateResponse createResponse = Mockito.mock(CreateResponse.class);
+    Mockito.when(createResponse.getOverallStatus()).thenReturn("OK");
+    Mockito.when(soap.create(Mockito.any())).thenReturn(createResponse);
+    DataExtensionClient dataExtensionClient = new DataExtensionClient(client, "DE");
+
+    Assert.assertNotNull(dataExtensionClient.upsert(rows));
+    Assert.assertNotNull(dataExtensionClient.upsert(rows));
+
+    // the UpdateAdd request is only attempted once
+    Mockito.verify(soap, Mockito.times(1)).update(Mockito.any());
+    Mockito.verify(soap, Mockito.times(2)).create(Mockito.any());
+  }
+
+  @Test
+  public void testInsertThenUpdateKeepsRowOrder() throws Exception {
+    List<ETDataExtensionRow> rows = new ArrayList<>();
+    rows.add(new ETDataExtensionRow());
+    rows.add(new ETDataExtensionRow());
+    ETClient client = Mockito.mock(ETClient.class);
+    Soap soap = mockSoap(client, primaryKeyColumns());
+    // the second row already exists, and its insert result comes back first
+    CreateResponse createResponse = Mockito.mock(CreateResponse.class);
+    Mockito.when(createResponse.getOverallStatus()).thenReturn("Error");
+    DataExtensionCreateResult duplicate = Mockito.mock(DataExtensionCreateResult.class);
+    Mockito.when(duplicate.getStatusCode()).thenReturn("Error");
+    Mockito.when(duplicate.getErrorCode()).thenReturn(2);
+    Mockito.when(duplicate.getErrorMessage()).thenReturn("Violation of PRIMARY KEY constraint");
+    Mockito.when(duplicate.getOrdinalID()).thenReturn(1);
+    DataExtensionCreateResult inserted = Mockito.mock(DataExtensionCreateResult.class);
+    Mockito.when(inserted.getStatusCode()).thenReturn("OK");
+    Mockito.when(inserted.getOrdinalID()).thenReturn(0);
+    Mockito.when(createResponse.getResults()).thenReturn(Arrays.asList(duplicate, inserted));
+    Mockito.when(soap.create(Mockito.any())).thenReturn(createResponse);
+    UpdateResponse updateResponse = Mockito.mock(UpdateResponse.class);
+    Mockito.when(updateResponse.getOverallStatus()).thenReturn("OK");
+    UpdateResult updated = Mockito.mock(UpdateResult.class);
+    Mockito.when(updated.getStatusCode()).thenReturn("OK");
+    Mockito.when(updated.getOrdinalID()).thenReturn(0);
+    Mockito.when(updateResponse.getResults()).thenReturn(Collections.singletonList(updated));
+    Mockito.when(soap.update(Mockito.any()))
+      .thenThrow(soapFault("Save action UpdateAdd is not supported for this object"))
+      .thenReturn(updateResponse);
+    DataExtensionClient dataExtensionClient = new DataExtensionClient(client, "DE");
+
+    List<ETResult<ETDataExtensionRow>> results = dataExtensionClient.upsert(rows);
+
+    Assert.assertEquals(2, results.size());
+    Assert.assertSame(rows.get(0), results.get(0).getObject());
+    Assert.assertSame(rows.get(1), results.get(1).getObject());
+    Assert.assertEquals(ETResult.Status.OK, results.get(0).getStatus());
+    Assert.assertEquals(ETResult.Status.OK, results.get(1).getStatus());
+    ArgumentCaptor<UpdateRequest> request = ArgumentCaptor.forClass(UpdateRequest.class);
+    Mockito.verify(soap, Mockito.times(2)).update(request.capture());
+    Assert.assertEquals(1, request.getValue().getObjects().size());
+  }
+
+  @Test
+  public void testUpsertTimeoutKeepsUpdateAdd() throws Exception {
+    List<ETDataExtensionRow> rows = new ArrayList<>();
+    rows.add(new ETDataExtensionRow());
+    ETClient client = Mockito.mock(ETClient.class);
+    Soap soap = mockSoap(client, primaryKeyColumns());
+    UpdateResponse updateResponse = Mockito.mock(UpdateResponse.class);
+    Mockito.when(updateResponse.getOverallStatus()).thenReturn("OK");
+    Mockito.when(soap.update(Mockito.any()))
+      .thenThrow(new WebServiceException(new SocketTimeoutException("Read timed out")))
+      .thenReturn(updateResponse);
+    DataExtensionClient dataExtensionClient = new DataExtensionClient(client, "DE");
+
+    try {
+      dataExtensionClient.upsert(rows);
+      Assert.fail("Expected the timeout to be thrown");
+    } catch (WebServiceException e) {
+      Assert.assertTrue(e.getCause() instanceof SocketTimeoutException);
+    }
+    Assert.assertNotNull(dataExtensionClient.upsert(rows));
+
+    Mockito.verify(soap, Mockito.times(2)).update(Mockito.any());
+    Mockito.verify(soap, Mockito.never()).create(Mockito.any());
+  }
+
+  @Test
+  public void testUpsertWithoutPrimaryKeyInserts() throws Exception {
+    List<ETDataExtensionRow> rows = new ArrayList<>();
+    rows.add(new ETDataExtensionRow());
+    ETClient client = Mockito.mock(ETClient.class);
+    ETDataExtensionColumn column = new ETDataExtensionColumn();
+    column.setName("name");
+    Soap soap = mockSoap(client, Collections.singletonList(column));
+    CreateResponse createResponse = Mockito.mock(CreateResponse.class);
+    Mockito.when(createResponse.getOverallStatus()).thenReturn("OK");
+    Mockito.when(soap.create(Mockito.any())).thenReturn(createResponse);
+    DataExtensionClient dataExtensionClient = new DataExtensionClient(client, "DE");
+
+    Assert.assertNotNull(dataExtensionClient.upsert(rows));
+
+    Mockito.verify(soap, Mockito.never()).update(Mockito.any());
+    Mockito.verify(soap).create(Mockito.any());
+  }
+
+  private static SOAPFaultException soapFault(String faultString) throws SOAPException {
+    return new SOAPFaultException(SOAPFactory.newInstance().createFault(
+      faultString, new QName("http://schemas.xmlsoap.org/soap/envelope/", "Client")));
+  }
+
+  private static List<ETDataExtensionColumn> primaryKeyColumns() {
+    ETDataExtensionColumn column = new ETDataExtensionColumn();
+    column.setName("id");
+    column.setIsPrimaryKey(true);
+    return Collections.singletonList(column);
+  }
+
+  private static Soap mockSoap(ETClient client, List<ETDataExtensionColumn> columns) throws Exception {
+    PowerMockito.mockStatic(ETDataExtension.class);
+    PowerMockito.when(ETDataExtension.retrieveColumns(Mockito.any(), Mockito.anyString())).thenReturn(columns);
+    Soap soap = Mockito.mock(Soap.class);
+    ETSoapConnection connection = PowerMockito.mock(ETSoapConnection.class);
+    Mockito.when(connection.getSoap(Mockito.anyString(), Mockito.anyString())).thenReturn(soap);
+    Mockito.when(client.getSoapConnection()).thenReturn(connection);
+    return soap;
+  }
+}
@@ -21,13 +21,26 @@ import com.exacttarget.fuelsdk.ETResponse;
 import com.exacttarget.fuelsdk.ETResult;
 import com.exacttarget.fuelsdk.ETSdkException;
 import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.metrics.Metrics;
+import io.cdap.plugin.sfmc.common.FakeMarketingCloudServer;
+import io.cdap.plugin.sfmc.common.MarketingCloudMetrics;
+import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import java.io.IOException;
+import java.net.SocketTimeoutException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 
 public class DataExtensionRecordWriterTest {
 
@@ -122,4 +135,381 @@ public class DataExtensionRecordWriterTest {
     dataExtensionRecordWriter.close(context);
     Mockito.verify(dataExtensionRecordWriter, Mockito.times(1)).writeBatch();
   }
+
+  @Test
+  public void testPipelinedWriteSendsAllBatchesBeforeClose() throws Exception {
+    DataExtensionClient client = Mockito.mock(DataExtensionClient.class);
+    AtomicInteger sentRows = new AtomicInteger();
+    Mockito.when(client.insert(Mockito.anyList())).thenAnswer(invocation -> {
+      List<ETDataExtensionRow> rows = invocation.getArgument(0);
+      Thread.sleep(20);
+      sentRows.addAndGet(rows.size());
+      return okResponse(rows);
+    });
+    RecordDataExtensionRowConverter converter = Mockito.mock(RecordDataExtensionRowConverter.class);
+    Mockito.when(converter.transform(Mockito.any())).thenAnswer(invocation -> new ETDataExtensionRow());
+    DataExtensionRecordWriter writer = new DataExtensionRecordWriter(client, converter, Operation.INSERT, 2, true,
+                                                                     3, null);
+
+    for (int i = 0; i < 11; i++) {
+      writer.write(null, Mockito.mock(StructuredRecord.class));
+    }
+    writer.close(Mockito.mock(TaskAttemptContext.class));
+
+    Assert.assertEquals(11, sentRows.get());
+    Mockito.verify(client, Mockito.times(6)).insert(Mockito.anyList());
+  }
+
+  @Test
+  public void testPipelinedWriteFailureIsReported() throws Exception {
+    DataExtensionClient client = Mockito.mock(DataExtensionClient.class);
+    Mockito.when(client.insert(Mockito.anyList())).thenThrow(new ETSdkException("unavailable"));
+    RecordDataExtensionRowConverter converter = Mockito.mock(RecordDataExtensionRowConverter.class);
+    Mockito.when(converter.transform(Mockito.any())).thenAnswer(invocation -> new ETDataExtensionRow());
+    DataExtensionRecordWriter writer = new DataExtensionRecordWriter(client, converter, Operation.INSERT, 1, true,
+                                                                     2, null);
+
+    writer.write(null, Mockito.mock(StructuredRecord.class));
+    try {
+      writer.close(Mockito.mock(TaskAttemptContext.class));
+      Assert.fail("Expected the failed batch to be reported");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testAdaptiveBatchSize() throws Exception {
+    DataExtensionClient client = Mockito.mock(DataExtensionClient.class);
+    List<Integer> batchSizes = new ArrayList<>();
+    Mockito.when(client.insert(Mockito.anyList())).thenAnswer(invocation -> {
+      List<ETDataExtensionRow> rows = invocation.getArgument(0);
+      batchSizes.add(rows.size());
+      return okResponse(rows);
+    });
+    RecordDataExtensionRowConverter converter = Mockito.mock(RecordDataExtensionRowConverter.class);
+    Mockito.when(converter.transform(Mockito.any())).thenAnswer(invocation -> new ETDataExtensionRow());
+    TaskAttemptContext context = Mockito.mock(TaskAttemptContext.class);
+    Counter counter = Mockito.mock(Counter.class);
+    Mockito.when(context.getCounter(Mockito.anyString(), Mockito.anyString())).thenReturn(counter);
+    AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(4, 6, 1024 * 1024, 60000);
+    Metrics stageMetrics = Mockito.mock(Metrics.class);
+    MarketingCloudMetrics metrics = MarketingCloudMetrics.forStage(null);
+    metrics.bind(stageMetrics);
+    DataExtensionRecordWriter writer = new DataExtensionRecordWriter(client, converter, Operation.INSERT, 6, true,
+                                                                     1, batchSizer, metrics);
+
+    for (int i = 0; i < 20; i++) {
+      writer.write(null, Mockito.mock(StructuredRecord.class));
+    }
+    writer.close(context);
+
+    Assert.assertEquals(Arrays.asList(4, 5, 6, 5), batchSizes);
+    Mockito.verify(context).getCounter(DataExtensionRecordWriter.COUNTER_GROUP,
+                                       DataExtensionRecordWriter.BATCHES_COUNTER);
+    Mockito.verify(counter).increment(4L);
+    Mockito.verify(counter).increment(20L);
+    Mockito.verify(stageMetrics).countLong(MarketingCloudMetrics.BATCHES, 4L);
+    Mockito.verify(stageMetrics).countLong(MarketingCloudMetrics.BATCH_ROWS, 20L);
+    Mockito.verify(stageMetrics).countLong(MarketingCloudMetrics.BATCH_SIZE_INCREASES, batchSizer.getIncreases());
+    Mockito.verify(stageMetrics).countLong(MarketingCloudMetrics.BATCH_SIZE_DECREASES, batchSizer.getDecreases());
+  }
+
+  @Test
+  public void testAdaptiveBatchSizeLimitsPayload() throws Exception {
+    DataExtensionClient client = Mockito.mock(DataExtensionClient.class);
+    Mockito.when(client.insert(Mockito.anyList()))
+      .thenAnswer(invocation -> okResponse(invocation.getArgument(0)));
+    RecordDataExtensionRowConverter converter = Mockito.mock(RecordDataExtensionRowConverter.class);
+    Mockito.when(converter.transform(Mockito.any())).thenAnswer(invocation -> {
+      ETDataExtensionRow row = new ETDataExtensionRow();
+      row.setColumn("Name", "value");
+      return row;
+    });
+    AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(100, 100, 1, 60000);
+    DataExtensionRecordWriter writer = new DataExtensionRecordWriter(client, converter, Operation.INSERT, 100, true,
+                                                                     1, batchSizer);
+
+    writer.write(null, Mockito.mock(StructuredRecord.class));
+    writer.write(null, Mockito.mock(StructuredRecord.class));
+
+    Mockito.verify(client, Mockito.times(2)).insert(Mockito.anyList());
+  }
+
+  @Test
+  public void testRowMetrics() throws Exception {
+    DataExtensionClient client = Mockito.mock(DataExtensionClient.class);
+    Mockito.when(client.getDataExtensionKey()).thenReturn("key");
+    Mockito.when(client.update(Mockito.anyList())).thenAnswer(invocation -> {
+      List<ETDataExtensionRow> rows = invocation.getArgument(0);
+      ETResponse<ETDataExtensionRow> response = new ETResponse<>();
+      for (int i = 0; i < rows.size(); i++) {
+        ETResult<ETDataExtensionRow> result = new ETResult<>();
+        result.setStatus(i == 0 ? ETResult.Status.ERROR : ETResult.Status.OK);
+        result.setObject(rows.get(i));
+        response.addResult(result);
+      }
+      return response;
+    });
+    RecordDataExtensionRowConverter converter = Mockito.mock(RecordDataExtensionRowConverter.class);
+    Mockito.when(converter.transform(Mockito.any())).thenAnswer(invocation -> new ETDataExtensionRow());
+    Metrics stageMetrics = Mockito.mock(Metrics.class);
+    MarketingCloudMetrics metrics = MarketingCloudMetrics.forStage(null);
+    metrics.bind(stageMetrics);
+    DataExtensionRecordWriter writer = new DataExtensionRecordWriter(client, converter, Operation.UPDATE, 3, false,
+                                                                     1, null, metrics);
+
+    for (int i = 0; i < 6; i++) {
+      writer.write(null, Mockito.mock(StructuredRecord.class));
+    }
+    writer.close(Mockito.mock(TaskAttemptContext.class));
+
+    Mockito.verify(stageMetrics, Mockito.times(2)).countLong("dataextension.key.rows.updated", 2L);
+    Mockito.verify(stageMetrics, Mockito.times(2)).countLong("dataextension.key.rows.failed", 1L);
+  }
+
+  @Test
+  public void testRetriesOnlyTransientRows() throws Exception {
+    DataExtensionClient client = Mockito.mock(DataExtensionClient.class);
+    Mockito.when(client.getDataExtensionKey()).thenReturn("key");
+    List<List<String>> sent = new ArrayList<>();
+    Mockito.when(client.insert(Mockito.anyList())).thenAnswer(invocation -> {
+      List<ETDataExtensionRow> rows = invocation.getArgument(0);
+      List<String> ids = new ArrayList<>();
+      ETResponse<ETDataExtensionRow> response = new ETResponse<>();
+      for (ETDataExtensionRow row : rows) {
+        String id = row.getColumn("Id");
+        ids.add(id);
+        ETResult<ETDataExtensionRow> result = new ETResult<>();
+        result.setObject(row);
+        if (id.equals("1") && sent.isEmpty()) {
+          result.setStatus(ETResult.Status.ERROR);
+          result.setErrorMessage("Execution Timeout Expired");
+        } else if (id.equals("2")) {
+          result.setStatus(ETResult.Status.ERROR);
+          result.setErrorMessage("The value for column 'Age' is not a number");
+        } else {
+          result.setStatus(ETResult.Status.OK);
+        }
+        response.addResult(result);
+      }
+      sent.add(ids);
+      return response;
+    });
+    Metrics stageMetrics = Mockito.mock(Metrics.class);
+    MarketingCloudMetrics metrics = MarketingCloudMetrics.forStage(null);
+    metrics.bind(stageMetrics);
+    DataExtensionRecordWriter writer = new DataExtensionRecordWriter(client, rowsWithIds(), Operation.INSERT, 3,
+                                                                     false, 1, null, metrics,
+                                                                     new RowRetryPolicy(3, 0, 0, new Random(0)));
+
+    for (int i = 0; i < 3; i++) {
+      writer.write(null, Mockito.mock(StructuredRecord.class));
+    }
+    writer.close(Mockito.mock(TaskAttemptContext.class));
+
+    Assert.assertEquals(Arrays.asList(Arrays.asList("0", "1", "2"), Collections.singletonList("1")), sent);
+    Mockito.verify(stageMetrics).countLong("dataextension.key.rows.inserted", 2L);
+    Mockito.verify(stageMetrics).countLong("dataextension.key.rows.failed", 1L);
+    Mockito.verify(stageMetrics).countLong(MarketingCloudMetrics.RETRIES, 1L);
+  }
+
+  @Test
+  public void testDuplicateAfterTimeoutCountsAsWritten() throws Exception {
+    DataExtensionClient client = Mockito.mock(DataExtensionClient.class);
+    Mockito.when(client.getDataExtensionKey()).thenReturn("key");
+    AtomicInteger calls = new AtomicInteger();
+    Mockito.when(client.insert(Mockito.anyList())).thenAnswer(invocation -> {
+      if (calls.getAndIncrement() == 0) {
+        throw new ETSdkException("call failed", new SocketTimeoutException("Read timed out"));
+      }
+      List<ETDataExtensionRow> rows = invocation.getArgument(0);
+      ETResponse<ETDataExtensionRow> response = new ETResponse<>();
+      for (ETDataExtensionRow row : rows) {
+        ETResult<ETDataExtensionRow> result = new ETResult<>();
+        result.setStatus(ETResult.Status.ERROR);
+        result.setErrorCode(2);
+        result.setErrorMessage("Violation of PRIMARY KEY constraint");
+        result.setObject(row);
+        response.addResult(result);
+      }
+      return response;
+    });
+    Metrics stageMetrics = Mockito.mock(Metrics.class);
+    MarketingCloudMetrics metrics = MarketingCloudMetrics.forStage(null);
+    metrics.bind(stageMetrics);
+    DataExtensionRecordWriter writer = new DataExtensionRecordWriter(client, rowsWithIds(), Operation.INSERT, 2,
+                                                                     true, 1, null, metrics,
+                                                                     new RowRetryPolicy(3, 0, 0, new Random(0)));
+
+    writer.write(null, Mockito.mock(StructuredRecord.class));
+    writer.write(null, Mockito.mock(StructuredRecord.class));
+    writer.close(Mockito.mock(TaskAttemptContext.class));
+
+    Assert.assertEquals(2, calls.get());
+    Mockito.verify(stageMetrics).countLong("dataextension.key.rows.inserted", 2L);
+  }
+
+  @Test
+  public void testDuplicateAfterRowRetryCountsAsFailed() throws Exception {
+    DataExtensionClient client = Mockito.mock(DataExtensionClient.class);
+    Mockito.when(client.getDataExtensionKey()).thenReturn("key");
+    AtomicInteger calls = new AtomicInteger();
+    Mockito.when(client.insert(Mockito.anyList())).thenAnswer(invocation -> {
+      List<ETDataExtensionRow> rows = invocation.getArgument(0);
+      ETResponse<ETDataExtensionRow> response = new ETResponse<>();
+      if (calls.getAndIncrement() == 0) {
+        // the first row is inserted, the second one fails on its own and is sent again
+        response.addResult(result(rows.get(0), ETResult.Status.OK, null));
+        response.addResult(result(rows.get(1), ETResult.Status.ERROR, "Execution Timeout Expired"));
+        return response;
+      }
+      for (ETDataExtensionRow row : rows) {
+        ETResult<ETDataExtensionRow> result = result(row, ETResult.Status.ERROR, "Violation of PRIMARY KEY constraint");
+        result.setErrorCode(2);
+        response.addResult(result);
+      }
+      return response;
+    });
+    Metrics stageMetrics = Mockito.mock(Metrics.class);
+    MarketingCloudMetrics metrics = MarketingCloudMetrics.forStage(null);
+    metrics.bind(stageMetrics);
+    DataExtensionRecordWriter writer = new DataExtensionRecordWriter(client, rowsWithIds(), Operation.INSERT, 2,
+                                                                     false, 1, null, metrics,
+                                                                     new RowRetryPolicy(3, 0, 0, new Random(0)));
+
+    writer.write(null, Mockito.mock(StructuredRecord.class));
+    writer.write(null, Mockito.mock(StructuredRecord.class));
+    writer.close(Mockito.mock(TaskAttemptContext.class));
+
+    // the row was answered by the first call, so the duplicate is not a row this writer inserted
+    Assert.assertEquals(2, calls.get());
+    Mockito.verify(stageMetrics).countLong("dataextension.key.rows.inserted", 1L);
+    Mockito.verify(stageMetrics).countLong("dataextension.key.rows.failed", 1L);
+  }
+
+  @Test
+  public void testRetriesAreLimited() throws Exception {
+    DataExtensionClient client = Mockito.mock(DataExtensionClient.class);
+    Mockito.when(client.getDataExtensionKey()).thenReturn("key");
+    Mockito.when(client.update(Mockito.anyList())).thenThrow(new ETSdkException("Connection reset"));
+    RowRetryPolicy retryPolicy = new RowRetryPolicy(2, 0, 0, new Random(0));
+    MarketingCloudMetrics metrics = MarketingCloudMetrics.forStage(null);
+    DataExtensionRecordWriter writer = new DataExtensionRecordWriter(client, rowsWithIds(), Operation.UPDATE, 1,
+                                                                     true, 1, null, metrics, retryPolicy);
+
+    try {
+      writer.write(null, Mockito.mock(StructuredRecord.class));
+      Assert.fail("Expected the record to fail once the retries are exhausted");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getCause() instanceof ETSdkException);
+    }
+    Mockito.verify(client, Mockito.times(3)).update(Mockito.anyList());
+  }
+
+  @Test
+  public void testPermanentFailureIsNotRetried() throws Exception {
+    DataExtensionClient client = Mockito.mock(DataExtensionClient.class);
+    Mockito.when(client.update(Mockito.anyList())).thenThrow(new ETSdkException("Invalid data extension key"));
+    RowRetryPolicy retryPolicy = new RowRetryPolicy(2, 0, 0, new Random(0));
+    MarketingCloudMetrics metrics = MarketingCloudMetrics.forStage(null);
+    DataExtensionRecordWriter writer = new DataExtensionRecordWriter(client, rowsWithIds(), Operation.UPDATE, 1,
+                                                                     false, 1, null, metrics, retryPolicy);
+
+    writer.write(null, Mockito.mock(StructuredRecord.class));
+    Mockito.verify(client, Mockito.times(1)).update(Mockito.anyList());
+  }
+
+  @Test
+  public void testResultsAreMatchedByRow() throws Exception {
+    DataExtensionClient client = Mockito.mock(DataExtensionClient.class);
+    Mockito.when(client.getDataExtensionKey()).thenReturn("key");
+    Mockito.when(client.upsert(Mockito.anyList())).thenAnswer(invocation -> {
+      List<ETDataExtensionRow> rows = invocation.getArgument(0);
+      // the result of the first row comes last, the third row gets no result and one result is for no row at all
+      List<ETResult<ETDataExtensionRow>> results = new ArrayList<>();
+      results.add(result(rows.get(1), ETResult.Status.ERROR, "Execution Timeout Expired"));
+      results.add(result(new ETDataExtensionRow(), ETResult.Status.OK, null));
+      results.add(result(rows.get(0), ETResult.Status.OK, null));
+      return results;
+    }).thenAnswer(invocation -> okResponse(invocation.getArgument(0)).getResults());
+    Metrics stageMetrics = Mockito.mock(Metrics.class);
+    MarketingCloudMetrics metrics = MarketingCloudMetrics.forStage(null);
+    metrics.bind(stageMetrics);
+    DataExtensionRecordWriter writer = new DataExtensionRecordWriter(client, rowsWithIds(), Operation.UPSERT, 3,
+                                                                     false, 1, null, metrics,
+                                                                     new RowRetryPolicy(3, 0, 0, new Random(0)));
+
+    for (int i = 0; i < 3; i++) {
+      writer.write(null, Mockito.mock(StructuredRecord.class));
+    }
+    writer.close(Mockito.mock(TaskAttemptContext.class));
+
+    ArgumentCaptor<List<ETDataExtensionRow>> sent = ArgumentCaptor.forClass(List.class);
+    Mockito.verify(client, Mockito.times(2)).upsert(sent.capture());
+    Assert.assertEquals(1, sent.getAllValues().get(1).size());
+    Assert.assertEquals("1", sent.getAllValues().get(1).get(0).getColumn("Id"));
+    Mockito.verify(stageMetrics).countLong("dataextension.key.rows.upserted", 2L);
+    Mockito.verify(stageMetrics).countLong("dataextension.key.rows.failed", 1L);
+  }
+
+  @Test
+  public void testWriteToServer() throws Exception {
+    try (FakeMarketingCloudServer server = FakeMarketingCloudServer.start()) {
+      server.data().createDataExtension("contacts", Collections.singletonList("Id"), "Id");
+      server.failRows(row -> "2".equals(row.get("Id")), 10006, "Unable to save the row");
+      server.throttle("Create", 1);
+      Metrics stageMetrics = Mockito.mock(Metrics.class);
+      MarketingCloudMetrics metrics = MarketingCloudMetrics.forStage(null);
+      metrics.bind(stageMetrics);
+      DataExtensionClient client = new DataExtensionClient(server.sdkClient(), "contacts");
+      client.setStreamingRequests(true);
+      client.setMetrics(metrics);
+      DataExtensionRecordWriter writer = new DataExtensionRecordWriter(client, rowsWithIds(), Operation.INSERT, 5,
+                                                                       false, 1, null, metrics,
+                                                                       new RowRetryPolicy(3, 0, 0, new Random(0)));
+
+      for (int i = 0; i < 5; i++) {
+        writer.write(null, Mockito.mock(StructuredRecord.class));
+      }
+      writer.close(Mockito.mock(TaskAttemptContext.class));
+
+      // the throttled call is sent again, the rejected row is reported once and not sent again
+      Assert.assertEquals(2, server.getRequestCount("Create"));
+      Assert.assertEquals(Arrays.asList("0", "1", "3", "4"), server.data().getRows("contacts").stream()
+        .map(row -> row.get("Id"))
+        .collect(Collectors.toList()));
+      Mockito.verify(stageMetrics).countLong("dataextension.contacts.rows.inserted", 4L);
+      Mockito.verify(stageMetrics).countLong("dataextension.contacts.rows.failed", 1L);
+      Mockito.verify(stageMetrics).countLong(MarketingCloudMetrics.THROTTLED, 1L);
+    }
+  }
+
+  private static ETResult<ETDataExtensionRow> result(ETDataExtensionRow row, ETResult.Status status,
+                                                     @Nullable String errorMessage) {
+    ETResult<ETDataExtensionRow> result = new ETResult<>();
+    result.setObject(row);
+    result.setStatus(status);
+    result.setErrorMessage(errorMessage);
+    return result;
+  }
+
+  private static ETResponse<ETDataExtensionRow> okResponse(List<ETDataExtensionRow> rows) {
+    ETResponse<ETDataExtensionRow> response = new ETResponse<>();
+    for (ETDataExtensionRow row : rows) {
+      response.addResult(result(row, ETResult.Status.OK, null));
+    }
+    return response;
+  }
+
+  private static RecordDataExtensionRowConverter rowsWithIds() {
+    RecordDataExtensionRowConverter converter = Mockito.mock(RecordDataExtensionRowConverter.class);
+    AtomicInteger ids = new AtomicInteger();
+    Mockito.when(converter.transform(Mockito.any())).thenAnswer(invocation -> {
+      ETDataExtensionRow row = new ETDataExtensionRow();
+      row.setColumn("Id", String.valueOf(ids.getAndIncrement()));
+      return row;
+    });
+    return converter;
+  }
 }
@@ -0,0 +1,152 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.sink;
+
+import com.exacttarget.fuelsdk.ETClient;
+import com.exacttarget.fuelsdk.ETConfiguration;
+import com.exacttarget.fuelsdk.ETDataExtensionRow;
+import com.exacttarget.fuelsdk.ETResponse;
+import com.exacttarget.fuelsdk.ETResult;
+import com.exacttarget.fuelsdk.internal.SaveAction;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpServer;
+import io.cdap.plugin.sfmc.common.StreamingSoapClient;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class DataExtensionSoapRequestsTest {
+
+  private static final String RESPONSE_START = "<?xml version=\"1.0\" encoding=\"utf-8\"?>" +
+    "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\" " +
+    "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"><soap:Body>";
+  private static final String RESPONSE_END = "</soap:Body></soap:Envelope>";
+
+  private final AtomicReference<String> request = new AtomicReference<>();
+  private HttpServer server;
+  private volatile String response;
+
+  @Before
+  public void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/Service.asmx", exchange -> {
+      request.set(new String(ByteStreams.toByteArray(exchange.getRequestBody()), StandardCharsets.UTF_8));
+      byte[] body = response.getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testCreate() throws Exception {
+    response = RESPONSE_START + "<CreateResponse xmlns=\"http://exacttarget.com/wsdl/partnerAPI\">" +
+      "<Results xsi:type=\"DataExtensionCreateResult\"><StatusCode>Error</StatusCode>" +
+      "<StatusMessage>Violation of PRIMARY KEY constraint</StatusMessage><OrdinalID>1</OrdinalID>" +
+      "<ErrorCode>2</ErrorCode><NewID>0</NewID><Object xsi:type=\"DataExtensionObject\"><Properties>" +
+      "<Property><Name>id</Name><Value>2</Value></Property></Properties></Object>" +
+      "<ErrorMessage>Violation of PRIMARY KEY constraint</ErrorMessage></Results>" +
+      "<Results xsi:type=\"DataExtensionCreateResult\"><StatusCode>OK</StatusCode><StatusMessage>Created" +
+      "</StatusMessage><OrdinalID>0</OrdinalID><ErrorCode/></Results>" +
+      "<RequestID>request</RequestID><OverallStatus>Has Errors</OverallStatus></CreateResponse>" + RESPONSE_END;
+    ETDataExtensionRow first = row("1", "a & b");
+    ETDataExtensionRow second = row("2", null);
+
+    ETResponse<ETDataExtensionRow> created = DataExtensionSoapRequests.create(newClient(), "DE",
+                                                                              Arrays.asList(first, second));
+
+    Assert.assertTrue(request.get().contains(
+      "<CreateRequest xmlns=\"http://exacttarget.com/wsdl/partnerAPI\"><Options/>" +
+        "<Objects xsi:type=\"DataExtensionObject\"><CustomerKey>DE</CustomerKey><Properties>" +
+        "<Property><Name>id</Name><Value>1</Value></Property>" +
+        "<Property><Name>name</Name><Value>a &amp; b</Value></Property></Properties></Objects>" +
+        "<Objects xsi:type=\"DataExtensionObject\"><CustomerKey>DE</CustomerKey><Properties>" +
+        "<Property><Name>id</Name><Value>2</Value></Property>" +
+        "<Property><Name>name</Name></Property></Properties></Objects></CreateRequest>"));
+    Assert.assertEquals("request", created.getRequestId());
+    Assert.assertEquals("Has Errors", created.getResponseCode());
+    List<ETResult<ETDataExtensionRow>> results = created.getResults();
+    Assert.assertEquals(2, results.size());
+    Assert.assertEquals(ETResult.Status.ERROR, results.get(0).getStatus());
+    Assert.assertEquals(Integer.valueOf(2), results.get(0).getErrorCode());
+    Assert.assertEquals("Violation of PRIMARY KEY constraint", results.get(0).getErrorMessage());
+    Assert.assertSame(second, results.get(0).getObject());
+    Assert.assertEquals(ETResult.Status.OK, results.get(1).getStatus());
+    Assert.assertNull(results.get(1).getErrorCode());
+    Assert.assertSame(first, results.get(1).getObject());
+  }
+
+  @Test
+  public void testUpdateWithSaveAction() throws Exception {
+    response = RESPONSE_START + "<UpdateResponse xmlns=\"http://exacttarget.com/wsdl/partnerAPI\">" +
+      "<Results><StatusCode>OK</StatusCode></Results>" +
+      "<RequestID>request</RequestID><OverallStatus>OK</OverallStatus></UpdateResponse>" + RESPONSE_END;
+    ETDataExtensionRow row = row("1", "a");
+
+    ETResponse<ETDataExtensionRow> updated = DataExtensionSoapRequests.update(
+      newClient(), "DE", Collections.singletonList(row), SaveAction.UPDATE_ADD);
+
+    Assert.assertTrue(request.get().contains(
+      "<UpdateRequest xmlns=\"http://exacttarget.com/wsdl/partnerAPI\"><Options><SaveOptions><SaveOption>" +
+        "<PropertyName>*</PropertyName><SaveAction>UpdateAdd</SaveAction></SaveOption></SaveOptions></Options>"));
+    Assert.assertEquals(ETResult.Status.OK, updated.getStatus());
+    Assert.assertSame(row, updated.getResults().get(0).getObject());
+  }
+
+  @Test
+  public void testEmptyBatchIsNotSent() throws Exception {
+    ETResponse<ETDataExtensionRow> created = DataExtensionSoapRequests.create(newClient(), "DE",
+                                                                              Collections.emptyList());
+    Assert.assertEquals(ETResult.Status.OK, created.getStatus());
+    Assert.assertNull(request.get());
+  }
+
+  private StreamingSoapClient newClient() throws Exception {
+    ETConfiguration configuration = Mockito.mock(ETConfiguration.class);
+    Mockito.when(configuration.get("soapEndpoint"))
+      .thenReturn(String.format("http://localhost:%d/", server.getAddress().getPort()));
+    ETClient client = Mockito.mock(ETClient.class);
+    Mockito.when(client.getConfiguration()).thenReturn(configuration);
+    Mockito.when(client.getAccessToken()).thenReturn("token");
+    return StreamingSoapClient.of(client);
+  }
+
+  private static ETDataExtensionRow row(String id, String name) {
+    ETDataExtensionRow row = new ETDataExtensionRow();
+    row.setColumn("id", id);
+    row.setColumn("name", name);
+    return row;
+  }
+}
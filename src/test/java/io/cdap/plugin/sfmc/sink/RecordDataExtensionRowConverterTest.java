@@ -16,6 +16,7 @@
 package io.cdap.plugin.sfmc.sink;
 
 import com.exacttarget.fuelsdk.ETDataExtensionColumn;
+import com.exacttarget.fuelsdk.ETDataExtensionRow;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.etl.mock.validation.MockFailureCollector;
@@ -191,5 +192,40 @@ public class RecordDataExtensionRowConverterTest {
       Assert.assertNotEquals(e.getMessage(), "Field is of unsupported type TIMESTAMP_MICROS");
     }
   }
+  @Test
+  public void testTransformUsesColumnNamesAndLengths() {
+    List<ETDataExtensionColumn> columnList = new ArrayList<>();
+    ETDataExtensionColumn name = new ETDataExtensionColumn();
+    name.setName("Name");
+    name.setLength(3);
+    ETDataExtensionColumn count = new ETDataExtensionColumn();
+    count.setName("Count");
+    columnList.add(name);
+    columnList.add(count);
+    Schema schema = Schema.recordOf("record",
+                                    Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("count", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+                                    Schema.Field.of("ignored", Schema.of(Schema.Type.STRING)));
+    RecordDataExtensionRowConverter converter =
+      new RecordDataExtensionRowConverter(new DataExtensionInfo("DE", columnList), true);
+
+    ETDataExtensionRow row = converter.transform(StructuredRecord.builder(schema)
+                                                   .set("name", "abcdef").set("count", 5).set("ignored", "x").build());
+    Assert.assertEquals("DE", row.getDataExtensionKey());
+    Assert.assertEquals("abc", row.getColumn("Name"));
+    Assert.assertEquals("5", row.getColumn("Count"));
+    Assert.assertNull(row.getColumn("ignored"));
+
+    row = converter.transform(StructuredRecord.builder(schema).set("name", "ab").set("ignored", "x").build());
+    Assert.assertEquals("ab", row.getColumn("Name"));
+    Assert.assertNull(row.getColumn("Count"));
+
+    // a record with another schema gets its own plan
+    Schema countAsString = Schema.recordOf("record", Schema.Field.of("count", Schema.of(Schema.Type.STRING)));
+    row = converter.transform(StructuredRecord.builder(countAsString).set("count", "six").build());
+    Assert.assertEquals("six", row.getColumn("Count"));
+    Assert.assertNull(row.getColumn("Name"));
+  }
+
   enum Days { Monday}
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.sink;
+
+import com.exacttarget.fuelsdk.ETDataExtensionRow;
+import com.exacttarget.fuelsdk.ETResult;
+import com.exacttarget.fuelsdk.ETSdkException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.SocketTimeoutException;
+import java.util.Random;
+
+public class RowRetryPolicyTest {
+
+  @Test
+  public void testClassifyResult() {
+    Assert.assertEquals(RowRetryPolicy.Failure.DUPLICATE,
+                        RowRetryPolicy.classify(error(2, "Violation of PRIMARY KEY constraint 'PK_1'")));
+    Assert.assertEquals(RowRetryPolicy.Failure.TRANSIENT,
+                        RowRetryPolicy.classify(error(2, "Transaction was deadlocked, rerun the transaction")));
+    Assert.assertEquals(RowRetryPolicy.Failure.TRANSIENT,
+                        RowRetryPolicy.classify(error(null, "Execution Timeout Expired")));
+    Assert.assertEquals(RowRetryPolicy.Failure.TRANSIENT,
+                        RowRetryPolicy.classify(error(null, "Too many requests, the request was throttled")));
+    Assert.assertEquals(RowRetryPolicy.Failure.PERMANENT,
+                        RowRetryPolicy.classify(error(12002, "The value for column 'Age' is not a number")));
+    Assert.assertEquals(RowRetryPolicy.Failure.PERMANENT, RowRetryPolicy.classify(error(null, null)));
+  }
+
+  @Test
+  public void testClassifyMissingPrimaryKeyIsPermanent() {
+    Assert.assertEquals(RowRetryPolicy.Failure.PERMANENT,
+                        RowRetryPolicy.classify(error(2, "Primary key value for column 'Id' is missing")));
+    Assert.assertEquals(RowRetryPolicy.Failure.PERMANENT,
+                        RowRetryPolicy.classify(error(12000, "Violation of PRIMARY KEY constraint 'PK_1'")));
+  }
+
+  @Test
+  public void testClassifyException() {
+    Assert.assertEquals(RowRetryPolicy.Failure.TRANSIENT,
+                        RowRetryPolicy.classify(new ETSdkException("call failed", new SocketTimeoutException())));
+    Assert.assertEquals(RowRetryPolicy.Failure.TRANSIENT,
+                        RowRetryPolicy.classify(new ETSdkException("Connection reset by peer")));
+    Assert.assertEquals(RowRetryPolicy.Failure.TRANSIENT,
+                        RowRetryPolicy.classify(new ETSdkException("Server returned HTTP status 502")));
+    Assert.assertEquals(RowRetryPolicy.Failure.PERMANENT,
+                        RowRetryPolicy.classify(new ETSdkException("Invalid data extension key")));
+    Assert.assertEquals(RowRetryPolicy.Failure.PERMANENT, RowRetryPolicy.classify(new NullPointerException()));
+  }
+
+  @Test
+  public void testBudget() {
+    RowRetryPolicy policy = new RowRetryPolicy(3, 0, 0, new Random(0));
+
+    Assert.assertTrue(policy.tryRetry(100));
+    Assert.assertFalse(policy.tryRetry(1));
+    policy.onSent(50);
+    Assert.assertTrue(policy.tryRetry(5));
+    Assert.assertFalse(policy.tryRetry(1));
+  }
+
+  @Test
+  public void testBackoff() {
+    RowRetryPolicy policy = new RowRetryPolicy(10, 100, 1000, new Random(0));
+
+    for (int retry = 1; retry <= 10; retry++) {
+      long expected = Math.min(1000, 100L << (retry - 1));
+      long backoff = policy.getBackoffMillis(retry);
+      Assert.assertTrue(backoff >= expected / 2 && backoff <= expected);
+    }
+  }
+
+  private static ETResult<ETDataExtensionRow> error(Integer errorCode, String message) {
+    ETResult<ETDataExtensionRow> result = new ETResult<>();
+    result.setStatus(ETResult.Status.ERROR);
+    result.setErrorCode(errorCode);
+    result.setErrorMessage(message);
+    return result;
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sfmc.source;
+
+import com.exacttarget.fuelsdk.ETDataExtensionRow;
+import com.exacttarget.fuelsdk.ETExpression;
+import com.exacttarget.fuelsdk.ETSdkException;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.sfmc.common.FakeMarketingCloudServer;
+import io.cdap.plugin.sfmc.common.StreamingSoapClient;
+import io.cdap.plugin.sfmc.source.util.FilterExpressions;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudColumn;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudObjectInfo;
+import io.cdap.plugin.sfmc.source.util.RecordConversionPlan;
+import io.cdap.plugin.sfmc.source.util.SourceObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+public class DataExtensionRecordRetrieverTest {
+  private static final String RESPONSE_START = "<RetrieveResponseMsg xmlns=\"" + StreamingSoapClient.PARTNER_API_NS +
+    "\" xmlns:xsi=\"" + StreamingSoapClient.XSI_NS + "\">";
+
+  @Test
+  public void testReadResponse() throws Exception {
+    DataExtensionRecordRetriever retriever = createRetriever("tablename");
+    String response = RESPONSE_START +
+      "<OverallStatus>MoreDataAvailable</OverallStatus>" +
+      "<RequestID>request-1</RequestID>" +
+      "<Results xsi:type=\"DataExtensionObject\">" +
+      "<PartnerKey xsi:nil=\"true\"/><Type>DataExtensionObject</Type>" +
+      "<Properties>" +
+      "<Property><Name>First Name</Name><Value>John</Value></Property>" +
+      "<Property><Name>Age</Name><Value>42</Value></Property>" +
+      "<Property><Name>Active</Name><Value>true</Value></Property>" +
+      "<Property><Name>_CustomObjectKey</Name><Value>1</Value></Property>" +
+      "</Properties>" +
+      "</Results>" +
+      "<Results xsi:type=\"DataExtensionObject\">" +
+      "<Properties>" +
+      "<Property><Name>Age</Name><Value xsi:nil=\"true\"/></Property>" +
+      "<Property><Name>Active</Name><Value/></Property>" +
+      "</Properties>" +
+      "</Results>" +
+      "</RetrieveResponseMsg>";
+
+    MarketingCloudPagePrefetcher.RecordPage page = retriever.readResponse(reader(response));
+
+    Assert.assertEquals("request-1", page.getRequestId());
+    Assert.assertTrue(page.isMoreDataAvailable());
+    Assert.assertEquals(2, page.getRecords().size());
+    StructuredRecord first = (StructuredRecord) page.getRecords().get(0);
+    Assert.assertEquals("John", first.get("First__Name"));
+    Assert.assertEquals(Integer.valueOf(42), first.get("Age"));
+    Assert.assertEquals(Boolean.TRUE, first.get("Active"));
+    Assert.assertEquals("dataextension_key", first.get("tablename"));
+    StructuredRecord second = (StructuredRecord) page.getRecords().get(1);
+    Assert.assertEquals("null", second.get("First__Name"));
+    Assert.assertNull(second.get("Age"));
+    Assert.assertNull(second.get("Active"));
+  }
+
+  @Test
+  public void testReadLastPage() throws Exception {
+    DataExtensionRecordRetriever retriever = createRetriever(null);
+    String response = RESPONSE_START +
+      "<OverallStatus>OK</OverallStatus>" +
+      "<RequestID>request-2</RequestID>" +
+      "</RetrieveResponseMsg>";
+
+    MarketingCloudPagePrefetcher.RecordPage page = retriever.readResponse(reader(response));
+
+    Assert.assertFalse(page.isMoreDataAvailable());
+    Assert.assertTrue(page.getRecords().isEmpty());
+  }
+
+  @Test(expected = ETSdkException.class)
+  public void testReadErrorStatus() throws Exception {
+    DataExtensionRecordRetriever retriever = createRetriever(null);
+    String response = RESPONSE_START +
+      "<OverallStatus>Error: The Request Property(s) Unknown do not match with the fields of DataExtensionObject" +
+      "</OverallStatus>" +
+      "</RetrieveResponseMsg>";
+
+    retriever.readResponse(reader(response));
+  }
+
+  @Test(expected = ETSdkException.class)
+  public void testReadInvalidValue() throws Exception {
+    DataExtensionRecordRetriever retriever = createRetriever(null);
+    String response = RESPONSE_START +
+      "<OverallStatus>OK</OverallStatus>" +
+      "<Results><Properties><Property><Name>Age</Name><Value>forty-two</Value></Property></Properties></Results>" +
+      "</RetrieveResponseMsg>";
+
+    retriever.readResponse(reader(response));
+  }
+
+  @Test
+  public void testWriteRequest() throws Exception {
+    DataExtensionRecordRetriever retriever = createRetriever(null);
+    ETExpression filter = new ETExpression();
+    filter.setProperty("Age");
+    filter.setOperator(ETExpression.Operator.GREATER_THAN);
+    filter.addValue("30");
+    ETExpression expression = FilterExpressions.and(filter, FilterExpressions.range("First Name", "A", "M"));
+
+    String request = writeRequest(retriever, null, expression);
+
+    Assert.assertTrue(request.contains("<ObjectType>DataExtensionObject[key]</ObjectType>"));
+    Assert.assertTrue(request.contains("<Properties>First Name</Properties><Properties>Age</Properties>" +
+                                         "<Properties>Active</Properties>"));
+    Assert.assertTrue(request.contains("<Filter xsi:type=\"ComplexFilterPart\">" +
+                                         "<LeftOperand xsi:type=\"SimpleFilterPart\"><Property>Age</Property>" +
+                                         "<SimpleOperator>greaterThan</SimpleOperator><Value>30</Value>" +
+                                         "</LeftOperand><LogicalOperator>AND</LogicalOperator>" +
+                                         "<RightOperand xsi:type=\"ComplexFilterPart\">"));
+    Assert.assertTrue(request.contains("<SimpleOperator>greaterThanOrEqual</SimpleOperator><Value>A</Value>"));
+    Assert.assertTrue(request.contains("<SimpleOperator>lessThan</SimpleOperator><Value>M</Value>"));
+    Assert.assertFalse(request.contains("ContinueRequest"));
+  }
+
+  @Test
+  public void testWriteContinueRequest() throws Exception {
+    DataExtensionRecordRetriever retriever = createRetriever(null);
+
+    String request = writeRequest(retriever, "request-1", new ETExpression());
+
+    Assert.assertTrue(request.contains("<RetrieveRequest><ContinueRequest>request-1</ContinueRequest>" +
+                                         "</RetrieveRequest>"));
+    Assert.assertFalse(request.contains("ObjectType"));
+  }
+
+  @Test
+  public void testRetrievePagesFromServer() throws Exception {
+    try (FakeMarketingCloudServer server = FakeMarketingCloudServer.start()) {
+      server.setPageSize(2);
+      server.data().createDataExtension("key", Arrays.asList("First Name", "Age", "Active"));
+      List<Map<String, String>> rows = new ArrayList<>();
+      for (int i = 0; i < 5; i++) {
+        Map<String, String> row = new HashMap<>();
+        row.put("First Name", "name" + i);
+        row.put("Age", String.valueOf(20 + i));
+        row.put("Active", "true");
+        rows.add(row);
+      }
+      server.data().addRows("key", rows);
+      DataExtensionRecordRetriever retriever = createRetriever(null);
+      ETExpression filter = new ETExpression();
+      filter.setProperty("Age");
+      filter.setOperator(ETExpression.Operator.GREATER_THAN);
+      filter.addValue("20");
+
+      List<Object> records = new ArrayList<>();
+      String requestId = null;
+      MarketingCloudPagePrefetcher.RecordPage page;
+      do {
+        String continueId = requestId;
+        page = server.soapClient().call("Retrieve", writer -> retriever.writeRequest(writer, continueId, filter),
+                                        retriever::readResponse);
+        records.addAll(page.getRecords());
+        requestId = page.getRequestId();
+      } while (page.isMoreDataAvailable());
+
+      Assert.assertEquals(4, records.size());
+      Assert.assertEquals("name1", ((StructuredRecord) records.get(0)).get("First__Name"));
+      Assert.assertEquals(Integer.valueOf(24), ((StructuredRecord) records.get(3)).get("Age"));
+      Assert.assertEquals(2, server.getRequestCount("Retrieve"));
+    }
+  }
+
+  private static DataExtensionRecordRetriever createRetriever(String tableNameField) {
+    MarketingCloudObjectInfo info = new MarketingCloudObjectInfo(
+      SourceObject.DATA_EXTENSION, "key", Arrays.asList(new MarketingCloudColumn("First Name", "TEXT"),
+                                                        new MarketingCloudColumn("Age", "NUMBER"),
+                                                        new MarketingCloudColumn("Active", "BOOLEAN")));
+    List<Schema.Field> fields = new ArrayList<>(info.getSchema().getFields());
+    if (tableNameField != null) {
+      fields.add(Schema.Field.of(tableNameField, Schema.of(Schema.Type.STRING)));
+    }
+    return new DataExtensionRecordRetriever("key", info, RecordConversionPlan.of(info, ETDataExtensionRow.class),
+                                            Schema.recordOf("dataextension_key", fields), tableNameField,
+                                            "dataextension_key");
+  }
+
+  private static XMLStreamReader reader(String response) throws XMLStreamException {
+    XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(response));
+    reader.nextTag();
+    return reader;
+  }
+
+  private static String writeRequest(DataExtensionRecordRetriever retriever, String requestId,
+                                     ETExpression expression) throws XMLStreamException {
+    StringWriter out = new StringWriter();
+    XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+    writer.writeStartElement("Body");
+    writer.writeNamespace("xsi", StreamingSoapClient.XSI_NS);
+    retriever.writeRequest(writer, requestId, expression);
+    writer.writeEndElement();
+    writer.close();
+    return out.toString();
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.sfmc.source;
+
+import com.custom.fuelsdk.ETClickEvent;
+import com.exacttarget.fuelsdk.ETDataExtensionRow;
+import io.cdap.plugin.sfmc.source.util.FieldAccessor;
+import io.cdap.plugin.sfmc.source.util.FieldAccessors;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudColumn;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudObjectInfo;
+import io.cdap.plugin.sfmc.source.util.SourceObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+
+public class FieldAccessorsTest {
+
+  @Test
+  public void testForField() {
+    ETClickEvent event = new ETClickEvent();
+    event.setSendID(121);
+    Date eventDate = new Date();
+    event.setEventDate(eventDate);
+
+    Assert.assertEquals(121, FieldAccessors.forField(ETClickEvent.class, "sendID").get(event));
+    Assert.assertEquals(eventDate, FieldAccessors.forField(ETClickEvent.class, "eventDate").get(event));
+    Assert.assertNull(FieldAccessors.forField(ETClickEvent.class, "subscriberKey").get(event));
+  }
+
+  @Test
+  public void testForFieldIsCompiledOnce() {
+    FieldAccessor accessor = FieldAccessors.forField(ETClickEvent.class, "url");
+    Assert.assertSame(accessor, FieldAccessors.forField(ETClickEvent.class, "url"));
+  }
+
+  @Test
+  public void testForFieldWithoutGetter() {
+    Assert.assertNull(FieldAccessors.forField(ETClickEvent.class, "missingField").get(new ETClickEvent()));
+  }
+
+  @Test
+  public void testForDataExtension() {
+    MarketingCloudObjectInfo info = new MarketingCloudObjectInfo(
+      SourceObject.DATA_EXTENSION, "key", Arrays.asList(new MarketingCloudColumn("First Name", "TEXT"),
+                                                        new MarketingCloudColumn("Age", "NUMBER")));
+    ETDataExtensionRow row = new ETDataExtensionRow();
+    row.setColumn("First Name", "John");
+    row.setColumn("Age", "42");
+
+    FieldAccessor[] accessors = FieldAccessors.forObject(info, ETDataExtensionRow.class);
+    Assert.assertEquals(2, accessors.length);
+    Assert.assertEquals(info.getSchema().getFields().size(), accessors.length);
+    for (int i = 0; i < accessors.length; i++) {
+      String fieldName = info.getSchema().getFields().get(i).getName();
+      Assert.assertEquals(row.getColumn(info.lookupFieldsMap(fieldName)), accessors[i].get(row));
+    }
+  }
+}
@@ -17,7 +17,10 @@ package io.cdap.plugin.sfmc.source;
 
 import com.exacttarget.fuelsdk.ETClient;
 import com.exacttarget.fuelsdk.ETConfiguration;
+import com.exacttarget.fuelsdk.ETSdkException;
+import io.cdap.cdap.etl.mock.validation.MockFailureCollector;
 import io.cdap.plugin.sfmc.source.util.MarketingCloudColumn;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudConstants;
 import io.cdap.plugin.sfmc.source.util.MarketingCloudObjectInfo;
 import io.cdap.plugin.sfmc.source.util.SourceObject;
 import io.cdap.plugin.sfmc.source.util.SourceQueryMode;
@@ -34,8 +37,12 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @RunWith(PowerMockRunner.class)
 @PrepareForTest({MarketingCloudClient.class, MarketingCloudInputFormat.class, ETClient.class,
@@ -101,7 +108,7 @@ public class MarketingCloudInputFormatTest {
     Configuration jobConfig = Mockito.mock(Configuration.class);
     PowerMockito.mockStatic(MarketingCloudInputFormat.class);
     PowerMockito.when(MarketingCloudInputFormat.fetchTableInfo(mode, config)).thenReturn(tableInfo);
-    MarketingCloudInputFormat.setInput(jobConfig, mode, config);
+    MarketingCloudInputFormat.setInput(jobConfig, mode, config, new MockFailureCollector());
     Assert.assertEquals(1, MarketingCloudInputFormat.fetchTableInfo(mode, config).size());
   }
 
@@ -144,10 +151,66 @@ public class MarketingCloudInputFormatTest {
     Configuration jobConfig = Mockito.mock(Configuration.class);
     PowerMockito.spy(MarketingCloudInputFormat.class);
     PowerMockito.when(MarketingCloudInputFormat.fetchTableInfo(mode, config)).thenReturn(tableInfos);
-    MarketingCloudInputFormat.setInput(jobConfig, mode, config);
+    MarketingCloudInputFormat.setInput(jobConfig, mode, config, new MockFailureCollector());
     Assert.assertEquals(1, MarketingCloudInputFormat.fetchTableInfo(mode, config).size());
   }
 
+  @Test
+  public void testFetchTableInfosInOrder() throws Exception {
+    MarketingCloudClient client = Mockito.mock(MarketingCloudClient.class);
+    List<MarketingCloudColumn> columns = Collections.singletonList(new MarketingCloudColumn("name", "string"));
+    for (String key : Arrays.asList("DE1", "DE2", "DE3")) {
+      Mockito.when(client.fetchDataExtensionSchema(key))
+        .thenReturn(new MarketingCloudObjectInfo(SourceObject.DATA_EXTENSION, key, columns));
+    }
+    Mockito.when(client.fetchObjectSchema(SourceObject.TRACKING_UNSUB_EVENT))
+      .thenReturn(new MarketingCloudObjectInfo(SourceObject.TRACKING_UNSUB_EVENT, columns));
+
+    List<MarketingCloudObjectInfo> tableInfos = MarketingCloudInputFormat.fetchTableInfos(
+      client, Arrays.asList(SourceObject.DATA_EXTENSION, SourceObject.DATA_EXTENSION, SourceObject.DATA_EXTENSION,
+                            SourceObject.TRACKING_UNSUB_EVENT), Arrays.asList("DE1", "DE2", "DE3", ""), 2);
+
+    Assert.assertEquals(Arrays.asList("dataextension_DE1", "dataextension_DE2", "dataextension_DE3", "unsub"),
+                        tableInfos.stream().map(MarketingCloudObjectInfo::getTableName).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testFetchTableInfosReportsEachFailure() throws Exception {
+    MarketingCloudClient client = Mockito.mock(MarketingCloudClient.class);
+    List<MarketingCloudColumn> columns = Collections.singletonList(new MarketingCloudColumn("name", "string"));
+    Mockito.when(client.fetchDataExtensionSchema("DE1"))
+      .thenReturn(new MarketingCloudObjectInfo(SourceObject.DATA_EXTENSION, "DE1", columns));
+    Mockito.when(client.fetchDataExtensionSchema("DE2")).thenThrow(new ETSdkException("not found"));
+    Mockito.when(client.fetchDataExtensionSchema("DE3")).thenThrow(new ETSdkException("timed out"));
+
+    try {
+      MarketingCloudInputFormat.fetchTableInfos(
+        client, Arrays.asList(SourceObject.DATA_EXTENSION, SourceObject.DATA_EXTENSION, SourceObject.DATA_EXTENSION),
+        Arrays.asList("DE1", "DE2", "DE3"), 2);
+      Assert.fail("Expected the failed data extensions to be reported");
+    } catch (IllegalStateException e) {
+      Assert.assertTrue(e.getMessage().contains("'dataextension_DE2': not found"));
+      Assert.assertTrue(e.getMessage().contains("'dataextension_DE3': timed out"));
+      Assert.assertFalse(e.getMessage().contains("DE1"));
+      Assert.assertEquals(2, e.getSuppressed().length);
+    }
+  }
+
+  @Test
+  public void testSelectFields() {
+    MarketingCloudObjectInfo dataExtension = new MarketingCloudObjectInfo(
+      SourceObject.DATA_EXTENSION, "DE1", Arrays.asList(new MarketingCloudColumn("name", "string"),
+                                                        new MarketingCloudColumn("email", "string")));
+    MarketingCloudObjectInfo event = new MarketingCloudObjectInfo(
+      SourceObject.TRACKING_OPEN_EVENT, Arrays.asList(new MarketingCloudColumn("email", "string"),
+                                                      new MarketingCloudColumn("eventDate", "date")));
+
+    List<MarketingCloudObjectInfo> selected = MarketingCloudInputFormat.selectFields(
+      Arrays.asList(dataExtension, event), Arrays.asList("email", "eventDate"));
+    Assert.assertEquals(1, selected.get(0).getSchema().getFields().size());
+    Assert.assertEquals(2, selected.get(1).getSchema().getFields().size());
+  }
+
   @Test
   public void testCreateRecordReader() throws Exception {
     InputSplit inputSplit = Mockito.mock(InputSplit.class);
@@ -174,6 +237,7 @@ public class MarketingCloudInputFormatTest {
       .thenReturn(jobConfiguration);
     Mockito.when(jobConfiguration.getTableInfos()).thenReturn(tableInfos);
     MarketingCloudSourceConfig config = Mockito.mock(MarketingCloudSourceConfig.class);
+    Mockito.when(config.getApiTimeZone()).thenReturn(ZoneId.of(MarketingCloudConstants.DEFAULT_API_TIME_ZONE));
     Mockito.when(jobConfiguration.getPluginConf()).thenReturn(config);
     Assert.assertNotNull(inputFormat.getSplits(jobContext));
   }
@@ -18,10 +18,16 @@ package io.cdap.plugin.sfmc.source;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.util.Arrays;
+import java.util.List;
 
 public class MarketingCloudInputSplitTest {
 
@@ -60,6 +66,49 @@ public class MarketingCloudInputSplitTest {
     Mockito.verify(marketingCloudInputSplit, Mockito.times(1)).write(dataOutput);
   }
 
+  @Test
+  public void testWriteAndReadRange() throws IOException {
+    MarketingCloudInputSplit split = new MarketingCloudInputSplit("TRACKING_OPEN_EVENT", "open", "eventDate",
+                                                                  null, "2020-01-02T00:00:00", 86400L)
+      .withNullRangeValues();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    split.write(new DataOutputStream(bytes));
+    MarketingCloudInputSplit actualSplit = new MarketingCloudInputSplit();
+    actualSplit.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    Assert.assertEquals("TRACKING_OPEN_EVENT", actualSplit.getObjectName());
+    Assert.assertEquals("open", actualSplit.getTableName());
+    Assert.assertEquals("eventDate", actualSplit.getRangeProperty());
+    Assert.assertNull(actualSplit.getRangeStart());
+    Assert.assertEquals("2020-01-02T00:00:00", actualSplit.getRangeEnd());
+    Assert.assertTrue(actualSplit.isRangeIncludingNull());
+    Assert.assertEquals(86400L, actualSplit.getLength());
+  }
+
+  @Test
+  public void testWriteAndReadCombined() throws IOException {
+    MarketingCloudInputSplit email = new MarketingCloudInputSplit("EMAIL", "email", null, null, null, 40L);
+    MarketingCloudInputSplit open = new MarketingCloudInputSplit("TRACKING_OPEN_EVENT", "open", "eventDate",
+                                                                 "2020-01-01T00:00:00", null, 25L);
+    MarketingCloudInputSplit combined = MarketingCloudInputSplit.combine(Arrays.asList(email, open));
+    Assert.assertEquals(65L, combined.getLength());
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    combined.write(new DataOutputStream(bytes));
+    MarketingCloudInputSplit actualSplit = new MarketingCloudInputSplit();
+    actualSplit.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    Assert.assertEquals(65L, actualSplit.getLength());
+    List<MarketingCloudInputSplit> parts = actualSplit.getParts();
+    Assert.assertEquals(2, parts.size());
+    Assert.assertEquals("email", parts.get(0).getTableName());
+    Assert.assertNull(parts.get(0).getRangeProperty());
+    Assert.assertEquals(40L, parts.get(0).getLength());
+    Assert.assertEquals("open", parts.get(1).getTableName());
+    Assert.assertEquals("eventDate", parts.get(1).getRangeProperty());
+    Assert.assertEquals("2020-01-01T00:00:00", parts.get(1).getRangeStart());
+    Assert.assertFalse(parts.get(1).isRangeIncludingNull());
+    Assert.assertEquals(25L, parts.get(1).getLength());
+  }
+
   @Test
   public void testGetLocations() {
     Assert.assertEquals(String[].class, new MarketingCloudInputSplit("Table Name", "Object Name").getLocations().
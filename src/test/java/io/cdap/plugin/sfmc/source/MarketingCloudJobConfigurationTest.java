@@ -15,10 +15,17 @@
  */
 package io.cdap.plugin.sfmc.source;
 
+import io.cdap.plugin.sfmc.source.util.MarketingCloudColumn;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudObjectInfo;
+import io.cdap.plugin.sfmc.source.util.SourceObject;
 import org.apache.hadoop.conf.Configuration;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 public class MarketingCloudJobConfigurationTest {
 
   @Test
@@ -41,5 +48,21 @@ public class MarketingCloudJobConfigurationTest {
     marketingCloudJobConfiguration.getTableInfos();
   }
 
+  @Test
+  public void testTableInfosRoundTrip() {
+    MarketingCloudObjectInfo info = new MarketingCloudObjectInfo(
+      SourceObject.DATA_EXTENSION, "key", Arrays.asList(new MarketingCloudColumn("First Name", "TEXT"),
+                                                        new MarketingCloudColumn("Age", "NUMBER")));
+    MarketingCloudJobConfiguration jobConfiguration = new MarketingCloudJobConfiguration(new Configuration());
+    jobConfiguration.setTableInfos(Collections.singletonList(info));
+
+    List<MarketingCloudObjectInfo> infos = jobConfiguration.getTableInfos();
+    Assert.assertEquals(1, infos.size());
+    Assert.assertEquals(SourceObject.DATA_EXTENSION, infos.get(0).getObject());
+    Assert.assertEquals("dataextension_key", infos.get(0).getTableName());
+    Assert.assertEquals(info.getSchema(), infos.get(0).getSchema());
+    Assert.assertEquals("First Name", infos.get(0).lookupFieldsMap("First__Name"));
+  }
+
 
 }
@@ -15,6 +15,7 @@
  */
 package io.cdap.plugin.sfmc.source;
 
+import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.plugin.sfmc.source.util.MarketingCloudColumn;
 import io.cdap.plugin.sfmc.source.util.MarketingCloudObjectInfo;
 import io.cdap.plugin.sfmc.source.util.SourceObject;
@@ -23,7 +24,10 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class MarketingCloudObjectInfoTest {
   public static final SourceObject TEST_OBJECT = SourceObject.TRACKING_NOTSENT_EVENT;
@@ -108,5 +112,23 @@ public class MarketingCloudObjectInfoTest {
     MarketingCloudObjectInfo info = new MarketingCloudObjectInfo(TEST_OBJECT, TEST_DATAEXTENSIONKEY, columns);
     info.lookupFieldsMap(schemaFieldName);
   }
-}
 
+  @Test
+  public void testSelect() {
+    List<MarketingCloudColumn> columns = new ArrayList<>();
+    columns.add(new MarketingCloudColumn("Email Address", "string"));
+    columns.add(new MarketingCloudColumn("sys_created_by", "string"));
+    columns.add(new MarketingCloudColumn("sys_updated_by", "string"));
+    MarketingCloudObjectInfo info = new MarketingCloudObjectInfo(SourceObject.DATA_EXTENSION, TEST_DATAEXTENSIONKEY,
+                                                                 columns);
+
+    MarketingCloudObjectInfo selected = info.select(Arrays.asList("sys_updated_by", "Email Address", "unknown"));
+    Assert.assertNotNull(selected);
+    Assert.assertEquals(Arrays.asList("Email__Address", "sys_updated_by"),
+                        selected.getSchema().getFields().stream().map(Schema.Field::getName)
+                          .collect(Collectors.toList()));
+    Assert.assertEquals(Arrays.asList("Email Address", "sys_updated_by"), selected.getPropertyNames());
+    Assert.assertEquals(info.getTableName(), selected.getTableName());
+    Assert.assertNull(info.select(Collections.singletonList("unknown")));
+  }
+}
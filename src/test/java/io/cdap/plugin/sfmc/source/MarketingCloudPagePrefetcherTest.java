@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.sfmc.source;
+
+import com.exacttarget.fuelsdk.ETDataExtensionRow;
+import com.exacttarget.fuelsdk.ETResponse;
+import com.exacttarget.fuelsdk.ETResult;
+import com.exacttarget.fuelsdk.ETSdkException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MarketingCloudPagePrefetcherTest {
+
+  @Test
+  public void testPrefetchAllPages() throws IOException {
+    List<String> requestIds = new ArrayList<>();
+    MarketingCloudPagePrefetcher prefetcher = new MarketingCloudPagePrefetcher(requestId -> {
+      requestIds.add(requestId);
+      return page(requestIds.size() < 3, 2);
+    }, 2);
+
+    int records = 0;
+    List<?> page;
+    while ((page = prefetcher.next()) != null) {
+      records += page.size();
+    }
+    prefetcher.close();
+
+    Assert.assertEquals(6, records);
+    Assert.assertNull(requestIds.get(0));
+    Assert.assertEquals("request", requestIds.get(1));
+    Assert.assertNull(prefetcher.next());
+  }
+
+  @Test
+  public void testFetchOnDemand() throws IOException {
+    List<String> requestIds = new ArrayList<>();
+    MarketingCloudPagePrefetcher prefetcher = new MarketingCloudPagePrefetcher(requestId -> {
+      requestIds.add(requestId);
+      return page(requestIds.size() < 2, 1);
+    }, 0);
+
+    Assert.assertEquals(1, prefetcher.next().size());
+    Assert.assertEquals(1, requestIds.size());
+    Assert.assertEquals(1, prefetcher.next().size());
+    Assert.assertNull(prefetcher.next());
+    Assert.assertEquals(2, requestIds.size());
+  }
+
+  @Test
+  public void testPropagateError() throws IOException {
+    MarketingCloudPagePrefetcher prefetcher = new MarketingCloudPagePrefetcher(requestId -> {
+      if (requestId != null) {
+        throw new ETSdkException("transport error");
+      }
+      return page(true, 1);
+    }, 1);
+
+    Assert.assertEquals(1, prefetcher.next().size());
+    try {
+      prefetcher.next();
+      Assert.fail("Expected the fetch error to be propagated");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getCause() instanceof ETSdkException);
+    }
+    Assert.assertNull(prefetcher.next());
+    prefetcher.close();
+  }
+
+  @Test
+  public void testCloseStopsFetching() throws Exception {
+    AtomicInteger fetched = new AtomicInteger();
+    MarketingCloudPagePrefetcher prefetcher = new MarketingCloudPagePrefetcher(requestId -> {
+      fetched.incrementAndGet();
+      return page(true, 1);
+    }, 1);
+
+    Assert.assertEquals(1, prefetcher.next().size());
+    prefetcher.close();
+    TimeUnit.MILLISECONDS.sleep(300);
+    int count = fetched.get();
+    TimeUnit.MILLISECONDS.sleep(300);
+    Assert.assertEquals(count, fetched.get());
+    Assert.assertTrue(count <= 3);
+  }
+
+  private static ETResponse<ETDataExtensionRow> page(boolean moreData, int size) {
+    ETResponse<ETDataExtensionRow> response = new ETResponse<>();
+    response.setRequestId("request");
+    response.setResponseMessage(moreData ? "MoreDataAvailable" : "OK");
+    for (int i = 0; i < size; i++) {
+      ETResult<ETDataExtensionRow> result = new ETResult<>();
+      result.setObject(new ETDataExtensionRow());
+      response.addResult(result);
+    }
+    return response;
+  }
+}
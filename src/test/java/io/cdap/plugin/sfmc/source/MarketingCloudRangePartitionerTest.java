@@ -0,0 +1,181 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sfmc.source;
+
+import com.exacttarget.fuelsdk.ETDataExtensionRow;
+import com.exacttarget.fuelsdk.ETExpression;
+import com.exacttarget.fuelsdk.ETResponse;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudColumn;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudObjectInfo;
+import io.cdap.plugin.sfmc.source.util.SourceObject;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class MarketingCloudRangePartitionerTest {
+
+  @Test
+  public void testBoundariesAtQuantiles() {
+    List<String> values = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      values.add(String.valueOf(i));
+    }
+    Collections.shuffle(values);
+
+    Assert.assertEquals(Arrays.asList("25", "50", "75"),
+                        MarketingCloudRangePartitioner.boundaries(values, 4, Comparator.comparing(Integer::valueOf)));
+  }
+
+  @Test
+  public void testBoundariesSkipEqualValues() {
+    List<String> values = Arrays.asList("b", "A", "a", "a", "a", "a", "B", "c");
+
+    Assert.assertEquals(Collections.singletonList("B"),
+                        MarketingCloudRangePartitioner.boundaries(values, 4, String.CASE_INSENSITIVE_ORDER));
+    Assert.assertEquals(Collections.emptyList(),
+                        MarketingCloudRangePartitioner.boundaries(Collections.emptyList(), 4,
+                                                                  String.CASE_INSENSITIVE_ORDER));
+  }
+
+  @Test
+  public void testPlanSamplesNumberColumn() throws Exception {
+    MarketingCloudClient client = client(Arrays.asList("10", "1", "", "7", "4"), 100);
+    MarketingCloudObjectInfo tableInfo = new MarketingCloudObjectInfo(
+      SourceObject.DATA_EXTENSION, "DE1", Arrays.asList(new MarketingCloudColumn("amount", "Number"),
+                                                        new MarketingCloudColumn("name", "Text")));
+
+    List<MarketingCloudInputSplit> splits = new MarketingCloudRangePartitioner("amount", 2).plan(client, tableInfo,
+                                                                                                 null);
+
+    Assert.assertEquals(2, splits.size());
+    for (MarketingCloudInputSplit split : splits) {
+      Assert.assertEquals("DATA_EXTENSION", split.getObjectName());
+      Assert.assertEquals("dataextension_DE1", split.getTableName());
+      Assert.assertEquals("amount", split.getRangeProperty());
+    }
+    Assert.assertNull(splits.get(0).getRangeStart());
+    Assert.assertEquals("7", splits.get(0).getRangeEnd());
+    Assert.assertTrue(splits.get(0).isRangeIncludingNull());
+    Assert.assertEquals("7", splits.get(1).getRangeStart());
+    Assert.assertNull(splits.get(1).getRangeEnd());
+    Assert.assertFalse(splits.get(1).isRangeIncludingNull());
+    // the whole data extension fits in the first page, so it is the only probe
+    Mockito.verify(client).fetchRecords(ArgumentMatchers.any(), ArgumentMatchers.isNull());
+  }
+
+  @Test
+  public void testPlanSamplesKeySpaceOfSortedRows() throws Exception {
+    List<String> ascending = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      ascending.add(String.valueOf(i));
+    }
+    List<String> descending = new ArrayList<>(ascending);
+    Collections.reverse(descending);
+    MarketingCloudObjectInfo tableInfo = new MarketingCloudObjectInfo(
+      SourceObject.DATA_EXTENSION, "DE1", Collections.singletonList(new MarketingCloudColumn("amount", "Number")));
+
+    for (List<String> values : Arrays.asList(ascending, descending)) {
+      // the first pages of rows stored in key order only hold the lowest or highest values
+      MarketingCloudClient client = client(values, 100);
+
+      List<MarketingCloudInputSplit> splits = new MarketingCloudRangePartitioner("amount", 4).plan(client, tableInfo,
+                                                                                                   null);
+
+      Assert.assertEquals(4, splits.size());
+      for (MarketingCloudInputSplit split : splits) {
+        long rows = values.stream().filter(value -> inRange(split, Integer.parseInt(value))).count();
+        Assert.assertTrue("Unbalanced split with " + rows + " rows", rows > 1500 && rows < 3500);
+      }
+      Mockito.verify(client, Mockito.atMost(1 + 2 * MarketingCloudRangePartitioner.EXTREME_PROBES +
+                                              MarketingCloudRangePartitioner.SAMPLE_SLICES))
+        .fetchRecords(ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+  }
+
+  @Test
+  public void testPlanWithoutColumn() {
+    MarketingCloudClient client = Mockito.mock(MarketingCloudClient.class);
+    MarketingCloudObjectInfo tableInfo = new MarketingCloudObjectInfo(
+      SourceObject.DATA_EXTENSION, "DE1", Collections.singletonList(new MarketingCloudColumn("name", "Text")));
+
+    List<MarketingCloudInputSplit> splits = new MarketingCloudRangePartitioner("amount", 4).plan(client, tableInfo,
+                                                                                                 null);
+
+    Assert.assertEquals(1, splits.size());
+    Assert.assertNull(splits.get(0).getRangeProperty());
+    Mockito.verifyZeroInteractions(client);
+  }
+
+  private static boolean inRange(MarketingCloudInputSplit split, int value) {
+    return (split.getRangeStart() == null || Integer.parseInt(split.getRangeStart()) <= value)
+      && (split.getRangeEnd() == null || value < Integer.parseInt(split.getRangeEnd()));
+  }
+
+  /**
+   * Returns a client reading the values of the amount column in the given order, a page at a time, as filtered by the
+   * range filters of the requests.
+   */
+  private static MarketingCloudClient client(List<String> values, int pageSize) throws Exception {
+    MarketingCloudClient client = Mockito.mock(MarketingCloudClient.class);
+    Mockito.doAnswer(invocation -> {
+      MarketingCloudReadRequest request = invocation.getArgument(0);
+      List<String> matched = values.stream()
+        .filter(value -> matches(request.getFilter(), value))
+        .collect(Collectors.toList());
+      ETResponse<ETDataExtensionRow> response = Mockito.mock(ETResponse.class);
+      List<ETDataExtensionRow> rows = new ArrayList<>();
+      for (String value : matched.subList(0, Math.min(pageSize, matched.size()))) {
+        ETDataExtensionRow row = new ETDataExtensionRow();
+        row.setColumn("amount", value);
+        rows.add(row);
+      }
+      Mockito.when(response.getObjects()).thenReturn(rows);
+      Mockito.when(response.hasMoreResults()).thenReturn(matched.size() > pageSize);
+      return response;
+    }).when(client).fetchRecords(ArgumentMatchers.any(), ArgumentMatchers.any());
+    return client;
+  }
+
+  private static boolean matches(ETExpression expression, String value) {
+    if (expression.getOperator() == null) {
+      return true;
+    }
+    switch (expression.getOperator()) {
+      case AND:
+        return expression.getSubexpressions().stream().allMatch(subexpression -> matches(subexpression, value));
+      case OR:
+        return expression.getSubexpressions().stream().anyMatch(subexpression -> matches(subexpression, value));
+      case IS_NULL:
+        return value.isEmpty();
+      case GREATER_THAN_OR_EQUALS:
+        return !value.isEmpty() && new BigDecimal(value).compareTo(new BigDecimal(expression.getValue())) >= 0;
+      case LESS_THAN:
+        return !value.isEmpty() && new BigDecimal(value).compareTo(new BigDecimal(expression.getValue())) < 0;
+      default:
+        throw new IllegalArgumentException("Unexpected operator " + expression.getOperator());
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sfmc.source;
+
+import com.exacttarget.fuelsdk.ETExpression;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudConstants;
+import io.cdap.plugin.sfmc.source.util.SourceObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class MarketingCloudReadRequestTest {
+
+  @Test
+  public void testWithRangeLeavesRequestUnchanged() throws Exception {
+    MarketingCloudReadRequest request = MarketingCloudReadRequest.of(
+      SourceObject.TRACKING_OPEN_EVENT, null, Collections.singletonList("eventDate"), "subscriberKey=1001");
+
+    MarketingCloudReadRequest segment = request.withRange(MarketingCloudConstants.EVENT_DATE, "2020-01-01T00:00:00",
+                                                          "2020-01-02T00:00:00");
+
+    Assert.assertEquals(ETExpression.Operator.EQUALS, request.getFilter().getOperator());
+    Assert.assertTrue(request.getFilter().getSubexpressions().isEmpty());
+    Assert.assertEquals(ETExpression.Operator.AND, segment.getFilter().getOperator());
+    Assert.assertEquals(2, segment.getFilter().getSubexpressions().size());
+    Assert.assertSame(request, request.withRange(MarketingCloudConstants.EVENT_DATE, null, null));
+  }
+
+  @Test
+  public void testRangeIncludingNullMatchesMissingValues() throws Exception {
+    MarketingCloudReadRequest request = MarketingCloudReadRequest.of(
+      SourceObject.DATA_EXTENSION, "DE1", Collections.singletonList("amount"), null);
+
+    Assert.assertEquals(ETExpression.Operator.LESS_THAN,
+                        request.withRange("amount", null, "100").getFilter().getOperator());
+    ETExpression range = request.withRange("amount", null, "100", true).getFilter();
+
+    Assert.assertEquals(ETExpression.Operator.OR, range.getOperator());
+    Assert.assertEquals(ETExpression.Operator.LESS_THAN, range.getSubexpressions().get(0).getOperator());
+    Assert.assertEquals(ETExpression.Operator.IS_NULL, range.getSubexpressions().get(1).getOperator());
+    Assert.assertEquals("amount", range.getSubexpressions().get(1).getProperty());
+    Assert.assertEquals(ETExpression.Operator.GREATER_THAN_OR_EQUALS,
+                        request.withRange("amount", "100", null).getFilter().getOperator());
+  }
+
+  @Test
+  public void testFilterIsCopied() throws Exception {
+    MarketingCloudReadRequest request = MarketingCloudReadRequest.of(
+      SourceObject.TRACKING_SENT_EVENT, null, Collections.singletonList("eventDate"), "subscriberKey=1001");
+
+    request.getFilter().setProperty("SubscriberKey");
+    request.getFilter().addSubexpression(new ETExpression());
+
+    Assert.assertEquals("subscriberKey=1001", request.getFilter().getProperty());
+    Assert.assertTrue(request.getFilter().getSubexpressions().isEmpty());
+  }
+
+  @Test
+  public void testDataExtensionRequest() throws Exception {
+    MarketingCloudReadRequest request = MarketingCloudReadRequest.of(
+      SourceObject.DATA_EXTENSION, "DE1", Arrays.asList("name", "email"), null);
+
+    Assert.assertEquals("DataExtensionObject[DE1]", request.getObjectType());
+    Assert.assertEquals(Arrays.asList("name", "email"), request.getProperties());
+    Assert.assertNull(request.getFilterPart());
+    Assert.assertNull(request.getFilter().getOperator());
+
+    try {
+      MarketingCloudReadRequest.of(SourceObject.DATA_EXTENSION, "DE1", Collections.emptyList(), null);
+      Assert.fail("Expected the missing columns to be reported");
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage().contains("DE1"));
+    }
+  }
+
+  @Test
+  public void testObjectRequestUsesInternalType() throws Exception {
+    MarketingCloudReadRequest request = MarketingCloudReadRequest.of(
+      SourceObject.EMAIL, "ignored", Collections.singletonList("name"), "");
+
+    Assert.assertNull(request.getObjectType());
+    Assert.assertNull(request.getDataExtensionKey());
+    Assert.assertEquals(SourceObject.EMAIL.getClassRef(), request.getObjectClass());
+  }
+}
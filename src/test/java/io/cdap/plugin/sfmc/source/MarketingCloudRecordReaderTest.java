@@ -16,21 +16,24 @@
 
 package io.cdap.plugin.sfmc.source;
 
-import com.custom.fuelsdk.ETClickEvent;
+import com.custom.fuelsdk.ETNotSentEvent;
 import com.exacttarget.fuelsdk.ETApiObject;
 import com.exacttarget.fuelsdk.ETClient;
-import com.exacttarget.fuelsdk.ETConfiguration;
 import com.exacttarget.fuelsdk.ETDataExtensionRow;
+import com.exacttarget.fuelsdk.ETExpression;
 import com.exacttarget.fuelsdk.ETResponse;
+import com.exacttarget.fuelsdk.ETResult;
 import com.exacttarget.fuelsdk.ETSdkException;
 import com.exacttarget.fuelsdk.ETSoapConnection;
 import com.exacttarget.fuelsdk.ETSoapObject;
-import com.exacttarget.fuelsdk.internal.EventType;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.api.plugin.PluginProperties;
 import io.cdap.cdap.etl.mock.validation.MockFailureCollector;
+import io.cdap.plugin.sfmc.common.FakeMarketingCloudServer;
+import io.cdap.plugin.sfmc.common.MarketingCloudMetrics;
 import io.cdap.plugin.sfmc.source.util.MarketingCloudColumn;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudConstants;
 import io.cdap.plugin.sfmc.source.util.MarketingCloudObjectInfo;
 import io.cdap.plugin.sfmc.source.util.MarketingCloudUtil;
 import io.cdap.plugin.sfmc.source.util.SourceObject;
@@ -40,18 +43,30 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.mockito.internal.util.reflection.FieldSetter;
 import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
 
 @RunWith(PowerMockRunner.class)
+@PowerMockIgnore({"javax.security.*", "com.sun.security.*", "com.sun.net.httpserver.*", "javax.xml.*", "org.xml.*",
+  "org.w3c.*"})
 @PrepareForTest({ETClient.class, ClassLoader.class, MarketingCloudClient.class, ETSoapConnection.class,
   StructuredRecord.class, Schema.Field.class, Schema.class})
 public class MarketingCloudRecordReaderTest {
@@ -62,6 +77,8 @@ public class MarketingCloudRecordReaderTest {
 
   @Rule
   public ExpectedException thrown = ExpectedException.none();
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
   private MarketingCloudSourceConfig marketingCloudSourceConfig;
   private MarketingCloudRecordReader marketingCloudRecordReader;
 
@@ -109,112 +126,59 @@ public class MarketingCloudRecordReaderTest {
 
   @Test
   public void testFetchData() throws Exception {
-    MockFailureCollector collector = new MockFailureCollector();
-    MarketingCloudInputSplit split = new MarketingCloudInputSplit("TRACKING_UNSUB_EVENT", "unsub");
+    MarketingCloudInputSplit split = new MarketingCloudInputSplit("TRACKING_NOTSENT_EVENT", "notsent");
     SourceObject object = SourceObject.valueOf(split.getObjectName());
     MarketingCloudRecordReader marketingCloudRecordReader = new MarketingCloudRecordReader(marketingCloudSourceConfig);
-    ETResponse<? extends ETSoapObject> response = Mockito.spy(new ETResponse<>());
-    response.setRequestId("id");
-    response.setResponseMessage("MoreDataAvailable");
-    List<? extends ETSoapObject> results = new ArrayList<>();
-    List<ETClickEvent> list = new ArrayList<>();
-    ETClickEvent etClickEvent = new ETClickEvent();
-    etClickEvent.setSendID(121);
-    etClickEvent.setEventType(EventType.CLICK);
-    list.add(etClickEvent);
-    results = list;
-    ETConfiguration conf = Mockito.spy(new ETConfiguration());
-    conf.set("clientId", CLIENT_ID);
-    conf.set("clientSecret", CLIENT_SECRET);
-    conf.set("authEndpoint", AUTH_ENDPOINT);
-    conf.set("soapEndpoint", SOAP_ENDPOINT);
-    conf.set("useOAuth2Authentication", "true");
-    Schema schema = Schema.recordOf("record",
-                                    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
-                                    Schema.Field.of("timestamp",
-                                                    Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))));
     List<MarketingCloudColumn> columns = new ArrayList<>();
-    MarketingCloudColumn column = new MarketingCloudColumn("price", "String");
-    columns.add(column);
-    MarketingCloudObjectInfo sObjectInfo = Mockito.spy(new MarketingCloudObjectInfo(object, columns));
-    ETClient etClient = PowerMockito.mock(ETClient.class);
-    PowerMockito.whenNew(ETClient.class).withArguments(Mockito.anyString()).thenReturn(etClient);
-    PowerMockito.spy(new MarketingCloudClient(new ETClient(conf)));
-    MarketingCloudClient client = PowerMockito.mock(MarketingCloudClient.class);
-    PowerMockito.whenNew(MarketingCloudClient.class).withArguments(Mockito.any()).thenReturn(client);
-    PowerMockito.mockStatic(ClassLoader.class);
-    Mockito.when(client.fetchObjectSchema(object)).thenReturn(sObjectInfo);
-    Mockito.when(sObjectInfo.getSchema()).thenReturn(schema);
-    String filterStr = marketingCloudSourceConfig.getFilter();
-    Mockito.doReturn(response).when(client).fetchObjectRecords(object, filterStr, null);
-    Mockito.doReturn(results).when(response).getObjects();
+    columns.add(new MarketingCloudColumn("sendID", "integer"));
+    columns.add(new MarketingCloudColumn("subscriberKey", "string"));
+    MarketingCloudClient client = mockClient();
+    Mockito.when(client.fetchObjectSchema(object)).thenReturn(new MarketingCloudObjectInfo(object, columns));
+    Mockito.doReturn(page("id", true, notSentEvent(121, "a"), notSentEvent(122, "b")))
+      .when(client).fetchRecords(ArgumentMatchers.any(), ArgumentMatchers.isNull());
+    Mockito.doReturn(page("id", false, notSentEvent(123, "c")))
+      .when(client).fetchRecords(ArgumentMatchers.any(), ArgumentMatchers.eq("id"));
     marketingCloudRecordReader.initialize(split, null);
-    try {
-      marketingCloudRecordReader.nextKeyValue();
-      collector.getOrThrowException();
-    } catch (IOException e) {
-      Assert.assertEquals(e.getMessage(), "Error communicating with Salesforce Marketing cloud. " +
-        "Check for transport errors");
-    }
+
+    List<StructuredRecord> records = readAll(marketingCloudRecordReader);
+    Assert.assertEquals(3, records.size());
+    Assert.assertEquals(Integer.valueOf(121), records.get(0).get("sendID"));
+    Assert.assertEquals("a", records.get(0).get("subscriberKey"));
+    Assert.assertEquals(Integer.valueOf(122), records.get(1).get("sendID"));
+    Assert.assertEquals(Integer.valueOf(123), records.get(2).get("sendID"));
+    Assert.assertEquals("c", records.get(2).get("subscriberKey"));
+    Mockito.verify(client, Mockito.times(2)).fetchRecords(ArgumentMatchers.any(), ArgumentMatchers.any());
   }
 
   @Test
   public void testFetchDataWithDataExtension() throws Exception {
     MarketingCloudInputSplit split = new MarketingCloudInputSplit("DATA_EXTENSION", "dataextension");
-    ETResponse<ETDataExtensionRow> responses = Mockito.spy(new ETResponse<>());
-    responses.setRequestId("id");
-    responses.setResponseMessage("");
-    SourceObject object = SourceObject.valueOf(split.getObjectName());
-    object.setFilter("filter");
     MarketingCloudRecordReader marketingCloudRecordReader = new MarketingCloudRecordReader(marketingCloudSourceConfig);
-    List<? extends ETSoapObject> results = Mockito.spy(new ArrayList<>());
-    List<ETClickEvent> list = new ArrayList<>();
-    ETClickEvent etClickEvent = new ETClickEvent();
-    etClickEvent.setSendID(121);
-    etClickEvent.setEventType(EventType.CLICK);
-    list.add(etClickEvent);
-    ETConfiguration conf = Mockito.spy(new ETConfiguration());
-    conf.set("clientId", CLIENT_ID);
-    conf.set("clientSecret", CLIENT_SECRET);
-    conf.set("authEndpoint", AUTH_ENDPOINT);
-    conf.set("soapEndpoint", SOAP_ENDPOINT);
-    conf.set("useOAuth2Authentication", "true");
-    Schema schema = Schema.recordOf("record",
-                                    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
-                                    Schema.Field.of("timestamp",
-                                                    Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))));
     List<MarketingCloudColumn> columns = new ArrayList<>();
-    MarketingCloudColumn column = new MarketingCloudColumn("price", "String");
-    columns.add(column);
-    MarketingCloudObjectInfo sObjectInfo = Mockito.spy(new MarketingCloudObjectInfo(object, columns));
-    ETClient etClient = PowerMockito.mock(ETClient.class);
-    PowerMockito.whenNew(ETClient.class).withArguments(Mockito.anyString()).thenReturn(etClient);
-    PowerMockito.spy(new MarketingCloudClient(new ETClient(conf)));
-    MarketingCloudClient client = PowerMockito.mock(MarketingCloudClient.class);
-    PowerMockito.whenNew(MarketingCloudClient.class).withArguments(Mockito.any()).thenReturn(client);
-    PowerMockito.mockStatic(ClassLoader.class);
-    Mockito.when(client.fetchObjectSchema(object)).thenReturn(sObjectInfo);
-    Mockito.when(sObjectInfo.getSchema()).thenReturn(schema);
-    Mockito.when(client.fetchDataExtensionRecords(
-      SourceObject.DATA_EXTENSION.getTableName(), "filter", null)).thenReturn(responses);
-    Mockito.when(responses.getObjects()).thenReturn((List<ETDataExtensionRow>) results);
+    columns.add(new MarketingCloudColumn("Name", "TEXT"));
+    columns.add(new MarketingCloudColumn("Age", "NUMBER"));
+    MarketingCloudClient client = mockClient();
+    Mockito.when(client.fetchDataExtensionSchema("dataextension"))
+      .thenReturn(new MarketingCloudObjectInfo(SourceObject.DATA_EXTENSION, "dataextension", columns));
+    Mockito.doReturn(page("id", false, dataExtensionRow("John", "42"), dataExtensionRow("Jane", "")))
+      .when(client).fetchRecords(ArgumentMatchers.any(), ArgumentMatchers.isNull());
     marketingCloudRecordReader.initialize(split, null);
-    try {
-      Assert.assertFalse(marketingCloudRecordReader.nextKeyValue());
-    } catch (Exception e) {
-      Assert.assertEquals(e.getMessage(), "Error communicating with Salesforce Marketing cloud. " +
-        "Check for transport errors");
-    }
+
+    Assert.assertTrue(marketingCloudRecordReader.nextKeyValue());
+    StructuredRecord record = marketingCloudRecordReader.getCurrentValue();
+    Assert.assertEquals("John", record.get("Name"));
+    Assert.assertEquals(Integer.valueOf(42), record.get("Age"));
+    Assert.assertNull(record.getSchema().getField("tableNameField"));
+    Assert.assertTrue(marketingCloudRecordReader.nextKeyValue());
+    record = marketingCloudRecordReader.getCurrentValue();
+    Assert.assertEquals("Jane", record.get("Name"));
+    Assert.assertNull(record.get("Age"));
+    Assert.assertFalse(marketingCloudRecordReader.nextKeyValue());
   }
 
   @Test
   public void testFetchDataWResultEmpty() throws Exception {
     MarketingCloudInputSplit split = new MarketingCloudInputSplit("DATA_EXTENSION", "dataextension");
-    ETResponse<ETDataExtensionRow> responses = Mockito.spy(new ETResponse<>());
-    responses.setRequestId("id");
-    responses.setResponseMessage("");
-    SourceObject object = SourceObject.valueOf(split.getObjectName());
-    object.setFilter("filter");
     MarketingCloudSourceConfig cloudSourceConfig = new MarketingCloudSourceConfig("referenceName",
                                                                                   "Multi Object",
                                                                                   "Data Extension",
@@ -227,56 +191,23 @@ public class MarketingCloudRecordReaderTest {
                                                                                   AUTH_ENDPOINT,
                                                                                   SOAP_ENDPOINT);
     MarketingCloudRecordReader marketingCloudRecordReader = new MarketingCloudRecordReader(cloudSourceConfig);
-    List<? extends ETSoapObject> results = Mockito.spy(new ArrayList<>());
-    results.add(null);
-    List<ETClickEvent> list = new ArrayList<>();
-    ETClickEvent etClickEvent = new ETClickEvent();
-    etClickEvent.setSendID(121);
-    etClickEvent.setEventType(EventType.CLICK);
-    list.add(etClickEvent);
-    ETConfiguration conf = Mockito.spy(new ETConfiguration());
-    conf.set("clientId", CLIENT_ID);
-    conf.set("clientSecret", CLIENT_SECRET);
-    conf.set("authEndpoint", AUTH_ENDPOINT);
-    conf.set("soapEndpoint", SOAP_ENDPOINT);
-    conf.set("useOAuth2Authentication", "true");
-    Schema schema = Schema.recordOf("record",
-                                    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
-                                    Schema.Field.of("timestamp",
-                                                    Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))));
     List<MarketingCloudColumn> columns = new ArrayList<>();
-    MarketingCloudColumn column = new MarketingCloudColumn("price", "String");
-    columns.add(column);
-    MarketingCloudObjectInfo sObjectInfo = Mockito.spy(new MarketingCloudObjectInfo(object, columns));
-    ETClient etClient = PowerMockito.mock(ETClient.class);
-    PowerMockito.whenNew(ETClient.class).withArguments(Mockito.anyString()).thenReturn(etClient);
-    PowerMockito.spy(new MarketingCloudClient(new ETClient(conf)));
-    MarketingCloudClient client = PowerMockito.mock(MarketingCloudClient.class);
-    PowerMockito.whenNew(MarketingCloudClient.class).withArguments(Mockito.any()).thenReturn(client);
-    PowerMockito.mockStatic(ClassLoader.class);
-    Mockito.when(client.fetchObjectSchema(object)).thenReturn(sObjectInfo);
-    Mockito.when(sObjectInfo.getSchema()).thenReturn(schema);
-    Mockito.when(client.fetchDataExtensionRecords(
-      SourceObject.DATA_EXTENSION.getTableName(), "filter", null)).thenReturn(responses);
-    Mockito.when(responses.getObjects()).thenReturn((List<ETDataExtensionRow>) results);
+    columns.add(new MarketingCloudColumn("price", "TEXT"));
+    MarketingCloudClient client = mockClient();
+    Mockito.when(client.fetchDataExtensionSchema("dataextension"))
+      .thenReturn(new MarketingCloudObjectInfo(SourceObject.DATA_EXTENSION, "dataextension", columns));
+    Mockito.doReturn(page("id", false))
+      .when(client).fetchRecords(ArgumentMatchers.any(), ArgumentMatchers.isNull());
     marketingCloudRecordReader.initialize(split, null);
-    try {
-      Assert.assertFalse(marketingCloudRecordReader.nextKeyValue());
-    } catch (Exception e) {
-      Assert.assertEquals(e.getMessage(), "Error communicating with Salesforce Marketing cloud. " +
-        "Check for transport errors");
-    }
+
+    Assert.assertFalse(marketingCloudRecordReader.nextKeyValue());
+    Mockito.verify(client).fetchRecords(ArgumentMatchers.any(), ArgumentMatchers.isNull());
   }
 
   @Test
   public void testFetchDataWResultEmptyWMailingList() throws Exception {
     MarketingCloudInputSplit split = new MarketingCloudInputSplit("MAILING_LIST", "mailinglist");
-    ETResponse<ETDataExtensionRow> responses = Mockito.spy(new ETResponse<>());
-    ETResponse etResponse = Mockito.mock(ETResponse.class);
-    responses.setRequestId("id");
-    responses.setResponseMessage("");
     SourceObject object = SourceObject.valueOf(split.getObjectName());
-    object.setFilter("filter");
     MarketingCloudSourceConfig sourceConfig = new MarketingCloudSourceConfig("referenceName",
                                                                              "Multi Object",
                                                                              "MAILING_LIST",
@@ -288,46 +219,16 @@ public class MarketingCloudRecordReaderTest {
                                                                              CLIENT_SECRET, AUTH_ENDPOINT,
                                                                              SOAP_ENDPOINT);
     MarketingCloudRecordReader marketingCloudRecordReader = new MarketingCloudRecordReader(sourceConfig);
-    List<? extends ETSoapObject> results = Mockito.spy(new ArrayList<>());
-    results.add(null);
-    List<ETClickEvent> list = new ArrayList<>();
-    ETClickEvent etClickEvent = new ETClickEvent();
-    etClickEvent.setSendID(121);
-    etClickEvent.setEventType(EventType.CLICK);
-    list.add(etClickEvent);
-    ETConfiguration conf = Mockito.spy(new ETConfiguration());
-    conf.set("clientId", CLIENT_ID);
-    conf.set("clientSecret", CLIENT_SECRET);
-    conf.set("authEndpoint", AUTH_ENDPOINT);
-    conf.set("soapEndpoint", SOAP_ENDPOINT);
-    conf.set("useOAuth2Authentication", "true");
-    Schema schema = Schema.recordOf("record",
-                                    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
-                                    Schema.Field.of("timestamp",
-                                                    Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))));
     List<MarketingCloudColumn> columns = new ArrayList<>();
-    MarketingCloudColumn column = new MarketingCloudColumn("price", "String");
-    columns.add(column);
-    MarketingCloudObjectInfo sObjectInfo = Mockito.spy(new MarketingCloudObjectInfo(object, columns));
-    ETClient etClient = PowerMockito.mock(ETClient.class);
-    PowerMockito.whenNew(ETClient.class).withArguments(Mockito.anyString()).thenReturn(etClient);
-    PowerMockito.spy(new MarketingCloudClient(new ETClient(conf)));
-    MarketingCloudClient client = PowerMockito.mock(MarketingCloudClient.class);
-    PowerMockito.whenNew(MarketingCloudClient.class).withArguments(Mockito.any()).thenReturn(client);
-    PowerMockito.mockStatic(ClassLoader.class);
-    Mockito.when(client.fetchObjectSchema(object)).thenReturn(sObjectInfo);
-    Mockito.when(sObjectInfo.getSchema()).thenReturn(schema);
-    String filterStr = marketingCloudSourceConfig.getFilter();
-    Mockito.when(client.fetchObjectRecords(object, filterStr, null))
-      .thenReturn(etResponse);
-    Mockito.when(responses.getObjects()).thenReturn((List<ETDataExtensionRow>) results);
+    columns.add(new MarketingCloudColumn("name", "string"));
+    MarketingCloudClient client = mockClient();
+    Mockito.when(client.fetchObjectSchema(object)).thenReturn(new MarketingCloudObjectInfo(object, columns));
+    Mockito.doReturn(page("id", false))
+      .when(client).fetchRecords(ArgumentMatchers.any(), ArgumentMatchers.isNull());
     marketingCloudRecordReader.initialize(split, null);
-    try {
-      Assert.assertFalse(marketingCloudRecordReader.nextKeyValue());
-    } catch (Exception e) {
-      Assert.assertEquals(e.getMessage(), "Error communicating with Salesforce Marketing cloud." +
-        " Check for transport errors");
-    }
+
+    Assert.assertFalse(marketingCloudRecordReader.nextKeyValue());
+    Mockito.verify(client).fetchRecords(ArgumentMatchers.any(), ArgumentMatchers.isNull());
   }
 
   @Test
@@ -471,41 +372,269 @@ public class MarketingCloudRecordReaderTest {
     }
   }
 
+  @Test
   public void testFetchDataResultEmpty() throws Exception {
-    MarketingCloudInputSplit split = new MarketingCloudInputSplit("TRACKING_UNSUB_EVENT", "unsub");
+    MarketingCloudInputSplit split = new MarketingCloudInputSplit("TRACKING_NOTSENT_EVENT", "notsent");
     SourceObject object = SourceObject.valueOf(split.getObjectName());
     MarketingCloudRecordReader marketingCloudRecordReader = new MarketingCloudRecordReader(marketingCloudSourceConfig);
-    ETResponse<? extends ETSoapObject> response = Mockito.spy(new ETResponse<>());
-    response.setRequestId("id");
-    response.setResponseMessage("MoreDataAvailable");
-    List<? extends ETSoapObject> results = new ArrayList<>();
-    ETConfiguration conf = Mockito.spy(new ETConfiguration());
-    conf.set("clientId", CLIENT_ID);
-    conf.set("clientSecret", CLIENT_SECRET);
-    conf.set("authEndpoint", AUTH_ENDPOINT);
-    conf.set("soapEndpoint", SOAP_ENDPOINT);
-    conf.set("useOAuth2Authentication", "true");
-    Schema schema = Schema.recordOf("record",
-                                    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
-                                    Schema.Field.of("timestamp",
-                                                    Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))));
     List<MarketingCloudColumn> columns = new ArrayList<>();
-    MarketingCloudColumn column = new MarketingCloudColumn("price", "String");
-    columns.add(column);
-    MarketingCloudObjectInfo sObjectInfo = Mockito.spy(new MarketingCloudObjectInfo(object, columns));
-    ETClient etClient = PowerMockito.mock(ETClient.class);
-    PowerMockito.whenNew(ETClient.class).withArguments(Mockito.anyString()).thenReturn(etClient);
-    PowerMockito.spy(new MarketingCloudClient(new ETClient(conf)));
-    MarketingCloudClient client = PowerMockito.mock(MarketingCloudClient.class);
-    PowerMockito.whenNew(MarketingCloudClient.class).withArguments(Mockito.any()).thenReturn(client);
-    PowerMockito.mockStatic(ClassLoader.class);
-    Mockito.when(client.fetchObjectSchema(object)).thenReturn(sObjectInfo);
-    Mockito.when(sObjectInfo.getSchema()).thenReturn(schema);
-    String filterStr = marketingCloudSourceConfig.getFilter();
-    Mockito.doReturn(response).when(client).fetchObjectRecords(object, filterStr, null);
-    Mockito.doReturn(results).when(response).getObjects();
+    columns.add(new MarketingCloudColumn("sendID", "integer"));
+    MarketingCloudClient client = mockClient();
+    Mockito.when(client.fetchObjectSchema(object)).thenReturn(new MarketingCloudObjectInfo(object, columns));
+    // an empty page can still have more data available
+    Mockito.doReturn(page("id", true))
+      .when(client).fetchRecords(ArgumentMatchers.any(), ArgumentMatchers.isNull());
+    Mockito.doReturn(page("id", false))
+      .when(client).fetchRecords(ArgumentMatchers.any(), ArgumentMatchers.eq("id"));
     marketingCloudRecordReader.initialize(split, null);
-    marketingCloudRecordReader.nextKeyValue();
+
+    Assert.assertFalse(marketingCloudRecordReader.nextKeyValue());
+    Mockito.verify(client, Mockito.times(2)).fetchRecords(ArgumentMatchers.any(), ArgumentMatchers.any());
+  }
+
+  @Test
+  public void testResumeFromCheckpoint() throws Exception {
+    // 16 events, one every 15 minutes, read in 8 segments of 30 minutes
+    MarketingCloudInputSplit split = new MarketingCloudInputSplit("TRACKING_NOTSENT_EVENT", "notsent",
+                                                                  MarketingCloudConstants.EVENT_DATE,
+                                                                  "2024-01-01T00:00:00", "2024-01-01T04:00:00", 16);
+    SourceObject object = SourceObject.valueOf(split.getObjectName());
+    List<String> eventDates = new ArrayList<>();
+    for (int i = 0; i < 16; i++) {
+      eventDates.add(String.format("2024-01-01T%02d:%02d:00", i / 4, i % 4 * 15));
+    }
+    MarketingCloudClient client = mockClient();
+    Mockito.when(client.fetchObjectSchema(object)).thenReturn(
+      new MarketingCloudObjectInfo(object, Collections.singletonList(new MarketingCloudColumn("sendID", "integer"))));
+    // the first attempt fails once it gets to the fourth segment
+    AtomicReference<String> failFrom = new AtomicReference<>("2024-01-01T01:30:00");
+    List<String> fetched = new ArrayList<>();
+    Mockito.doAnswer(invocation -> {
+      MarketingCloudReadRequest request = invocation.getArgument(0);
+      String start = rangeStart(request.getFilter());
+      fetched.add(start);
+      if (failFrom.get() != null && start.compareTo(failFrom.get()) >= 0) {
+        throw new ETSdkException("Connection reset");
+      }
+      List<ETSoapObject> events = new ArrayList<>();
+      for (int i = 0; i < eventDates.size(); i++) {
+        if (matches(request.getFilter(), eventDates.get(i))) {
+          events.add(notSentEvent(i, null));
+        }
+      }
+      return page("id", false, events.toArray(new ETSoapObject[0]));
+    }).when(client).fetchRecords(ArgumentMatchers.any(), ArgumentMatchers.isNull());
+    String checkpointDir = temporaryFolder.newFolder().getAbsolutePath();
+
+    MarketingCloudRecordReader firstAttempt = new MarketingCloudRecordReader(
+      marketingCloudSourceConfig, null, MarketingCloudMetrics.forStage(null), checkpointDir);
+    firstAttempt.initialize(split, null);
+    int read = 0;
+    try {
+      while (firstAttempt.nextKeyValue()) {
+        read++;
+      }
+      Assert.fail("Expected the first attempt to fail");
+    } catch (IOException e) {
+      Assert.assertEquals(6, read);
+    } finally {
+      firstAttempt.close();
+    }
+
+    failFrom.set(null);
+    fetched.clear();
+    MarketingCloudRecordReader secondAttempt = new MarketingCloudRecordReader(
+      marketingCloudSourceConfig, null, MarketingCloudMetrics.forStage(null), checkpointDir);
+    secondAttempt.initialize(split, null);
+    List<Integer> sendIds = new ArrayList<>();
+    for (StructuredRecord record : readAll(secondAttempt)) {
+      sendIds.add(record.get("sendID"));
+    }
+    secondAttempt.close();
+
+    // the three completed segments are replayed, only the remaining five are retrieved
+    Assert.assertEquals(Arrays.asList("2024-01-01T01:30:00", "2024-01-01T02:00:00", "2024-01-01T02:30:00",
+                                      "2024-01-01T03:00:00", "2024-01-01T03:30:00"), fetched);
+    List<Integer> expected = new ArrayList<>();
+    for (int i = 0; i < 16; i++) {
+      expected.add(i);
+    }
+    Assert.assertEquals(expected, sendIds);
+  }
+
+  @Test
+  public void testReadCombinedSplit() throws Exception {
+    MarketingCloudSourceConfig sourceConfig = SalesforceSourceConfigHelper.newConfigBuilder()
+      .setReferenceName("referenceName")
+      .setAuthEndpoint(AUTH_ENDPOINT)
+      .setClientId(CLIENT_ID)
+      .setClientSecret(CLIENT_SECRET)
+      .setSoapEndpoint(SOAP_ENDPOINT)
+      .setQueryMode("Multi Object")
+      .setTableNameField("tableNameField")
+      .setFilter("")
+      .build();
+    List<MarketingCloudColumn> columns = new ArrayList<>();
+    columns.add(new MarketingCloudColumn("Name", "TEXT"));
+    columns.add(new MarketingCloudColumn("Age", "NUMBER"));
+    List<MarketingCloudObjectInfo> tableInfos = Arrays.asList(
+      new MarketingCloudObjectInfo(SourceObject.DATA_EXTENSION, "DE1", columns),
+      new MarketingCloudObjectInfo(SourceObject.DATA_EXTENSION, "DE2", columns));
+    // both parts were estimated at a single row, but read two
+    MarketingCloudInputSplit split = MarketingCloudInputSplit.combine(Arrays.asList(
+      new MarketingCloudInputSplit("DATA_EXTENSION", "dataextension_DE1", null, null, null, 1),
+      new MarketingCloudInputSplit("DATA_EXTENSION", "dataextension_DE2", null, null, null, 1)));
+    MarketingCloudClient client = mockClient();
+    Mockito.doReturn(page("id", false, dataExtensionRow("John", "42"), dataExtensionRow("Jane", "37")))
+      .when(client).fetchRecords(ArgumentMatchers.argThat(request -> "DE1".equals(request.getDataExtensionKey())),
+                                 ArgumentMatchers.isNull());
+    Mockito.doReturn(page("id", false, dataExtensionRow("Max", "29"), dataExtensionRow("Ann", "51")))
+      .when(client).fetchRecords(ArgumentMatchers.argThat(request -> "DE2".equals(request.getDataExtensionKey())),
+                                 ArgumentMatchers.isNull());
+    MarketingCloudRecordReader reader = new MarketingCloudRecordReader(sourceConfig, tableInfos);
+    reader.initialize(split, null);
+
+    List<String> names = new ArrayList<>();
+    List<String> tableNames = new ArrayList<>();
+    while (reader.nextKeyValue()) {
+      StructuredRecord record = reader.getCurrentValue();
+      names.add(record.get("Name"));
+      tableNames.add(record.get("tableNameField"));
+      Assert.assertTrue(reader.getProgress() < 1.0f);
+    }
+    Assert.assertEquals(1.0f, reader.getProgress(), 0.0f);
+
+    Assert.assertEquals(Arrays.asList("John", "Jane", "Max", "Ann"), names);
+    Assert.assertEquals(Arrays.asList("dataextension_DE1", "dataextension_DE1", "dataextension_DE2",
+                                      "dataextension_DE2"), tableNames);
+    // the rate limits taken for the first part are released before the second part is read
+    InOrder inOrder = Mockito.inOrder(client);
+    inOrder.verify(client).fetchRecords(
+      ArgumentMatchers.argThat(request -> "DE1".equals(request.getDataExtensionKey())), ArgumentMatchers.isNull());
+    inOrder.verify(client).releaseRateLimits();
+    inOrder.verify(client).setRateLimits(ArgumentMatchers.anyDouble(), ArgumentMatchers.anyInt());
+    inOrder.verify(client).fetchRecords(
+      ArgumentMatchers.argThat(request -> "DE2".equals(request.getDataExtensionKey())), ArgumentMatchers.isNull());
+    reader.close();
+  }
+
+  @Test
+  public void testReadPagesFromServer() throws Exception {
+    try (FakeMarketingCloudServer server = FakeMarketingCloudServer.start()) {
+      server.setPageSize(2);
+      server.data().createDataExtension("DE", Arrays.asList("Name", "Age"));
+      List<Map<String, String>> rows = new ArrayList<>();
+      for (int i = 0; i < 5; i++) {
+        Map<String, String> row = new HashMap<>();
+        row.put("Name", "name" + i);
+        row.put("Age", String.valueOf(20 + i));
+        rows.add(row);
+      }
+      server.data().addRows("DE", rows);
+      List<MarketingCloudColumn> columns = new ArrayList<>();
+      columns.add(new MarketingCloudColumn("Name", "TEXT"));
+      columns.add(new MarketingCloudColumn("Age", "NUMBER"));
+      FieldSetter.setField(marketingCloudSourceConfig,
+                           MarketingCloudSourceConfig.class.getDeclaredField("streamingResponses"), true);
+      MarketingCloudClient client = new MarketingCloudClient(server.sdkClient());
+      PowerMockito.mockStatic(MarketingCloudClient.class);
+      PowerMockito.when(MarketingCloudClient.getOrCreate(CLIENT_ID, CLIENT_SECRET, AUTH_ENDPOINT, SOAP_ENDPOINT))
+        .thenReturn(client);
+      MarketingCloudRecordReader reader = new MarketingCloudRecordReader(
+        marketingCloudSourceConfig,
+        Collections.singletonList(new MarketingCloudObjectInfo(SourceObject.DATA_EXTENSION, "DE", columns)));
+      reader.initialize(new MarketingCloudInputSplit("DATA_EXTENSION", "dataextension_DE"), null);
+
+      List<StructuredRecord> records = readAll(reader);
+      reader.close();
+
+      // three pages of at most two rows, the last two continuing the request of the first one
+      Assert.assertEquals(3, server.getRequestCount("Retrieve"));
+      Assert.assertEquals(5, records.size());
+      for (int i = 0; i < 5; i++) {
+        Assert.assertEquals("name" + i, records.get(i).get("Name"));
+        Assert.assertEquals(Integer.valueOf(20 + i), records.get(i).get("Age"));
+      }
+    }
+  }
+
+  private static MarketingCloudClient mockClient() throws ETSdkException {
+    MarketingCloudClient client = PowerMockito.mock(MarketingCloudClient.class);
+    PowerMockito.mockStatic(MarketingCloudClient.class);
+    PowerMockito.when(MarketingCloudClient.getOrCreate(CLIENT_ID, CLIENT_SECRET, AUTH_ENDPOINT, SOAP_ENDPOINT))
+      .thenReturn(client);
+    return client;
+  }
+
+  private static ETResponse<ETSoapObject> page(String requestId, boolean moreData, ETSoapObject... objects) {
+    ETResponse<ETSoapObject> response = new ETResponse<>();
+    response.setRequestId(requestId);
+    response.setResponseMessage(moreData ? "MoreDataAvailable" : "OK");
+    for (ETSoapObject object : objects) {
+      ETResult<ETSoapObject> result = new ETResult<>();
+      result.setObject(object);
+      response.addResult(result);
+    }
+    return response;
+  }
+
+  private static ETNotSentEvent notSentEvent(int sendId, String subscriberKey) {
+    ETNotSentEvent event = new ETNotSentEvent();
+    event.setSendID(sendId);
+    event.setSubscriberKey(subscriberKey);
+    return event;
+  }
+
+  private static ETDataExtensionRow dataExtensionRow(String name, String age) {
+    ETDataExtensionRow row = new ETDataExtensionRow();
+    row.setColumn("Name", name);
+    row.setColumn("Age", age);
+    return row;
+  }
+
+  private static List<StructuredRecord> readAll(MarketingCloudRecordReader reader) throws IOException {
+    List<StructuredRecord> records = new ArrayList<>();
+    while (reader.nextKeyValue()) {
+      records.add(reader.getCurrentValue());
+    }
+    return records;
+  }
+
+  /**
+   * Returns the lower bound of the range of a segment request.
+   */
+  @Nullable
+  private static String rangeStart(ETExpression expression) {
+    if (expression.getOperator() == ETExpression.Operator.GREATER_THAN_OR_EQUALS) {
+      return expression.getValue();
+    }
+    for (ETExpression subexpression : expression.getSubexpressions()) {
+      String start = rangeStart(subexpression);
+      if (start != null) {
+        return start;
+      }
+    }
+    return null;
+  }
+
+  private static boolean matches(ETExpression expression, String eventDate) {
+    if (expression.getOperator() == null) {
+      return true;
+    }
+    switch (expression.getOperator()) {
+      case AND:
+        return expression.getSubexpressions().stream().allMatch(subexpression -> matches(subexpression, eventDate));
+      case OR:
+        return expression.getSubexpressions().stream().anyMatch(subexpression -> matches(subexpression, eventDate));
+      case IS_NULL:
+        return false;
+      case GREATER_THAN_OR_EQUALS:
+        return eventDate.compareTo(expression.getValue()) >= 0;
+      case LESS_THAN:
+        return eventDate.compareTo(expression.getValue()) < 0;
+      default:
+        throw new IllegalArgumentException("Unexpected operator " + expression.getOperator());
+    }
   }
 
   private Schema getPluginSchema() throws IOException {
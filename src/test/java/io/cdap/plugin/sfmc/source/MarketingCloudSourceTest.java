@@ -172,7 +172,8 @@ public class MarketingCloudSourceTest {
     MockFailureCollector mockFailureCollector = new MockFailureCollector();
     Mockito.when(batchSourceContext.getFailureCollector()).thenReturn(mockFailureCollector);
     PowerMockito.when(client.fetchDataExtensionSchema("dataExtensionKey")).thenReturn(sObjectInfo);
-    Mockito.when(MarketingCloudInputFormat.setInput(configuration, mode, marketingCloudSourceConfig)).thenReturn(list);
+    Mockito.when(MarketingCloudInputFormat.setInput(configuration, mode, marketingCloudSourceConfig,
+      mockFailureCollector)).thenReturn(list);
     marketingCloudSource.prepareRun(batchSourceContext);
     Assert.assertEquals(0, mockFailureCollector.getValidationFailures().size());
   }
@@ -232,8 +233,8 @@ public class MarketingCloudSourceTest {
     PowerMockito.whenNew(MarketingCloudClient.class).withArguments(Mockito.any()).thenReturn(client);
     BatchSourceContext batchSourceContext = Mockito.mock(BatchSourceContext.class);
     Mockito.when(batchSourceContext.getFailureCollector()).thenReturn(failureCollector);
-    PowerMockito.when(MarketingCloudInputFormat.setInput(hConf, mode, marketingCloudSourceConfig)).thenReturn(
-      (List<MarketingCloudObjectInfo>) list);
+    PowerMockito.when(MarketingCloudInputFormat.setInput(hConf, mode, marketingCloudSourceConfig,
+      failureCollector)).thenReturn((List<MarketingCloudObjectInfo>) list);
     marketingCloudSource.prepareRun(batchSourceContext);
     Assert.assertEquals(0, failureCollector.getValidationFailures().size());
   }
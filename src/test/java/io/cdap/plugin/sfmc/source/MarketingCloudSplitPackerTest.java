@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sfmc.source;
+
+import com.exacttarget.fuelsdk.ETDataExtensionRow;
+import com.exacttarget.fuelsdk.ETResponse;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudColumn;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudConstants;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudObjectInfo;
+import io.cdap.plugin.sfmc.source.util.SourceObject;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class MarketingCloudSplitPackerTest {
+
+  @Test
+  public void testPackSmallSplitsLargestFirst() {
+    MarketingCloudSplitPacker packer = new MarketingCloudSplitPacker(100);
+    List<MarketingCloudInputSplit> packed = packer.pack(Arrays.asList(split("a", 60), split("b", 500), split("c", 30),
+                                                                      split("d", 50), split("e", 0), split("f", 20)));
+
+    Assert.assertEquals(3, packed.size());
+    Assert.assertEquals(Collections.singletonList("b"), tableNames(packed.get(0)));
+    Assert.assertEquals(Arrays.asList("a", "c", "e"), tableNames(packed.get(1)));
+    Assert.assertEquals(90L, packed.get(1).getLength());
+    Assert.assertEquals(Arrays.asList("d", "f"), tableNames(packed.get(2)));
+    Assert.assertEquals(70L, packed.get(2).getLength());
+  }
+
+  @Test
+  public void testEstimate() throws Exception {
+    MarketingCloudClient client = Mockito.mock(MarketingCloudClient.class);
+    Mockito.doReturn(response(3, false)).when(client).fetchRecords(
+      ArgumentMatchers.argThat(request -> request != null && "small".equals(request.getDataExtensionKey())),
+      ArgumentMatchers.isNull());
+    Mockito.doReturn(response(5, true)).when(client).fetchRecords(
+      ArgumentMatchers.argThat(request -> request != null && "large".equals(request.getDataExtensionKey())),
+      ArgumentMatchers.isNull());
+    List<MarketingCloudColumn> columns = Collections.singletonList(new MarketingCloudColumn("name", "string"));
+    List<MarketingCloudObjectInfo> tableInfos = Arrays.asList(
+      new MarketingCloudObjectInfo(SourceObject.DATA_EXTENSION, "small", columns),
+      new MarketingCloudObjectInfo(SourceObject.DATA_EXTENSION, "large", columns));
+    List<MarketingCloudInputSplit> splits = Arrays.asList(
+      new MarketingCloudInputSplit("DATA_EXTENSION", "dataextension_small"),
+      new MarketingCloudInputSplit("DATA_EXTENSION", "dataextension_large"),
+      new MarketingCloudInputSplit("DATA_EXTENSION", "dataextension_unknown"));
+
+    List<MarketingCloudInputSplit> estimated = new MarketingCloudSplitPacker(100)
+      .estimate(client, tableInfos, splits, null, 2);
+
+    Assert.assertEquals(3L, estimated.get(0).getLength());
+    Assert.assertEquals(101L, estimated.get(1).getLength());
+    // the unknown data extension has no columns to probe with, so it is not combined
+    Assert.assertEquals(101L, estimated.get(2).getLength());
+    Assert.assertEquals("dataextension_unknown", estimated.get(2).getTableName());
+  }
+
+  @Test
+  public void testEstimateSkipsObjectsCutIntoSeveralSplits() throws Exception {
+    MarketingCloudClient client = Mockito.mock(MarketingCloudClient.class);
+    Mockito.doReturn(response(3, false)).when(client).fetchRecords(ArgumentMatchers.any(), ArgumentMatchers.isNull());
+    List<MarketingCloudInputSplit> splits = Arrays.asList(
+      new MarketingCloudInputSplit("TRACKING_OPEN_EVENT", "open", MarketingCloudConstants.EVENT_DATE, null,
+                                   "2020-01-02T00:00:00", 50),
+      new MarketingCloudInputSplit("TRACKING_OPEN_EVENT", "open", MarketingCloudConstants.EVENT_DATE,
+                                   "2020-01-02T00:00:00", null, 50),
+      new MarketingCloudInputSplit("TRACKING_SENT_EVENT", "sent", null, null, null, 100));
+
+    List<MarketingCloudInputSplit> estimated = new MarketingCloudSplitPacker(100)
+      .estimate(client, Collections.emptyList(), splits, null, 2);
+
+    Assert.assertEquals(101L, estimated.get(0).getLength());
+    Assert.assertEquals(101L, estimated.get(1).getLength());
+    Assert.assertEquals(3L, estimated.get(2).getLength());
+    // only the object read by a single split is probed, for its event date alone
+    ArgumentCaptor<MarketingCloudReadRequest> request = ArgumentCaptor.forClass(MarketingCloudReadRequest.class);
+    Mockito.verify(client).fetchRecords(request.capture(), ArgumentMatchers.isNull());
+    Assert.assertEquals(SourceObject.TRACKING_SENT_EVENT, request.getValue().getObject());
+    Assert.assertEquals(Collections.singletonList(MarketingCloudConstants.EVENT_DATE),
+                        request.getValue().getProperties());
+  }
+
+  private static MarketingCloudInputSplit split(String tableName, long rows) {
+    return new MarketingCloudInputSplit("EMAIL", tableName, null, null, null, rows);
+  }
+
+  private static List<String> tableNames(MarketingCloudInputSplit split) {
+    return split.getParts().stream().map(MarketingCloudInputSplit::getTableName).collect(Collectors.toList());
+  }
+
+  private static ETResponse<ETDataExtensionRow> response(int rows, boolean moreResults) {
+    ETResponse<ETDataExtensionRow> response = Mockito.mock(ETResponse.class);
+    List<ETDataExtensionRow> objects = new ArrayList<>();
+    for (int i = 0; i < rows; i++) {
+      objects.add(new ETDataExtensionRow());
+    }
+    Mockito.when(response.getObjects()).thenReturn(objects);
+    Mockito.when(response.hasMoreResults()).thenReturn(moreResults);
+    return response;
+  }
+}
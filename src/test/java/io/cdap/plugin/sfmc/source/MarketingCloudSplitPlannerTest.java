@@ -0,0 +1,180 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.sfmc.source;
+
+import io.cdap.plugin.sfmc.source.util.MarketingCloudColumn;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudConstants;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudObjectInfo;
+import io.cdap.plugin.sfmc.source.util.SourceObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+
+public class MarketingCloudSplitPlannerTest {
+  private static final LocalDateTime START = LocalDateTime.of(2020, 1, 1, 0, 0);
+  private static final LocalDateTime END = LocalDateTime.of(2020, 1, 5, 0, 0);
+
+  @Test
+  public void testPlanEventWindows() {
+    MarketingCloudSplitPlanner planner = new MarketingCloudSplitPlanner(4, START, END);
+    List<MarketingCloudInputSplit> splits = planner.plan(info(SourceObject.TRACKING_OPEN_EVENT));
+
+    Assert.assertEquals(4, splits.size());
+    Assert.assertNull(splits.get(0).getRangeStart());
+    Assert.assertEquals("2020-01-02T00:00:00", splits.get(0).getRangeEnd());
+    Assert.assertEquals("2020-01-02T00:00:00", splits.get(1).getRangeStart());
+    Assert.assertEquals("2020-01-03T00:00:00", splits.get(1).getRangeEnd());
+    Assert.assertEquals("2020-01-04T00:00:00", splits.get(3).getRangeStart());
+    Assert.assertNull(splits.get(3).getRangeEnd());
+    for (MarketingCloudInputSplit split : splits) {
+      Assert.assertEquals("TRACKING_OPEN_EVENT", split.getObjectName());
+      Assert.assertEquals("open", split.getTableName());
+      Assert.assertEquals(MarketingCloudConstants.EVENT_DATE, split.getRangeProperty());
+      Assert.assertEquals(MarketingCloudInputSplit.UNESTIMATED_ROWS / 4, split.getLength());
+    }
+  }
+
+  @Test
+  public void testSegmentBoundaries() {
+    MarketingCloudInputSplit split = new MarketingCloudInputSplit("TRACKING_OPEN_EVENT", "open",
+                                                                  MarketingCloudConstants.EVENT_DATE,
+                                                                  "2020-01-02T00:00:00", "2020-01-03T00:00:00", 86400L);
+
+    Assert.assertEquals(Arrays.asList("2020-01-02T00:00:00", "2020-01-02T06:00:00", "2020-01-02T12:00:00",
+                                      "2020-01-02T18:00:00", "2020-01-03T00:00:00"),
+                        MarketingCloudSplitPlanner.segmentBoundaries(split, 4));
+  }
+
+  @Test
+  public void testSegmentBoundariesOfShortOrOpenRanges() {
+    MarketingCloudInputSplit shortSplit = new MarketingCloudInputSplit("TRACKING_OPEN_EVENT", "open",
+                                                                       MarketingCloudConstants.EVENT_DATE,
+                                                                       "2020-01-02T00:00:00", "2020-01-02T00:02:30",
+                                                                       150L);
+    MarketingCloudInputSplit openSplit = new MarketingCloudInputSplit("TRACKING_OPEN_EVENT", "open",
+                                                                      MarketingCloudConstants.EVENT_DATE,
+                                                                      null, "2020-01-02T00:00:00", 86400L);
+
+    Assert.assertEquals(Arrays.asList("2020-01-02T00:00:00", "2020-01-02T00:01:15", "2020-01-02T00:02:30"),
+                        MarketingCloudSplitPlanner.segmentBoundaries(shortSplit, 8));
+    Assert.assertEquals(Arrays.asList(null, "2020-01-02T00:00:00"),
+                        MarketingCloudSplitPlanner.segmentBoundaries(openSplit, 8));
+    MarketingCloudInputSplit unboundedSplit = new MarketingCloudInputSplit("EMAIL", "email");
+    Assert.assertEquals(Arrays.asList(null, null), MarketingCloudSplitPlanner.segmentBoundaries(unboundedSplit, 8));
+  }
+
+  @Test
+  public void testApiTimeIgnoresDefaultTimeZone() {
+    // 2024-03-10T12:30:00Z
+    long logicalStartTime = 1710073800000L;
+    TimeZone defaultZone = TimeZone.getDefault();
+    TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+    try {
+      ZoneId apiZone = ZoneId.of(MarketingCloudConstants.DEFAULT_API_TIME_ZONE);
+      Assert.assertEquals("2024-03-10T06:30:00", MarketingCloudSplitPlanner.formatDate(
+        MarketingCloudSplitPlanner.toApiTime(logicalStartTime, apiZone)));
+      Assert.assertEquals("2024-03-10T07:30:00", MarketingCloudSplitPlanner.formatDate(
+        MarketingCloudSplitPlanner.toApiTime(logicalStartTime, ZoneId.of("America/Chicago"))));
+    } finally {
+      TimeZone.setDefault(defaultZone);
+    }
+  }
+
+  @Test
+  public void testPlanNonEventObject() {
+    MarketingCloudSplitPlanner planner = new MarketingCloudSplitPlanner(4, START, END);
+    List<MarketingCloudInputSplit> splits = planner.plan(info(SourceObject.EMAIL));
+
+    Assert.assertEquals(1, splits.size());
+    Assert.assertNull(splits.get(0).getRangeProperty());
+    Assert.assertEquals(MarketingCloudInputSplit.UNESTIMATED_ROWS, splits.get(0).getLength());
+  }
+
+  @Test
+  public void testPlanWithoutStart() {
+    MarketingCloudSplitPlanner planner = new MarketingCloudSplitPlanner(4, null, END);
+    List<MarketingCloudInputSplit> splits = planner.plan(info(SourceObject.TRACKING_SENT_EVENT));
+
+    Assert.assertEquals(1, splits.size());
+    Assert.assertNull(splits.get(0).getRangeProperty());
+  }
+
+  @Test
+  public void testPlanShortRange() {
+    MarketingCloudSplitPlanner planner = new MarketingCloudSplitPlanner(10, START, START.plusSeconds(3));
+    List<MarketingCloudInputSplit> splits = planner.plan(info(SourceObject.TRACKING_BOUNCE_EVENT));
+
+    Assert.assertEquals(3, splits.size());
+    Assert.assertEquals("2020-01-01T00:00:01", splits.get(0).getRangeEnd());
+    Assert.assertEquals("2020-01-01T00:00:02", splits.get(2).getRangeStart());
+  }
+
+  @Test
+  public void testPlanIncrementalEventWindows() {
+    MarketingCloudSplitPlanner planner = new MarketingCloudSplitPlanner(2, START, END);
+    IncrementalRange range = new IncrementalRange(MarketingCloudConstants.EVENT_DATE, "2020-01-03T00:00:00",
+                                                  "2020-01-04T00:00:00");
+    List<MarketingCloudInputSplit> splits = planner.plan(info(SourceObject.TRACKING_OPEN_EVENT), range);
+
+    Assert.assertEquals(2, splits.size());
+    Assert.assertEquals("2020-01-03T00:00:00", splits.get(0).getRangeStart());
+    Assert.assertEquals("2020-01-03T12:00:00", splits.get(0).getRangeEnd());
+    Assert.assertEquals("2020-01-03T12:00:00", splits.get(1).getRangeStart());
+    Assert.assertEquals("2020-01-04T00:00:00", splits.get(1).getRangeEnd());
+  }
+
+  @Test
+  public void testPlanFirstIncrementalRead() {
+    MarketingCloudSplitPlanner planner = new MarketingCloudSplitPlanner(1, null, END);
+    IncrementalRange range = new IncrementalRange(MarketingCloudConstants.EVENT_DATE, null, "2020-01-04T00:00:00");
+    List<MarketingCloudInputSplit> splits = planner.plan(info(SourceObject.TRACKING_SENT_EVENT), range);
+
+    Assert.assertEquals(1, splits.size());
+    Assert.assertEquals(MarketingCloudConstants.EVENT_DATE, splits.get(0).getRangeProperty());
+    Assert.assertNull(splits.get(0).getRangeStart());
+    Assert.assertEquals("2020-01-04T00:00:00", splits.get(0).getRangeEnd());
+  }
+
+  @Test
+  public void testPlanIncrementalNonEventObject() {
+    MarketingCloudSplitPlanner planner = new MarketingCloudSplitPlanner(4, START, END);
+    IncrementalRange range = new IncrementalRange(MarketingCloudConstants.MODIFIED_DATE, "2020-01-03T00:00:00",
+                                                  "2020-01-04T00:00:00");
+    List<MarketingCloudInputSplit> splits = planner.plan(info(SourceObject.EMAIL), range);
+
+    Assert.assertEquals(1, splits.size());
+    Assert.assertEquals(MarketingCloudConstants.MODIFIED_DATE, splits.get(0).getRangeProperty());
+    Assert.assertEquals("2020-01-03T00:00:00", splits.get(0).getRangeStart());
+    Assert.assertEquals("2020-01-04T00:00:00", splits.get(0).getRangeEnd());
+    Assert.assertEquals(MarketingCloudInputSplit.UNESTIMATED_ROWS, splits.get(0).getLength());
+  }
+
+  @Test
+  public void testParseDate() {
+    Assert.assertEquals(START, MarketingCloudSplitPlanner.parseDate("2020-01-01"));
+    Assert.assertEquals(START.plusHours(6), MarketingCloudSplitPlanner.parseDate("2020-01-01T06:00:00"));
+  }
+
+  private static MarketingCloudObjectInfo info(SourceObject object) {
+    return new MarketingCloudObjectInfo(object, Collections.singletonList(new MarketingCloudColumn("id", "STRING")));
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sfmc.source;
+
+import com.custom.fuelsdk.ETClickEvent;
+import com.exacttarget.fuelsdk.ETDataExtensionRow;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudColumn;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudObjectInfo;
+import io.cdap.plugin.sfmc.source.util.RecordConversionPlan;
+import io.cdap.plugin.sfmc.source.util.SourceObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+public class RecordConversionPlanTest {
+
+  @Test
+  public void testConvertDataExtensionRow() {
+    MarketingCloudObjectInfo info = new MarketingCloudObjectInfo(
+      SourceObject.DATA_EXTENSION, "key", Arrays.asList(new MarketingCloudColumn("First Name", "TEXT"),
+                                                        new MarketingCloudColumn("Age", "NUMBER"),
+                                                        new MarketingCloudColumn("Score", "DECIMAL"),
+                                                        new MarketingCloudColumn("Active", "BOOLEAN")));
+    ETDataExtensionRow row = new ETDataExtensionRow();
+    row.setColumn("First Name", "John");
+    row.setColumn("Age", "42");
+    row.setColumn("Score", "");
+    row.setColumn("Active", "true");
+
+    StructuredRecord.Builder builder = StructuredRecord.builder(info.getSchema());
+    RecordConversionPlan.of(info, ETDataExtensionRow.class).convert(row, builder);
+    StructuredRecord record = builder.build();
+
+    Assert.assertEquals("John", record.get("First__Name"));
+    Assert.assertEquals(Integer.valueOf(42), record.get("Age"));
+    Assert.assertNull(record.get("Score"));
+    Assert.assertEquals(Boolean.TRUE, record.get("Active"));
+  }
+
+  @Test
+  public void testConvertObjectRow() {
+    MarketingCloudObjectInfo info = new MarketingCloudObjectInfo(
+      SourceObject.TRACKING_OPEN_EVENT, Arrays.asList(new MarketingCloudColumn("sendID", "integer"),
+                                                      new MarketingCloudColumn("url", "string"),
+                                                      new MarketingCloudColumn("eventDate", "date")));
+    ETClickEvent event = new ETClickEvent();
+    event.setSendID(121);
+    Date eventDate = new Date();
+    event.setEventDate(eventDate);
+
+    StructuredRecord.Builder builder = StructuredRecord.builder(info.getSchema());
+    RecordConversionPlan.of(info, ETClickEvent.class).convert(event, builder);
+    StructuredRecord record = builder.build();
+
+    Assert.assertEquals(Integer.valueOf(121), record.get("sendID"));
+    Assert.assertEquals("null", record.get("url"));
+    Assert.assertEquals(Long.valueOf(TimeUnit.MILLISECONDS.toMicros(eventDate.getTime())), record.get("eventDate"));
+  }
+
+  @Test
+  public void testConvertIntegerRejectsLossyNumbers() {
+    MarketingCloudObjectInfo info = new MarketingCloudObjectInfo(
+      SourceObject.TRACKING_OPEN_EVENT, Arrays.asList(new MarketingCloudColumn("sendID", "integer")));
+    RecordConversionPlan plan = RecordConversionPlan.of(info, ETClickEvent.class);
+
+    StructuredRecord.Builder builder = StructuredRecord.builder(info.getSchema());
+    plan.convert(new Object[] {7.0d}, builder);
+    Assert.assertEquals(Integer.valueOf(7), builder.build().get("sendID"));
+    for (Object lossy : Arrays.asList(7.5d, 1L + Integer.MAX_VALUE, Double.NaN)) {
+      try {
+        plan.convert(new Object[] {lossy}, StructuredRecord.builder(info.getSchema()));
+        Assert.fail("Expected " + lossy + " to be rejected");
+      } catch (NumberFormatException e) {
+        // expected
+      }
+    }
+  }
+}
@@ -22,6 +22,9 @@ import io.cdap.cdap.etl.api.validation.CauseAttributes;
 import io.cdap.cdap.etl.api.validation.ValidationException;
 import io.cdap.cdap.etl.mock.validation.MockFailureCollector;
 import io.cdap.plugin.sfmc.connector.MarketingConnectorConfig;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudColumn;
+import io.cdap.plugin.sfmc.source.util.MarketingCloudObjectInfo;
+import io.cdap.plugin.sfmc.source.util.SourceObject;
 import io.cdap.plugin.sfmc.source.util.SourceQueryMode;
 
 import org.junit.Assert;
@@ -35,6 +38,10 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import static io.cdap.plugin.sfmc.source.SalesforceSourceConfigHelper.TEST_AUTH_ENDPOINT;
 import static io.cdap.plugin.sfmc.source.SalesforceSourceConfigHelper.TEST_CLIENT_ID;
 import static io.cdap.plugin.sfmc.source.SalesforceSourceConfigHelper.TEST_CLIENT_SECRET;
@@ -46,6 +53,7 @@ import static io.cdap.plugin.sfmc.source.util.MarketingCloudConstants.PROPERTY_D
 import static io.cdap.plugin.sfmc.source.util.MarketingCloudConstants.PROPERTY_DATA_EXTENSION_KEY_LIST;
 import static io.cdap.plugin.sfmc.source.util.MarketingCloudConstants.PROPERTY_OBJECT_NAME;
 import static io.cdap.plugin.sfmc.source.util.MarketingCloudConstants.PROPERTY_QUERY_MODE;
+import static io.cdap.plugin.sfmc.source.util.MarketingCloudConstants.PROPERTY_SELECTED_FIELDS;
 import static io.cdap.plugin.sfmc.source.util.MarketingCloudConstants.PROPERTY_SOAP_API_ENDPOINT;
 import static io.cdap.plugin.sfmc.source.util.MarketingCloudConstants.PROPERTY_TABLE_NAME_FIELD;
 
@@ -304,6 +312,39 @@ public class SalesforceSourceConfigTest {
     }
   }
 
+  @Test
+  public void testValidateSelectedFields() throws ETSdkException {
+    List<MarketingCloudObjectInfo> tableInfos = Arrays.asList(
+      new MarketingCloudObjectInfo(SourceObject.DATA_EXTENSION, "DE1",
+                                   Arrays.asList(new MarketingCloudColumn("name", "string"),
+                                                 new MarketingCloudColumn("email", "string"))),
+      new MarketingCloudObjectInfo(SourceObject.TRACKING_OPEN_EVENT,
+                                   Arrays.asList(new MarketingCloudColumn("email", "string"),
+                                                 new MarketingCloudColumn("eventDate", "date"))));
+    MarketingCloudSourceConfig config = Mockito.spy(SalesforceSourceConfigHelper.newConfigBuilder().build());
+
+    MockFailureCollector collector = new MockFailureCollector();
+    Mockito.doReturn(Arrays.asList("email", "eventDate")).when(config).getSelectedFields();
+    config.validateSelectedFields(collector, tableInfos);
+    Assert.assertEquals(0, collector.getValidationFailures().size());
+
+    collector = new MockFailureCollector();
+    Mockito.doReturn(Collections.singletonList("name")).when(config).getSelectedFields();
+    config.validateSelectedFields(collector, tableInfos);
+    Assert.assertEquals(1, collector.getValidationFailures().size());
+    Assert.assertTrue(collector.getValidationFailures().get(0).getMessage().contains("'open'"));
+    Assert.assertEquals(PROPERTY_SELECTED_FIELDS, collector.getValidationFailures().get(0).getCauses().get(0)
+      .getAttribute(CauseAttributes.STAGE_CONFIG));
+
+    collector = new MockFailureCollector();
+    Mockito.doReturn(Arrays.asList("email", "typo")).when(config).getSelectedFields();
+    config.validateSelectedFields(collector, tableInfos);
+    Assert.assertEquals(1, collector.getValidationFailures().size());
+    Assert.assertTrue(collector.getValidationFailures().get(0).getMessage().contains("[typo]"));
+    Assert.assertEquals(PROPERTY_SELECTED_FIELDS, collector.getValidationFailures().get(0).getCauses().get(0)
+      .getAttribute(CauseAttributes.STAGE_CONFIG));
+  }
+
   private MarketingCloudSourceConfig withSalesforceValidationMock(MarketingCloudSourceConfig config,
                                                                   FailureCollector collector) {
     MarketingCloudSourceConfig spy = Mockito.spy(config);
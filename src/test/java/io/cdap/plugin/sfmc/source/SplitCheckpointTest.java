@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sfmc.source;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SplitCheckpointTest {
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("count", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+    Schema.Field.of("score", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))),
+    Schema.Field.of("active", Schema.nullableOf(Schema.of(Schema.Type.BOOLEAN))),
+    Schema.Field.of("eventDate", Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))));
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testResumeAfterCompletedSegments() throws IOException {
+    Path directory = new Path(temporaryFolder.newFolder().toURI());
+    SplitCheckpoint checkpoint = open(directory, 3);
+    Assert.assertEquals(0, checkpoint.getCompletedSegments());
+
+    SplitCheckpoint.SegmentWriter writer = checkpoint.writeSegment(0);
+    writer.write(record("first", 1, 1.5, true, 1000L));
+    writer.write(record(null, null, null, null, null));
+    writer.commit();
+    writer = checkpoint.writeSegment(1);
+    writer.write(record("lost", 3, 0.0, false, 0L));
+    writer.close();
+
+    SplitCheckpoint resumed = open(directory, 3);
+    Assert.assertEquals(1, resumed.getCompletedSegments());
+    List<StructuredRecord> records = new ArrayList<>();
+    try (SplitCheckpoint.SegmentReader reader = resumed.readSegment(0, SCHEMA)) {
+      StructuredRecord record;
+      while ((record = reader.next()) != null) {
+        records.add(record);
+      }
+    }
+    Assert.assertEquals(2, records.size());
+    Assert.assertEquals("first", records.get(0).get("name"));
+    Assert.assertEquals(Integer.valueOf(1), records.get(0).get("count"));
+    Assert.assertEquals(Double.valueOf(1.5), records.get(0).get("score"));
+    Assert.assertEquals(Boolean.TRUE, records.get(0).get("active"));
+    Assert.assertEquals(Long.valueOf(1000L), records.get(0).get("eventDate"));
+    Assert.assertNull(records.get(1).get("name"));
+    Assert.assertNull(records.get(1).get("eventDate"));
+
+    writer = resumed.writeSegment(1);
+    writer.write(record("second", 2, 2.5, false, 2000L));
+    writer.commit();
+    Assert.assertEquals(2, open(directory, 3).getCompletedSegments());
+  }
+
+  @Test
+  public void testCheckpointOfOtherSegmentsIsIgnored() throws IOException {
+    Path directory = new Path(temporaryFolder.newFolder().toURI());
+    SplitCheckpoint checkpoint = open(directory, 2);
+    SplitCheckpoint.SegmentWriter writer = checkpoint.writeSegment(0);
+    writer.commit();
+
+    Assert.assertEquals(1, open(directory, 2).getCompletedSegments());
+    Assert.assertEquals(0, open(directory, 4).getCompletedSegments());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testSegmentsAreWrittenInOrder() throws IOException {
+    open(new Path(temporaryFolder.newFolder().toURI()), 2).writeSegment(1);
+  }
+
+  @Test
+  public void testSplitId() {
+    MarketingCloudInputSplit split = new MarketingCloudInputSplit("TRACKING_OPEN_EVENT", "open", "eventDate",
+                                                                  "2020-01-01", "2020-01-02", 86400L);
+    MarketingCloudInputSplit sameSplit = new MarketingCloudInputSplit("TRACKING_OPEN_EVENT", "open", "eventDate",
+                                                                      "2020-01-01", "2020-01-02", 86400L);
+    MarketingCloudInputSplit nextSplit = new MarketingCloudInputSplit("TRACKING_OPEN_EVENT", "open", "eventDate",
+                                                                      "2020-01-02", null, 86400L);
+
+    Assert.assertEquals(SplitCheckpoint.getSplitId(split), SplitCheckpoint.getSplitId(sameSplit));
+    Assert.assertNotEquals(SplitCheckpoint.getSplitId(split), SplitCheckpoint.getSplitId(nextSplit));
+  }
+
+  private static SplitCheckpoint open(Path directory, int segments) throws IOException {
+    return new SplitCheckpoint(FileSystem.getLocal(new Configuration()), directory, segments);
+  }
+
+  private static StructuredRecord record(String name, Integer count, Double score, Boolean active, Long eventDate) {
+    return StructuredRecord.builder(SCHEMA)
+      .set("name", name)
+      .set("count", count)
+      .set("score", score)
+      .set("active", active)
+      .set("eventDate", eventDate)
+      .build();
+  }
+}
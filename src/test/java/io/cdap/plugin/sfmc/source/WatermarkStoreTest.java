@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sfmc.source;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+public class WatermarkStoreTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testCommit() throws IOException {
+    WatermarkStore store = newStore();
+    Assert.assertNull(store.get("dataextension_key/1"));
+
+    store.stage("dataextension_key/1", "2020-01-01T00:00:00", "pipeline-1");
+    store.stage("open", "2020-01-01T00:00:00", "pipeline-1");
+    Assert.assertNull(store.get("dataextension_key/1"));
+
+    store.commit("pipeline-1");
+    Assert.assertEquals("2020-01-01T00:00:00", store.get("dataextension_key/1"));
+    Assert.assertEquals("2020-01-01T00:00:00", store.get("open"));
+
+    store.stage("open", "2020-01-02T00:00:00", "pipeline-2");
+    store.commit("pipeline-2");
+    Assert.assertEquals("2020-01-02T00:00:00", store.get("open"));
+    Assert.assertEquals("2020-01-01T00:00:00", store.get("dataextension_key/1"));
+  }
+
+  @Test
+  public void testDiscard() throws IOException {
+    WatermarkStore store = newStore();
+    store.stage("open", "2020-01-01T00:00:00", "pipeline-1");
+    store.commit("pipeline-1");
+
+    store.stage("open", "2020-01-02T00:00:00", "pipeline-2");
+    store.discard("pipeline-2");
+    store.commit("pipeline-2");
+    Assert.assertEquals("2020-01-01T00:00:00", store.get("open"));
+  }
+
+  @Test
+  public void testRunsAreKeptApart() throws IOException {
+    WatermarkStore store = newStore();
+    store.stage("open", "2020-01-01T00:00:00", "pipeline-1");
+    store.stage("open", "2020-01-02T00:00:00", "pipeline-2");
+
+    store.discard("pipeline-2");
+    store.commit("pipeline-1");
+    Assert.assertEquals("2020-01-01T00:00:00", store.get("open"));
+  }
+
+  private WatermarkStore newStore() throws IOException {
+    Path directory = new Path(temporaryFolder.newFolder().toURI());
+    return new WatermarkStore(FileSystem.getLocal(new Configuration()), new Path(directory, "reference"));
+  }
+}